@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2012-2020 Andrew Neal, Angel Leon, Alden Torres, Jose Molina
+ * Copyright (C) 2012-2022 Andrew Neal, Angel Leon, Alden Torres, Jose Molina
  * Licensed under the Apache License, Version 2.0
  * (the "License"); you may not use this file except in compliance with the
  * License. You may obtain a copy of the License at
@@ -70,9 +70,11 @@ import com.frostwire.android.core.ConfigurationManager;
 import com.frostwire.android.core.Constants;
 import com.frostwire.android.gui.util.UIUtils;
 import com.frostwire.android.util.SystemUtils;
+import com.frostwire.util.IdListStore;
 import com.frostwire.util.Logger;
 import com.frostwire.util.Ref;
 import com.frostwire.util.TaskThrottle;
+import com.frostwire.util.ThreadPool;
 import com.frostwire.util.UrlUtils;
 import com.google.android.gms.common.internal.Asserts;
 
@@ -83,10 +85,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.ref.WeakReference;
 import java.net.URLDecoder;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.Stack;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 
 /**
  * A background {@link Service} used to keep music playing between activities
@@ -223,6 +227,9 @@ public class MusicPlaybackService extends JobIntentService {
 
 
     private static final Logger LOG = Logger.getLogger(MusicPlaybackService.class);
+
+    // the queue is written off the main thread, one save after the other
+    private static final ExecutorService QUEUE_SAVER = ThreadPool.newThreadPool("MusicPlaybackService-queue", 1, true);
     private static final boolean D = BuildConfig.DEBUG;
 
     private static MusicPlaybackService INSTANCE = null;
@@ -470,16 +477,6 @@ public class MusicPlaybackService extends JobIntentService {
      */
     private static final Stack<Integer> mHistory = new Stack<>();
 
-    /**
-     * Used to save the queue as reverse hexadecimal numbers, which we can
-     * generate faster than normal decimal or hexadecimal numbers, which in
-     * turn allows us to save the playlist more often without worrying too
-     * much about performance
-     */
-    private static final char[] HEX_DIGITS = new char[]{
-            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
-    };
-
     /**
      * The media player
      */
@@ -525,6 +522,11 @@ public class MusicPlaybackService extends JobIntentService {
      */
     private SharedPreferences mPreferences;
 
+    /**
+     * The queue, saved incrementally as it's edited
+     */
+    private IdListStore mQueueStore;
+
     /**
      * Used to know when the service is active
      */
@@ -931,6 +933,7 @@ public class MusicPlaybackService extends JobIntentService {
 
         // Initialize the preferences
         mPreferences = getSharedPreferences("Service", 0);
+        mQueueStore = new IdListStore(new File(getFilesDir(), "queue.bin"));
         mCardId = getCardId();
 
         registerExternalStorageListener();
@@ -1781,22 +1784,16 @@ public class MusicPlaybackService extends JobIntentService {
 
         final SharedPreferences.Editor editor = mPreferences.edit();
         if (full) {
-            final StringBuilder q = new StringBuilder();
-            int len = mPlayListLen;
-            for (int i = 0; i < len; i++) {
-                long n = mPlayList[i];
-                if (n == 0) {
-                    q.append("0;");
-                } else {
-                    while (n != 0) {
-                        final int digit = (int) (n & 0xf);
-                        n >>>= 4;
-                        q.append(HEX_DIGITS[digit]);
-                    }
-                    q.append(";");
+            // only the tracks changed since the last save are written
+            final IdListStore store = mQueueStore;
+            final long[] queue = Arrays.copyOf(mPlayList, mPlayListLen);
+            final SharedPreferences preferences = mPreferences;
+            QUEUE_SAVER.execute(() -> {
+                // the queue saved by a previous version goes once the store has it
+                if (store.save(queue, queue.length) && preferences.contains("queue")) {
+                    preferences.edit().remove("queue").apply();
                 }
-            }
-            editor.putString("queue", q.toString());
+            });
             editor.putInt("cardid", mCardId);
         }
         editor.putInt("curpos", mPlayPos);
@@ -1820,40 +1817,22 @@ public class MusicPlaybackService extends JobIntentService {
      * Apollo
      */
     private void reloadQueue() {
-        String q = null;
+        long[] q = null;
         int id = mCardId;
         if (mPreferences.contains("cardid")) {
             id = mPreferences.getInt("cardid", ~mCardId);
         }
         if (id == mCardId) {
-            q = mPreferences.getString("queue", "");
-        }
-        int qlen = q != null ? q.length() : 0;
-        if (qlen > 1) {
-            int plen = 0;
-            int n = 0;
-            int shift = 0;
-            for (int i = 0; i < qlen; i++) {
-                final char c = q.charAt(i);
-                if (c == ';') {
-                    ensurePlayListCapacity(plen + 1);
-                    mPlayList[plen] = n;
-                    plen++;
-                    n = 0;
-                    shift = 0;
-                } else {
-                    if (c >= '0' && c <= '9') {
-                        n += c - '0' << shift;
-                    } else if (c >= 'a' && c <= 'f') {
-                        n += 10 + c - 'a' << shift;
-                    } else {
-                        plen = 0;
-                        break;
-                    }
-                    shift += 4;
-                }
+            q = mQueueStore.load();
+            if (q.length == 0 && mPreferences.contains("queue")) {
+                // saved by a previous version, moved to the queue store on the next save
+                q = parseHexQueue(mPreferences.getString("queue", ""));
             }
-            mPlayListLen = plen;
+        }
+        if (q != null && q.length > 0) {
+            ensurePlayListCapacity(q.length);
+            System.arraycopy(q, 0, mPlayList, 0, q.length);
+            mPlayListLen = q.length;
             final int pos = mPreferences.getInt("curpos", 0);
             if (pos < 0 || pos >= mPlayListLen) {
                 mPlayListLen = 0;
@@ -1901,6 +1880,42 @@ public class MusicPlaybackService extends JobIntentService {
         }
     }
 
+    /**
+     * Parses the queue saved by previous versions, the ids as reverse
+     * hexadecimal numbers separated by ';'
+     *
+     * @return the ids, an empty array if the queue is malformed
+     */
+    private static long[] parseHexQueue(final String q) {
+        final int qlen = q != null ? q.length() : 0;
+        long[] list = new long[16];
+        int plen = 0;
+        long n = 0;
+        int shift = 0;
+        for (int i = 0; i < qlen; i++) {
+            final char c = q.charAt(i);
+            if (c == ';') {
+                if (plen == list.length) {
+                    list = Arrays.copyOf(list, plen * 2);
+                }
+                list[plen] = n;
+                plen++;
+                n = 0;
+                shift = 0;
+            } else {
+                if (c >= '0' && c <= '9') {
+                    n += (long) (c - '0') << shift;
+                } else if (c >= 'a' && c <= 'f') {
+                    n += (long) (10 + c - 'a') << shift;
+                } else {
+                    return new long[0];
+                }
+                shift += 4;
+            }
+        }
+        return Arrays.copyOf(list, plen);
+    }
+
     interface OpenFileResultCallback {
         void openFileResult(boolean result);
     }
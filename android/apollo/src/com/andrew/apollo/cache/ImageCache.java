@@ -1,6 +1,6 @@
 /*
  * Copyright (C) 2012 Andrew Neal Licensed under the Apache License, Version 2.0
- * Modified by Angel Leon (@gubatron) FrostWire(R) Copyright 2012-2020
+ * Modified by Angel Leon (@gubatron) FrostWire(R) Copyright 2012-2022
  *
  * (the "License"); you may not use this file except in compliance with the
  * License. You may obtain a copy of the License at
@@ -34,6 +34,7 @@ import androidx.annotation.NonNull;
 import com.frostwire.android.gui.services.Engine;
 import com.frostwire.android.util.Asyncs;
 import com.frostwire.android.util.SystemUtils;
+import com.frostwire.util.DiskLruCache;
 import com.frostwire.util.Logger;
 import com.frostwire.util.Ref;
 
@@ -43,8 +44,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * This class holds the memory and disk bitmap caches.
@@ -70,11 +69,6 @@ public final class ImageCache {
      */
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 10;
 
-    /**
-     * Disk cache index to read from
-     */
-    private static final int DISK_CACHE_INDEX = 0;
-
     /**
      * LRU cache
      */
@@ -176,11 +170,7 @@ public final class ImageCache {
                     diskCacheDir.mkdirs();
                 }
                 if (getUsableSpace(diskCacheDir) > DISK_CACHE_SIZE) {
-                    try {
-                        mDiskCache = DiskLruCache.open(diskCacheDir, 1, 1, DISK_CACHE_SIZE);
-                    } catch (final IOException e) {
-                        e.printStackTrace();
-                    }
+                    mDiskCache = new DiskLruCache(diskCacheDir, DISK_CACHE_SIZE);
                 }
             }
         }
@@ -310,22 +300,16 @@ public final class ImageCache {
             return getBitmapFromMemCache(data);
         }
         waitUntilUnpaused();
-        final String key = hashKeyForDisk(data);
         if (mDiskCache != null) {
             InputStream inputStream = null;
             try {
-                final DiskLruCache.Snapshot snapshot = mDiskCache.get(key);
-                if (snapshot != null) {
-                    inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
-                    if (inputStream != null) {
-                        final Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                        if (bitmap != null) {
-                            return bitmap;
-                        }
+                inputStream = mDiskCache.getInputStream(data);
+                if (inputStream != null) {
+                    final Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+                    if (bitmap != null) {
+                        return bitmap;
                     }
                 }
-            } catch (final IOException e) {
-                Log.e(TAG, "getBitmapFromDiskCache - " + e);
             } finally {
                 try {
                     if (inputStream != null) {
@@ -404,14 +388,8 @@ public final class ImageCache {
     }
 
     private void flushTask() {
-        if (mDiskCache != null) {
-            try {
-                if (!mDiskCache.isClosed()) {
-                    mDiskCache.flush();
-                }
-            } catch (final IOException e) {
-                Log.e(TAG, "flushTask() - " + e);
-            }
+        if (mDiskCache != null && !mDiskCache.isClosed()) {
+            mDiskCache.flush();
         }
     }
 
@@ -437,13 +415,9 @@ public final class ImageCache {
         if (mLruCache != null) {
             mLruCache.remove(key);
         }
-        try {
-            // Remove the disk entry
-            if (mDiskCache != null) {
-                mDiskCache.remove(hashKeyForDisk(key));
-            }
-        } catch (final IOException e) {
-            Log.e(TAG, "remove - " + e);
+        // Remove the disk entry
+        if (mDiskCache != null) {
+            mDiskCache.remove(key);
         }
         flush();
     }
@@ -489,43 +463,6 @@ public final class ImageCache {
         return path.getUsableSpace();
     }
 
-    /**
-     * A hashing method that changes a string (like a URL) into a hash suitable
-     * for using as a disk filename.
-     *
-     * @param key The key used to store the file
-     */
-    private static String hashKeyForDisk(final String key) {
-        String cacheKey;
-        try {
-            final MessageDigest digest = MessageDigest.getInstance("MD5");
-            digest.update(key.getBytes());
-            cacheKey = bytesToHexString(digest.digest());
-        } catch (final NoSuchAlgorithmException e) {
-            cacheKey = String.valueOf(key.hashCode());
-        }
-        return cacheKey;
-    }
-
-    /**
-     * http://stackoverflow.com/questions/332079
-     *
-     * @param bytes The bytes to convert.
-     * @return A {@link String} converted from the bytes of a hashable key used
-     * to store a filename on the disk, to hex digits.
-     */
-    private static String bytesToHexString(final byte[] bytes) {
-        final StringBuilder builder = new StringBuilder();
-        for (final byte b : bytes) {
-            final String hex = Integer.toHexString(0xFF & b);
-            if (hex.length() == 1) {
-                builder.append('0');
-            }
-            builder.append(hex);
-        }
-        return builder.toString();
-    }
-
     /**
      * A simple non-UI Fragment that stores a single Object and is retained over
      * configuration changes. In this sample it will be used to retain an
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,15 +19,9 @@ package com.frostwire.android.gui;
 
 import android.content.Context;
 
-import com.frostwire.android.util.DiskCache;
-import com.frostwire.android.util.DiskCache.Entry;
 import com.frostwire.android.util.SystemUtils;
 import com.frostwire.search.CrawlCache;
-import com.frostwire.util.Logger;
-
-import org.apache.commons.io.IOUtils;
-
-import java.io.File;
+import com.frostwire.util.DiskLruCache;
 
 /**
  * @author gubatron
@@ -35,107 +29,41 @@ import java.io.File;
  */
 public final class DiskCrawlCache implements CrawlCache {
 
-    private static final Logger LOG = Logger.getLogger(DiskCrawlCache.class);
-
     private static final int MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
 
-    private final File directory;
-    private DiskCache cache;
+    private final DiskLruCache cache;
 
     DiskCrawlCache(Context context) {
-        this.directory = SystemUtils.getCacheDir(context, "search");
-        this.cache = createDiskCache(directory, MAX_DISK_CACHE_SIZE);
+        this.cache = new DiskLruCache(SystemUtils.getCacheDir(context, "search"), MAX_DISK_CACHE_SIZE);
     }
 
     @Override
     public byte[] get(String key) {
-        byte[] data = null;
-
-        if (cache != null) {
-            try {
-                Entry e = cache.get(key);
-                if (e != null) {
-                    try {
-                        data = IOUtils.toByteArray(e.getInputStream());
-                    } finally {
-                        e.close();
-                    }
-                }
-            } catch (Throwable e) {
-                // ignore
-            }
-        }
-
-        return data;
+        return cache.get(key);
     }
 
     @Override
     public void put(String key, byte[] data) {
-        if (cache != null) {
-            try {
-                cache.put(key, data);
-            } catch (Throwable e) {
-                // ignore
-            }
-        }
+        cache.put(key, data);
     }
 
     @Override
     public void remove(String key) {
-        if (cache != null) {
-            try {
-                cache.remove(key);
-            } catch (Throwable e) {
-                // ignore
-            }
-        }
+        cache.remove(key);
     }
 
     @Override
     public void clear() {
-        if (cache != null) {
-            try {
-                cache.delete();
-                cache = createDiskCache(directory, MAX_DISK_CACHE_SIZE);
-            } catch (Throwable e) {
-                LOG.error("Unable to clear the crawl cache", e);
-            }
-        }
+        cache.clear();
     }
 
     @Override
     public long sizeInBytes() {
-        long size = 0;
-        if (cache != null) {
-            try {
-                size = cache.size();
-            } catch (Throwable e) {
-                LOG.error("Unable to get crawl cache size", e);
-            }
-        }
-
-        return size;
+        return cache.size();
     }
 
     @Override
     public long numEntries() {
-        long size = 0;
-        if (cache != null) {
-            try {
-                size = cache.numEntries();
-            } catch (Throwable e) {
-                LOG.error("Unable to get crawl cache number of entries", e);
-            }
-        }
-
-        return size;
-    }
-
-    private DiskCache createDiskCache(File directory, long diskSize) {
-        try {
-            return new DiskCache(directory, diskSize);
-        } catch (Throwable e) {
-            return null;
-        }
+        return cache.entries();
     }
 }
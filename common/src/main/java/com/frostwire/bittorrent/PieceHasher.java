@@ -0,0 +1,305 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes the SHA-1 piece hashes of a torrent's content across a pool of
+ * workers, a replacement for {@code libtorrent.set_piece_hashes} that reports
+ * progress per piece and can be cancelled.
+ * <p>
+ * The files are seen as one contiguous stream, in the torrent order. Each
+ * worker takes a run of consecutive pieces at a time and reads them with
+ * large positional reads, so the disk sees mostly sequential access, and
+ * keeps at most one file open.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class PieceHasher {
+    public static final int HASH_SIZE = 20;
+    /**
+     * How much content a worker takes at a time.
+     */
+    private static final int BATCH_BYTES = 4 * 1024 * 1024;
+
+    private final List<Span> spans;
+    private final long[] offsets;
+    private final long totalSize;
+    private final int pieceLength;
+    private final int numPieces;
+    private final int threads;
+    private volatile boolean cancelled;
+
+    /**
+     * @param spans       the files in the torrent order, pad files included
+     * @param pieceLength the piece length in bytes
+     * @param threads     the number of workers
+     */
+    public PieceHasher(List<Span> spans, int pieceLength, int threads) {
+        if (pieceLength <= 0) {
+            throw new IllegalArgumentException("Invalid piece length: " + pieceLength);
+        }
+        this.spans = new ArrayList<>(spans);
+        this.offsets = new long[spans.size()];
+        long offset = 0;
+        for (int i = 0; i < spans.size(); i++) {
+            offsets[i] = offset;
+            offset += spans.get(i).size;
+        }
+        this.totalSize = offset;
+        this.pieceLength = pieceLength;
+        this.numPieces = (int) ((totalSize + pieceLength - 1) / pieceLength);
+        this.threads = Math.max(1, Math.min(threads, numPieces));
+    }
+
+    public int numPieces() {
+        return numPieces;
+    }
+
+    public long totalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Stops the hashing as soon as possible, {@link #hash(ProgressListener)} throws
+     * {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Hashes all the pieces, blocking until done.
+     *
+     * @param listener receives the progress from the worker threads, can be null
+     * @return the piece hashes, {@link #HASH_SIZE} bytes per piece in piece order
+     * @throws IOException           if a file can't be read or is shorter than expected
+     * @throws CancellationException if {@link #cancel()} was called
+     */
+    public byte[] hash(ProgressListener listener) throws IOException, InterruptedException {
+        byte[] hashes = new byte[numPieces * HASH_SIZE];
+        if (numPieces == 0) {
+            return hashes;
+        }
+        int batch = Math.max(1, BATCH_BYTES / pieceLength);
+        AtomicInteger nextPiece = new AtomicInteger();
+        AtomicInteger piecesDone = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch finished = new CountDownLatch(threads);
+        ExecutorService pool = ExecutorsHelper.newFixedSizeThreadPool(threads, "PieceHasher");
+        try {
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    try (Worker worker = new Worker()) {
+                        int first;
+                        while (!cancelled && failure.get() == null && (first = nextPiece.getAndAdd(batch)) < numPieces) {
+                            int last = Math.min(first + batch, numPieces);
+                            for (int piece = first; piece < last && !cancelled; piece++) {
+                                worker.hash(piece, hashes);
+                                int done = piecesDone.incrementAndGet();
+                                if (listener != null) {
+                                    listener.onProgress(this, done, numPieces);
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            finished.await();
+        } catch (InterruptedException e) {
+            cancelled = true;
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+        Throwable e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e != null) {
+            throw new IOException(e);
+        }
+        if (cancelled) {
+            throw new CancellationException("Piece hashing cancelled");
+        }
+        return hashes;
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called from the worker threads after each piece.
+         */
+        void onProgress(PieceHasher hasher, int piecesDone, int numPieces);
+    }
+
+    /**
+     * A file of the torrent content, or padding.
+     */
+    public static final class Span {
+        final File file;
+        final long size;
+
+        public Span(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        /**
+         * @return the file, null for padding
+         */
+        public File getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * A pad file, its content is all zeros and it's not read from disk.
+         */
+        public static Span pad(long size) {
+            return new Span(null, size);
+        }
+    }
+
+    private final class Worker implements AutoCloseable {
+        private final MessageDigest digest;
+        private final ByteBuffer buffer;
+        private FileChannel channel;
+        private int channelSpan = -1;
+
+        Worker() throws NoSuchAlgorithmException {
+            digest = MessageDigest.getInstance("SHA-1");
+            buffer = ByteBuffer.allocate(pieceLength);
+        }
+
+        void hash(int piece, byte[] hashes) throws IOException {
+            long offset = (long) piece * pieceLength;
+            int length = (int) Math.min(pieceLength, totalSize - offset);
+            buffer.clear();
+            buffer.limit(length);
+            int span = spanAt(offset);
+            while (buffer.hasRemaining()) {
+                Span s = spans.get(span);
+                long position = offset + buffer.position() - offsets[span];
+                int n = (int) Math.min(buffer.remaining(), s.size - position);
+                if (n <= 0) {
+                    span++;
+                    continue;
+                }
+                if (s.file == null) {
+                    Arrays.fill(buffer.array(), buffer.position(), buffer.position() + n, (byte) 0);
+                    buffer.position(buffer.position() + n);
+                } else {
+                    read(span, position, n);
+                }
+                span++;
+            }
+            digest.update(buffer.array(), 0, length);
+            try {
+                digest.digest(hashes, piece * HASH_SIZE, HASH_SIZE);
+            } catch (DigestException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void read(int span, long position, int n) throws IOException {
+            if (channelSpan != span) {
+                closeChannel();
+                channel = FileChannel.open(spans.get(span).file.toPath(), StandardOpenOption.READ);
+                channelSpan = span;
+            }
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + n);
+            try {
+                while (buffer.hasRemaining()) {
+                    int r = channel.read(buffer, position);
+                    if (r < 0) {
+                        throw new EOFException("File shorter than expected: " + spans.get(span).file);
+                    }
+                    position += r;
+                }
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        /**
+         * The index of the span containing the offset, skipping empty spans.
+         */
+        private int spanAt(long offset) {
+            int i = Arrays.binarySearch(offsets, offset);
+            if (i < 0) {
+                return -i - 2;
+            }
+            // several spans can start at the same offset if some are empty
+            while (i + 1 < offsets.length && offsets[i + 1] == offset) {
+                i++;
+            }
+            return i;
+        }
+
+        private void closeChannel() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                channelSpan = -1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeChannel();
+        }
+    }
+}
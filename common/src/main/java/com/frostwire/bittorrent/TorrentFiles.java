@@ -0,0 +1,445 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.FileStorage;
+import com.frostwire.jlibtorrent.TorrentInfo;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The file list of a .torrent, read with a small bencode reader in pure Java
+ * instead of a native {@link TorrentInfo}, for the search results of crawled
+ * torrents that only need the info-hash, the paths, sizes and pad flags.
+ * <p>
+ * The reader walks the bytes in place, nothing but the file paths is copied,
+ * and the info-hash is the SHA-1 of the raw info dictionary. The file indexes
+ * are the same as libtorrent's, pad files included, so they can be used for
+ * the file priorities. The full {@link TorrentInfo} is only decoded with
+ * {@link #torrentInfo()}, when a download starts.
+ * <p>
+ * v2 only torrents, without a v1 file list, are decoded by libtorrent, which
+ * adds its own pad files, and released right after.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TorrentFiles {
+    private static final int MAX_DEPTH = 64;
+    /**
+     * The prefix of the pad files made by old clients, without the attribute.
+     */
+    private static final String LEGACY_PAD_FILE_PREFIX = "_____padding_file_";
+
+    private final byte[] data;
+    private final String infoHash;
+    private final String name;
+    private final String[] paths;
+    private final long[] sizes;
+    private final BitSet padFiles;
+
+    private TorrentFiles(byte[] data, String infoHash, String name, String[] paths, long[] sizes, BitSet padFiles) {
+        this.data = data;
+        this.infoHash = infoHash;
+        this.name = name;
+        this.paths = paths;
+        this.sizes = sizes;
+        this.padFiles = padFiles;
+    }
+
+    /**
+     * @param data the .torrent bytes, kept as is, they must not be modified afterwards
+     * @throws IllegalArgumentException if the data is not a valid torrent
+     */
+    public static TorrentFiles parse(byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("No torrent data");
+        }
+        Reader r = new Reader(data);
+        int infoStart = -1;
+        int infoEnd = -1;
+        r.expect('d');
+        while (!r.atEnd()) {
+            r.string();
+            boolean info = r.stringEquals("info");
+            int start = r.pos;
+            r.skip(0);
+            if (info) {
+                infoStart = start;
+                infoEnd = r.pos;
+            }
+        }
+        if (infoStart < 0) {
+            throw new IllegalArgumentException("No info dictionary");
+        }
+        String infoHash = sha1(data, infoStart, infoEnd - infoStart);
+
+        r.pos = infoStart;
+        r.expect('d');
+        String name = null;
+        String utf8Name = null;
+        long length = -1;
+        int files = -1;
+        boolean fileTree = false;
+        while (!r.atEnd()) {
+            r.string();
+            if (r.stringEquals("name")) {
+                r.string();
+                name = r.stringValue();
+            } else if (r.stringEquals("name.utf-8")) {
+                r.string();
+                utf8Name = r.stringValue();
+            } else if (r.stringEquals("length")) {
+                length = r.integer();
+            } else if (r.stringEquals("files")) {
+                files = r.pos;
+                r.skip(0);
+            } else if (r.stringEquals("file tree")) {
+                fileTree = true;
+                r.skip(0);
+            } else {
+                r.skip(0);
+            }
+        }
+        name = sanitize(utf8Name != null ? utf8Name : name);
+        if (name == null) {
+            name = infoHash;
+        }
+
+        if (files >= 0) {
+            return parseFiles(data, r, files, infoHash, name);
+        }
+        if (length >= 0) {
+            return new TorrentFiles(data, infoHash, name, new String[]{name}, new long[]{length}, new BitSet());
+        }
+        if (fileTree) {
+            return fromTorrentInfo(data);
+        }
+        throw new IllegalArgumentException("No files in torrent");
+    }
+
+    private static TorrentFiles parseFiles(byte[] data, Reader r, int offset, String infoHash, String name) {
+        List<String> paths = new ArrayList<>();
+        long[] sizes = new long[16];
+        BitSet padFiles = new BitSet();
+        StringBuilder sb = new StringBuilder();
+        r.pos = offset;
+        r.expect('l');
+        while (!r.atEnd()) {
+            r.expect('d');
+            long length = -1;
+            int path = -1;
+            int utf8Path = -1;
+            boolean pad = false;
+            while (!r.atEnd()) {
+                r.string();
+                if (r.stringEquals("length")) {
+                    length = r.integer();
+                } else if (r.stringEquals("path")) {
+                    path = r.pos;
+                    r.skip(0);
+                } else if (r.stringEquals("path.utf-8")) {
+                    utf8Path = r.pos;
+                    r.skip(0);
+                } else if (r.stringEquals("attr")) {
+                    r.string();
+                    pad = r.stringContains('p');
+                } else {
+                    r.skip(0);
+                }
+            }
+            if (length < 0 || (path < 0 && utf8Path < 0)) {
+                throw new IllegalArgumentException("Invalid file entry " + paths.size());
+            }
+            int end = r.pos;
+
+            sb.setLength(0);
+            sb.append(name);
+            String last = null;
+            r.pos = utf8Path >= 0 ? utf8Path : path;
+            r.expect('l');
+            while (!r.atEnd()) {
+                r.string();
+                String element = sanitize(r.stringValue());
+                if (element != null) {
+                    sb.append(File.separatorChar).append(element);
+                    last = element;
+                }
+            }
+            r.pos = end;
+
+            int index = paths.size();
+            if (pad || (last != null && last.startsWith(LEGACY_PAD_FILE_PREFIX))) {
+                padFiles.set(index);
+            }
+            if (index == sizes.length) {
+                sizes = Arrays.copyOf(sizes, index * 2);
+            }
+            sizes[index] = length;
+            paths.add(sb.toString());
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No files in torrent");
+        }
+        return new TorrentFiles(data, infoHash, name, paths.toArray(new String[0]), Arrays.copyOf(sizes, paths.size()), padFiles);
+    }
+
+    private static TorrentFiles fromTorrentInfo(byte[] data) {
+        TorrentInfo ti = TorrentInfo.bdecode(data);
+        FileStorage fs = ti.files();
+        int numFiles = fs.numFiles();
+        String[] paths = new String[numFiles];
+        long[] sizes = new long[numFiles];
+        BitSet padFiles = new BitSet();
+        for (int i = 0; i < numFiles; i++) {
+            paths[i] = fs.filePath(i);
+            sizes[i] = fs.fileSize(i);
+            if (fs.padFileAt(i)) {
+                padFiles.set(i);
+            }
+        }
+        return new TorrentFiles(data, ti.infoHash().toHex(), ti.name(), paths, sizes, padFiles);
+    }
+
+    /**
+     * @return the element without separators, or null if it must be dropped from the path
+     */
+    private static String sanitize(String element) {
+        if (element == null || element.isEmpty() || element.equals(".") || element.equals("..")) {
+            return null;
+        }
+        return element.replace('/', '_').replace('\\', '_');
+    }
+
+    private static String sha1(byte[] data, int offset, int length) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(data, offset, length);
+            byte[] digest = md.digest();
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xf, 16);
+                hex[2 * i + 1] = Character.forDigit(digest[i] & 0xf, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the .torrent bytes
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return the v1 info-hash in lowercase hex
+     */
+    public String infoHash() {
+        return infoHash;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int numFiles() {
+        return paths.length;
+    }
+
+    /**
+     * @return the path of the file, starting with the torrent name for multi-file torrents
+     */
+    public String filePath(int index) {
+        return paths[index];
+    }
+
+    public long fileSize(int index) {
+        return sizes[index];
+    }
+
+    public boolean padFileAt(int index) {
+        return padFiles.get(index);
+    }
+
+    public long totalSize() {
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Decodes the whole torrent with libtorrent, a new native object on each call.
+     */
+    public TorrentInfo torrentInfo() {
+        return TorrentInfo.bdecode(data);
+    }
+
+    /**
+     * A cursor over bencoded bytes. The strings are read as an offset and a
+     * length, only copied on demand.
+     */
+    private static final class Reader {
+        private final byte[] b;
+        private int pos;
+        private int strStart;
+        private int strLength;
+
+        Reader(byte[] b) {
+            this.b = b;
+        }
+
+        void expect(char c) {
+            if (pos >= b.length || b[pos] != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        /**
+         * Consumes the end of a list or a dictionary, if there.
+         */
+        boolean atEnd() {
+            if (pos >= b.length) {
+                throw error("unexpected end of data");
+            }
+            if (b[pos] == 'e') {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        long integer() {
+            expect('i');
+            boolean negative = pos < b.length && b[pos] == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < b.length && b[pos] != 'e') {
+                int d = b[pos] - '0';
+                if (d < 0 || d > 9 || digits == 18) {
+                    throw error("invalid integer");
+                }
+                value = value * 10 + d;
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                throw error("invalid integer");
+            }
+            expect('e');
+            return negative ? -value : value;
+        }
+
+        void string() {
+            long length = 0;
+            int digits = 0;
+            while (pos < b.length && b[pos] != ':') {
+                int d = b[pos] - '0';
+                if (d < 0 || d > 9 || digits == 10) {
+                    throw error("invalid string length");
+                }
+                length = length * 10 + d;
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                throw error("invalid string length");
+            }
+            expect(':');
+            if (length > b.length - pos) {
+                throw error("string out of bounds");
+            }
+            strStart = pos;
+            strLength = (int) length;
+            pos += strLength;
+        }
+
+        boolean stringEquals(String ascii) {
+            if (strLength != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < strLength; i++) {
+                if (b[strStart + i] != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean stringContains(char c) {
+            for (int i = 0; i < strLength; i++) {
+                if (b[strStart + i] == c) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String stringValue() {
+            return new String(b, strStart, strLength, StandardCharsets.UTF_8);
+        }
+
+        void skip(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw error("too deep");
+            }
+            if (pos >= b.length) {
+                throw error("unexpected end of data");
+            }
+            switch (b[pos]) {
+                case 'i':
+                    integer();
+                    break;
+                case 'l':
+                    pos++;
+                    while (!atEnd()) {
+                        skip(depth + 1);
+                    }
+                    break;
+                case 'd':
+                    pos++;
+                    while (!atEnd()) {
+                        string();
+                        skip(depth + 1);
+                    }
+                    break;
+                default:
+                    string();
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid bencoding at " + pos + ": " + message);
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.frostwire.mp3;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,6 +16,11 @@ public class Mp3File extends FileWrapper {
     private static final int XING_MARKER_OFFSET_1 = 13;
     private static final int XING_MARKER_OFFSET_2 = 21;
     private static final int XING_MARKER_OFFSET_3 = 36;
+    private static final int RESERVED_PADDING_LENGTH = 2048;
+    // "FWMP3MOV", ends the journal of a shift of the audio
+    private static final long JOURNAL_MAGIC = 0x46574D50334D4F56L;
+    private static final int JOURNAL_TRAILER_LENGTH = 48;
+    private static final int JOURNAL_PROGRESS_OFFSET = 32;
     protected int bufferLength;
     private int xingOffset = -1;
     private int startOffset = -1;
@@ -31,6 +41,7 @@ public class Mp3File extends FileWrapper {
     private ID3v2 id3v2Tag;
     private byte[] customTag;
     private boolean scanFile;
+    private boolean id3v1TagInFile;
 
     protected Mp3File() {
     }
@@ -52,6 +63,7 @@ public class Mp3File extends FileWrapper {
         if (bufferLength < MINIMUM_BUFFER_LENGTH + 1) throw new IllegalArgumentException("Buffer too small");
         this.bufferLength = bufferLength;
         this.scanFile = scanFile;
+        recover();
         init();
     }
 
@@ -233,6 +245,7 @@ public class Mp3File extends FileWrapper {
         if (bytesRead < ID3v1Tag.TAG_LENGTH) throw new IOException("Not enough bytes read");
         try {
             id3v1Tag = new ID3v1Tag(bytes);
+            id3v1TagInFile = true;
         } catch (NoSuchTagException e) {
             id3v1Tag = null;
         }
@@ -407,18 +420,230 @@ public class Mp3File extends FileWrapper {
         if (filePos < 0) return;
         if (endOffset < filePos) return;
         try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
-            byte[] bytes = new byte[bufferLength];
-            file.seek(filePos);
-            while (true) {
-                int bytesRead = file.read(bytes, 0, bufferLength);
-                if (filePos + bytesRead <= endOffset) {
-                    saveFile.write(bytes, 0, bytesRead);
-                    filePos += bytesRead;
-                } else {
-                    saveFile.write(bytes, 0, endOffset - filePos + 1);
-                    break;
+            FileChannel channel = file.getChannel();
+            FileChannel saveChannel = saveFile.getChannel();
+            long position = filePos;
+            long end = endOffset + 1L;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, saveChannel);
+                if (transferred <= 0) throw new EOFException("Not enough bytes read");
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Writes the tags into the file itself, see {@link #saveInPlace(boolean)}.
+     */
+    public void saveInPlace() throws IOException, NotSupportedException {
+        saveInPlace(false);
+    }
+
+    /**
+     * Writes the tags into the file itself. The ID3v2 tag takes the place of
+     * the one in the file, using its padding if it fits, and only the tags are
+     * written. Otherwise the audio is shifted inside the file to make room for
+     * the tag and some padding for the next time, or, with {@code copy}, the
+     * file is written again next to it and renamed over it, which needs room
+     * for both.
+     * <p>
+     * The shift is journaled at the end of the file and the tag is written
+     * last, a shift that is cut short is finished the next time the file is
+     * opened.
+     */
+    public void saveInPlace(boolean copy) throws IOException, NotSupportedException {
+        int audioStart = xingOffset >= 0 ? xingOffset : startOffset;
+        long audioEnd = scanFile ? endOffset + 1L : getLength() - (id3v1TagInFile ? ID3v1Tag.TAG_LENGTH : 0);
+        byte[] tag = hasId3v2Tag() ? id3v2Tag.toBytes() : new byte[0];
+        // the padding is part of the tag, a tag with a footer can't have any
+        boolean canPad = hasId3v2Tag() && !id3v2Tag.hasFooter();
+        int headLength = tag.length;
+        if (canPad && tag.length < audioStart) {
+            headLength = audioStart;
+        } else if (canPad && tag.length > audioStart) {
+            headLength = tag.length + RESERVED_PADDING_LENGTH;
+        }
+        byte[] head = Arrays.copyOf(tag, headLength);
+        if (headLength > tag.length) {
+            BufferTools.packSynchsafeInteger(headLength - AbstractID3v2Tag.HEADER_LENGTH, head, AbstractID3v2Tag.DATA_LENGTH_OFFSET);
+        }
+        byte[] custom = hasCustomTag() ? customTag : new byte[0];
+        byte[] v1 = hasId3v1Tag() ? id3v1Tag.toBytes() : new byte[0];
+        byte[] tail = Arrays.copyOf(custom, custom.length + v1.length);
+        System.arraycopy(v1, 0, tail, custom.length, v1.length);
+        int delta = headLength - audioStart;
+        if (delta == 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+                FileChannel channel = raf.getChannel();
+                writeFully(channel, ByteBuffer.wrap(head), 0);
+                writeFully(channel, ByteBuffer.wrap(tail), audioEnd);
+                channel.truncate(audioEnd + tail.length);
+            }
+        } else if (copy) {
+            saveCopy(head, tail, audioStart, audioEnd);
+        } else {
+            shift(head, tail, audioStart, audioEnd, delta);
+        }
+        if (xingOffset >= 0) xingOffset += delta;
+        startOffset += delta;
+        if (endOffset >= 0) endOffset += delta;
+        id3v1TagInFile = hasId3v1Tag();
+        length = file.length();
+        lastModified = file.lastModified();
+    }
+
+    private void saveCopy(byte[] head, byte[] tail, long audioStart, long audioEnd) throws IOException {
+        File tmp = new File(filename + ".tmp");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(filename, "r");
+                 RandomAccessFile saveFile = new RandomAccessFile(tmp, "rw")) {
+                saveFile.setLength(0);
+                FileChannel channel = raf.getChannel();
+                FileChannel saveChannel = saveFile.getChannel();
+                writeFully(saveChannel, ByteBuffer.wrap(head), 0);
+                saveChannel.position(head.length);
+                long position = audioStart;
+                while (position < audioEnd) {
+                    long transferred = channel.transferTo(position, audioEnd - position, saveChannel);
+                    if (transferred <= 0) throw new EOFException("Not enough bytes read");
+                    position += transferred;
+                }
+                writeFully(saveChannel, ByteBuffer.wrap(tail), head.length + audioEnd - audioStart);
+            }
+            if (!tmp.renameTo(file)) {
+                // some file systems don't replace on rename
+                if (!file.delete() || !tmp.renameTo(file)) {
+                    throw new IOException("Can't rename " + tmp + " to " + file);
+                }
+            }
+        } finally {
+            // the copy is all there's left if the file was deleted but not replaced
+            if (file.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private void shift(byte[] head, byte[] tail, long audioStart, long audioEnd, int delta) throws IOException {
+        long oldLength = file.length();
+        // the journal goes past everything the shift writes
+        long journalStart = Math.max(oldLength, audioEnd + delta + tail.length);
+        ByteBuffer journal = ByteBuffer.allocate(head.length + tail.length + JOURNAL_TRAILER_LENGTH);
+        journal.put(head).put(tail);
+        journal.putInt(head.length).putInt(tail.length);
+        journal.putLong(audioStart).putLong(audioEnd).putLong(delta);
+        journal.putLong(delta > 0 ? audioEnd : audioStart);
+        journal.putLong(JOURNAL_MAGIC);
+        journal.flip();
+        long progressPosition = journalStart + head.length + tail.length + JOURNAL_PROGRESS_OFFSET;
+        boolean journaled = false;
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+            FileChannel channel = raf.getChannel();
+            writeFully(channel, journal, journalStart);
+            journaled = true;
+            finishShift(channel, head, tail, audioStart, audioEnd, delta, delta > 0 ? audioEnd : audioStart, progressPosition, bufferLength);
+        } catch (IOException e) {
+            // a failed write may come from an interrupt, which would stop these too
+            boolean interrupted = Thread.interrupted();
+            try {
+                if (journaled && recover()) {
+                    return;
+                }
+                if (!journaled) {
+                    try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+                        raf.setLength(oldLength);
+                    }
                 }
+            } catch (IOException ignored) {
+                // a journaled shift is finished the next time the file is opened
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes a shift of the audio that was cut short, if the file ends with
+     * its journal.
+     */
+    private boolean recover() throws IOException {
+        if (file.length() < JOURNAL_TRAILER_LENGTH) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+            raf.seek(raf.length() - 8);
+            if (raf.readLong() != JOURNAL_MAGIC) {
+                return false;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+            long trailerStart = raf.length() - JOURNAL_TRAILER_LENGTH;
+            raf.seek(trailerStart);
+            int headLength = raf.readInt();
+            int tailLength = raf.readInt();
+            long audioStart = raf.readLong();
+            long audioEnd = raf.readLong();
+            int delta = (int) raf.readLong();
+            long progress = raf.readLong();
+            long journalStart = trailerStart - headLength - tailLength;
+            if (headLength < 0 || tailLength < 0 || journalStart < 0) {
+                throw new IOException("Invalid journal in " + filename);
             }
+            byte[] head = new byte[headLength];
+            byte[] tail = new byte[tailLength];
+            raf.seek(journalStart);
+            raf.readFully(head);
+            raf.readFully(tail);
+            finishShift(raf.getChannel(), head, tail, audioStart, audioEnd, delta, progress, trailerStart + JOURNAL_PROGRESS_OFFSET, bufferLength);
+        }
+        length = file.length();
+        lastModified = file.lastModified();
+        return true;
+    }
+
+    /**
+     * Moves the audio by {@code delta} in chunks from its far end, starting at
+     * {@code progress}, and writes the tags when it's done. A chunk is never
+     * bigger than the shift, so it never overwrites itself and one that was cut
+     * short can be moved again; the progress is recorded after each one.
+     * Truncating the file drops the journal.
+     */
+    private static void finishShift(FileChannel channel, byte[] head, byte[] tail, long audioStart, long audioEnd, int delta, long progress, long progressPosition, int bufferLength) throws IOException {
+        int chunkLength = Math.min(bufferLength, Math.abs(delta));
+        ByteBuffer chunk = ByteBuffer.allocateDirect(chunkLength);
+        ByteBuffer mark = ByteBuffer.allocate(8);
+        while (delta > 0 ? progress > audioStart : progress < audioEnd) {
+            int n = (int) Math.min(chunkLength, delta > 0 ? progress - audioStart : audioEnd - progress);
+            long from = delta > 0 ? progress - n : progress;
+            chunk.clear();
+            chunk.limit(n);
+            readFully(channel, chunk, from);
+            chunk.flip();
+            writeFully(channel, chunk, from + delta);
+            progress = delta > 0 ? from : from + n;
+            mark.clear();
+            mark.putLong(progress).flip();
+            writeFully(channel, mark, progressPosition);
+        }
+        writeFully(channel, ByteBuffer.wrap(tail), audioEnd + delta);
+        writeFully(channel, ByteBuffer.wrap(head), 0);
+        channel.truncate(audioEnd + delta + tail.length);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException("Not enough bytes read");
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
         }
     }
 }
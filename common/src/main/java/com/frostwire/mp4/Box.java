@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -79,16 +79,16 @@ public class Box {
     public static final int esds = Bits.make4cc("esds");
     public static final int meta = Bits.make4cc("meta");
     public static final int ilst = Bits.make4cc("ilst");
-    public static final int Cnam = Bits.make4cc("©nam");
-    public static final int CART = Bits.make4cc("©ART");
+    public static final int Cnam = Bits.make4cc("\u00a9nam");
+    public static final int CART = Bits.make4cc("\u00a9ART");
     public static final int aART = Bits.make4cc("aART");
-    public static final int Calb = Bits.make4cc("©alb");
+    public static final int Calb = Bits.make4cc("\u00a9alb");
     public static final int stik = Bits.make4cc("stik");
     public static final int covr = Bits.make4cc("covr");
-    public static final int Ccmt = Bits.make4cc("©cmt");
-    public static final int Cgen = Bits.make4cc("©gen");
+    public static final int Ccmt = Bits.make4cc("\u00a9cmt");
+    public static final int Cgen = Bits.make4cc("\u00a9gen");
     public static final int gnre = Bits.make4cc("gnre");
-    public static final int Cday = Bits.make4cc("©day");
+    public static final int Cday = Bits.make4cc("\u00a9day");
     public static final int trkn = Bits.make4cc("trkn");
     public static final int free = Bits.make4cc("free");
     public static final int skip = Bits.make4cc("skip");
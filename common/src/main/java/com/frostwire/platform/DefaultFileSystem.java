@@ -21,9 +21,9 @@ import com.frostwire.util.Logger;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.LinkedList;
 
 /**
  * @author gubatron
@@ -31,13 +31,14 @@ import java.util.LinkedList;
  */
 public class DefaultFileSystem implements FileSystem {
     private static final Logger LOG = Logger.getLogger(DefaultFileSystem.class);
+    private static final boolean NIO_AVAILABLE = isNioAvailable();
 
     public static void walkFiles(FileSystem fs, File file, FileFilter filter) {
         File[] arr = fs.listFiles(file, filter);
         if (arr == null) {
             return;
         }
-        Deque<File> q = new LinkedList<>(Arrays.asList(arr));
+        Deque<File> q = new ArrayDeque<>(Arrays.asList(arr));
         while (!q.isEmpty()) {
             File child = q.pollFirst();
             filter.file(child);
@@ -127,6 +128,20 @@ public class DefaultFileSystem implements FileSystem {
 
     @Override
     public void walk(File file, FileFilter filter) {
-        walkFiles(Platforms.fileSystem(), file, filter);
+        if (NIO_AVAILABLE) {
+            // one stat per entry, the directories known from the listing
+            new FileWalker().walk(file, FileWalker.visitor(filter));
+        } else {
+            walkFiles(Platforms.fileSystem(), file, filter);
+        }
+    }
+
+    private static boolean isNioAvailable() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,283 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.platform;
+
+import com.frostwire.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a directory tree with the attributes of each entry, read along with
+ * the listing, so the visitor doesn't need another stat to know if an entry is
+ * a directory, its size or its modification time.
+ * <p>
+ * It follows the contract of {@link FileSystem#walk(File, FileFilter)}: the
+ * root is not visited, every entry is offered to {@code accept}, the accepted
+ * ones are passed to {@code file} and the accepted directories are walked.
+ * The links are followed, a link back to one of its parent directories is
+ * visited but not walked.
+ * <p>
+ * With a parallelism of one the walk is depth first, in the listing order, on
+ * the calling thread. With more, the directories are walked in a fork-join
+ * pool, in no particular order, and the visitor is called from many threads.
+ * In both cases {@link #walk(File, Visitor)} returns when the walk is over or
+ * cancelled.
+ * <p>
+ * It needs {@code java.nio.file}, not available in Android before 8.0.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class FileWalker {
+    private static final Logger LOG = Logger.getLogger(FileWalker.class);
+
+    private final int parallelism;
+    private volatile boolean cancelled;
+
+    public FileWalker() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism the number of threads, one to walk on the calling thread
+     */
+    public FileWalker(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Adapts a plain {@link FileFilter}, for the {@link FileSystem#walk(File, FileFilter)} callers.
+     */
+    public static Visitor visitor(final FileFilter filter) {
+        return new Visitor() {
+            @Override
+            public boolean accept(File file, BasicFileAttributes attrs) {
+                return filter.accept(file);
+            }
+
+            @Override
+            public void file(File file, BasicFileAttributes attrs) {
+                filter.file(file);
+            }
+        };
+    }
+
+    /**
+     * Stops the walk as soon as possible, from any thread, the visitor included.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void walk(File root, Visitor visitor) {
+        if (root == null || !root.isDirectory()) {
+            return;
+        }
+        if (parallelism == 1) {
+            walkSequential(root.toPath(), visitor);
+        } else {
+            Path path = root.toPath();
+            BasicFileAttributes attrs = readAttributes(path);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new WalkTask(path, attrs != null ? attrs.fileKey() : null, null, visitor));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private void walkSequential(final Path root, final Visitor visitor) {
+        try {
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (dir.equals(root)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    return visit(dir, attrs, visitor) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    visit(file, attrs, visitor);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (cancelled) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (file.equals(root)) {
+                        LOG.warn("Error walking " + root + ": " + e.getMessage());
+                        return FileVisitResult.TERMINATE;
+                    }
+                    // an unreadable directory or a loop, still an entry of its parent
+                    BasicFileAttributes attrs = readAttributes(file);
+                    if (attrs != null) {
+                        visit(file, attrs, visitor);
+                    }
+                    if (!(e instanceof FileSystemLoopException)) {
+                        LOG.warn("Error walking " + file + ": " + e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Error walking " + root + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the entry was accepted
+     */
+    private static boolean visit(Path path, BasicFileAttributes attrs, Visitor visitor) {
+        File file = path.toFile();
+        if (visitor.accept(file, attrs)) {
+            visitor.file(file, attrs);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the attributes following the links, or of the link itself if broken, null if unreadable
+     */
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e2) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Called with the attributes of the entry, the links followed.
+     */
+    public interface Visitor {
+        boolean accept(File file, BasicFileAttributes attrs);
+
+        void file(File file, BasicFileAttributes attrs);
+    }
+
+    /**
+     * Lists a directory, visits its entries and forks a task per accepted subdirectory.
+     */
+    private final class WalkTask extends RecursiveAction {
+        private final Path dir;
+        private final WalkTask parent;
+        private final Visitor visitor;
+        // the file key, or the real path where there are no file keys, only needed with links
+        private volatile Object key;
+
+        WalkTask(Path dir, Object key, WalkTask parent, Visitor visitor) {
+            this.dir = dir;
+            this.key = key;
+            this.parent = parent;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            List<WalkTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    if (cancelled) {
+                        return;
+                    }
+                    BasicFileAttributes attrs = readAttributes(child);
+                    if (attrs != null && visit(child, attrs, visitor) && attrs.isDirectory()) {
+                        Object childKey = attrs.fileKey();
+                        if (!Files.isSymbolicLink(child)) {
+                            subtasks.add(new WalkTask(child, childKey, this, visitor));
+                        } else if ((childKey = key(child, childKey)) != null && !isAncestor(childKey)) {
+                            subtasks.add(new WalkTask(child, childKey, this, visitor));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Error walking " + dir + ": " + e.getMessage());
+            }
+            if (!subtasks.isEmpty()) {
+                invokeAll(subtasks);
+            }
+        }
+
+        /**
+         * @return true if a link leads back to this directory or one of its parents
+         */
+        private boolean isAncestor(Object childKey) {
+            for (WalkTask t = this; t != null; t = t.parent) {
+                if (childKey.equals(key(t))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Object key(WalkTask t) {
+            Object k = t.key;
+            if (k == null) {
+                k = key(t.dir, null);
+                t.key = k;
+            }
+            return k;
+        }
+
+        private Object key(Path path, Object fileKey) {
+            if (fileKey != null) {
+                return fileKey;
+            }
+            try {
+                return path.toRealPath();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.frostwire.regex;
+
+/**
+ * A literal string that must be present in any match of a pattern.
+ * It's used by the {@link Matcher} to skip the regex engine over
+ * regions of the input that cannot contain a match.
+ * <p>
+ * The literal is extracted from the top level concatenation of the
+ * standard (RE2) pattern, the longest run of literal characters that
+ * is not inside a group, a character class or an optional repetition.
+ * Patterns with a top level alternation have no required literal.
+ */
+final class LiteralPrefilter {
+    private static final java.util.regex.Pattern CASE_INSENSITIVE_FLAG_PATTERN = java.util.regex.Pattern.compile("\\(\\?[a-zA-Z-]*i[a-zA-Z-]*[:)]");
+    private static final java.util.regex.Pattern REPETITION_PATTERN = java.util.regex.Pattern.compile("\\{(\\d+)(,\\d*)?}");
+    private final String literal;
+    private final String lowerLiteral;
+    private final boolean caseInsensitive;
+    private final boolean prefix;
+
+    private LiteralPrefilter(String literal, boolean caseInsensitive, boolean prefix) {
+        this.literal = literal;
+        this.lowerLiteral = caseInsensitive ? toLowerAscii(literal) : literal;
+        this.caseInsensitive = caseInsensitive;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Extracts the required literal of a standard pattern
+     *
+     * @param regex the standard pattern (without named groups)
+     * @param flags the RE2 flags of the pattern
+     * @return the prefilter, or {@code null} if the pattern has no required literal
+     */
+    static LiteralPrefilter create(String regex, int flags) {
+        boolean ci = (flags & com.google.re2j.Pattern.CASE_INSENSITIVE) != 0 ||
+                CASE_INSENSITIVE_FLAG_PATTERN.matcher(regex).find();
+        StringBuilder run = new StringBuilder();
+        boolean runIsPrefix = true;
+        String best = "";
+        boolean bestIsPrefix = false;
+        int len = regex.length();
+        int i = 0;
+        while (i < len) {
+            char c = regex.charAt(i);
+            boolean literal = false;
+            int next = i + 1;
+            if (c == '\\' && i + 1 < len) {
+                char n = regex.charAt(i + 1);
+                if (n == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    end = end == -1 ? len : end;
+                    literal = end > i + 2;
+                    for (int j = i + 2; j < end && literal; j++) {
+                        literal = appendLiteral(run, regex.charAt(j), ci);
+                    }
+                    next = Math.min(len, end + 2);
+                } else if (!Character.isLetterOrDigit(n)) {
+                    literal = appendLiteral(run, n, ci);
+                    next = i + 2;
+                } else {
+                    next = skipEscape(regex, i + 1);
+                }
+            } else if (c == '[') {
+                next = skipCharClass(regex, i);
+            } else if (c == '(') {
+                if (regex.startsWith("(?", i) && isFlagGroup(regex, i + 2)) {
+                    next = regex.indexOf(')', i) + 1;
+                    // flags don't consume input, the run can continue
+                    i = next;
+                    continue;
+                }
+                next = skipGroup(regex, i);
+                if (next < 0) {
+                    return null;
+                }
+            } else if (c == '|') {
+                return null;
+            } else if (c == '*' || c == '?' || c == '+') {
+                // a repeated literal already cut the run, see below
+                next = skipQuantifierSuffix(regex, i + 1);
+            } else if (c == '{') {
+                java.util.regex.Matcher m = REPETITION_PATTERN.matcher(regex).region(i, len);
+                if (m.lookingAt()) {
+                    next = skipQuantifierSuffix(regex, m.end());
+                } else {
+                    literal = appendLiteral(run, c, ci);
+                }
+            } else if (c != '.' && c != '^' && c != '$') {
+                literal = appendLiteral(run, c, ci);
+            }
+
+            if (!literal) {
+                if (run.length() > best.length()) {
+                    best = run.toString();
+                    bestIsPrefix = runIsPrefix;
+                }
+                run.setLength(0);
+                runIsPrefix = false;
+            } else if (isRepetition(regex, next)) {
+                // the last char is repeated (or optional), so it's not adjacent to what follows
+                if (regex.charAt(next) != '+') {
+                    run.setLength(run.length() - 1);
+                }
+                if (run.length() > best.length()) {
+                    best = run.toString();
+                    bestIsPrefix = runIsPrefix;
+                }
+                run.setLength(0);
+                runIsPrefix = false;
+            }
+            i = next;
+        }
+        if (run.length() > best.length()) {
+            best = run.toString();
+            bestIsPrefix = runIsPrefix;
+        }
+        return best.isEmpty() ? null : new LiteralPrefilter(best, ci, bestIsPrefix);
+    }
+
+    /**
+     * The required literal
+     *
+     * @return the literal
+     */
+    String literal() {
+        return literal;
+    }
+
+    /**
+     * If the literal is a prefix of every match, the regex engine can
+     * start its search right at the literal occurrence
+     *
+     * @return true if the literal is a prefix of every match
+     */
+    boolean isPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Finds the first occurrence of the literal in the input, starting
+     * at the given position
+     *
+     * @param input the input
+     * @param from  the position to start at
+     * @return the position of the literal or -1 if not found
+     */
+    int indexOf(CharSequence input, int from) {
+        if (!caseInsensitive && input instanceof String) {
+            return ((String) input).indexOf(literal, from);
+        }
+        String lit = lowerLiteral;
+        int n = lit.length();
+        char first = lit.charAt(0);
+        int max = input.length() - n;
+        for (int i = Math.max(0, from); i <= max; i++) {
+            if (normalize(input.charAt(i)) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < n && normalize(input.charAt(i + j)) == lit.charAt(j)) {
+                j++;
+            }
+            if (j == n) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private char normalize(char c) {
+        return caseInsensitive && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static String toLowerAscii(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends a literal char to the run. With case folding only ASCII chars
+     * with simple folding are safe to search for, 'k' and 's' also fold to
+     * KELVIN SIGN and LATIN SMALL LETTER LONG S.
+     */
+    private static boolean appendLiteral(StringBuilder run, char c, boolean ci) {
+        if (ci && (c > 0x7f || c == 'k' || c == 'K' || c == 's' || c == 'S')) {
+            return false;
+        }
+        if (Character.isSurrogate(c)) {
+            return false;
+        }
+        run.append(c);
+        return true;
+    }
+
+    private static boolean isRepetition(String regex, int pos) {
+        if (pos >= regex.length()) {
+            return false;
+        }
+        char c = regex.charAt(pos);
+        return c == '*' || c == '?' || c == '+' ||
+                c == '{' && REPETITION_PATTERN.matcher(regex).region(pos, regex.length()).lookingAt();
+    }
+
+    private static boolean isFlagGroup(String regex, int pos) {
+        int i = pos;
+        while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+            i++;
+        }
+        return i > pos && i < regex.length() && regex.charAt(i) == ')';
+    }
+
+    private static int skipQuantifierSuffix(String regex, int pos) {
+        if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+            return pos + 1;
+        }
+        return pos;
+    }
+
+    /**
+     * Skips an escape sequence, pos is the position after the backslash
+     */
+    private static int skipEscape(String regex, int pos) {
+        int len = regex.length();
+        char n = regex.charAt(pos);
+        if (n == 'x' || n == 'p' || n == 'P') {
+            if (pos + 1 < len && regex.charAt(pos + 1) == '{') {
+                int end = regex.indexOf('}', pos);
+                return end == -1 ? len : end + 1;
+            }
+            return Math.min(len, pos + (n == 'x' ? 3 : 2));
+        }
+        if (Character.isDigit(n)) {
+            int i = pos;
+            while (i < len && Character.isDigit(regex.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+        return pos + 1;
+    }
+
+    private static int skipCharClass(String regex, int pos) {
+        int len = regex.length();
+        int i = pos + 1;
+        if (i < len && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < len && regex.charAt(i) == ']') {
+            i++;
+        }
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '[' && regex.startsWith("[:", i)) {
+                int end = regex.indexOf(":]", i + 2);
+                i = end == -1 ? i + 1 : end + 2;
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Skips a group, returns -1 if the group is not closed
+     */
+    private static int skipGroup(String regex, int pos) {
+        int len = regex.length();
+        int depth = 0;
+        int i = pos;
+        while (i < len) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += regex.startsWith("\\Q", i) ? skipQuoted(regex, i) - i : 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipCharClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipQuoted(String regex, int pos) {
+        int end = regex.indexOf("\\E", pos + 2);
+        return end == -1 ? regex.length() : end + 2;
+    }
+}
@@ -14,10 +14,23 @@ import java.util.Map;
 public class Matcher {
     private com.google.re2j.Matcher matcher;
     private Pattern parentPattern;
+    private final LiteralPrefilter prefilter;
+    private CharSequence input;
+    /**
+     * Position where the wrapped matcher will start its next search
+     */
+    private int searchFrom;
+    /**
+     * Position where the next append copies the input from, kept here since
+     * the prefiltered searches reset the one of the wrapped matcher
+     */
+    private int appendPos;
 
     Matcher(Pattern parentPattern, CharSequence input) {
         this.parentPattern = parentPattern;
         this.matcher = parentPattern.pattern().matcher(input);
+        this.prefilter = parentPattern.prefilter();
+        this.input = input;
     }
 
     /**
@@ -45,6 +58,8 @@ public class Matcher {
      */
     public Matcher reset() {
         matcher.reset();
+        searchFrom = 0;
+        appendPos = 0;
         return this;
     }
 
@@ -62,6 +77,9 @@ public class Matcher {
      */
     public Matcher reset(CharSequence input) {
         matcher.reset(input);
+        this.input = input;
+        searchFrom = 0;
+        appendPos = 0;
         return this;
     }
 
@@ -75,7 +93,7 @@ public class Matcher {
      * matches this matcher's pattern
      */
     public boolean matches() {
-        return matcher.matches();
+        return updateSearchFrom(matcher.matches());
     }
 
     /**
@@ -93,7 +111,10 @@ public class Matcher {
      * @return
      */
     public boolean find() {
-        return matcher.find();
+        if (prefilter == null) {
+            return matcher.find();
+        }
+        return updateSearchFrom(prefilteredFind(searchFrom));
     }
 
     /**
@@ -112,7 +133,38 @@ public class Matcher {
      *                                   is greater than the length of the input sequence.
      */
     public boolean find(int start) {
-        return matcher.find(start);
+        appendPos = 0;
+        if (prefilter == null || start < 0 || start > input.length()) {
+            return matcher.find(start);
+        }
+        return updateSearchFrom(prefilteredFind(start));
+    }
+
+    /**
+     * Searches for the required literal of the pattern before running the
+     * regex engine, if it's not present no match is possible. When the
+     * literal is a prefix of every match, the search starts right at it.
+     * <p>
+     * It goes through the wrapped matcher find(int), which resets it, the
+     * append position of this matcher is not touched.
+     */
+    private boolean prefilteredFind(int from) {
+        int idx = prefilter.indexOf(input, from);
+        if (idx == -1) {
+            // leave the wrapped matcher in the no-match state without scanning
+            return matcher.find(input.length());
+        }
+        if (prefilter.isPrefix() && idx > from) {
+            return matcher.find(idx);
+        }
+        return matcher.find(from);
+    }
+
+    private boolean updateSearchFrom(boolean found) {
+        // a failed search makes the next one start over, the same as
+        // the wrapped matcher does
+        searchFrom = found ? matcher.end() : 0;
+        return found;
     }
 
     /**
@@ -130,7 +182,30 @@ public class Matcher {
      * matches this matcher's pattern
      */
     public boolean lookingAt() {
-        return matcher.lookingAt();
+        return updateSearchFrom(matcher.lookingAt());
+    }
+
+    /**
+     * Implements a non-terminal append-and-replace step: appends the input
+     * from the append position up to the previous match and the replacement,
+     * then moves the append position after the match.
+     * <p>
+     * The replacement is expanded as the wrapped matcher does it: $n and
+     * ${name} are the captured groups, a backslash quotes the next character.
+     *
+     * @param sb          The target string buffer
+     * @param replacement The replacement string
+     * @return This matcher
+     * @throws IllegalStateException If no match has yet been attempted, or
+     *                               if the previous match operation failed
+     */
+    public Matcher appendReplacement(StringBuffer sb, String replacement) {
+        int start = start();
+        int end = end();
+        sb.append(input, appendPos, start);
+        appendExpanded(sb, replacement);
+        appendPos = end;
+        return this;
     }
 
     /**
@@ -140,7 +215,49 @@ public class Matcher {
      * @return The target string buffer
      */
     public StringBuffer appendTail(StringBuffer sb) {
-        return matcher.appendTail(sb);
+        return sb.append(input, appendPos, input.length());
+    }
+
+    private void appendExpanded(StringBuffer sb, String replacement) {
+        int n = replacement.length();
+        int i = 0;
+        while (i < n) {
+            char c = replacement.charAt(i);
+            char next = i + 1 < n ? replacement.charAt(i + 1) : 0;
+            if (c == '\\' && i + 1 < n) {
+                sb.append(next);
+                i += 2;
+            } else if (c == '$' && next == '{') {
+                int close = replacement.indexOf('}', i + 2);
+                if (close == -1) {
+                    throw new IllegalArgumentException("named capture group is missing trailing '}'");
+                }
+                String value = group(replacement.substring(i + 2, close));
+                if (value != null) {
+                    sb.append(value);
+                }
+                i = close + 1;
+            } else if (c == '$' && next >= '0' && next <= '9') {
+                int group = next - '0';
+                i += 2;
+                // the longest number that is still a group
+                while (i < n && replacement.charAt(i) >= '0' && replacement.charAt(i) <= '9' &&
+                        group * 10 + replacement.charAt(i) - '0' <= groupCount()) {
+                    group = group * 10 + replacement.charAt(i) - '0';
+                    i++;
+                }
+                if (group > groupCount()) {
+                    throw new IndexOutOfBoundsException("n > number of groups: " + group);
+                }
+                String value = group(group);
+                if (value != null) {
+                    sb.append(value);
+                }
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
     }
 
     /**
@@ -216,7 +333,7 @@ public class Matcher {
      */
     public Map<String, String> namedGroups() {
         Map<String, String> result = new LinkedHashMap<String, String>();
-        if (matcher.find(0)) {
+        if (find(0)) {
             for (String groupName : parentPattern.groupNames()) {
                 String groupValue = matcher.group(groupIndex(groupName));
                 result.put(groupName, groupValue);
@@ -232,11 +349,7 @@ public class Matcher {
      * @return the group index
      */
     private int groupIndex(String groupName) {
-        // idx+1 because capture groups start 1 in the matcher
-        // while the pattern returns a 0-based index of the
-        // group name within the list of names
-        int idx = parentPattern.indexOf(groupName);
-        return idx > -1 ? idx + 1 : -1;
+        return parentPattern.groupIndex(groupName);
     }
 
     public boolean hasGroup(String groupName) {
@@ -314,6 +427,8 @@ public class Matcher {
      * the replacement string, substituting captured subsequences as needed
      */
     public String replaceAll(String replacement) {
+        searchFrom = 0;
+        appendPos = 0;
         return matcher.replaceAll(replacement);
     }
 
@@ -326,7 +441,11 @@ public class Matcher {
      * by the replacement string, substituting captured subsequences as needed
      */
     public String replaceFirst(String replacement) {
-        return matcher.replaceFirst(replacement);
+        String result = matcher.replaceFirst(replacement);
+        matcher.reset();
+        searchFrom = 0;
+        appendPos = 0;
+        return result;
     }
 
     /*
@@ -1,6 +1,8 @@
 package com.frostwire.regex;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,10 +29,29 @@ public class Pattern {
      * index of group within patterns above where group name is captured
      */
     private static final int INDEX_GROUP_NAME = 1;
+    /**
+     * Maximum number of compiled patterns kept in the shared cache
+     */
+    private static final int CACHE_MAX_SIZE = 256;
+    /**
+     * Shared cache of compiled patterns, keyed by regex and flags.
+     * Access ordered, so the least recently used pattern is evicted first.
+     */
+    private static final Map<CacheKey, Pattern> CACHE = Collections.synchronizedMap(new LinkedHashMap<CacheKey, Pattern>(CACHE_MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Pattern> eldest) {
+            return size() > CACHE_MAX_SIZE;
+        }
+    });
     private com.google.re2j.Pattern pattern;
     private String namedPattern;
     private List<String> groupNames;
     private Map<String, List<GroupInfo>> groupInfo;
+    /**
+     * Matcher (1-based) group index of the first instance of each named group
+     */
+    private Map<String, Integer> groupIndexes;
+    private LiteralPrefilter prefilter;
 
     /**
      * Constructs a named pattern with the given regular expression and flags
@@ -53,8 +74,11 @@ public class Pattern {
         // group info must be parsed before building the standard pattern
         // because the pattern relies on group info to determine the indexes
         // of named back-references
-        groupInfo = extractGroupInfo(regex);
+        groupInfo = Collections.unmodifiableMap(extractGroupInfo(regex));
+        groupNames = Collections.unmodifiableList(new ArrayList<String>(groupInfo.keySet()));
+        groupIndexes = buildGroupIndexes(groupInfo);
         pattern = buildStandardPattern(regex, flags);
+        prefilter = LiteralPrefilter.create(pattern.pattern(), pattern.flags());
     }
 
     /**
@@ -64,7 +88,7 @@ public class Pattern {
      * @return the pattern
      */
     public static Pattern compile(String regex) {
-        return new Pattern(regex, 0);
+        return compile(regex, 0);
     }
 
     /**
@@ -85,7 +109,14 @@ public class Pattern {
      * @return the pattern
      */
     public static Pattern compile(String regex, int flags) {
-        return new Pattern(regex, flags);
+        CacheKey key = new CacheKey(regex, flags);
+        Pattern p = CACHE.get(key);
+        if (p == null) {
+            // compiled outside the lock, a concurrent duplicate is harmless
+            p = new Pattern(regex, flags);
+            CACHE.put(key, p);
+        }
+        return p;
     }
 
     /**
@@ -271,6 +302,22 @@ public class Pattern {
         return groupInfo;
     }
 
+    /**
+     * Precomputes the matcher group index of every named group, so that
+     * group lookups by name don't walk the group info lists on every match
+     *
+     * @param groupInfo the parsed named group info
+     * @return map of group names to 1-based matcher group indexes
+     */
+    static private Map<String, Integer> buildGroupIndexes(Map<String, List<GroupInfo>> groupInfo) {
+        Map<String, Integer> indexes = new HashMap<String, Integer>(groupInfo.size() * 2);
+        for (Map.Entry<String, List<GroupInfo>> e : groupInfo.entrySet()) {
+            // +1 because capture groups start at 1 in the matcher
+            indexes.put(e.getKey(), e.getValue().get(0).groupIndex() + 1);
+        }
+        return indexes;
+    }
+
     /**
      * Replaces strings matching a pattern with another string. If the string
      * to be replaced is escaped with a slash, it is skipped.
@@ -325,6 +372,27 @@ public class Pattern {
         return idx;
     }
 
+    /**
+     * Gets the matcher group index (1-based) of a named capture group
+     *
+     * @param groupName name of capture group
+     * @return group index or -1 if not found
+     */
+    int groupIndex(String groupName) {
+        Integer idx = groupIndexes.get(groupName);
+        return idx != null ? idx : -1;
+    }
+
+    /**
+     * Returns the literal prefilter of this pattern, or {@code null} if
+     * the pattern has no required literal
+     *
+     * @return the prefilter
+     */
+    LiteralPrefilter prefilter() {
+        return prefilter;
+    }
+
     /**
      * Returns this pattern's match flags
      *
@@ -377,9 +445,6 @@ public class Pattern {
      * @return the list of names
      */
     public List<String> groupNames() {
-        if (groupNames == null) {
-            groupNames = new ArrayList<String>(groupInfo.keySet());
-        }
         return groupNames;
     }
 
@@ -530,5 +595,29 @@ public class Pattern {
     public int hashCode() {
         return namedPattern.hashCode() ^ pattern.flags();
     }
+
+    private static final class CacheKey {
+        private final String regex;
+        private final int flags;
+
+        CacheKey(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return flags == other.flags && regex.equals(other.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return regex.hashCode() * 31 + flags;
+        }
+    }
 }
 
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -155,6 +155,8 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                         if ((System.currentTimeMillis() - failedWhen) < FAILED_CRAWL_URL_CACHE_LIFETIME) {
                             //if the failed request is still fresh we stop
                             //LOG.info("CrawlPagedWebSearchPerformer::crawl() - hit failed cache url");
+                            // no crawl data found, a miss
+                            SearchManager.metrics().onCrawl(metricsName, getDomainName(), false);
                             onResults(Collections.emptyList());
                             return;
                         } else {
@@ -171,6 +173,12 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                             cachePut(infohash, data);
                         }
                     }
+                    SearchManager.metrics().onCrawl(metricsName, getDomainName(), data != null);
+                    if (data == null && !url.startsWith("magnet") && isDomainUnavailable(url)) {
+                        // not cached as failed, the domain may be back soon
+                        onResults(Collections.emptyList());
+                        return;
+                    }
                     if (data == null) { // not a big deal about synchronization here
                         //LOG.debug("Downloading data for: " + url);
                         if (url.startsWith("magnet")) {
@@ -192,6 +200,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                             }
                         } else {
                             //LOG.warn("Failed to download data: " + url);
+                            SearchManager.metrics().onError(metricsName, getDomainName(), false);
                             cachePut("failed:" + url, long2array(System.currentTimeMillis()));
                         }
                     }
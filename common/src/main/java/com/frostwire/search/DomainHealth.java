@@ -0,0 +1,245 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the health of the search domains, shared by all the web search
+ * performers.
+ * <p>
+ * The latencies of the last successful requests give the timeout of the
+ * next ones, a multiple of the 95th percentile, never more than the timeout
+ * the performer asked for. After a few consecutive failures the domain circuit
+ * opens and its requests fail right away. When the cool down is over a
+ * single probe request is let through (half open), it closes the circuit if it
+ * works, otherwise the circuit opens again for twice as long.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DomainHealth {
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_SAMPLES = 5;
+    private static final int TIMEOUT_P95_MULTIPLIER = 3;
+    private static final int MIN_TIMEOUT_MILLIS = 1500;
+    private static final int FAILURES_TO_OPEN = 3;
+    private static final long DEFAULT_COOL_DOWN_MILLIS = 30_000;
+    private static final long MAX_COOL_DOWN_MILLIS = 10 * 60_000;
+    /**
+     * A probe not reported after this long is considered lost, another one is let through.
+     */
+    private static final long PROBE_TIMEOUT_MILLIS = 60_000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final long coolDownMillis;
+    private final Clock clock;
+    private final Map<String, Domain> domains = new ConcurrentHashMap<>();
+
+    public DomainHealth() {
+        this(DEFAULT_COOL_DOWN_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * @param coolDownMillis the time an open circuit waits before the first probe
+     * @param clock          the time source, in milliseconds
+     */
+    public DomainHealth(long coolDownMillis, Clock clock) {
+        this.coolDownMillis = coolDownMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the timeout to use for the next request to the domain
+     */
+    public int timeout(String domain, int maxTimeout) {
+        return domain(domain).timeout(maxTimeout);
+    }
+
+    /**
+     * Asks to make a request to the domain. If it returns true the outcome must
+     * be reported with {@link #onSuccess(String, long)} or {@link #onFailure(String)}.
+     */
+    public boolean allowRequest(String domain) {
+        return domain(domain).allowRequest(clock.millis());
+    }
+
+    /**
+     * @return true if the requests to the domain would be rejected now, without
+     * taking the half open probe
+     */
+    public boolean isOpen(String domain) {
+        Domain d = domains.get(domain);
+        return d != null && d.isOpen(clock.millis());
+    }
+
+    public void onSuccess(String domain, long millis) {
+        domain(domain).onSuccess(millis);
+    }
+
+    public void onFailure(String domain) {
+        domain(domain).onFailure(clock.millis(), coolDownMillis);
+    }
+
+    /**
+     * @return the state of the domain, CLOSED if it's not tracked
+     */
+    public State state(String domain) {
+        Domain d = domains.get(domain);
+        return d != null ? d.state(clock.millis()) : State.CLOSED;
+    }
+
+    /**
+     * @return the latency percentile of the domain in milliseconds, -1 if there are not enough samples
+     */
+    public long percentile(String domain, int percentile) {
+        Domain d = domains.get(domain);
+        return d != null ? d.percentile(percentile) : -1;
+    }
+
+    public void reset() {
+        domains.clear();
+    }
+
+    /**
+     * One line per domain, sorted by domain, times in milliseconds.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-24s %9s %6s %6s %8s %8s %9s%n",
+                "domain", "state", "p50", "p95", "timeout", "failures", "retry in"));
+        long now = clock.millis();
+        for (Map.Entry<String, Domain> e : new TreeMap<>(domains).entrySet()) {
+            Domain d = e.getValue();
+            synchronized (d) {
+                State state = d.state(now);
+                sb.append(String.format(Locale.US, "%-24s %9s %6d %6d %8d %8d %9d%n",
+                        e.getKey(),
+                        state,
+                        d.percentile(50),
+                        d.percentile(95),
+                        d.timeout(Integer.MAX_VALUE),
+                        d.consecutiveFailures,
+                        state == State.OPEN ? d.openUntil - now : 0));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    private Domain domain(String domain) {
+        return domains.computeIfAbsent(domain, k -> new Domain());
+    }
+
+    /**
+     * A time source in milliseconds.
+     */
+    public interface Clock {
+        long millis();
+    }
+
+    private static final class Domain {
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int samples;
+        private int next;
+        private int consecutiveFailures;
+        private long openUntil;
+        private long coolDown;
+        private boolean open;
+        private boolean probing;
+        private long probeStart;
+
+        synchronized int timeout(int maxTimeout) {
+            long p95 = percentile(95);
+            if (p95 < 0) {
+                return maxTimeout;
+            }
+            return (int) Math.min(maxTimeout, Math.max(MIN_TIMEOUT_MILLIS, p95 * TIMEOUT_P95_MULTIPLIER));
+        }
+
+        synchronized boolean allowRequest(long now) {
+            if (!open) {
+                return true;
+            }
+            if (now < openUntil || probing(now)) {
+                return false;
+            }
+            // half open, this is the probe
+            probing = true;
+            probeStart = now;
+            return true;
+        }
+
+        synchronized boolean isOpen(long now) {
+            return open && (now < openUntil || probing(now));
+        }
+
+        private boolean probing(long now) {
+            return probing && now - probeStart < PROBE_TIMEOUT_MILLIS;
+        }
+
+        synchronized State state(long now) {
+            if (!open) {
+                return State.CLOSED;
+            }
+            return now < openUntil ? State.OPEN : State.HALF_OPEN;
+        }
+
+        synchronized void onSuccess(long millis) {
+            latencies[next] = millis;
+            next = (next + 1) % LATENCY_SAMPLES;
+            samples = Math.min(samples + 1, LATENCY_SAMPLES);
+            consecutiveFailures = 0;
+            open = false;
+            probing = false;
+            coolDown = 0;
+        }
+
+        synchronized void onFailure(long now, long initialCoolDown) {
+            consecutiveFailures++;
+            if (probing || (!open && consecutiveFailures >= FAILURES_TO_OPEN)) {
+                coolDown = coolDown == 0 ? initialCoolDown : Math.min(MAX_COOL_DOWN_MILLIS, coolDown * 2);
+                openUntil = now + coolDown;
+                open = true;
+                probing = false;
+            }
+        }
+
+        synchronized long percentile(int percentile) {
+            if (samples < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * samples) - 1;
+            return sorted[Math.max(0, Math.min(samples - 1, index))];
+        }
+    }
+}
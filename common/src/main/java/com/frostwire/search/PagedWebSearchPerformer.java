@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,29 +18,74 @@
 
 package com.frostwire.search;
 
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
 import com.frostwire.util.Logger;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 
 /**
+ * Searches the pages in order, one after the other, or with {@code prefetch}
+ * set, fetching the next pages while the current one is parsed. The results
+ * are sent in page order in both modes.
+ *
  * @author gubatron
  * @author aldenml
  */
 public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
     private static final Logger LOG = Logger.getLogger(PagedWebSearchPerformer.class);
+    /**
+     * The maximum number of pages fetched at the same time from a domain, by all the performers.
+     */
+    private static final int MAX_FETCHES_PER_DOMAIN = 2;
+    private static final ExecutorService PREFETCH_POOL = ExecutorsHelper.newFixedSizeThreadPool(8, "PagedWebSearchPerformer-prefetch");
+    private static final Map<String, Semaphore> DOMAIN_PERMITS = new HashMap<>();
+    private static final long PERMIT_POLL_MILLIS = 100;
     private final int pages;
+    private final int prefetch;
+    // guarded by itself, the fetches to cancel when stopped
+    private final Deque<Future<String>> inFlight = new ArrayDeque<>();
 
     public PagedWebSearchPerformer(String domainName, long token, String keywords, int timeout, int pages) {
+        this(domainName, token, keywords, timeout, pages, 0);
+    }
+
+    /**
+     * @param prefetch the number of pages fetched ahead of the one being parsed,
+     *                 0 to fetch them one by one. Only for performers that fetch
+     *                 the whole page, not overriding {@link #searchPage(int)}
+     *                 or {@link #streamSearchPage(String)}.
+     */
+    public PagedWebSearchPerformer(String domainName, long token, String keywords, int timeout, int pages, int prefetch) {
         super(domainName, token, keywords, timeout);
         this.pages = pages;
+        this.prefetch = prefetch;
     }
 
     @Override
     public void perform() {
+        // the same key the failures are counted with, the host of the pages
+        if (isDomainUnavailable(getUrl(1, getEncodedKeywords()))) {
+            LOG.info("Skipping search in {}, it keeps failing", getDomainName());
+            return;
+        }
+        if (prefetch > 0 && pages > 1) {
+            performPipelined();
+            return;
+        }
         for (int i = 1; !isStopped() && i <= pages; i++) {
             List<? extends SearchResult> searchResults = searchPage(i);
             if (searchResults != null && !searchResults.isEmpty()) {
@@ -49,31 +94,184 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
         }
     }
 
+    @Override
+    public void stop() {
+        super.stop();
+        synchronized (inFlight) {
+            for (Future<String> f : inFlight) {
+                f.cancel(true);
+            }
+            inFlight.clear();
+        }
+    }
+
+    private void performPipelined() {
+        Deque<Future<String>> queue = new ArrayDeque<>();
+        int next = 1;
+        for (int page = 1; !isStopped() && page <= pages; page++) {
+            while (next <= pages && next <= page + prefetch) {
+                // only the page to parse waits for a permit, the others are fetched when there's one
+                Future<String> f = submitFetch(next, queue.isEmpty());
+                if (f == null) {
+                    break;
+                }
+                queue.add(f);
+                next++;
+            }
+            Future<String> f = queue.poll();
+            if (f == null) {
+                // stopped while waiting for a permit
+                break;
+            }
+            String text = null;
+            try {
+                text = f.get();
+            } catch (ExecutionException e) {
+                onPageError(page, e.getCause());
+            } catch (Throwable e) {
+                // cancelled, or interrupted
+                break;
+            } finally {
+                synchronized (inFlight) {
+                    inFlight.remove(f);
+                }
+            }
+            if (text != null && !isStopped()) {
+                List<? extends SearchResult> searchResults = parsePage(text);
+                if (searchResults != null && !searchResults.isEmpty()) {
+                    onResults(searchResults);
+                }
+            }
+        }
+        for (Future<String> f : queue) {
+            f.cancel(true);
+        }
+        synchronized (inFlight) {
+            inFlight.removeAll(queue);
+        }
+    }
+
+    /**
+     * Takes a permit of the domain before the fetch is given to the pool, so a
+     * slow domain never holds the pool threads waiting for one.
+     *
+     * @param wait whether to wait for a permit, until stopped
+     * @return null if there was no permit
+     */
+    private Future<String> submitFetch(int page, boolean wait) {
+        Semaphore permits = domainPermits(getDomainName());
+        try {
+            if (!wait && !permits.tryAcquire()) {
+                return null;
+            }
+            while (wait && !permits.tryAcquire(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (isStopped()) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        FutureTask<String> f = new FutureTask<String>(() -> {
+            if (isStopped()) {
+                return null;
+            }
+            String url = getUrl(page, getEncodedKeywords());
+            long start = System.currentTimeMillis();
+            String text = fetchSearchPage(url);
+            if (text != null) {
+                SearchManager.metrics().onPageFetched(metricsName, getDomainName(), System.currentTimeMillis() - start, false);
+            }
+            return text;
+        }) {
+            @Override
+            protected void done() {
+                // also when cancelled before it runs
+                permits.release();
+            }
+        };
+        PREFETCH_POOL.execute(f);
+        synchronized (inFlight) {
+            if (isStopped()) {
+                f.cancel(true);
+            } else {
+                inFlight.add(f);
+            }
+        }
+        return f;
+    }
+
+    private static Semaphore domainPermits(String domainName) {
+        synchronized (DOMAIN_PERMITS) {
+            Semaphore permits = DOMAIN_PERMITS.get(domainName);
+            if (permits == null) {
+                permits = new Semaphore(MAX_FETCHES_PER_DOMAIN);
+                DOMAIN_PERMITS.put(domainName, permits);
+            }
+            return permits;
+        }
+    }
+
     protected List<? extends SearchResult> searchPage(int page) {
         List<? extends SearchResult> result = Collections.emptyList();
-        String url = null;
+        SearchMetricsListener metrics = SearchManager.metrics();
         try {
-            url = getUrl(page, getEncodedKeywords());
+            String url = getUrl(page, getEncodedKeywords());
+            long start = System.currentTimeMillis();
+            int streamed = streamSearchPage(url);
+            if (streamed >= 0) {
+                // results were already sent as they were parsed
+                metrics.onPageParsed(metricsName, getDomainName(), System.currentTimeMillis() - start, streamed);
+                return result;
+            }
             String text = fetchSearchPage(url);
             if (text != null) {
-                result = searchPage(text);
+                metrics.onPageFetched(metricsName, getDomainName(), System.currentTimeMillis() - start, false);
+                result = parsePage(text);
             }
         } catch (Throwable e) {
-            if (url == null) {
-                url = "n.a";
-            }
-            if (e instanceof SSLPeerUnverifiedException) {
-                LOG.error("Make sure to add " + getDomainName() + " to Ssl.FWHostnameVerifier valid host name list");
-            }
-            LOG.error("Error searching page [" + url + "]: " + e.getMessage());
+            onPageError(page, e);
         }
         return result;
     }
 
+    private List<? extends SearchResult> parsePage(String text) {
+        long start = System.currentTimeMillis();
+        List<? extends SearchResult> result = searchPage(text);
+        SearchManager.metrics().onPageParsed(metricsName, getDomainName(), System.currentTimeMillis() - start, result != null ? result.size() : 0);
+        return result;
+    }
+
+    private void onPageError(int page, Throwable e) {
+        String url;
+        try {
+            url = getUrl(page, getEncodedKeywords());
+        } catch (Throwable t) {
+            url = "n.a";
+        }
+        if (e instanceof SSLPeerUnverifiedException) {
+            LOG.error("Make sure to add " + getDomainName() + " to Ssl.FWHostnameVerifier valid host name list");
+        }
+        LOG.error("Error searching page [" + url + "]: " + e.getMessage());
+        SearchManager.metrics().onError(metricsName, getDomainName(), SearchManager.isTimeout(e));
+    }
+
     protected String fetchSearchPage(String url) throws IOException {
         return fetch(url);
     }
 
+    /**
+     * Override to parse the search page while it's being downloaded, sending
+     * the results with {@link #onResults(List)} as they are parsed.
+     *
+     * @return the number of results sent, or -1 if the page should be fetched whole
+     * and passed to {@link #searchPage(String)}
+     */
+    protected int streamSearchPage(String url) throws IOException {
+        return -1;
+    }
+
     /**
      * The Search URL
      */
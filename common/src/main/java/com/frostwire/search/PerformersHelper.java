@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,8 +17,7 @@
 
 package com.frostwire.search;
 
-import com.frostwire.jlibtorrent.FileStorage;
-import com.frostwire.jlibtorrent.TorrentInfo;
+import com.frostwire.bittorrent.TorrentFiles;
 import com.frostwire.regex.Pattern;
 import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
@@ -73,21 +72,15 @@ public final class PerformersHelper {
         if (data == null) {
             return list;
         }
-        TorrentInfo ti;
-        try {
-            ti = TorrentInfo.bdecode(data);
-        } catch (Throwable t) {
-            //LOG.error("Can't bdecode:\n" + new String(data) + "\n\n");
-            throw t;
-        }
-        int numFiles = ti.numFiles();
-        FileStorage fs = ti.files();
+        // only the file list, the native torrent info is decoded when the download starts
+        TorrentFiles torrent = TorrentFiles.parse(data);
+        int numFiles = torrent.numFiles();
         for (int i = 0; !performer.isStopped() && i < numFiles; i++) {
             // TODO: Check for the hidden attribute
-            if (fs.padFileAt(i)) {
+            if (torrent.padFileAt(i)) {
                 continue;
             }
-            list.add(new TorrentCrawledSearchResult(sr, ti, i, fs.filePath(i), fs.fileSize(i)));
+            list.add(new TorrentCrawledSearchResult(sr, torrent, i));
         }
         if (detectAlbums) {
             List<SearchResult> temp = new LinkedList<>();
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2021, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,11 +23,15 @@ import com.frostwire.util.Ref;
 import com.frostwire.util.ThreadPool;
 import com.frostwire.util.http.OkHttpClientWrapper;
 
+import java.io.InterruptedIOException;
 import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -37,16 +41,50 @@ import java.util.concurrent.PriorityBlockingQueue;
  */
 public final class SearchManager {
     private static final Logger LOG = Logger.getLogger(SearchManager.class);
+    // merge state is kept for the last searches, the results tabs still ask for it
+    private static final int MAX_MERGERS = 16;
+    private static final SearchMetricsListener NO_METRICS = new SearchMetricsListener() {
+        @Override
+        public void onPageFetched(String performer, String domain, long millis, boolean streamed) {
+        }
+
+        @Override
+        public void onPageParsed(String performer, String domain, long millis, int results) {
+        }
+
+        @Override
+        public void onFirstResult(String performer, String domain, long millis) {
+        }
+
+        @Override
+        public void onCrawl(String performer, String domain, boolean cacheHit) {
+        }
+
+        @Override
+        public void onError(String performer, String domain, boolean timeout) {
+        }
+    };
     private final Object executorLock = new Object();
     private final ExecutorService executor;
     private final List<SearchTask> tasks;
     private final List<WeakReference<SearchTable>> tables;
+    // start time of the performers still waiting for their first results
+    private final Map<SearchPerformer, Long> firstResultPending;
+    private final Map<Long, SearchResultMerger> mergers;
     private SearchListener listener;
+    private volatile SearchMetricsListener metricsListener = NO_METRICS;
 
     private SearchManager(int nThreads) {
         this.executor = new ThreadPool("SearchManager", 4, nThreads, 10L, new PriorityBlockingQueue<>(), true);
         this.tasks = Collections.synchronizedList(new LinkedList<>());
         this.tables = Collections.synchronizedList(new LinkedList<>());
+        this.firstResultPending = new ConcurrentHashMap<>();
+        this.mergers = new LinkedHashMap<Long, SearchResultMerger>(MAX_MERGERS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SearchResultMerger> eldest) {
+                return size() > MAX_MERGERS;
+            }
+        };
     }
 
     public static SearchManager getInstance() {
@@ -98,14 +136,87 @@ public final class SearchManager {
         this.listener = listener;
     }
 
+    public SearchMetricsListener getMetricsListener() {
+        return metricsListener != NO_METRICS ? metricsListener : null;
+    }
+
+    /**
+     * @param metricsListener receives the performers measurements, null to stop measuring
+     */
+    public void setMetricsListener(SearchMetricsListener metricsListener) {
+        this.metricsListener = metricsListener != null ? metricsListener : NO_METRICS;
+    }
+
+    /**
+     * The metrics listener, never null, for the performers to report to.
+     */
+    static SearchMetricsListener metrics() {
+        return getInstance().metricsListener;
+    }
+
+    static String metricsPerformer(SearchPerformer performer) {
+        String name = performer.getClass().getSimpleName();
+        // anonymous classes have no simple name
+        return name.isEmpty() ? performer.getClass().getName() : name;
+    }
+
+    static String metricsDomain(SearchPerformer performer) {
+        return performer instanceof WebSearchPerformer ?
+                ((WebSearchPerformer) performer).getDomainName() :
+                metricsPerformer(performer);
+    }
+
+    static boolean isTimeout(Throwable e) {
+        // SocketTimeoutException and okhttp call timeouts
+        return e instanceof InterruptedIOException;
+    }
+
+    /**
+     * @return the group the result was merged into, null if the result
+     * is not a displayed result of one of the last searches
+     */
+    public SearchResultMerger.Group getMergedGroup(SearchResult sr) {
+        synchronized (mergers) {
+            for (SearchResultMerger merger : mergers.values()) {
+                SearchResultMerger.Group group = merger.getGroup(sr);
+                if (group != null) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the results merged for the token, call it before repeating a search with the same token.
+     */
+    public void clearMerged(long token) {
+        synchronized (mergers) {
+            mergers.remove(token);
+        }
+    }
+
+    private SearchResultMerger merger(long token) {
+        synchronized (mergers) {
+            return mergers.computeIfAbsent(token, k -> new SearchResultMerger());
+        }
+    }
+
     private void submit(SearchTask task) {
         tasks.add(task);
         executor.execute(task);
     }
 
     private void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
+        if (!results.isEmpty()) {
+            Long start = firstResultPending.remove(performer);
+            if (start != null) {
+                metricsListener.onFirstResult(metricsPerformer(performer), metricsDomain(performer), System.currentTimeMillis() - start);
+            }
+        }
         var list = new LinkedList<SearchResult>();
-        results.forEach(sr -> {
+        // copies already found by another engine are neither sent nor crawled again
+        merger(performer.getToken()).merge(results).forEach(sr -> {
             if (sr instanceof CrawlableSearchResult) {
                 CrawlableSearchResult csr = (CrawlableSearchResult) sr;
                 if (csr.isComplete()) {
@@ -257,11 +368,14 @@ public final class SearchManager {
         public void run() {
             try {
                 if (!stopped()) {
+                    manager.firstResultPending.put(performer, System.currentTimeMillis());
                     performer.perform();
                 }
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
+                manager.metricsListener.onError(metricsPerformer(performer), metricsDomain(performer), isTimeout(e));
             } finally {
+                manager.firstResultPending.remove(performer);
                 if (manager.tasks.remove(this)) {
                     manager.checkIfFinished(performer.getToken());
                 }
@@ -285,6 +399,7 @@ public final class SearchManager {
                 }
             } catch (Throwable e) {
                 LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
+                manager.metricsListener.onError(metricsPerformer(performer), metricsDomain(performer), isTimeout(e));
             } finally {
                 if (manager.tasks.remove(this)) {
                     manager.checkIfFinished(performer.getToken());
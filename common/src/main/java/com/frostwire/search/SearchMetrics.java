@@ -0,0 +1,245 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SearchMetricsListener} that aggregates the measurements per domain
+ * and per performer since it was created (or last reset), {@link #dump()}
+ * renders them as text.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchMetrics implements SearchMetricsListener {
+    private final Map<String, Stats> domains = new ConcurrentHashMap<>();
+    private final Map<String, Stats> performers = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPageFetched(String performer, String domain, long millis, boolean streamed) {
+        for (Stats s : stats(performer, domain)) {
+            (streamed ? s.timeToFirstByte : s.download).add(millis);
+        }
+    }
+
+    @Override
+    public void onPageParsed(String performer, String domain, long millis, int results) {
+        for (Stats s : stats(performer, domain)) {
+            s.parse.add(millis);
+            s.results.addAndGet(results);
+        }
+    }
+
+    @Override
+    public void onFirstResult(String performer, String domain, long millis) {
+        for (Stats s : stats(performer, domain)) {
+            s.timeToFirstResult.add(millis);
+        }
+    }
+
+    @Override
+    public void onCrawl(String performer, String domain, boolean cacheHit) {
+        for (Stats s : stats(performer, domain)) {
+            s.crawls.incrementAndGet();
+            if (cacheHit) {
+                s.crawlCacheHits.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void onError(String performer, String domain, boolean timeout) {
+        for (Stats s : stats(performer, domain)) {
+            s.errors.incrementAndGet();
+            if (timeout) {
+                s.timeouts.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the stats of the domain, or null if nothing was measured for it
+     */
+    public Stats get(String domain) {
+        return domains.get(domain);
+    }
+
+    /**
+     * @return the stats of the performer, or null if nothing was measured for it
+     */
+    public Stats getPerformer(String performer) {
+        return performers.get(performer);
+    }
+
+    /**
+     * @return the measured domains, sorted
+     */
+    public Set<String> domains() {
+        return new TreeSet<>(domains.keySet());
+    }
+
+    /**
+     * @return the measured performers, sorted
+     */
+    public Set<String> performers() {
+        return new TreeSet<>(performers.keySet());
+    }
+
+    public void reset() {
+        domains.clear();
+        performers.clear();
+    }
+
+    /**
+     * One line per domain, sorted by domain, then one line per performer, all
+     * times are averages in milliseconds.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        dump(sb, "domain", domains);
+        sb.append(String.format(Locale.US, "%n"));
+        dump(sb, "performer", performers);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+
+    private static void dump(StringBuilder sb, String key, Map<String, Stats> stats) {
+        sb.append(String.format(Locale.US, "%-24s %6s %6s %6s %6s %7s %8s %9s %7s %8s%n",
+                key, "ttfb", "fetch", "ttfr", "parse", "pages", "res/page", "crawl hit", "errors", "timeouts"));
+        for (Map.Entry<String, Stats> e : new TreeMap<>(stats).entrySet()) {
+            Stats s = e.getValue();
+            sb.append(String.format(Locale.US, "%-24s %6d %6d %6d %6d %7d %8.1f %8.0f%% %7d %8d%n",
+                    e.getKey(),
+                    s.timeToFirstByte.average(),
+                    s.download.average(),
+                    s.timeToFirstResult.average(),
+                    s.parse.average(),
+                    s.pages(),
+                    s.resultsPerPage(),
+                    s.crawlHitRatio() * 100,
+                    s.errors.get(),
+                    s.timeouts.get()));
+        }
+    }
+
+    private Stats[] stats(String performer, String domain) {
+        return new Stats[]{
+                domains.computeIfAbsent(domain, k -> new Stats()),
+                performers.computeIfAbsent(performer, k -> new Stats())};
+    }
+
+    /**
+     * The measurements of a domain or a performer.
+     */
+    public static final class Stats {
+        final Timing timeToFirstByte = new Timing();
+        final Timing download = new Timing();
+        final Timing timeToFirstResult = new Timing();
+        final Timing parse = new Timing();
+        final AtomicLong results = new AtomicLong();
+        final AtomicLong crawls = new AtomicLong();
+        final AtomicLong crawlCacheHits = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+
+        public Timing timeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        public Timing download() {
+            return download;
+        }
+
+        public Timing timeToFirstResult() {
+            return timeToFirstResult;
+        }
+
+        public Timing parse() {
+            return parse;
+        }
+
+        public long pages() {
+            return parse.count();
+        }
+
+        public long results() {
+            return results.get();
+        }
+
+        public double resultsPerPage() {
+            long pages = pages();
+            return pages > 0 ? (double) results.get() / pages : 0;
+        }
+
+        public long crawls() {
+            return crawls.get();
+        }
+
+        public double crawlHitRatio() {
+            long crawls = this.crawls.get();
+            return crawls > 0 ? (double) crawlCacheHits.get() / crawls : 0;
+        }
+
+        public long errors() {
+            return errors.get();
+        }
+
+        public long timeouts() {
+            return timeouts.get();
+        }
+    }
+
+    public static final class Timing {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long millis) {
+            count.incrementAndGet();
+            total.addAndGet(millis);
+            long m;
+            while (millis > (m = max.get()) && !max.compareAndSet(m, millis)) {
+                // retry
+            }
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        public long average() {
+            long count = this.count.get();
+            return count > 0 ? total.get() / count : 0;
+        }
+
+        public long max() {
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Receives timing and yield measurements of the search performers, set it with
+ * {@link SearchManager#setMetricsListener(SearchMetricsListener)}.
+ * <p>
+ * Measurements come with the performer name, its class simple name, and the
+ * performer domain name, which is the performer name for performers that are not
+ * web based. Calls are made from the search threads and must return quickly.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface SearchMetricsListener {
+
+    /**
+     * @param performer the performer name
+     * @param domain   the performer domain
+     * @param millis   for streamed pages the time until the response headers were
+     *                 received, otherwise the time to download the whole page
+     * @param streamed if the page is parsed while being downloaded
+     */
+    void onPageFetched(String performer, String domain, long millis, boolean streamed);
+
+    /**
+     * @param performer the performer name
+     * @param domain  the performer domain
+     * @param millis  the time to parse the page, for streamed pages it includes
+     *                reading the response body
+     * @param results the number of results in the page
+     */
+    void onPageParsed(String performer, String domain, long millis, int results);
+
+    /**
+     * @param performer the performer name
+     * @param domain the performer domain
+     * @param millis the time from the start of the search to the first results
+     */
+    void onFirstResult(String performer, String domain, long millis);
+
+    /**
+     * @param performer the performer name
+     * @param domain   the performer domain
+     * @param cacheHit if the crawl data was found in the {@link CrawlCache}, a crawl
+     *                 skipped because it failed recently is a miss
+     */
+    void onCrawl(String performer, String domain, boolean cacheHit);
+
+    /**
+     * @param performer the performer name
+     * @param domain  the performer domain
+     * @param timeout if the error was caused by a timeout
+     */
+    void onError(String performer, String domain, boolean timeout);
+}
@@ -0,0 +1,194 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the results of one search coming from different engines. The
+ * first result for a torrent info hash (or, for results without one, a
+ * normalized name and size) is passed through, later copies are folded
+ * into its {@link Group} and dropped, so they are neither shown again nor
+ * crawled again.
+ * <p>
+ * Results that still have to be crawled are keyed by their details url,
+ * the same page is not downloaded twice in one search.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchResultMerger {
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Map<SearchResult, Group> byResult = new IdentityHashMap<>();
+    private int duplicates;
+
+    /**
+     * @return the results not seen before, in order
+     */
+    public synchronized List<SearchResult> merge(List<? extends SearchResult> results) {
+        List<SearchResult> unique = new ArrayList<>(results.size());
+        for (SearchResult sr : results) {
+            String key = key(sr);
+            if (key == null) {
+                unique.add(sr);
+                continue;
+            }
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(sr);
+                groups.put(key, group);
+                byResult.put(sr, group);
+                unique.add(sr);
+            } else if (key.startsWith("name:") && group.hasSource(sr.getSource())) {
+                // same name and size in the same engine, there is nothing telling they are the same file
+                unique.add(sr);
+            } else {
+                group.add(sr);
+                duplicates++;
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * @return the group of a result passed through by {@link #merge(List)}, or null
+     */
+    public synchronized Group getGroup(SearchResult sr) {
+        return byResult.get(sr);
+    }
+
+    /**
+     * @return the number of results dropped so far
+     */
+    public synchronized int getDuplicates() {
+        return duplicates;
+    }
+
+    static String key(SearchResult sr) {
+        if (sr instanceof CrawlableSearchResult && !((CrawlableSearchResult) sr).isComplete()) {
+            String url = sr.getDetailsUrl();
+            return url != null ? "url:" + url : null;
+        }
+        if (sr instanceof TorrentSearchResult) {
+            String hash = ((TorrentSearchResult) sr).getHash();
+            if (hash != null && !hash.isEmpty()) {
+                hash = hash.toLowerCase(Locale.US);
+                return sr instanceof TorrentItemSearchResult ?
+                        "hash:" + hash + "/" + ((TorrentItemSearchResult) sr).getFilePath() :
+                        "hash:" + hash;
+            }
+        }
+        if (sr instanceof FileSearchResult) {
+            long size = (long) ((FileSearchResult) sr).getSize();
+            String name = normalize(sr.getDisplayName());
+            if (size > 0 && !name.isEmpty()) {
+                return "name:" + name + ":" + size;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lower case letters and digits separated by single spaces, so that
+     * "Some.Movie_2020" and "some movie (2020)" are the same name.
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static final class Group {
+        private final SearchResult first;
+        private final Set<String> sources = new LinkedHashSet<>();
+        private int seeds;
+        private int count;
+
+        Group(SearchResult first) {
+            this.first = first;
+            add(first);
+        }
+
+        private synchronized void add(SearchResult sr) {
+            if (sr.getSource() != null) {
+                sources.add(sr.getSource());
+            }
+            if (sr instanceof TorrentSearchResult) {
+                // engines scrape the same swarm, adding them up would count peers twice
+                seeds = Math.max(seeds, ((TorrentSearchResult) sr).getSeeds());
+            }
+            count++;
+        }
+
+        synchronized boolean hasSource(String source) {
+            return sources.contains(source);
+        }
+
+        public SearchResult getFirst() {
+            return first;
+        }
+
+        public synchronized Set<String> getSources() {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(sources));
+        }
+
+        public synchronized int getSourceCount() {
+            return sources.size();
+        }
+
+        /**
+         * @return the highest seeds count reported by the engines
+         */
+        public synchronized int getSeeds() {
+            return seeds;
+        }
+
+        /**
+         * @return the number of results merged, including the first one
+         */
+        public synchronized int getCount() {
+            return count;
+        }
+    }
+}
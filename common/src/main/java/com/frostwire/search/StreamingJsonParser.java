@@ -0,0 +1,134 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.JsonUtils;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the elements of a JSON array to search results while the response
+ * is still being read, instead of building the whole object graph first.
+ * Results are sent to the performer in small batches and parsing stops
+ * once the result cap is reached or the performer is stopped.
+ *
+ * @param <T> the type each array element is deserialized to
+ * @author gubatron
+ * @author aldenml
+ */
+public final class StreamingJsonParser<T> {
+    private static final int DEFAULT_BATCH_SIZE = 10;
+
+    private final Class<T> itemClass;
+    private final int maxResults;
+    private final int batchSize;
+    private final String[] arrayPath;
+
+    /**
+     * @param itemClass  the class of the array elements
+     * @param maxResults stop parsing after this many results
+     * @param arrayPath  names of the nested object properties leading to the array,
+     *                   empty if the array is the root value
+     */
+    public StreamingJsonParser(Class<T> itemClass, int maxResults, String... arrayPath) {
+        this(itemClass, maxResults, DEFAULT_BATCH_SIZE, arrayPath);
+    }
+
+    public StreamingJsonParser(Class<T> itemClass, int maxResults, int batchSize, String... arrayPath) {
+        this.itemClass = itemClass;
+        this.maxResults = maxResults;
+        this.batchSize = batchSize;
+        this.arrayPath = arrayPath;
+    }
+
+    /**
+     * Parses the stream and closes it.
+     *
+     * @param in        the JSON (UTF-8) response body
+     * @param performer receives the results
+     * @param mapper    maps an element to a search result, returns null to skip it
+     * @return the number of results sent
+     */
+    public int parse(InputStream in, AbstractSearchPerformer performer, Mapper<T> mapper) throws IOException {
+        List<SearchResult> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            if (!moveTo(reader, arrayPath) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return 0;
+            }
+            reader.beginArray();
+            while (reader.hasNext() && count < maxResults && !performer.isStopped()) {
+                T item = JsonUtils.toObject(reader, itemClass);
+                SearchResult sr = item != null ? mapper.map(item) : null;
+                if (sr != null) {
+                    batch.add(sr);
+                    count++;
+                    if (batch.size() >= batchSize) {
+                        performer.onResults(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+        } finally {
+            // whatever was parsed before an early stop or a broken stream is still good
+            if (!batch.isEmpty()) {
+                performer.onResults(batch);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves the reader to the value found following the nested property names, skipping
+     * everything else without building it.
+     *
+     * @return false if a property in the path is not present
+     */
+    public static boolean moveTo(JsonReader reader, String... path) throws IOException {
+        for (String name : path) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.beginObject();
+            boolean found = false;
+            while (!found && reader.hasNext()) {
+                if (name.equals(reader.nextName())) {
+                    found = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public interface Mapper<T> {
+        SearchResult map(T item);
+    }
+}
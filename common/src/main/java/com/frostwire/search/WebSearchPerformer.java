@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,11 @@ import com.frostwire.util.http.HttpClient;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.channels.ClosedByInterruptException;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -37,7 +42,10 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
     private static final Logger LOG = Logger.getLogger(WebSearchPerformer.class);
     private static final String DEFAULT_USER_AGENT = UserAgentGenerator.getUserAgent();
     private static final String[] STREAMABLE_EXTENSIONS = new String[]{"mp3", "ogg", "wma", "wmv", "m4a", "aac", "flac", "mp4", "flv", "mov", "mpg", "mpeg", "3gp", "m4v", "webm"};
+    private static DomainHealth domainHealth = new DomainHealth();
     private final String domainName;
+    // the performer name in the metrics
+    final String metricsName = SearchManager.metricsPerformer(this);
     private final String keywords;
     private final String encodedKeywords;
     private final int timeout;
@@ -60,6 +68,18 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         return Arrays.asList(STREAMABLE_EXTENSIONS).contains(ext);
     }
 
+    /**
+     * The health of the domains, shared by all the performers, it sets the
+     * request timeouts and rejects the requests to failing domains.
+     */
+    public static DomainHealth getDomainHealth() {
+        return domainHealth;
+    }
+
+    public static void setDomainHealth(DomainHealth domainHealth) {
+        WebSearchPerformer.domainHealth = domainHealth;
+    }
+
     public final String getKeywords() {
         return keywords;
     }
@@ -84,7 +104,43 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
     }
 
     public String fetch(String url, String cookie, Map<String, String> customHeaders) throws IOException {
-        return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders);
+        DomainHealth health = domainHealth;
+        String domain = healthDomain(url);
+        checkAvailable(health, domain);
+        long start = System.currentTimeMillis();
+        String result = null;
+        Throwable failure = null;
+        try {
+            result = client.get(url, health.timeout(domain, timeout), DEFAULT_USER_AGENT, null, cookie, customHeaders);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            onRequestDone(health, domain, start, result != null, failure);
+        }
+    }
+
+    /**
+     * Opens the response body of the url for streaming, the caller must close it.
+     */
+    public InputStream fetchStream(String url) throws IOException {
+        DomainHealth health = domainHealth;
+        String domain = healthDomain(url);
+        checkAvailable(health, domain);
+        long start = System.currentTimeMillis();
+        InputStream in = null;
+        Throwable failure = null;
+        try {
+            in = client.getStream(url, health.timeout(domain, timeout), DEFAULT_USER_AGENT, null, null, null);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            onRequestDone(health, domain, start, in != null, failure);
+        }
+        SearchManager.metrics().onPageFetched(metricsName, domainName, System.currentTimeMillis() - start, true);
+        return in;
     }
 
     public String post(String url, Map<String, String> formData) {
@@ -108,12 +164,77 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
 
     protected final byte[] fetchBytes(String url, String referrer, int timeout) {
         if (url.startsWith("htt")) { // http(s)
-            return client.getBytes(url, timeout, DEFAULT_USER_AGENT, referrer);
+            DomainHealth health = domainHealth;
+            String domain = healthDomain(url);
+            if (!health.allowRequest(domain)) {
+                return null;
+            }
+            long start = System.currentTimeMillis();
+            byte[] data = client.getBytes(url, health.timeout(domain, timeout), DEFAULT_USER_AGENT, referrer);
+            onRequestDone(health, domain, start, data != null, null);
+            return data;
         } else {
             return null;
         }
     }
 
+    /**
+     * @return true if the requests to the domain of the url are being rejected
+     * because it keeps failing
+     */
+    protected final boolean isDomainUnavailable(String url) {
+        return domainHealth.isOpen(healthDomain(url));
+    }
+
+    /**
+     * The url host and port, or the performer domain if it can't be parsed.
+     */
+    private String healthDomain(String url) {
+        try {
+            String authority = new URI(url).getRawAuthority();
+            return authority != null ? authority : domainName;
+        } catch (Throwable e) {
+            return domainName;
+        }
+    }
+
+    private static void checkAvailable(DomainHealth health, String domain) throws IOException {
+        if (!health.allowRequest(domain)) {
+            throw new IOException("Requests to " + domain + " are suspended after repeated failures");
+        }
+    }
+
+    /**
+     * A request that failed because the search was stopped says nothing about
+     * the domain and is not counted.
+     */
+    private void onRequestDone(DomainHealth health, String domain, long start, boolean success, Throwable failure) {
+        if (success) {
+            health.onSuccess(domain, System.currentTimeMillis() - start);
+        } else if (!isStopped() && !Thread.currentThread().isInterrupted() && !isCancellation(failure)) {
+            health.onFailure(domain);
+        }
+    }
+
+    /**
+     * @return true for the errors of a request interrupted or cancelled, okhttp
+     * reports a cancelled call as an IOException "Canceled"
+     */
+    static boolean isCancellation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof ClosedByInterruptException) {
+                return true;
+            }
+            if (t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException) && !"timeout".equals(t.getMessage())) {
+                return true;
+            }
+            if (t instanceof IOException && "Canceled".equals(t.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public String getDomainName() {
         return domainName;
     }
@@ -19,16 +19,16 @@ package com.frostwire.search.archiveorg;
 
 import com.frostwire.search.CrawlPagedWebSearchPerformer;
 import com.frostwire.search.SearchResult;
+import com.frostwire.search.StreamingJsonParser;
 import com.frostwire.util.JsonUtils;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author gubatron
@@ -36,6 +36,8 @@ import java.util.Map;
  */
 public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<ArchiveorgSearchResult> {
     private static final int MAX_RESULTS = 12;
+    private static final int ROWS = 50;
+    private static final StreamingJsonParser<ArchiveorgItem> PARSER = new StreamingJsonParser<>(ArchiveorgItem.class, ROWS, "response", "docs");
 
     public ArchiveorgSearchPerformer(String domainName, long token, String keywords, int timeout) {
         super(domainName, token, keywords, timeout, 1, MAX_RESULTS);
@@ -47,11 +49,16 @@ public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<Arch
                 + getDomainName()
                 + "/advancedsearch.php?q="
                 + encodedKeywords
-                + "&fl[]=avg_rating&fl[]=call_number&fl[]=collection&fl[]=contributor&fl[]=coverage&fl[]=creator&fl[]=date&fl[]=description&fl[]=downloads&fl[]=foldoutcount&fl[]=format&fl[]=headerImage&fl[]=identifier&fl[]=imagecount&fl[]=language&fl[]=licenseurl&fl[]=mediatype&fl[]=month&fl[]=num_reviews&fl[]=oai_updatedate&fl[]=publicdate&fl[]=publisher&fl[]=rights&fl[]=scanningcentre&fl[]=source&fl[]=title&fl[]=type&fl[]=volume&fl[]=week&fl[]=year&rows=50&page=1&indent=yes&output=json";
+                + "&fl[]=avg_rating&fl[]=call_number&fl[]=collection&fl[]=contributor&fl[]=coverage&fl[]=creator&fl[]=date&fl[]=description&fl[]=downloads&fl[]=foldoutcount&fl[]=format&fl[]=headerImage&fl[]=identifier&fl[]=imagecount&fl[]=language&fl[]=licenseurl&fl[]=mediatype&fl[]=month&fl[]=num_reviews&fl[]=oai_updatedate&fl[]=publicdate&fl[]=publisher&fl[]=rights&fl[]=scanningcentre&fl[]=source&fl[]=title&fl[]=type&fl[]=volume&fl[]=week&fl[]=year&rows=" + ROWS + "&page=1&indent=yes&output=json";
         //sort[]=downloads+desc&sort[]=createdate+desc
         //sort[]=avg_rating+desc&
     }
 
+    @Override
+    protected int streamSearchPage(String url) throws IOException {
+        return PARSER.parse(fetchStream(url), this, item -> filter(item) ? new ArchiveorgSearchResult(getDomainName(), item) : null);
+    }
+
     @Override
     protected List<? extends SearchResult> searchPage(String page) {
         List<SearchResult> result = new LinkedList<>();
@@ -73,8 +80,7 @@ public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<Arch
     @Override
     protected List<? extends SearchResult> crawlResult(ArchiveorgSearchResult sr, byte[] data) throws Exception {
         List<ArchiveorgCrawledSearchResult> list = new LinkedList<>();
-        String json = new String(data, StandardCharsets.UTF_8);
-        List<ArchiveorgFile> files = readFiles(json);
+        List<ArchiveorgFile> files = readFiles(data);
         long totalSize = calcTotalSize(files);
         for (ArchiveorgFile file : files) {
             if (isStreamable(file.filename)) {
@@ -88,20 +94,20 @@ public class ArchiveorgSearchPerformer extends CrawlPagedWebSearchPerformer<Arch
         return list;
     }
 
-    private List<ArchiveorgFile> readFiles(String json) {
+    private List<ArchiveorgFile> readFiles(byte[] data) throws IOException {
         List<ArchiveorgFile> result = new LinkedList<>();
-        JsonElement element = JsonParser.parseString(json);
-        JsonObject obj = element.getAsJsonObject();
-        JsonObject files = obj.getAsJsonObject("files");
-        Iterator<Map.Entry<String, JsonElement>> it = files.entrySet().iterator();
-        while (it.hasNext() && !isStopped()) {
-            Map.Entry<String, JsonElement> e = it.next();
-            String name = e.getKey();
-            String value = e.getValue().toString();
-            ArchiveorgFile file = JsonUtils.toObject(value, ArchiveorgFile.class);
-            if (filter(file)) {
-                file.filename = cleanName(name);
-                result.add(file);
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            if (!StreamingJsonParser.moveTo(reader, "files")) {
+                return result;
+            }
+            reader.beginObject();
+            while (reader.hasNext() && !isStopped()) {
+                String name = reader.nextName();
+                ArchiveorgFile file = JsonUtils.toObject(reader, ArchiveorgFile.class);
+                if (file != null && filter(file)) {
+                    file.filename = cleanName(name);
+                    result.add(file);
+                }
             }
         }
         return result;
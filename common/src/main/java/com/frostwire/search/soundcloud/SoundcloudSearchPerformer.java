@@ -19,8 +19,10 @@ package com.frostwire.search.soundcloud;
 
 import com.frostwire.search.PagedWebSearchPerformer;
 import com.frostwire.search.SearchResult;
+import com.frostwire.search.StreamingJsonParser;
 import com.frostwire.util.JsonUtils;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -31,6 +33,8 @@ import java.util.List;
 public final class SoundcloudSearchPerformer extends PagedWebSearchPerformer {
     private static final String SOUNDCLOUD_CLIENTID = "yemPGqAHfyjNqV0UFzbNsjbRWGsJRHLO";
     private static final String SOUNDCLOUD_APP_VERSION = "1630571747";
+    private static final int MAX_RESULTS = 50;
+    private static final StreamingJsonParser<SoundcloudItem> PARSER = new StreamingJsonParser<>(SoundcloudItem.class, MAX_RESULTS, "collection");
 
     public SoundcloudSearchPerformer(String domainName, long token, String keywords, int timeout) {
         super(domainName, token, keywords, timeout, 1);
@@ -68,7 +72,13 @@ public final class SoundcloudSearchPerformer extends PagedWebSearchPerformer {
 
     @Override
     protected String getUrl(int page, String encodedKeywords) {
-        return "https://api-v2.soundcloud.com/search/tracks?q=" + encodedKeywords + "&limit=50&offset=0&client_id=" + SOUNDCLOUD_CLIENTID;
+        return "https://api-v2.soundcloud.com/search/tracks?q=" + encodedKeywords + "&limit=" + MAX_RESULTS + "&offset=0&client_id=" + SOUNDCLOUD_CLIENTID;
+    }
+
+    @Override
+    protected int streamSearchPage(String url) throws IOException {
+        return PARSER.parse(fetchStream(url), this, item ->
+                item.isValidSearchResult() ? new SoundcloudSearchResult(item, SOUNDCLOUD_CLIENTID, SOUNDCLOUD_APP_VERSION) : null);
     }
 
     @Override
@@ -37,12 +37,48 @@ public final class TellurideLauncher {
 
     public static AtomicBoolean SERVER_UP = new AtomicBoolean(false);
 
+    private static final Object SERVER_UP_LOCK = new Object();
+
+    /**
+     * How long the launcher keeps pinging a freshly started server before giving up
+     */
+    private static final long SERVER_START_TIMEOUT_MILLIS = 30000;
+
+    private static final long SERVER_PING_INTERVAL_MILLIS = 500;
+
+    /**
+     * Sets the server state and wakes up the threads blocked in {@link #waitForServer(long)}
+     */
+    public static void setServerUp(boolean up) {
+        synchronized (SERVER_UP_LOCK) {
+            SERVER_UP.set(up);
+            SERVER_UP_LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the server is up or the timeout expires.
+     *
+     * @return true if the server is up
+     */
+    public static boolean waitForServer(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (SERVER_UP_LOCK) {
+            long remaining = timeoutMillis;
+            while (!SERVER_UP.get() && remaining > 0) {
+                SERVER_UP_LOCK.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return SERVER_UP.get();
+        }
+    }
+
     public static void shutdownServer(final int port) {
         ThreadExecutor.startThread(() -> {
             HttpClient httpClient = HttpClientFactory.newInstance();
             try {
                 httpClient.get(String.format("http://127.0.0.1:%d/?shutdown=1", port));
-                SERVER_UP.set(false);
+                setServerUp(false);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -68,14 +104,18 @@ public final class TellurideLauncher {
                     }
                     try {
                         Process process = processBuilder.start();
-                        // The telluride process doesn't start right away, we wait 8 seconds to be safe before
-                        // pinging to set the SERVER_UP flag to true.
-                        // TellurideSearchPerformer waits for up to 10 seconds to give up
-                        Thread.currentThread().sleep(8000);
+                        // The telluride process doesn't start right away, we keep pinging it until it answers,
+                        // the process dies or we time out. TellurideSearchPerformers waiting for the server
+                        // are woken up as soon as it's up.
+                        LOG.info("TellurideLauncher::launchServer RPC server should be up soon at http://127.0.0.1:" + port);
+                        long deadline = System.currentTimeMillis() + SERVER_START_TIMEOUT_MILLIS;
+                        boolean up = false;
+                        while (!up && process.isAlive() && System.currentTimeMillis() < deadline) {
+                            Thread.sleep(SERVER_PING_INTERVAL_MILLIS);
+                            up = TellurideLauncher.checkIfUpAlready(port);
+                        }
                         LOG.info("TellurideLauncher::launchServer is process alive: " + process.isAlive());
-                        LOG.info("TellurideLauncher::launchServer RPC server should be up at http://127.0.0.1:" + port);
-                        LOG.info("TellurideLauncher::launchServer pinging...");
-                        SERVER_UP.set(TellurideLauncher.checkIfUpAlready(port));
+                        setServerUp(up);
                         if (!SERVER_UP.get()) {
                             LOG.info("TellurideLauncher::launchServer could not get a pong back from Telluride");
                         } else {
@@ -83,7 +123,7 @@ public final class TellurideLauncher {
                         }
 
                     } catch (Throwable e) {
-                        SERVER_UP.set(false);
+                        setServerUp(false);
                         LOG.error("TellurideLauncher::launchServer error: " + e.getMessage(),e);
                     }
                 },
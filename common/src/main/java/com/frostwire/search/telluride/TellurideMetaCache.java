@@ -0,0 +1,154 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.telluride;
+
+import com.frostwire.search.CrawlCache;
+import com.frostwire.util.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * URL keyed cache of the JSON metadata returned by the Telluride server.
+ * Entries live in a small in-memory LRU and, if a {@link CrawlCache} is set,
+ * on disk, so that pasting the same URL again doesn't pay for another
+ * youtube_dl extraction. Entries expire after a TTL, the extracted media
+ * URLs are usually signed and stop working after a few hours.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TellurideMetaCache {
+    private static final Logger LOG = Logger.getLogger(TellurideMetaCache.class);
+    private static final String KEY_PREFIX = "telluride:";
+    private static final int MAX_MEMORY_ENTRIES = 64;
+    public static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000; // 1 hour
+
+    private final Map<String, CachedMeta> memory;
+    private final long ttlMillis;
+    private CrawlCache disk;
+
+    public TellurideMetaCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.memory = new LinkedHashMap<String, CachedMeta>(MAX_MEMORY_ENTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMeta> eldest) {
+                return size() > MAX_MEMORY_ENTRIES;
+            }
+        };
+    }
+
+    public void setDiskCache(CrawlCache disk) {
+        this.disk = disk;
+    }
+
+    /**
+     * @return the cached JSON for the url, or null if absent or expired
+     */
+    public String get(String url) {
+        long now = System.currentTimeMillis();
+        synchronized (memory) {
+            CachedMeta e = memory.get(url);
+            if (e != null) {
+                if (!e.expired(now, ttlMillis)) {
+                    return e.json;
+                }
+                memory.remove(url);
+            }
+        }
+        CrawlCache disk = this.disk;
+        if (disk == null) {
+            return null;
+        }
+        byte[] data;
+        synchronized (disk) {
+            data = disk.get(KEY_PREFIX + url);
+        }
+        CachedMeta e = CachedMeta.decode(data);
+        if (e == null) {
+            return null;
+        }
+        if (e.expired(now, ttlMillis)) {
+            remove(url);
+            return null;
+        }
+        synchronized (memory) {
+            memory.put(url, e);
+        }
+        return e.json;
+    }
+
+    public void put(String url, String json) {
+        CachedMeta e = new CachedMeta(System.currentTimeMillis(), json);
+        synchronized (memory) {
+            memory.put(url, e);
+        }
+        CrawlCache disk = this.disk;
+        if (disk != null) {
+            try {
+                synchronized (disk) {
+                    disk.put(KEY_PREFIX + url, e.encode());
+                }
+            } catch (Throwable t) {
+                LOG.warn("Error storing telluride metadata on disk: " + t.getMessage());
+            }
+        }
+    }
+
+    public void remove(String url) {
+        synchronized (memory) {
+            memory.remove(url);
+        }
+        CrawlCache disk = this.disk;
+        if (disk != null) {
+            synchronized (disk) {
+                disk.remove(KEY_PREFIX + url);
+            }
+        }
+    }
+
+    private static final class CachedMeta {
+        final long timestamp;
+        final String json;
+
+        CachedMeta(long timestamp, String json) {
+            this.timestamp = timestamp;
+            this.json = json;
+        }
+
+        boolean expired(long now, long ttlMillis) {
+            return now - timestamp > ttlMillis || now < timestamp;
+        }
+
+        byte[] encode() {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(Long.BYTES + bytes.length).putLong(timestamp).put(bytes).array();
+        }
+
+        static CachedMeta decode(byte[] data) {
+            if (data == null || data.length <= Long.BYTES) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long timestamp = buffer.getLong();
+            return new CachedMeta(timestamp, new String(data, Long.BYTES, data.length - Long.BYTES, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package com.frostwire.search.telluride;
 
 import com.frostwire.search.AbstractSearchPerformer;
+import com.frostwire.search.CrawlCache;
 import com.frostwire.search.CrawlableSearchResult;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
@@ -27,23 +28,44 @@ import com.frostwire.util.http.HttpClient;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class TellurideSearchPerformer extends AbstractSearchPerformer {
     private static final Logger LOG = Logger.getLogger(TellurideSearchPerformer.class);
+    public static final int DEFAULT_TELLURIDE_RPC_PORT = 47999;
+    private static final long SERVER_WAIT_TIMEOUT_MILLIS = 15000;
+    // how often a performer waiting for an identical query checks if it was stopped
+    private static final long PENDING_QUERY_POLL_MILLIS = 250;
+    private static final TellurideMetaCache metaCache = new TellurideMetaCache(TellurideMetaCache.DEFAULT_TTL_MILLIS);
+    /**
+     * Queries to the telluride server in progress, keyed by url. Identical
+     * queries wait for the one in flight instead of starting another extraction.
+     */
+    private static final Map<String, PendingQuery> pendingQueries = new HashMap<>();
     private static Gson gson = null;
     private static Calendar calendar = null;
     private final CountDownLatch performerLatch;
-    private final int TELLURIDE_RPC_PORT = 47999;
+    private final int tellurideRpcPort;
     private final String url;
     private final TellurideSearchPerformerListener performerListener;
 
     public TellurideSearchPerformer(long token,
                                     String _url,
                                     TellurideSearchPerformerListener _performerListener) {
+        this(token, _url, DEFAULT_TELLURIDE_RPC_PORT, _performerListener);
+    }
+
+    public TellurideSearchPerformer(long token,
+                                    String _url,
+                                    int _tellurideRpcPort,
+                                    TellurideSearchPerformerListener _performerListener) {
         super(token);
 
         // Many of these could turn into a URL fix method.
@@ -52,6 +74,7 @@ public class TellurideSearchPerformer extends AbstractSearchPerformer {
         }
 
         url = _url;
+        tellurideRpcPort = _tellurideRpcPort;
         performerListener = _performerListener;
         performerLatch = new CountDownLatch(1);
         if (gson == null) {
@@ -62,37 +85,88 @@ public class TellurideSearchPerformer extends AbstractSearchPerformer {
         }
     }
 
+    /**
+     * Sets the persistent store for the metadata cache, usually the same one used for crawls.
+     */
+    public static void setCache(CrawlCache cache) {
+        metaCache.setDiskCache(cache);
+    }
+
+    public static TellurideMetaCache getMetaCache() {
+        return metaCache;
+    }
+
     @Override
     public void perform() {
-        int seconds_to_wait_for_telluride_server = 15;
-        while (!TellurideLauncher.SERVER_UP.get() && seconds_to_wait_for_telluride_server > 0) {
-            LOG.info("perform(): waiting for Telluride Server to be up... (" + seconds_to_wait_for_telluride_server + " secs left to time out)");
-            try {
-                Thread.sleep(1000);
-                seconds_to_wait_for_telluride_server--;
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        try {
+            String tellurideJSON = metaCache.get(url);
+            if (tellurideJSON != null) {
+                LOG.info("perform(): metadata cache hit for " + url);
+            } else {
+                tellurideJSON = queryServer();
+            }
+            if (tellurideJSON == null || isStopped()) {
+                LOG.info("perform(): finished.");
+                return;
             }
+            TellurideSearchPerformer.this.onMeta(tellurideJSON);
+        } catch (Throwable e) {
+            // don't keep serving metadata we couldn't use
+            metaCache.remove(url);
+            LOG.error(e.getMessage(), e);
+            TellurideSearchPerformer.this.onError(e.getMessage());
         }
+        LOG.info("perform(): finished.");
+    }
 
-        if (seconds_to_wait_for_telluride_server == 0) {
-            LOG.info("perform(): timed out waiting for telluride server to start. finished.");
-            return;
+    /**
+     * Asks the telluride server for the metadata of the url, unless an identical
+     * query is already in flight, in which case its result is shared.
+     *
+     * @return the JSON metadata or null if the server never came up, or if the
+     * performer was stopped while waiting for the query in flight
+     */
+    private String queryServer() throws Throwable {
+        PendingQuery query;
+        boolean owner = false;
+        synchronized (pendingQueries) {
+            query = pendingQueries.get(url);
+            if (query == null) {
+                query = new PendingQuery();
+                pendingQueries.put(url, query);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            LOG.info("perform(): waiting for in-flight query of " + url);
+            return query.await(this);
         }
-
         try {
+            if (!TellurideLauncher.waitForServer(SERVER_WAIT_TIMEOUT_MILLIS)) {
+                LOG.info("perform(): timed out waiting for telluride server to start.");
+                query.complete(null, null);
+                return null;
+            }
             HttpClient httpClient = HttpClientFactory.newInstance();
             String queryUrl = String.format("http://127.0.0.1:%d/?url=%s",
-                    TELLURIDE_RPC_PORT,
+                    tellurideRpcPort,
                     UrlUtils.encode(url));
             LOG.info("perform(): working on " + queryUrl);
-            String tellurideJSON = httpClient.get(queryUrl);
-            TellurideSearchPerformer.this.onMeta(tellurideJSON);
+            String json = httpClient.get(queryUrl);
+            if (json == null) {
+                throw new IOException("No response from telluride server for " + url);
+            }
+            metaCache.put(url, json);
+            query.complete(json, null);
+            return json;
         } catch (Throwable e) {
-            LOG.error(e.getMessage(), e);
-            TellurideSearchPerformer.this.onError(e.getMessage());
+            query.complete(null, e);
+            throw e;
+        } finally {
+            synchronized (pendingQueries) {
+                pendingQueries.remove(url);
+            }
         }
-        LOG.info("perform(): finished.");
     }
 
     @Override
@@ -212,6 +286,30 @@ public class TellurideSearchPerformer extends AbstractSearchPerformer {
         return codec == null || "none".equals(codec);
     }
 
+    private static final class PendingQuery {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private String json;
+        private Throwable error;
+
+        void complete(String json, Throwable error) {
+            this.json = json;
+            this.error = error;
+            done.countDown();
+        }
+
+        String await(TellurideSearchPerformer performer) throws Throwable {
+            while (!done.await(PENDING_QUERY_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (performer.isStopped()) {
+                    return null;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return json;
+        }
+    }
+
     public static class TellurideJSONResult {
         public String id;
         public String ext;
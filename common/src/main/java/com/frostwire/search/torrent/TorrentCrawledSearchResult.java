@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,6 +18,7 @@
 
 package com.frostwire.search.torrent;
 
+import com.frostwire.bittorrent.TorrentFiles;
 import com.frostwire.jlibtorrent.TorrentInfo;
 import com.frostwire.search.AbstractCrawledSearchResult;
 import org.apache.commons.io.FilenameUtils;
@@ -27,25 +28,28 @@ import org.apache.commons.io.FilenameUtils;
  * @author aldenml
  */
 public final class TorrentCrawledSearchResult extends AbstractCrawledSearchResult<TorrentCrawlableSearchResult> implements TorrentItemSearchResult {
-    private final TorrentInfo ti;
+    private final TorrentFiles torrent;
     private final int fileIndex;
     private final String filePath;
     private final String displayName;
     private final String filename;
     private final double size;
 
-    public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, TorrentInfo ti, int fileIndex, String filePath, long fileSize) {
+    public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, TorrentFiles torrent, int fileIndex) {
         super(sr);
-        this.ti = ti;
+        this.torrent = torrent;
         this.fileIndex = fileIndex;
-        this.filePath = filePath;
+        this.filePath = torrent.filePath(fileIndex);
         this.filename = FilenameUtils.getName(this.filePath);
-        this.size = fileSize;
+        this.size = torrent.fileSize(fileIndex);
         this.displayName = FilenameUtils.getBaseName(this.filename);
     }
 
+    /**
+     * Decodes the full torrent, only needed to start the download.
+     */
     public TorrentInfo getTorrentInfo() {
-        return ti;
+        return torrent.torrentInfo();
     }
 
     public int getFileIndex() {
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -53,16 +53,7 @@ public class SoundcloudDownload extends HttpDownload {
         if (file != null && file.exists() && file.length() <= COVERART_FETCH_THRESHOLD) {
             byte[] cover = downloadCoverArt(sr.getThumbnailUrl());
             if (cover != null && cover.length > 0) {
-                File temp = new File(file.getAbsolutePath() + ".tmp");
-                if (file.renameTo(temp)) {
-                    if (setAlbumArt(sr, cover, temp.getAbsolutePath(), file.getAbsolutePath())) {
-                        temp.delete();
-                    } else {
-                        temp.renameTo(file);
-                    }
-                } else {
-                    LOG.warn("Error moving temporary file to stage one for cover update");
-                }
+                setAlbumArt(sr, cover, file.getAbsolutePath());
             }
         }
     }
@@ -78,9 +69,9 @@ public class SoundcloudDownload extends HttpDownload {
         return null;
     }
 
-    private static boolean setAlbumArt(SoundcloudSearchResult sr, byte[] cover, String inPath, String outPath) {
+    private static boolean setAlbumArt(SoundcloudSearchResult sr, byte[] cover, String path) {
         try {
-            Mp3File mp3 = new Mp3File(inPath);
+            Mp3File mp3 = new Mp3File(path);
             ID3Wrapper newId3Wrapper = new ID3Wrapper(new ID3v1Tag(), new ID3v23Tag());
             newId3Wrapper.setAlbum(sr.getUsername() + ": " + sr.getDisplayName() + " via SoundCloud.com");
             newId3Wrapper.setArtist(sr.getUsername());
@@ -90,7 +81,7 @@ public class SoundcloudDownload extends HttpDownload {
             newId3Wrapper.getId3v2Tag().setPadding(true);
             mp3.setId3v1Tag(newId3Wrapper.getId3v1Tag());
             mp3.setId3v2Tag(newId3Wrapper.getId3v2Tag());
-            mp3.save(outPath);
+            mp3.saveInPlace();
             return true;
         } catch (Throwable e) {
             LOG.error("Error setting art information for soundcloud download", e);
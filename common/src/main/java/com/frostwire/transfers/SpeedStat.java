@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,18 +18,59 @@
 
 package com.frostwire.transfers;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
+ * Meters the bytes of a transfer, or of many: the total, an exponentially
+ * weighted moving average of the rate and the estimated time left.
+ * <p>
+ * The average is time based, a sample of {@code t} milliseconds weighs
+ * {@code 1 - e^(-t/window)}, so the rate reacts the same no matter how often
+ * it's updated. It's corrected for the missing history at the start, so the
+ * first samples aren't biased towards zero. The clock is only read every
+ * {@link #CHECK_BYTES} bytes, and the readers account for the time since the
+ * last sample themselves, so a stalled transfer goes to zero even if nobody
+ * updates it.
+ * <p>
+ * Lock free, safe to update and read from any number of threads.
+ *
  * @author gubatron
  * @author aldenml
  */
-final class SpeedStat {
-    private static final int INTERVAL_MILLISECONDS = 1000;
-    private long totalBytes;
-    private long averageSpeed; // in bytes
-    private long speedMarkTimestamp;
-    private long lastTotalBytes;
-
-    SpeedStat() {
+public final class SpeedStat {
+    /**
+     * The default averaging window.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 5000;
+    /**
+     * The minimum time between samples.
+     */
+    private static final long TICK_NANOS = 250_000_000L;
+    /**
+     * The clock is read each time the total crosses a multiple of this.
+     */
+    private static final int CHECK_BYTES = 32 * 1024;
+
+    private static final Clock SYSTEM_CLOCK = System::nanoTime;
+
+    private final double windowNanos;
+    private final Clock clock;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicReference<Sample> sample;
+
+    public SpeedStat() {
+        this(DEFAULT_WINDOW_MILLIS, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param windowMillis the averaging window, longer is smoother and slower to react
+     * @param clock        the time source, in nanoseconds
+     */
+    public SpeedStat(long windowMillis, Clock clock) {
+        this.windowNanos = windowMillis * 1_000_000d;
+        this.clock = clock;
+        this.sample = new AtomicReference<>(new Sample(clock.nanoTime(), 0, 0, 0));
     }
 
     private static long eta(double size, double total, double speed) {
@@ -47,29 +88,89 @@ final class SpeedStat {
         return size > 0 ? (int) ((total * 100) / size) : 0;
     }
 
-    long totalBytes() {
-        return totalBytes;
+    public long totalBytes() {
+        return totalBytes.get();
     }
 
-    long averageSpeed() {
-        return averageSpeed;
+    /**
+     * @return the average rate in bytes per second
+     */
+    public long averageSpeed() {
+        return (long) rate(clock.nanoTime());
     }
 
     public void update(long numBytes) {
-        long now = System.currentTimeMillis();
-        totalBytes += numBytes;
-        if (now - speedMarkTimestamp > INTERVAL_MILLISECONDS) {
-            averageSpeed = ((totalBytes - lastTotalBytes) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            lastTotalBytes = totalBytes;
+        long total = totalBytes.addAndGet(numBytes);
+        if ((total - numBytes) / CHECK_BYTES != total / CHECK_BYTES) {
+            tick(clock.nanoTime(), total);
         }
     }
 
-    long eta(double size) {
-        return eta(size, totalBytes, averageSpeed);
+    /**
+     * Restarts the meter at {@code totalBytes}, for instance when resuming
+     * from a partial file. The average starts again from zero.
+     */
+    public void reset(long totalBytes) {
+        this.totalBytes.set(totalBytes);
+        sample.set(new Sample(clock.nanoTime(), totalBytes, 0, 0));
+    }
+
+    /**
+     * @return the seconds left to transfer {@code size} bytes, 0 if done, -1 if unknown
+     */
+    public long eta(double size) {
+        return eta(size, totalBytes(), rate(clock.nanoTime()));
     }
 
     public int progress(double size) {
-        return progress(size, totalBytes);
+        return progress(size, totalBytes());
+    }
+
+    private void tick(long now, long total) {
+        Sample s = sample.get();
+        if (now - s.time >= TICK_NANOS) {
+            // another writer may have ticked meanwhile, then this sample waits for the next check
+            sample.compareAndSet(s, next(s, now, total));
+        }
+    }
+
+    private double rate(long now) {
+        Sample s = sample.get();
+        if (now - s.time >= TICK_NANOS) {
+            s = next(s, now, totalBytes());
+        }
+        return s.rate();
+    }
+
+    private Sample next(Sample s, long now, long total) {
+        double current = (total - s.total) * 1e9 / (now - s.time);
+        double alpha = 1 - Math.exp(-(now - s.time) / windowNanos);
+        return new Sample(now, total, s.average + alpha * (current - s.average), s.weight + alpha * (1 - s.weight));
+    }
+
+    /**
+     * A monotonic time source, in nanoseconds.
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private static final class Sample {
+        final long time;
+        final long total;
+        final double average;
+        // the weight of the samples so far, the rest of the average is the initial zero
+        final double weight;
+
+        Sample(long time, long total, double average, double weight) {
+            this.time = time;
+            this.total = total;
+            this.average = average;
+            this.weight = weight;
+        }
+
+        double rate() {
+            return weight > 0 ? average / weight : 0;
+        }
     }
 }
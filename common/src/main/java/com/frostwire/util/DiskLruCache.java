@@ -0,0 +1,608 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of byte values in files, bounded by their total size, evicting the
+ * least recently used ones.
+ * <p>
+ * Each value is a file named after its key by a {@link KeyHasher}, the hex MD5
+ * by default. The order of access is kept in an append-only journal, replayed
+ * when the cache is first used and rewritten when it's mostly redundant. If
+ * there's no journal, the files in the directory are taken in the order of
+ * their modification time.
+ * <p>
+ * The index is guarded by the cache, the files are read and written outside
+ * of it, so readers don't wait for each other or for the writers. A value is
+ * written to a temporary file and renamed, a reader sees the old value or the
+ * new one. {@link #getBuffer(String)} maps the big values instead of copying
+ * them.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DiskLruCache implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(DiskLruCache.class);
+
+    static final String JOURNAL_FILE = "cache.journal";
+    private static final String JOURNAL_TMP_FILE = "cache.journal.tmp";
+    private static final String JOURNAL_HEADER = "frostwire.DiskLruCache 1";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int REDUNDANT_OPS_COMPACT = 2000;
+    private static final int MAP_THRESHOLD = 256 * 1024;
+
+    /**
+     * Maps the keys to the relative paths of their files.
+     */
+    public interface KeyHasher {
+        String hash(String key);
+    }
+
+    public static final KeyHasher MD5 = key -> digest("MD5", key);
+
+    public static final KeyHasher SHA1 = key -> digest("SHA-1", key);
+
+    private final File dir;
+    private final long maxBytes;
+    private final KeyHasher hasher;
+    private final AtomicLong tmpCounter = new AtomicLong();
+
+    // the lengths by file name, in access order, null until first used
+    private LinkedHashMap<String, Long> index;
+    private long bytes;
+    private Writer journal;
+    private int redundantOps;
+    private boolean closed;
+
+    public DiskLruCache(File dir, long maxBytes) {
+        this(dir, maxBytes, MD5);
+    }
+
+    public DiskLruCache(File dir, long maxBytes, KeyHasher hasher) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.hasher = hasher;
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public long maxSize() {
+        return maxBytes;
+    }
+
+    public synchronized long size() {
+        return index() != null ? bytes : 0;
+    }
+
+    public synchronized int entries() {
+        return index() != null ? index.size() : 0;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public boolean contains(String key) {
+        String name = name(key);
+        synchronized (this) {
+            return name != null && index() != null && index.containsKey(name);
+        }
+    }
+
+    /**
+     * @return the value, or null if it's not cached or can't be read
+     */
+    public byte[] get(String key) {
+        String name = lookup(key);
+        if (name == null) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(new File(dir, name))) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Value too big: " + size);
+            }
+            byte[] data = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill it
+            }
+            return data;
+        } catch (FileNotFoundException e) {
+            // evicted or deleted since the lookup
+            forget(name);
+        } catch (IOException e) {
+            LOG.warn("Error reading cache entry " + name + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * The value mapped read only if it's big, or read in a heap buffer. A
+     * mapped value is not copied, and stays valid if the entry is replaced or
+     * evicted, on the systems that allow to do that.
+     *
+     * @return the value, or null if it's not cached or can't be read
+     */
+    public ByteBuffer getBuffer(String key) {
+        String name = lookup(key);
+        if (name == null) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(new File(dir, name))) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill it
+            }
+            buffer.flip();
+            return buffer;
+        } catch (FileNotFoundException e) {
+            forget(name);
+        } catch (IOException e) {
+            LOG.warn("Error reading cache entry " + name + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return a stream of the value, the caller closes it, or null if it's not cached
+     */
+    public InputStream getInputStream(String key) {
+        String name = lookup(key);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return new FileInputStream(new File(dir, name));
+        } catch (FileNotFoundException e) {
+            forget(name);
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the value was not cached, because it's bigger than the cache or of an error
+     */
+    public boolean put(String key, final byte[] data) {
+        return put(key, out -> out.write(data), data.length);
+    }
+
+    /**
+     * Caches what's left in the stream, the caller closes it.
+     */
+    public boolean put(String key, final InputStream in) {
+        return put(key, out -> {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }, -1);
+    }
+
+    public boolean remove(String key) {
+        String name = name(key);
+        synchronized (this) {
+            Long length = name != null && index() != null ? index.remove(name) : null;
+            if (length == null) {
+                return false;
+            }
+            bytes -= length;
+            delete(name);
+            journal("D " + name);
+            redundantOps++;
+            compactIfNeeded();
+            return true;
+        }
+    }
+
+    /**
+     * Removes all the values, the cache can still be used.
+     */
+    public synchronized void clear() {
+        if (index() == null) {
+            return;
+        }
+        for (String name : index.keySet()) {
+            delete(name);
+        }
+        index.clear();
+        bytes = 0;
+        rebuildJournal();
+    }
+
+    public synchronized void flush() {
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                LOG.warn("Error flushing the cache journal: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        closeJournal();
+        closed = true;
+    }
+
+    private interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private boolean put(String key, Content content, long length) {
+        if (length > maxBytes) {
+            return false;
+        }
+        String name = name(key);
+        if (name == null) {
+            return false;
+        }
+        File file = new File(dir, name);
+        File tmp = new File(dir, name + "." + tmpCounter.incrementAndGet() + TMP_SUFFIX);
+        synchronized (this) {
+            if (index() == null) {
+                return false;
+            }
+        }
+        try {
+            File parent = tmp.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Can't create " + parent);
+            }
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                content.writeTo(out);
+            }
+            length = tmp.length();
+            if (length > maxBytes) {
+                tmp.delete();
+                return false;
+            }
+            synchronized (this) {
+                if (index() == null) {
+                    tmp.delete();
+                    return false;
+                }
+                if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                    throw new IOException("Can't rename " + tmp + " to " + file);
+                }
+                Long old = index.put(name, length);
+                bytes += length - (old != null ? old : 0);
+                if (old != null) {
+                    redundantOps++;
+                }
+                journal("C " + length + " " + name);
+                trim(name);
+                flush();
+                compactIfNeeded();
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Error writing cache entry " + name + ": " + e.getMessage());
+            tmp.delete();
+            return false;
+        }
+    }
+
+    /**
+     * @return the file name of the key if cached, recording the access
+     */
+    private String lookup(String key) {
+        String name = name(key);
+        synchronized (this) {
+            if (name == null || index() == null || index.get(name) == null) {
+                return null;
+            }
+            journal("R " + name);
+            redundantOps++;
+            compactIfNeeded();
+        }
+        return name;
+    }
+
+    private synchronized void forget(String name) {
+        if (index != null) {
+            Long length = index.remove(name);
+            if (length != null) {
+                bytes -= length;
+                journal("D " + name);
+                redundantOps++;
+            }
+        }
+    }
+
+    /**
+     * @return the file name of the key, or null if it can't be cached
+     */
+    private String name(String key) {
+        String name = hasher.hash(key);
+        if (name == null) {
+            return null;
+        }
+        name = name.replace(File.separatorChar, '/');
+        if (name.isEmpty() || name.endsWith(TMP_SUFFIX) || name.startsWith(JOURNAL_FILE) || name.indexOf('\n') != -1) {
+            LOG.warn("Key not cached, invalid file name: " + name);
+            return null;
+        }
+        for (String segment : name.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                LOG.warn("Key not cached, invalid file name: " + name);
+                return null;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Evicts the least recently used entries, but the one just written, until it fits.
+     */
+    private void trim(String keep) {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            if (e.getKey().equals(keep)) {
+                continue;
+            }
+            bytes -= e.getValue();
+            delete(e.getKey());
+            journal("D " + e.getKey());
+            redundantOps++;
+            it.remove();
+        }
+    }
+
+    private void delete(String name) {
+        File file = new File(dir, name);
+        if (!file.delete() && file.exists()) {
+            LOG.warn("Unable to delete cache entry " + file);
+        }
+    }
+
+    private void journal(String line) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(line);
+            journal.write('\n');
+        } catch (IOException e) {
+            LOG.warn("Error writing the cache journal: " + e.getMessage());
+            closeJournal();
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (redundantOps >= REDUNDANT_OPS_COMPACT && redundantOps >= index.size()) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * Writes a journal with the current entries only, in access order.
+     */
+    private void rebuildJournal() {
+        closeJournal();
+        File tmp = new File(dir, JOURNAL_TMP_FILE);
+        try {
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+                w.write(JOURNAL_HEADER);
+                w.write('\n');
+                for (Map.Entry<String, Long> e : index.entrySet()) {
+                    w.write("C " + e.getValue() + " " + e.getKey() + "\n");
+                }
+            }
+            File file = new File(dir, JOURNAL_FILE);
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Can't rename " + tmp);
+            }
+            journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            redundantOps = 0;
+        } catch (IOException e) {
+            // still usable, without the journal the files are taken by modification time on next use
+            LOG.warn("Error writing the cache journal: " + e.getMessage());
+            new File(dir, JOURNAL_FILE).delete();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing the cache journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * @return the index, read on first use, or null if closed or the directory can't be used
+     */
+    private LinkedHashMap<String, Long> index() {
+        if (index == null && !closed) {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                LOG.warn("Can't create cache directory " + dir);
+                return null;
+            }
+            index = new LinkedHashMap<>(16, 0.75f, true);
+            List<File> files = new ArrayList<>();
+            list(dir, "", files);
+            if (!readJournal(files)) {
+                index.clear();
+                adopt(files);
+            }
+            Set<String> names = new HashSet<>();
+            for (File f : files) {
+                names.add(relativeName(f));
+            }
+            // the files not in the journal, its end could be lost
+            for (File f : files) {
+                if (!index.containsKey(relativeName(f))) {
+                    f.delete();
+                }
+            }
+            bytes = 0;
+            for (Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> e = it.next();
+                if (names.contains(e.getKey())) {
+                    bytes += e.getValue();
+                } else {
+                    it.remove();
+                }
+            }
+            rebuildJournal();
+            trim(null);
+        }
+        return closed ? null : index;
+    }
+
+    private boolean readJournal(List<File> files) {
+        File file = new File(dir, JOURNAL_FILE);
+        if (!file.exists()) {
+            return false;
+        }
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!JOURNAL_HEADER.equals(r.readLine())) {
+                return false;
+            }
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("C ")) {
+                    int space = line.indexOf(' ', 2);
+                    if (space == -1) {
+                        continue;
+                    }
+                    try {
+                        index.put(line.substring(space + 1), Long.parseLong(line.substring(2, space)));
+                    } catch (NumberFormatException e) {
+                        // a torn line
+                    }
+                } else if (line.startsWith("R ")) {
+                    index.get(line.substring(2));
+                } else if (line.startsWith("D ")) {
+                    index.remove(line.substring(2));
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Error reading the cache journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Takes the files already in the directory, by modification time.
+     */
+    private void adopt(List<File> files) {
+        final long[] modified = new long[files.size()];
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) {
+            modified[i] = files.get(i).lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        for (int i : order) {
+            File f = files.get(i);
+            index.put(relativeName(f), f.length());
+        }
+    }
+
+    private String relativeName(File f) {
+        return f.getPath().substring(dir.getPath().length() + 1).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Lists the files of the entries, deleting the temporary ones.
+     */
+    private static void list(File dir, String prefix, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            String name = f.getName();
+            if (f.isDirectory()) {
+                list(f, prefix + name + "/", files);
+            } else if (name.endsWith(TMP_SUFFIX)) {
+                f.delete();
+            } else if (!(prefix.isEmpty() && name.startsWith(JOURNAL_FILE))) {
+                files.add(f);
+            }
+        }
+    }
+
+    private static String digest(String algorithm, String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(algorithm);
+            byte[] hash = md.digest(key.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xf, 16);
+                hex[2 * i + 1] = Character.forDigit(hash[i] & 0xf, 16);
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  *            Marcelina Knitter (@marcelinkaaa)
- * Copyright (c) 2011-2020, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,81 +18,256 @@
 
 package com.frostwire.util;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * A thread safe frequency counter.
+ * <p>
+ * By default every key is counted exactly, with one primitive counter per key,
+ * updates from many threads don't block each other. For a huge number of keys,
+ * {@link #sketched(int)} keeps only the approximate top K keys, the counts come
+ * from a count-min sketch of fixed size and can only be overestimated.
+ * <p>
+ * {@link #histogram()} is a consistent snapshot: it waits for the updates in
+ * progress and blocks the new ones while copying.
+ */
 public final class HistoHashMap<K> {
-    private final HashMap<K, Integer> map = new HashMap<>();
+    private static final int SKETCH_DEPTH = 4;
+
     // creates the comparator as a field to avoid GC pressure every
     // time histogram is called, but still not static (no need)
     private final Comparator<Entry<K, Integer>> cmp = (o1, o2) -> o2.getValue().compareTo(o1.getValue());
+    // updates share the read lock, the snapshot and reset take the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<K, AtomicInteger> map;
+    private final Sketch<K> sketch;
+
+    public HistoHashMap() {
+        this.map = new ConcurrentHashMap<>();
+        this.sketch = null;
+    }
+
+    private HistoHashMap(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("Invalid top K: " + topK);
+        }
+        this.map = null;
+        this.sketch = new Sketch<>(topK);
+    }
+
+    /**
+     * A counter of bounded memory that tracks the approximate top {@code topK} keys.
+     */
+    public static <K> HistoHashMap<K> sketched(int topK) {
+        return new HistoHashMap<>(topK);
+    }
 
     /**
      * (Cheap operation)
      *
      * @param key the key
-     * @return the frequency
+     * @return the frequency, estimated in sketch mode
      */
     public int update(K key) {
-        int r = 1;
-        // This is a problematic operation in light of the heavy concurrency to which
-        // an instance of this class is subject to. The problem is that when the reset()
-        // is called, the following operations are not atomic and can yield a NPE.
-        // Still, there is no need of synchronization, since a simple call to map.getOrDefault
-        // could do the trick, but that method is not in android API 19.
-        if (map.containsKey(key)) {
-            Integer n = map.get(key);
+        lock.readLock().lock();
+        try {
+            if (sketch != null) {
+                return sketch.update(key);
+            }
+            AtomicInteger n = map.get(key);
             if (n == null) {
-                // a reset was called in the middle, this key can't be considered
-                // since this update was called before the reset
-                r = 0;
-            } else {
-                r = 1 + n;
+                AtomicInteger newN = new AtomicInteger();
+                n = map.putIfAbsent(key, newN);
+                if (n == null) {
+                    n = newN;
+                }
             }
+            return n.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
         }
-        map.put(key, r);
-        return r;
     }
 
     public int get(K key) {
-        try {
-            //noinspection ConstantConditions
-            return map.get(key);
-        } catch (NullPointerException npe) {
-            return 0;
+        if (sketch != null) {
+            return sketch.estimate(key);
         }
+        AtomicInteger n = map.get(key);
+        return n != null ? n.get() : 0;
     }
 
     /**
      * (Expensive operation)
-     * Returns sorted list of entries.
+     * Returns the entries sorted by descending frequency, in sketch mode
+     * only the tracked top keys.
      *
      * @return the list
      */
     public List<Entry<K, Integer>> histogram() {
+        ArrayList<Entry<K, Integer>> list;
+        lock.writeLock().lock();
         try {
-            ArrayList<Entry<K, Integer>> list = new ArrayList<>(map.entrySet());
-            Collections.sort(list, cmp);
-            return Collections.unmodifiableList(list);
-        } catch (ConcurrentModificationException e) {
-            // working with no synchronized structures, even with the copies
-            // it's possible that this exception can happens, but the cost
-            // of synchronization is bigger than the lack of accuracy
-            // ignore
-            return Collections.emptyList();
+            if (sketch != null) {
+                list = sketch.snapshot();
+            } else {
+                list = new ArrayList<>(map.size());
+                for (Entry<K, AtomicInteger> e : map.entrySet()) {
+                    list.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().get()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
+        Collections.sort(list, cmp);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return the most frequent key, or null if empty
+     */
+    public K top() {
+        List<Entry<K, Integer>> h = histogram();
+        return h.isEmpty() ? null : h.get(0).getKey();
     }
 
+    /**
+     * @return the number of distinct keys, in sketch mode the number of tracked keys
+     */
     public int getKeyCount() {
-        return map.size();
+        return sketch != null ? sketch.tracked() : map.size();
     }
 
     public void reset() {
-        map.clear();
+        lock.writeLock().lock();
+        try {
+            if (sketch != null) {
+                sketch.reset();
+            } else {
+                map.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A count-min sketch, and the keys with the highest estimates seen so far.
+     */
+    private static final class Sketch<K> {
+        private final int topK;
+        private final int mask;
+        private final AtomicIntegerArray table;
+        private final Map<K, Integer> candidates;
+        private int minCandidate;
+
+        Sketch(int topK) {
+            this.topK = topK;
+            // a width of 64 counters per tracked key keeps the overestimation small
+            int width = Integer.highestOneBit(Math.max(1024, Math.min(topK * 64, 1 << 20)) - 1) << 1;
+            this.mask = width - 1;
+            this.table = new AtomicIntegerArray(SKETCH_DEPTH * width);
+            this.candidates = new HashMap<>();
+        }
+
+        int update(K key) {
+            int h = hash(key);
+            int estimate = Integer.MAX_VALUE;
+            for (int i = 0; i < SKETCH_DEPTH; i++) {
+                estimate = Math.min(estimate, table.incrementAndGet(index(i, h)));
+            }
+            synchronized (candidates) {
+                if (candidates.containsKey(key)) {
+                    candidates.put(key, estimate);
+                } else if (candidates.size() < topK) {
+                    candidates.put(key, estimate);
+                    minCandidate = candidates.size() == 1 ? estimate : Math.min(minCandidate, estimate);
+                } else if (estimate > minCandidate) {
+                    evictMin();
+                    candidates.put(key, estimate);
+                    minCandidate = min();
+                }
+            }
+            return estimate;
+        }
+
+        int estimate(K key) {
+            int h = hash(key);
+            int estimate = Integer.MAX_VALUE;
+            for (int i = 0; i < SKETCH_DEPTH; i++) {
+                estimate = Math.min(estimate, table.get(index(i, h)));
+            }
+            return estimate;
+        }
+
+        ArrayList<Entry<K, Integer>> snapshot() {
+            synchronized (candidates) {
+                ArrayList<Entry<K, Integer>> list = new ArrayList<>(candidates.size());
+                for (K key : candidates.keySet()) {
+                    // the current estimate, the stored one is from its last update
+                    list.add(new AbstractMap.SimpleImmutableEntry<>(key, estimate(key)));
+                }
+                return list;
+            }
+        }
+
+        int tracked() {
+            synchronized (candidates) {
+                return candidates.size();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, 0);
+            }
+            synchronized (candidates) {
+                candidates.clear();
+                minCandidate = 0;
+            }
+        }
+
+        private void evictMin() {
+            K minKey = null;
+            int min = Integer.MAX_VALUE;
+            for (Entry<K, Integer> e : candidates.entrySet()) {
+                if (e.getValue() < min) {
+                    min = e.getValue();
+                    minKey = e.getKey();
+                }
+            }
+            candidates.remove(minKey);
+        }
+
+        private int min() {
+            int min = Integer.MAX_VALUE;
+            for (Integer n : candidates.values()) {
+                min = Math.min(min, n);
+            }
+            return min;
+        }
+
+        private int index(int row, int h) {
+            // double hashing, the second hash is odd so every row differs
+            int h2 = (h >>> 16) | 1;
+            return row * (mask + 1) + ((h + row * h2) & mask);
+        }
+
+        private static int hash(Object key) {
+            int h = key != null ? key.hashCode() : 0;
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 15);
+        }
     }
 }
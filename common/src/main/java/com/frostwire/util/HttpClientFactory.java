@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2019, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import com.frostwire.util.http.OkHttpClientWrapper;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -35,6 +36,7 @@ public class HttpClientFactory {
 
     private static final Map<HttpContext, OkHttpClientWrapper> fwOKHTTPClients = new HashMap<>();
     private static final Object okHTTPClientLock = new Object();
+    private static final Map<HttpContext, HttpClient> overrides = new ConcurrentHashMap<>();
 
     private HttpClientFactory() {
     }
@@ -44,6 +46,10 @@ public class HttpClientFactory {
     }
 
     public static HttpClient getInstance(HttpContext context) {
+        HttpClient override = overrides.get(context);
+        if (override != null) {
+            return override;
+        }
         if (isWindowsXP()) {
             return new JdkHttpClient();
         }
@@ -58,6 +64,18 @@ public class HttpClientFactory {
         return fwOKHTTPClients.get(context);
     }
 
+    /**
+     * Replaces the client of a context, for instance with a {@link com.frostwire.util.http.ReplayHttpClient}
+     * in tests, null restores the default one. Only the clients obtained afterwards are affected.
+     */
+    public static void setInstance(HttpContext context, HttpClient client) {
+        if (client != null) {
+            overrides.put(context, client);
+        } else {
+            overrides.remove(context);
+        }
+    }
+
     private static Map<HttpContext, ThreadPool> buildThreadPools() {
         final HashMap<HttpContext, ThreadPool> map = new HashMap<>();
         map.put(HttpContext.SEARCH, new ThreadPool("OkHttpClient-searches", 4, 16, 10, new LinkedBlockingQueue<>(), true));
@@ -0,0 +1,351 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a list of ids, a play queue, in a binary file that is appended to on
+ * every change.
+ * <p>
+ * The ids are written as the zigzag varint of the difference with the previous
+ * one, a couple of bytes for the ids of an album or a folder. The file starts
+ * with a snapshot of the list, followed by splices: the ids replacing a range of
+ * the list, which is what an insertion, a removal or a move are. A save compares
+ * the list with the last one saved and appends only the changed range, the file
+ * is rewritten as a single snapshot when the splices get bigger than it.
+ * <p>
+ * Each record has a checksum, a record torn by a crash is dropped on load along
+ * with the ones after it.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class IdListStore {
+
+    private static final Logger LOG = Logger.getLogger(IdListStore.class);
+
+    private static final byte[] MAGIC = {'F', 'W', 'Q', 1};
+    private static final int SNAPSHOT = 1;
+    private static final int SPLICE = 2;
+    private static final int MIN_COMPACT_SIZE = 64 * 1024;
+
+    private final File file;
+
+    // the list in the file, null if unknown
+    private long[] saved;
+    private int savedLength;
+    // the valid bytes of the file and the size of its snapshot
+    private long fileLength;
+    private long snapshotLength;
+
+    public IdListStore(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the ids in the file, an empty array if there's no file or it can't be read
+     */
+    public synchronized long[] load() {
+        saved = null;
+        savedLength = 0;
+        byte[] data;
+        try {
+            if (!file.exists()) {
+                return new long[0];
+            }
+            try (InputStream in = new FileInputStream(file)) {
+                data = IOUtils.toByteArray(in);
+            }
+        } catch (IOException e) {
+            LOG.warn("Error reading " + file + ": " + e.getMessage());
+            return new long[0];
+        }
+        if (data.length < MAGIC.length || !Arrays.equals(MAGIC, Arrays.copyOf(data, MAGIC.length))) {
+            return new long[0];
+        }
+        long[] list = new long[0];
+        int length = 0;
+        int[] pos = {MAGIC.length};
+        CRC32 crc = new CRC32();
+        while (pos[0] < data.length) {
+            int start = pos[0];
+            try {
+                int type = data[pos[0]++] & 0xff;
+                int size = (int) readVarLong(data, pos);
+                int payload = pos[0];
+                if (size < 0 || payload + size + 4 > data.length) {
+                    throw new IllegalArgumentException("truncated record");
+                }
+                crc.reset();
+                crc.update(data, start, payload + size - start);
+                if ((int) crc.getValue() != readInt(data, payload + size)) {
+                    throw new IllegalArgumentException("bad checksum");
+                }
+                if (type == SNAPSHOT) {
+                    list = decode(data, pos);
+                    length = list.length;
+                    snapshotLength = payload + size + 4 - start;
+                } else if (type == SPLICE) {
+                    int first = (int) readVarLong(data, pos);
+                    int removed = (int) readVarLong(data, pos);
+                    if (first < 0 || removed < 0 || first + removed > length) {
+                        throw new IllegalArgumentException("bad splice");
+                    }
+                    long[] ids = decode(data, pos, first > 0 ? list[first - 1] : 0);
+                    int newLength = length - removed + ids.length;
+                    if (newLength > list.length) {
+                        list = Arrays.copyOf(list, Math.max(newLength, list.length + (list.length >> 1)));
+                    }
+                    System.arraycopy(list, first + removed, list, first + ids.length, length - first - removed);
+                    System.arraycopy(ids, 0, list, first, ids.length);
+                    length = newLength;
+                } else {
+                    throw new IllegalArgumentException("unknown record " + type);
+                }
+                pos[0] = payload + size + 4;
+            } catch (RuntimeException e) {
+                LOG.warn("Dropping the end of " + file + " at " + start + ": " + e.getMessage());
+                pos[0] = start;
+                break;
+            }
+        }
+        saved = Arrays.copyOf(list, length);
+        savedLength = length;
+        fileLength = pos[0];
+        return Arrays.copyOf(list, length);
+    }
+
+    /**
+     * Saves the first {@code length} ids, appending the difference with the
+     * ids loaded or saved before, or writing them all if there are none.
+     *
+     * @return false if they couldn't be written
+     */
+    public synchronized boolean save(long[] ids, int length) {
+        if (ids == null) {
+            ids = new long[0];
+            length = 0;
+        }
+        try {
+            if (saved == null) {
+                writeSnapshot(ids, length);
+            } else {
+                int limit = Math.min(length, savedLength);
+                int prefix = 0;
+                while (prefix < limit && ids[prefix] == saved[prefix]) {
+                    prefix++;
+                }
+                if (prefix == length && length == savedLength) {
+                    return true;
+                }
+                int suffix = 0;
+                while (suffix < limit - prefix && ids[length - 1 - suffix] == saved[savedLength - 1 - suffix]) {
+                    suffix++;
+                }
+                int removed = savedLength - prefix - suffix;
+                int count = length - prefix - suffix;
+                if (fileLength + 16 + 10L * count > Math.max(MIN_COMPACT_SIZE, 2 * snapshotLength)) {
+                    writeSnapshot(ids, length);
+                } else {
+                    Buffer payload = new Buffer(16 + 3 * count);
+                    writeVarLong(payload, prefix);
+                    writeVarLong(payload, removed);
+                    encode(payload, ids, prefix, count, prefix > 0 ? ids[prefix - 1] : 0);
+                    appendRecord(SPLICE, payload);
+                    saved = Arrays.copyOf(ids, length);
+                    savedLength = length;
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error saving " + file + ": " + e.getMessage());
+            // the file is unknown now, the next save rewrites it
+            saved = null;
+            return false;
+        }
+        return true;
+    }
+
+    private void writeSnapshot(long[] ids, int length) throws IOException {
+        Buffer payload = new Buffer(8 + 3 * length);
+        encode(payload, ids, 0, length, 0);
+        byte[] record = record(SNAPSHOT, payload);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(MAGIC);
+            out.write(record);
+        }
+        if (!tmp.renameTo(file)) {
+            // some file systems don't replace on rename
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Can't rename " + tmp + " to " + file);
+            }
+        }
+        saved = Arrays.copyOf(ids, length);
+        savedLength = length;
+        snapshotLength = record.length;
+        fileLength = MAGIC.length + record.length;
+    }
+
+    private void appendRecord(int type, Buffer payload) throws IOException {
+        byte[] record = record(type, payload);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // drops what a torn write left after the valid records
+            if (raf.length() != fileLength) {
+                raf.setLength(fileLength);
+            }
+            raf.seek(fileLength);
+            raf.write(record);
+        }
+        fileLength += record.length;
+    }
+
+    private static byte[] record(int type, Buffer payload) {
+        Buffer out = new Buffer(payload.size + 16);
+        out.write(type);
+        writeVarLong(out, payload.size);
+        out.write(payload.bytes, 0, payload.size);
+        CRC32 crc = new CRC32();
+        crc.update(out.bytes, 0, out.size);
+        int value = (int) crc.getValue();
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the count and the delta encoded ids
+     */
+    public static byte[] encode(long[] ids, int length) {
+        Buffer out = new Buffer(8 + 3 * length);
+        encode(out, ids, 0, length, 0);
+        return out.toByteArray();
+    }
+
+    public static long[] decode(byte[] data) {
+        return decode(data, new int[]{0});
+    }
+
+    private static void encode(Buffer out, long[] ids, int offset, int length, long previous) {
+        writeVarLong(out, length);
+        for (int i = offset; i < offset + length; i++) {
+            long delta = ids[i] - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            previous = ids[i];
+        }
+    }
+
+    private static long[] decode(byte[] data, int[] pos) {
+        return decode(data, pos, 0);
+    }
+
+    private static long[] decode(byte[] data, int[] pos, long previous) {
+        long count = readVarLong(data, pos);
+        // at least a byte per id
+        if (count < 0 || count > data.length - pos[0]) {
+            throw new IllegalArgumentException("bad count " + count);
+        }
+        long[] ids = new long[(int) count];
+        for (int i = 0; i < ids.length; i++) {
+            long zigzag = readVarLong(data, pos);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static void writeVarLong(Buffer out, long value) {
+        out.ensure(10);
+        byte[] bytes = out.bytes;
+        int size = out.size;
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+        out.size = size;
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IllegalArgumentException("truncated varint");
+            }
+            int b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+    private static int readInt(byte[] data, int i) {
+        return (data[i] & 0xff) << 24 | (data[i + 1] & 0xff) << 16 | (data[i + 2] & 0xff) << 8 | (data[i + 3] & 0xff);
+    }
+
+    /**
+     * A growing byte array, without the locking of {@code ByteArrayOutputStream}.
+     */
+    private static final class Buffer {
+        byte[] bytes;
+        int size;
+
+        Buffer(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void ensure(int n) {
+            if (size + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + n, bytes.length * 2));
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.frostwire.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
 
 /**
  * Simple JSON utility class based on google-gson.
@@ -75,4 +76,18 @@ public final class JsonUtils {
     public static <T> T toObject(String json, Class<T> classOfT) {
         return gson.fromJson(json, classOfT);
     }
+
+    /**
+     * This method deserializes the next value of a streaming reader into an object of the specified class.
+     * <p/>
+     * This method should not be used if the desired type is a generic type.
+     *
+     * @param <T>      the type of the desired object
+     * @param reader   the reader positioned at the value to be deserialized
+     * @param classOfT the class of T
+     * @return an object of type T from the reader
+     */
+    public static <T> T toObject(JsonReader reader, Class<T> classOfT) {
+        return gson.fromJson(reader, classOfT);
+    }
 }
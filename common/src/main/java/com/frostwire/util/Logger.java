@@ -17,20 +17,39 @@
 
 package com.frostwire.util;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
-
-import static java.util.logging.Level.INFO;
+import java.util.logging.LogRecord;
 
 /**
+ * A thin layer over {@code java.util.logging}.
+ * <p>
+ * The level is checked before anything else, so a disabled call costs
+ * a field read: the message is only built if it's going to be logged, and
+ * the {@link MessageSupplier} and {@code "{}"} parameterized variants avoid
+ * building it at the call site. debug is FINE, info is INFO, warn is WARNING
+ * and error is SEVERE.
+ * <p>
+ * With {@link #startAsync(int)} the records are created on the calling
+ * thread but published from a background thread, through a bounded lock-free
+ * ring buffer. When the buffer is full the records below WARNING are dropped
+ * and counted, the others are published on the calling thread.
+ *
  * @author gubatron
  * @author aldenml
  */
 public final class Logger {
+    private static final int DEFAULT_ASYNC_CAPACITY = 8192;
+
+    private static volatile String contextPrefix;
+    private static volatile AsyncAppender appender;
+
     private final java.util.logging.Logger jul;
     private final String name;
 
-    private static String contextPrefix;
-
     private Logger(java.util.logging.Logger jul) {
         this.jul = jul;
         this.name = jul.getName();
@@ -48,118 +67,361 @@ public final class Logger {
         return new Logger(java.util.logging.Logger.getLogger(clazz.getSimpleName()));
     }
 
+    public static void startAsync() {
+        startAsync(DEFAULT_ASYNC_CAPACITY);
+    }
+
+    /**
+     * Publishes the records from a background thread from now on.
+     *
+     * @param capacity the maximum number of records waiting, rounded up to a power of two
+     */
+    public static synchronized void startAsync(int capacity) {
+        if (appender == null) {
+            AsyncAppender a = new AsyncAppender(capacity);
+            a.start();
+            appender = a;
+        }
+    }
+
+    /**
+     * Publishes the records waiting and goes back to publishing on the calling threads.
+     */
+    public static synchronized void stopAsync() {
+        AsyncAppender a = appender;
+        if (a != null) {
+            appender = null;
+            a.stop();
+        }
+    }
+
+    /**
+     * @return the records dropped because the async buffer was full
+     */
+    public static long getDroppedRecords() {
+        AsyncAppender a = appender;
+        return a != null ? a.dropped.get() : 0;
+    }
+
+    /**
+     * Replaces the {@code "{}"} in the pattern with the arguments, in order.
+     * A last argument that's a throwable and has no {@code "{}"} left is not
+     * part of the message.
+     */
+    static String format(String pattern, Object[] args) {
+        if (pattern == null || args == null || args.length == 0) {
+            return pattern;
+        }
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        int arg = 0;
+        int i;
+        while (arg < args.length && (i = pattern.indexOf("{}", start)) != -1) {
+            sb.append(pattern, start, i).append(args[arg++]);
+            start = i + 2;
+        }
+        return sb.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static Throwable throwable(String pattern, Object[] args) {
+        if (args == null || args.length == 0 || !(args[args.length - 1] instanceof Throwable)) {
+            return null;
+        }
+        int placeholders = 0;
+        for (int i = pattern.indexOf("{}"); i != -1; i = pattern.indexOf("{}", i + 2)) {
+            placeholders++;
+        }
+        return placeholders < args.length ? (Throwable) args[args.length - 1] : null;
+    }
+
+    /**
+     * The caller of the logger and the method that invoked it.
+     */
     private static String getCallingMethodInfo() {
         Thread currentThread = Thread.currentThread();
-        StackTraceElement[] stackTrace = currentThread.getStackTrace();
-        String caller = " - <Thread not scheduled yet>";
-        if (stackTrace.length >= 5) {
-            StackTraceElement stackElement = stackTrace[5];
-            caller = " - Called from <" + stackElement.getFileName() + "::" + stackElement.getMethodName() + ":" + stackElement.getLineNumber() + " on thread:" + currentThread.getName() + "(tid=" + currentThread.getId() + ")>";
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        int i = 0;
+        while (i < stackTrace.length && Logger.class.getName().equals(stackTrace[i].getClassName())) {
+            i++;
+        }
+        if (i >= stackTrace.length) {
+            return " - <Thread not scheduled yet>";
         }
-        if (stackTrace.length >= 6) {
-            StackTraceElement stackElement = stackTrace[6];
-            caller = "\n - invoked by  <" + stackElement.getFileName() + "::" + stackElement.getMethodName() + ":" + stackElement.getLineNumber() + " on thread:" + currentThread.getName() + "(tid=" + currentThread.getId() + ")>";
+        String thread = " on thread:" + currentThread.getName() + "(tid=" + currentThread.getId() + ")>";
+        StackTraceElement e = stackTrace[i];
+        String caller = " - Called from <" + e.getFileName() + "::" + e.getMethodName() + ":" + e.getLineNumber() + thread;
+        if (i + 1 < stackTrace.length) {
+            e = stackTrace[i + 1];
+            caller += "\n - invoked by  <" + e.getFileName() + "::" + e.getMethodName() + ":" + e.getLineNumber() + thread;
         }
         return caller;
     }
 
-    private static String appendCallingMethodInfo(String msg) {
-        return msg + getCallingMethodInfo();
-    }
-
     public String getName() {
         return name;
     }
 
+    public boolean isDebugEnabled() {
+        return jul.isLoggable(Level.FINE);
+    }
+
+    public boolean isInfoEnabled() {
+        return jul.isLoggable(Level.INFO);
+    }
+
+    public boolean isWarnEnabled() {
+        return jul.isLoggable(Level.WARNING);
+    }
+
     public void info(String msg, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        } else {
-            jul.logp(INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        }
+        log(Level.INFO, msg, null, showCallingMethodInfo);
     }
 
     public void info(String msg) {
-        info(msg, false);
+        log(Level.INFO, msg, null, false);
     }
 
     public void info(String msg, Throwable e, boolean showCallingMethodInfo) {
-        jul.logp(Level.INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
+        log(Level.INFO, msg, e, showCallingMethodInfo);
     }
 
     public void info(String msg, Throwable e) {
-        info(msg, e, false);
+        log(Level.INFO, msg, e, false);
+    }
+
+    public void info(MessageSupplier msg) {
+        log(Level.INFO, msg);
+    }
+
+    public void info(String pattern, Object... args) {
+        log(Level.INFO, pattern, args);
     }
 
     public void warn(String msg, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        } else {
-            jul.logp(INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        }
+        log(Level.WARNING, msg, null, showCallingMethodInfo);
     }
 
     public void warn(String msg) {
-        warn(msg, false);
+        log(Level.WARNING, msg, null, false);
     }
 
     public void warn(String msg, Throwable e, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(Level.INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        } else {
-            jul.logp(Level.INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        }
+        log(Level.WARNING, msg, e, showCallingMethodInfo);
     }
 
     public void warn(String msg, Throwable e) {
-        warn(msg, e, false);
+        log(Level.WARNING, msg, e, false);
+    }
+
+    public void warn(MessageSupplier msg) {
+        log(Level.WARNING, msg);
+    }
+
+    public void warn(String pattern, Object... args) {
+        log(Level.WARNING, pattern, args);
     }
 
     public void error(String msg, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(Level.SEVERE, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        } else {
-            jul.logp(Level.SEVERE, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        }
+        log(Level.SEVERE, msg, null, showCallingMethodInfo);
     }
 
     public void error(String msg) {
-        error(msg, false);
+        log(Level.SEVERE, msg, null, false);
     }
 
     public void error(String msg, Throwable e, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(Level.INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        } else {
-            jul.logp(Level.INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        }
+        log(Level.SEVERE, msg, e, showCallingMethodInfo);
     }
 
     public void error(String msg, Throwable e) {
-        error(msg, e, false);
+        log(Level.SEVERE, msg, e, false);
+    }
+
+    public void error(MessageSupplier msg) {
+        log(Level.SEVERE, msg);
+    }
+
+    public void error(String pattern, Object... args) {
+        log(Level.SEVERE, pattern, args);
     }
 
     public void debug(String msg, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        } else {
-            jul.logp(INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg));
-        }
+        log(Level.FINE, msg, null, showCallingMethodInfo);
     }
 
     public void debug(String msg) {
-        debug(msg, false);
+        log(Level.FINE, msg, null, false);
     }
 
     public void debug(String msg, Throwable e, boolean showCallingMethodInfo) {
-        if (contextPrefix == null) {
-            jul.logp(Level.INFO, name, "", ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        } else {
-            jul.logp(Level.INFO, name, "", contextPrefix + ((showCallingMethodInfo) ? appendCallingMethodInfo(msg) : msg), e);
-        }
+        log(Level.FINE, msg, e, showCallingMethodInfo);
     }
 
     public void debug(String msg, Throwable e) {
-        debug(msg, e, false);
+        log(Level.FINE, msg, e, false);
+    }
+
+    public void debug(MessageSupplier msg) {
+        log(Level.FINE, msg);
+    }
+
+    public void debug(String pattern, Object... args) {
+        log(Level.FINE, pattern, args);
+    }
+
+    private void log(Level level, String msg, Throwable e, boolean showCallingMethodInfo) {
+        if (jul.isLoggable(level)) {
+            publish(level, showCallingMethodInfo ? msg + getCallingMethodInfo() : msg, e);
+        }
+    }
+
+    private void log(Level level, MessageSupplier msg) {
+        if (jul.isLoggable(level)) {
+            publish(level, msg.get(), null);
+        }
+    }
+
+    private void log(Level level, String pattern, Object[] args) {
+        if (jul.isLoggable(level)) {
+            publish(level, format(pattern, args), throwable(pattern, args));
+        }
+    }
+
+    private void publish(Level level, String msg, Throwable e) {
+        String prefix = contextPrefix;
+        LogRecord record = new LogRecord(level, prefix != null ? prefix + msg : msg);
+        record.setLoggerName(name);
+        record.setSourceClassName(name);
+        record.setSourceMethodName("");
+        record.setThrown(e);
+        AsyncAppender a = appender;
+        if (a == null || !a.offer(jul, record)) {
+            jul.log(record);
+        }
+    }
+
+    /**
+     * Builds the message only if it's going to be logged.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
+    /**
+     * A bounded multi-producer single-consumer ring buffer, drained by a daemon thread.
+     */
+    private static final class AsyncAppender implements Runnable {
+        private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private final AtomicReferenceArray<Entry> buffer;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+        // only written by the consumer
+        private volatile long head;
+        private long reported;
+        private volatile boolean sleeping;
+        private volatile boolean running = true;
+
+        AsyncAppender(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            buffer = new AtomicReferenceArray<>(size);
+            mask = size - 1;
+            thread = new Thread(this, "Logger-async");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+            try {
+                Runtime.getRuntime().addShutdownHook(new Thread(Logger::stopAsync, "Logger-async-flush"));
+            } catch (Throwable e) {
+                // shutting down already, or not allowed
+            }
+        }
+
+        /**
+         * @return false if the record was not taken, WARNING and above must be published by the caller
+         */
+        boolean offer(java.util.logging.Logger jul, LogRecord record) {
+            while (true) {
+                long t = tail.get();
+                if (t - head > mask) {
+                    if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                        return false;
+                    }
+                    dropped.incrementAndGet();
+                    return true;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    buffer.set((int) (t & mask), new Entry(jul, record));
+                    if (sleeping) {
+                        LockSupport.unpark(thread);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running || head != tail.get()) {
+                int i = (int) (head & mask);
+                Entry entry = buffer.get(i);
+                if (entry == null) {
+                    if (head == tail.get()) {
+                        reportDropped();
+                        sleeping = true;
+                        if (running && head == tail.get()) {
+                            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        }
+                        sleeping = false;
+                    } else {
+                        // claimed, not written yet
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                buffer.set(i, null);
+                head = head + 1;
+                try {
+                    entry.jul.log(entry.record);
+                } catch (Throwable e) {
+                    // a failing handler must not stop the logging
+                }
+            }
+            reportDropped();
+        }
+
+        private void reportDropped() {
+            long n = dropped.get() - reported;
+            if (n > 0) {
+                reported += n;
+                java.util.logging.Logger.getLogger(Logger.class.getSimpleName()).warning(n + " log records dropped, the async buffer was full");
+            }
+        }
+
+        private static final class Entry {
+            final java.util.logging.Logger jul;
+            final LogRecord record;
+
+            Entry(java.util.logging.Logger jul, LogRecord record) {
+                this.jul = jul;
+                this.record = record;
+            }
+        }
     }
 }
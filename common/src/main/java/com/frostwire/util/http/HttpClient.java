@@ -19,6 +19,7 @@ package com.frostwire.util.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +57,11 @@ public interface HttpClient {
 
     String get(String url, int timeoutMillis, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException;
 
+    /**
+     * Opens the response body for reading as it arrives, the caller must close the stream.
+     */
+    InputStream getStream(String url, int timeoutMillis, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException;
+
     byte[] getBytes(String url);
 
     byte[] getBytes(String url, int timeout);
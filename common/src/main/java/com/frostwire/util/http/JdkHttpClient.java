@@ -212,8 +212,54 @@ public final class JdkHttpClient extends AbstractHttpClient {
         get(url, out, timeout, userAgent, referrer, cookie, rangeStart, -1, null);
     }
 
+    @Override
+    public InputStream getStream(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        canceled = false;
+        final URLConnection conn = openConnection(url, timeout, userAgent, referrer, cookie, -1, -1, customHeaders);
+        final InputStream in = openInputStream(conn);
+        onHeaders(conn.getHeaderFields());
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    closeQuietly(conn);
+                }
+            }
+        };
+    }
+
     private void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie, long rangeStart, long rangeLength, final Map<String, String> customHeaders) throws IOException {
         canceled = false;
+        final URLConnection conn = openConnection(url, timeout, userAgent, referrer, cookie, rangeStart, rangeLength, customHeaders);
+        InputStream in = openInputStream(conn);
+        onHeaders(conn.getHeaderFields());
+        checkRangeSupport(rangeStart, conn);
+        try {
+            byte[] b = new byte[4096];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    out.write(b, 0, n);
+                    onData(b, 0, n);
+                }
+            }
+            closeQuietly(out);
+            if (canceled) {
+                onCancel();
+            } else {
+                onComplete();
+            }
+        } catch (Exception e) {
+            onError(e);
+        } finally {
+            closeQuietly(in);
+            closeQuietly(conn);
+        }
+    }
+
+    private URLConnection openConnection(String url, int timeout, String userAgent, String referrer, String cookie, long rangeStart, long rangeLength, final Map<String, String> customHeaders) throws IOException {
         final URL u = new URL(url);
         final URLConnection conn = u.openConnection();
         conn.setConnectTimeout(timeout);
@@ -242,6 +288,10 @@ public final class JdkHttpClient extends AbstractHttpClient {
             //put down here so it can overwrite any of the previous headers.
             setCustomHeaders(conn, customHeaders);
         }
+        return conn;
+    }
+
+    private InputStream openInputStream(URLConnection conn) throws IOException {
         InputStream in = conn.getInputStream();
         if ("gzip".equals(conn.getContentEncoding())) {
             in = new GZIPInputStream(in);
@@ -251,31 +301,11 @@ public final class JdkHttpClient extends AbstractHttpClient {
                 httpResponseCode != HttpURLConnection.HTTP_PARTIAL &&
                 httpResponseCode != HttpURLConnection.HTTP_MOVED_TEMP &&
                 httpResponseCode != HttpURLConnection.HTTP_MOVED_PERM) {
-            throw new ResponseCodeNotSupportedException(httpResponseCode);
-        }
-        onHeaders(conn.getHeaderFields());
-        checkRangeSupport(rangeStart, conn);
-        try {
-            byte[] b = new byte[4096];
-            int n;
-            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
-                if (!canceled) {
-                    out.write(b, 0, n);
-                    onData(b, 0, n);
-                }
-            }
-            closeQuietly(out);
-            if (canceled) {
-                onCancel();
-            } else {
-                onComplete();
-            }
-        } catch (Exception e) {
-            onError(e);
-        } finally {
             closeQuietly(in);
             closeQuietly(conn);
+            throw new ResponseCodeNotSupportedException(httpResponseCode);
         }
+        return in;
     }
 
     private void post(String url, OutputStream out, int timeout, String userAgent, Map<String, String> formData) throws IOException {
@@ -176,6 +176,21 @@ public class OkHttpClientWrapper extends AbstractHttpClient {
         return result;
     }
 
+    @Override
+    public InputStream getStream(String url, int timeoutMillis, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        final OkHttpClient.Builder okHttpClient = newOkHttpClient();
+        final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeoutMillis, userAgent, referrer, cookie);
+        addCustomHeaders(customHeaders, builder);
+        final Response response = getSyncResponse(okHttpClient, builder);
+        final ResponseBody responseBody = response.body();
+        if (responseBody == null) {
+            closeQuietly(response);
+            throw new IOException("No response body for " + url);
+        }
+        // closing the byte stream releases the response
+        return responseBody.byteStream();
+    }
+
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
         FileOutputStream fos;
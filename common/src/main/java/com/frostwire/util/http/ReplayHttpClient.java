@@ -0,0 +1,322 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.frostwire.util.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves recorded responses from fixture files, so the search performers can
+ * be tested and measured without the network.
+ * <p>
+ * There is one file per request, in a folder per host, named after the SHA-1
+ * of the method, the url and the posted content. The first line of the file is
+ * the request, for reference, the rest is the response body as received. With
+ * a recorder, the requests without a fixture go to the recorder and the
+ * responses are saved, otherwise they fail like a request to a host that's down.
+ * <p>
+ * The latency is added before each response, and a request fails with a
+ * timeout if it's longer than the request timeout. The bandwidth limits how
+ * fast the bodies are delivered, 0 is unlimited.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class ReplayHttpClient extends AbstractHttpClient {
+    private static final Logger LOG = Logger.getLogger(ReplayHttpClient.class);
+
+    private final File fixturesDir;
+    private final HttpClient recorder;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    /**
+     * @param fixturesDir the fixtures folder
+     * @param recorder    the client for the requests without a fixture, null to replay only
+     */
+    public ReplayHttpClient(File fixturesDir, HttpClient recorder) {
+        this.fixturesDir = fixturesDir;
+        this.recorder = recorder;
+    }
+
+    public ReplayHttpClient(File fixturesDir) {
+        this(fixturesDir, null);
+    }
+
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param bytesPerSecond the simulated bandwidth of each response, 0 for unlimited
+     */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the requests without a fixture, recorded or failed
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * @return the fixture file of the request, it may not exist
+     */
+    public File fixture(String method, String url, byte[] content) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (Throwable e) {
+            host = null;
+        }
+        return new File(new File(fixturesDir, host != null ? host : "unknown"), sha1(method, url, content) + ".bin");
+    }
+
+    @Override
+    public int head(String url, int connectTimeoutInMillis, Map<String, List<String>> outputHeaders) throws IOException {
+        requests.incrementAndGet();
+        delay(connectTimeoutInMillis, 0);
+        if (fixture("GET", url, null).exists()) {
+            return 200;
+        }
+        misses.incrementAndGet();
+        return recorder != null ? recorder.head(url, connectTimeoutInMillis, outputHeaders) : 404;
+    }
+
+    @Override
+    public String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        byte[] body = replay("GET", url, null, timeout, () -> {
+            String page = recorder.get(url, timeout, userAgent, referrer, cookie, customHeaders);
+            return page != null ? page.getBytes(StandardCharsets.UTF_8) : null;
+        });
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public InputStream getStream(String url, int timeoutMillis, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+        canceled = false;
+        requests.incrementAndGet();
+        delay(timeoutMillis, 0);
+        byte[] body = read("GET", url, null, () -> {
+            try (InputStream in = recorder.getStream(url, timeoutMillis, userAgent, referrer, cookie, customHeaders)) {
+                return IOUtils.toByteArray(in);
+            }
+        });
+        bytesServed.addAndGet(body.length);
+        InputStream in = new ByteArrayInputStream(body);
+        return bytesPerSecond > 0 ? new ThrottledInputStream(in, bytesPerSecond) : in;
+    }
+
+    @Override
+    public byte[] getBytes(String url, int timeout, String userAgent, String referrer, String cookies) {
+        try {
+            return replay("GET", url, null, timeout, () -> recorder.getBytes(url, timeout, userAgent, referrer, cookies));
+        } catch (IOException e) {
+            LOG.error("Error getting bytes from replayed response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
+        byte[] body = replay("GET", url, null, timeout, () -> recorder.getBytes(url, timeout, userAgent, referrer));
+        FileUtils.writeByteArrayToFile(file, body);
+    }
+
+    @Override
+    public String post(String url, int timeout, String userAgent, Map<String, String> formData) throws IOException {
+        // the iteration order of the form may vary
+        byte[] content = getFormDataBytes(formData != null ? new TreeMap<>(formData) : null);
+        byte[] body = replay("POST", url, content, timeout, () -> {
+            String page = recorder.post(url, timeout, userAgent, formData);
+            return page != null ? page.getBytes(StandardCharsets.UTF_8) : null;
+        });
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String post(String url, int timeout, String userAgent, String content, String postContentType, boolean gzip) throws IOException {
+        byte[] body = replay("POST", url, content.getBytes(StandardCharsets.UTF_8), timeout, () -> {
+            String page = recorder.post(url, timeout, userAgent, content, postContentType, gzip);
+            return page != null ? page.getBytes(StandardCharsets.UTF_8) : null;
+        });
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private byte[] replay(String method, String url, byte[] content, int timeout, Recording recording) throws IOException {
+        canceled = false;
+        requests.incrementAndGet();
+        delay(timeout, 0);
+        byte[] body = read(method, url, content, recording);
+        bytesServed.addAndGet(body.length);
+        if (bytesPerSecond > 0) {
+            delay(Integer.MAX_VALUE, body.length * 1000L / bytesPerSecond);
+        }
+        onData(body, 0, body.length);
+        onComplete();
+        return body;
+    }
+
+    private byte[] read(String method, String url, byte[] content, Recording recording) throws IOException {
+        File f = fixture(method, url, content);
+        if (f.exists()) {
+            byte[] data = FileUtils.readFileToByteArray(f);
+            int newline = 0;
+            while (newline < data.length && data[newline] != '\n') {
+                newline++;
+            }
+            return Arrays.copyOfRange(data, Math.min(newline + 1, data.length), data.length);
+        }
+        misses.incrementAndGet();
+        if (recorder == null) {
+            throw new FileNotFoundException("No fixture for " + method + " " + url);
+        }
+        byte[] body = recording.fetch();
+        if (body == null) {
+            throw new IOException("Nothing to record for " + method + " " + url);
+        }
+        write(f, method + " " + url, body);
+        return body;
+    }
+
+    private void delay(int timeout, long extraMillis) throws IOException {
+        long millis = latencyMillis + extraMillis;
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Math.min(millis, timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (millis > timeout) {
+            throw new SocketTimeoutException("Simulated timeout after " + timeout + " ms");
+        }
+    }
+
+    private static void write(File f, String request, byte[] body) throws IOException {
+        File dir = f.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create fixtures folder " + dir);
+        }
+        File tmp = new File(dir, f.getName() + ".tmp");
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length + 256);
+        out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+        out.write(body);
+        FileUtils.writeByteArrayToFile(tmp, out.toByteArray());
+        if (!tmp.renameTo(f)) {
+            FileUtils.deleteQuietly(tmp);
+            throw new IOException("Can't save fixture " + f);
+        }
+    }
+
+    private static String sha1(String method, String url, byte[] content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update((method + " " + url).getBytes(StandardCharsets.UTF_8));
+            if (content != null) {
+                md.update((byte) '\n');
+                md.update(content);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Recording {
+        byte[] fetch() throws IOException;
+    }
+
+    /**
+     * Delivers the bytes no faster than the simulated bandwidth.
+     */
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long read;
+
+        ThrottledInputStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // at most a tenth of a second worth of bytes at a time
+            int n = super.read(b, off, (int) Math.max(1, Math.min(len, bytesPerSecond / 10)));
+            if (n > 0) {
+                read += n;
+                long due = read * 1000L / bytesPerSecond - (System.nanoTime() - start) / 1_000_000;
+                if (due > 0) {
+                    try {
+                        Thread.sleep(due);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            return n;
+        }
+    }
+}
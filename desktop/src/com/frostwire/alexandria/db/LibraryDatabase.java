@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2019, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -99,6 +99,35 @@ public class LibraryDatabase {
         return OBJECT_INVALID_ID;
     }
 
+    /**
+     * Runs the task with the statements it makes committed together at the end,
+     * a lot faster than one commit per statement for bulk inserts. The database is
+     * locked meanwhile, keep the task short.
+     */
+    public synchronized void runInTransaction(Runnable task) {
+        if (isClosed()) {
+            return;
+        }
+        boolean autoCommit = true;
+        try {
+            autoCommit = _connection.getAutoCommit();
+            _connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try {
+            task.run();
+        } finally {
+            try {
+                // each statement handles its own errors, what did succeed is kept
+                _connection.commit();
+                _connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public synchronized void close() {
         if (isClosed()) {
             return;
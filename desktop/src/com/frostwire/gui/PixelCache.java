@@ -0,0 +1,184 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * An in-memory LRU cache of decoded images (or icons) bounded by the bytes of
+ * their pixels rather than by the number of entries, so a few large artworks
+ * can't push out thousands of small icons, or the other way around.
+ * <p>
+ * Every entry is also charged a small fixed overhead, null values are allowed
+ * and cached as such. All the methods are thread safe.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class PixelCache<K, V> {
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final long maxBytes;
+    private final ToLongFunction<V> sizer;
+    private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long bytes;
+
+    /**
+     * @param maxBytes the maximum pixel bytes kept
+     * @param sizer    the pixel bytes of a value, never called with null
+     */
+    public PixelCache(long maxBytes, ToLongFunction<V> sizer) {
+        this.maxBytes = maxBytes;
+        this.sizer = sizer;
+    }
+
+    /**
+     * A cache of buffered images, sized by their data buffers.
+     */
+    public static <K> PixelCache<K, BufferedImage> ofImages(long maxBytes) {
+        return new PixelCache<>(maxBytes, PixelCache::sizeOf);
+    }
+
+    /**
+     * A cache of icons, sized as 32 bits per pixel.
+     */
+    public static <K> PixelCache<K, Icon> ofIcons(long maxBytes) {
+        return new PixelCache<>(maxBytes, PixelCache::sizeOf);
+    }
+
+    /**
+     * @return the value, or null if not cached (or cached as null),
+     * use {@link #containsKey(Object)} to tell them apart
+     */
+    public V get(K key) {
+        Entry<V> e;
+        synchronized (map) {
+            e = map.get(key);
+        }
+        (e != null ? hits : misses).incrementAndGet();
+        return e != null ? e.value : null;
+    }
+
+    public boolean containsKey(K key) {
+        synchronized (map) {
+            return map.containsKey(key);
+        }
+    }
+
+    /**
+     * Adds the value, evicting the least recently used entries if needed. A value
+     * larger than the whole cache is not kept.
+     */
+    public void put(K key, V value) {
+        long size = ENTRY_OVERHEAD + (value != null ? sizer.applyAsLong(value) : 0);
+        synchronized (map) {
+            Entry<V> old = map.remove(key);
+            if (old != null) {
+                bytes -= old.size;
+            }
+            if (size > maxBytes) {
+                return;
+            }
+            map.put(key, new Entry<>(value, size));
+            bytes += size;
+            Iterator<Entry<V>> it = map.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().size;
+                it.remove();
+            }
+        }
+    }
+
+    public boolean remove(K key) {
+        synchronized (map) {
+            Entry<V> e = map.remove(key);
+            if (e != null) {
+                bytes -= e.size;
+            }
+            return e != null;
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+            bytes = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    /**
+     * @return the bytes currently charged, overhead included
+     */
+    public long bytes() {
+        synchronized (map) {
+            return bytes;
+        }
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public double hitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    public static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    public static long sizeOf(Icon icon) {
+        return (long) Math.max(1, icon.getIconWidth()) * Math.max(1, icon.getIconHeight()) * 4;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long size;
+
+        Entry(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
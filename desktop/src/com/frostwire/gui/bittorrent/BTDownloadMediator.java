@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -359,15 +359,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         BTEngine engine = BTEngine.getInstance();
         double totalBandwidth = download ? engine.downloadRate() : engine.uploadRate();
         if (download) {
-            double httpBandwidth = 0;
-            for (BTDownload btDownload : this.getDownloads()) {
-                if (btDownload instanceof HttpDownload ||
-                        btDownload instanceof SoundcloudDownload) {
-                    httpBandwidth += btDownload.getDownloadSpeed();
-                }
-            }
-            httpBandwidth = httpBandwidth * 1000;
-            totalBandwidth += httpBandwidth;
+            totalBandwidth += HttpBTDownload.aggregateDownloadSpeed();
         }
         return totalBandwidth;
     }
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
 
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,10 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.bittorrent.PieceHasher;
 import com.frostwire.gui.theme.ThemeMediator;
 import com.frostwire.jlibtorrent.Entry;
+import com.frostwire.jlibtorrent.Vectors;
 import com.frostwire.jlibtorrent.swig.*;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
@@ -44,6 +46,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,6 +92,8 @@ public class CreateTorrentDialog extends JDialog {
     private JButton buttonClose;
     private JComboBox<PieceSize> pieceSizeComboBox;
     private int pieceSize;
+    private volatile PieceHasher pieceHasher;
+    private final AtomicInteger hashingPercent = new AtomicInteger();
 
     public CreateTorrentDialog(JFrame frame) {
         super(frame);
@@ -514,8 +520,7 @@ public class CreateTorrentDialog extends JDialog {
             if (addAvailableWebSeeds(torrent, create_from_dir)) {
                 reportCurrentTask(I18n.tr("Calculating piece hashes..."));
                 saveDir = f.getParentFile();
-                error_code ec = new error_code();
-                libtorrent.set_piece_hashes(torrent, saveDir.getAbsolutePath(), ec);
+                setPieceHashes(torrent, saveDir);
                 reportCurrentTask(I18n.tr("Generating torrent entry..."));
                 Entry entry = new Entry(torrent.generate());
                 Map<String, Entry> entryMap = entry.dictionary();
@@ -537,6 +542,10 @@ public class CreateTorrentDialog extends JDialog {
                 revertSaveCloseButtons();
                 textWebSeeds.selectAll();
             }
+        } catch (CancellationException e) {
+            result = false;
+            revertSaveCloseButtons();
+            reportCurrentTask(I18n.tr("Operation cancelled."));
         } catch (Throwable e) {
             result = false;
             revertSaveCloseButtons();
@@ -546,6 +555,59 @@ public class CreateTorrentDialog extends JDialog {
         return result;
     }
 
+    /**
+     * Hashes the pieces using all the cores and sets the hashes on the torrent,
+     * closing the dialog cancels it.
+     */
+    private void setPieceHashes(create_torrent torrent, File saveDir) throws IOException, InterruptedException {
+        file_storage fs = torrent.files();
+        List<PieceHasher.Span> spans = new ArrayList<>(fs.num_files());
+        for (int i = 0; i < fs.num_files(); i++) {
+            long size = fs.file_size(i);
+            spans.add(fs.pad_file_at(i) ?
+                    PieceHasher.Span.pad(size) :
+                    new PieceHasher.Span(new File(fs.file_path(i, saveDir.getAbsolutePath())), size));
+        }
+        PieceHasher hasher = new PieceHasher(spans, torrent.piece_length(), Runtime.getRuntime().availableProcessors());
+        if (hasher.numPieces() != torrent.num_pieces()) {
+            throw new IOException("Unexpected number of pieces: " + hasher.numPieces() + ", expected " + torrent.num_pieces());
+        }
+        hashingPercent.set(-1);
+        pieceHasher = hasher;
+        byte[] hashes;
+        try {
+            hashes = hasher.hash(this::onPieceHashed);
+        } finally {
+            pieceHasher = null;
+        }
+        byte[] hash = new byte[PieceHasher.HASH_SIZE];
+        for (int i = 0; i < hasher.numPieces(); i++) {
+            System.arraycopy(hashes, i * PieceHasher.HASH_SIZE, hash, 0, PieceHasher.HASH_SIZE);
+            torrent.set_hash(i, new sha1_hash(Vectors.bytes2byte_vector(hash)));
+        }
+    }
+
+    private void onPieceHashed(PieceHasher hasher, int piecesDone, int numPieces) {
+        int percent = (int) ((long) piecesDone * 100 / numPieces);
+        int last = hashingPercent.get();
+        // only post to the EDT when the percent changes
+        if (percent != last && hashingPercent.compareAndSet(last, percent)) {
+            SwingUtilities.invokeLater(() -> {
+                progressBar.setValue(percent);
+                progressBar.setString(I18n.tr("Calculating piece hashes...") + " " + percent + "%");
+            });
+        }
+    }
+
+    @Override
+    public void dispose() {
+        PieceHasher hasher = pieceHasher;
+        if (hasher != null) {
+            hasher.cancel();
+        }
+        super.dispose();
+    }
+
     private boolean addAvailableWebSeeds(create_torrent torrent, boolean isMultiFile) {
         boolean result = true;
         if (textWebSeeds.getText().length() > 0) {
@@ -651,7 +713,7 @@ public class CreateTorrentDialog extends JDialog {
         SwingUtilities.invokeLater(() -> {
             buttonSaveAs.setText(I18n.tr("Saving Torrent..."));
             buttonSaveAs.setEnabled(false);
-            buttonClose.setEnabled(false);
+            // closing the dialog cancels the piece hashing
         });
     }
 
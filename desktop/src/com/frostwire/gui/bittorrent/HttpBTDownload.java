@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -20,6 +20,7 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.transfers.SpeedStat;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
@@ -38,24 +39,24 @@ import java.util.Date;
  */
 abstract class HttpBTDownload implements BTDownload {
     private static final Logger LOG = Logger.getLogger(HttpBTDownload.class);
-    private static final int SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS = 1000;
+    /**
+     * The bytes of all the HTTP downloads, for the total bandwidth.
+     */
+    private static final SpeedStat AGGREGATE_STAT = new SpeedStat();
     final File completeFile;
     final HttpClient httpClient;
     private final Date dateCreated;
     double size;
     TransferState state;
-    long bytesReceived;
+    final SpeedStat stat;
     HttpClient.HttpClientListener httpClientListener;
-    private long averageSpeed; // in bytes
     private boolean deleteDataWhenRemoved;
-    private long speedMarkTimestamp;
-    private long totalReceivedSinceLastSpeedStamp;
 
     HttpBTDownload(String filename, double size) {
         completeFile = org.limewire.util.FileUtils.buildFile(SharingSettings.TORRENT_DATA_DIR_SETTING.getValue(), filename);
         this.size = size;
         dateCreated = new Date();
-        bytesReceived = 0;
+        stat = new SpeedStat();
         httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
         httpClient.setListener(createHttpClientListener());
     }
@@ -89,17 +90,19 @@ abstract class HttpBTDownload implements BTDownload {
 
     abstract HttpClient.HttpClientListener createHttpClientListener();
 
-    void updateAverageDownloadSpeed() {
-        long now = System.currentTimeMillis();
-        if (isCompleted()) {
-            averageSpeed = 0;
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = 0;
-        } else if (now - speedMarkTimestamp > SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS) {
-            averageSpeed = ((bytesReceived - totalReceivedSinceLastSpeedStamp) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = bytesReceived;
-        }
+    /**
+     * @return the total speed of the HTTP downloads, in bytes per second
+     */
+    static long aggregateDownloadSpeed() {
+        return AGGREGATE_STAT.averageSpeed();
+    }
+
+    /**
+     * Called from the listener thread for every buffer received.
+     */
+    void onBytesReceived(int length) {
+        stat.update(length);
+        AGGREGATE_STAT.update(length);
     }
 
     void cleanup() {
@@ -145,6 +148,7 @@ abstract class HttpBTDownload implements BTDownload {
 
     @Override
     public boolean isCompleted() {
+        long bytesReceived = stat.totalBytes();
         return bytesReceived > 0 && (bytesReceived == size || state == TransferState.FINISHED);
     }
 
@@ -190,8 +194,7 @@ abstract class HttpBTDownload implements BTDownload {
             if (isCompleted()) {
                 progress = 100;
             } else {
-                progress = (int) ((bytesReceived * 100) / size);
-                progress = Math.min(100, progress);
+                progress = Math.min(100, stat.progress(size));
             }
         }
         return progress;
@@ -200,9 +203,9 @@ abstract class HttpBTDownload implements BTDownload {
     @Override
     public long getBytesReceived() {
         if (isCompleted() && getSaveLocation().exists()) {
-            bytesReceived = getSaveLocation().length();
+            return getSaveLocation().length();
         }
-        return bytesReceived;
+        return stat.totalBytes();
     }
 
     @Override
@@ -214,7 +217,7 @@ abstract class HttpBTDownload implements BTDownload {
     public double getDownloadSpeed() {
         double result = 0;
         if (state == TransferState.DOWNLOADING) {
-            result = averageSpeed / 1000;
+            result = stat.averageSpeed() / 1000d;
         }
         return result;
     }
@@ -227,8 +230,7 @@ abstract class HttpBTDownload implements BTDownload {
     @Override
     public long getETA() {
         if (size > 0) {
-            long speed = averageSpeed;
-            return speed > 0 ? (long) ((size - getBytesReceived()) / speed) : -1;
+            return stat.eta(size);
         } else {
             return -1;
         }
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -134,7 +134,7 @@ public class HttpDownload extends HttpBTDownload {
         if (size <= 0) {
             return -1;
         }
-        int progress = (int) ((bytesReceived * 100) / size);
+        int progress = stat.progress(size);
         return Math.min(100, progress);
     }
 
@@ -153,14 +153,14 @@ public class HttpDownload extends HttpBTDownload {
                         expectedFile.length() == size &&
                         checkMD5(expectedFile)) {
                     saveFile = expectedFile;
-                    bytesReceived = expectedFile.length();
+                    stat.reset(expectedFile.length());
                     state = TransferState.FINISHED;
                     onComplete();
                     return;
                 }
                 if (resume) {
                     if (incompleteFile.exists()) {
-                        bytesReceived = incompleteFile.length();
+                        stat.reset(incompleteFile.length());
                     }
                 }
                 httpClient.save(url, incompleteFile, resume);
@@ -235,8 +235,7 @@ public class HttpDownload extends HttpBTDownload {
         @Override
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
-                bytesReceived += length;
-                updateAverageDownloadSpeed();
+                onBytesReceived(length);
                 state = TransferState.DOWNLOADING;
             }
         }
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -132,8 +132,16 @@ public class SoundcloudDownload extends HttpBTDownload {
             newId3Wrapper.getId3v2Tag().setPadding(true);
             mp3.setId3v1Tag(newId3Wrapper.getId3v1Tag());
             mp3.setId3v2Tag(newId3Wrapper.getId3v2Tag());
-            mp3.save(mp3outputFilename);
-            return true;
+            if (MediaPlayer.instance().isThisBeingPlayed(new File(mp3Filename))) {
+                mp3.save(mp3outputFilename);
+                return true;
+            }
+            // a failure leaves the download as it was, it's moved untagged then
+            mp3.saveInPlace();
+            File tagged = new File(mp3Filename);
+            File output = new File(mp3outputFilename);
+            // the save folder may be on another volume than the Incomplete one
+            return tagged.renameTo(output) || HttpBTDownload.copyPlayingTemp(tagged, output);
         } catch (Throwable e) {
             return false;
         }
@@ -164,8 +172,7 @@ public class SoundcloudDownload extends HttpBTDownload {
         @Override
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
-                bytesReceived += length;
-                updateAverageDownloadSpeed();
+                onBytesReceived(length);
                 state = TransferState.DOWNLOADING;
             }
         }
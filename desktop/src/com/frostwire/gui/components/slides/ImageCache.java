@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2019, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,28 +17,69 @@
 
 package com.frostwire.gui.components.slides;
 
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.gui.PixelCache;
+import com.frostwire.util.DiskLruCache;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
 import com.frostwire.util.http.HttpClient;
 import com.limegroup.gnutella.settings.SharingSettings;
-import com.frostwire.concurrent.concurrent.ThreadExecutor;
+import org.apache.commons.io.IOUtils;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A two tier cache of images by url.
+ * <p>
+ * The decoded images are kept in memory, bounded by their pixel bytes. The
+ * original bytes, as downloaded, are kept on disk, bounded by their total size
+ * and evicted by last access. Disk reads, downloads and decoding happen in a
+ * small pool, never in the calling thread, and concurrent requests for the same
+ * url share the same load and the same decoded image.
+ *
  * @author gubatron
  * @author aldenml
  */
 public class ImageCache {
     private static final Logger LOG = Logger.getLogger(ImageCache.class);
+    private static final long DEFAULT_MAX_MEMORY_BYTES = 32 * 1024 * 1024;
+    private static final long DEFAULT_MAX_DISK_BYTES = 64 * 1024 * 1024;
     private static ImageCache instance;
 
+    private final PixelCache<String, BufferedImage> memory;
+    private final DiskLruCache disk;
+    private final ExecutorService loaders;
+    private final Map<String, List<OnLoadedListener>> pending = new HashMap<>();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+
     private ImageCache() {
+        this(SharingSettings.getImageCacheDirectory(), DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * @param dir            the disk tier directory
+     * @param maxMemoryBytes the maximum decoded pixel bytes kept in memory
+     * @param maxDiskBytes   the maximum original bytes kept on disk
+     */
+    public ImageCache(File dir, long maxMemoryBytes, long maxDiskBytes) {
+        this.memory = PixelCache.ofImages(maxMemoryBytes);
+        this.disk = new DiskLruCache(dir, maxDiskBytes, ImageCache::cacheName);
+        this.loaders = ExecutorsHelper.newFixedSizeThreadPool(2, "ImageCache");
     }
 
     public synchronized static ImageCache instance() {
@@ -48,107 +89,157 @@ public class ImageCache {
         return instance;
     }
 
+    /**
+     * Returns the image right away if it's decoded in memory, the listener is
+     * called from the calling thread in that case. Otherwise it returns null and
+     * the listener is called from a background thread once the image is loaded.
+     */
     public BufferedImage getImage(URL url, OnLoadedListener listener) {
-        if (isCached(url)) {
-            return loadFromCache(url, listener);
-        } else if (!url.getProtocol().equals("http")) {
-            return loadFromResource(url, listener);
-        } else {
-            loadFromUrl(url, listener);
-            return null;
+        String key = url.toString();
+        BufferedImage image = memory.get(key);
+        if (image != null) {
+            if (listener != null) {
+                listener.onLoaded(url, image, true, false);
+            }
+            return image;
         }
+        synchronized (pending) {
+            List<OnLoadedListener> listeners = pending.get(key);
+            if (listeners != null) {
+                // already loading, wait for it
+                if (listener != null) {
+                    listeners.add(listener);
+                }
+                return null;
+            }
+            listeners = new ArrayList<>(1);
+            if (listener != null) {
+                listeners.add(listener);
+            }
+            pending.put(key, listeners);
+        }
+        loaders.execute(() -> load(url, key));
+        return null;
     }
 
-    private File getCacheFile(URL url) {
-        String host = url.getHost();
-        String path = url.getPath();
-        if (host == null || host.length() == 0) { // dealing with local resource images, not perfect
-            host = "localhost";
-            path = new File(path).getName();
-        }
-        return new File(SharingSettings.getImageCacheDirectory(), File.separator + host + File.separator + path);
+    public long memoryHits() {
+        return memory.hits();
     }
 
-    private boolean isCached(URL url) {
-        File file = getCacheFile(url);
-        return file.exists();
+    public long diskHits() {
+        return diskHits.get();
     }
 
-    private BufferedImage loadFromCache(URL url, OnLoadedListener listener) {
-        try {
-            File file = getCacheFile(url);
-            BufferedImage image = ImageIO.read(file);
-            listener.onLoaded(url, image, true, false);
-            return image;
-        } catch (Throwable e) {
-            LOG.error("Failed to load image from cache: " + url, e);
-            if (e instanceof OutOfMemoryError) {
-                e.printStackTrace(); // this is a special condition
-            }
-            listener.onLoaded(url, null, false, true);
-            return null;
-        }
+    /**
+     * @return the number of images that had to be downloaded (or read from the
+     * original resource)
+     */
+    public long misses() {
+        return downloads.get();
     }
 
-    private BufferedImage loadFromResource(URL url, OnLoadedListener listener) {
-        try {
-            BufferedImage image = ImageIO.read(url);
-            saveToCache(url, image, 0);
-            listener.onLoaded(url, image, false, false);
-            return image;
-        } catch (Throwable e) {
-            LOG.error("Failed to load image from resource: " + url, e);
-            listener.onLoaded(url, null, false, true);
-            return null;
-        }
+    /**
+     * @return the ratio of requests served from either tier
+     */
+    public double hitRate() {
+        long hits = memory.hits() + diskHits.get();
+        long total = hits + downloads.get();
+        return total > 0 ? (double) hits / total : 0;
     }
 
-    private void loadFromUrl(final URL url, final OnLoadedListener listener) {
-        ThreadExecutor.startThread(new Thread(() -> {
-            try {
-                BufferedImage image = null;
-                HttpClient newInstance = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.MISC);
-                byte[] data = newInstance.getBytes(url.toString());
-                if (data == null) {
-                    throw new IOException("ImageCache.loadUrl() got nothing at " + url.toString());
-                }
+    public String stats() {
+        return String.format(Locale.US, "memory: %d hits, %d images, %d/%d KB; disk: %d hits, %d files, %d/%d KB; misses: %d; hit rate: %.0f%%",
+                memory.hits(), memory.size(), memory.bytes() / 1024, memory.maxBytes() / 1024,
+                diskHits.get(), disk.entries(), disk.size() / 1024, disk.maxSize() / 1024,
+                downloads.get(), hitRate() * 100);
+    }
+
+    private void load(URL url, String key) {
+        BufferedImage image = null;
+        boolean fromCache = false;
+        try {
+            // it could have been decoded by a previous load in the meantime
+            image = memory.get(key);
+            fromCache = image != null;
+            if (image == null) {
+                byte[] data = disk.get(key);
+                fromCache = data != null;
                 if (data != null) {
-                    image = ImageIO.read(new ByteArrayInputStream(data));
-                    saveToCache(url, image, System.currentTimeMillis());
+                    diskHits.incrementAndGet();
+                } else {
+                    downloads.incrementAndGet();
+                    data = fetch(url);
+                }
+                image = decode(data);
+                if (image == null) {
+                    throw new IOException("Unable to decode image: " + url);
                 }
-                if (listener != null && image != null) {
-                    listener.onLoaded(url, image, false, false);
+                if (!fromCache) {
+                    disk.put(key, data);
                 }
+                memory.put(key, image);
+            }
+        } catch (Throwable e) {
+            LOG.error("Failed to load image: " + url, e);
+            image = null;
+        }
+        List<OnLoadedListener> listeners;
+        synchronized (pending) {
+            listeners = pending.remove(key);
+        }
+        for (OnLoadedListener listener : listeners) {
+            try {
+                listener.onLoaded(url, image, fromCache, image == null);
             } catch (Throwable e) {
-                LOG.error("Failed to load image from: " + url, e);
-                listener.onLoaded(url, null, false, true);
+                LOG.error("Error in image listener: " + url, e);
             }
-        }), "ImageCache.loadFromUrl");
+        }
     }
 
-    private void saveToCache(URL url, BufferedImage image, long date) {
-        try {
-            File file = getCacheFile(url);
-            if (file.exists()) {
-                file.delete();
-            }
-            String filename = file.getName();
-            int dotIndex = filename.lastIndexOf('.');
-            String ext = filename.substring(dotIndex + 1);
-            String formatName = ImageIO.getImageReadersBySuffix(ext).next().getFormatName();
-            if (!file.getParentFile().exists()) {
-                file.mkdirs();
+    private static byte[] fetch(URL url) throws IOException {
+        String protocol = url.getProtocol();
+        byte[] data;
+        if (protocol.equals("http") || protocol.equals("https")) {
+            HttpClient httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.MISC);
+            data = httpClient.getBytes(url.toString());
+        } else {
+            try (InputStream is = url.openStream()) {
+                data = IOUtils.toByteArray(is);
             }
-            ImageIO.write(image, formatName, file);
-            file.setLastModified(date);
-        } catch (Throwable e) {
-            LOG.error("Failed to save image to cache: " + url, e);
         }
+        if (data == null) {
+            throw new IOException("ImageCache.fetch() got nothing at " + url);
+        }
+        return data;
+    }
+
+    private static BufferedImage decode(byte[] data) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * The file of an url in the disk tier, relative to its directory: the host
+     * and the path of the url.
+     */
+    private static String cacheName(String key) {
+        URL url;
+        try {
+            url = new URL(key);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+        String host = url.getHost();
+        String path = url.getPath();
+        if (host == null || host.length() == 0) { // dealing with local resource images, not perfect
+            host = "localhost";
+            path = new File(path).getName();
+        }
+        return host + "/" + (path.startsWith("/") ? path.substring(1) : path);
     }
 
     public interface OnLoadedListener {
         /**
-         * This is called in the event that the image was downloaded and cached
+         * This is called in the event that the image was loaded, or failed to load
          */
         void onLoaded(URL url, BufferedImage image, boolean fromCache, boolean fail);
     }
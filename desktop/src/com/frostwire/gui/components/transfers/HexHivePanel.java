@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,7 +24,9 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.geom.GeneralPath;
 import java.awt.image.BufferedImage;
+import java.util.BitSet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class HexHivePanel extends JPanel {
     private final boolean forceCubes;
@@ -40,9 +42,16 @@ public class HexHivePanel extends JPanel {
     private CubePaint fullHexPaint;
     private DrawingProperties drawingProperties;
     private BufferedImage bitmap;
+    /**
+     * The drawing properties the bitmap was drawn with and the state of
+     * each hexagon in it, only the hexagons that changed are repainted
+     */
+    private DrawingProperties bitmapDrawingProperties;
+    private final BitSet bitmapFullHexagons = new BitSet();
     private int lastWidth;
     private int lastHeight;
     private final ExecutorService threadPool = com.frostwire.util.ThreadPool.newThreadPool("HexHivePool", 1);
+    private final AtomicBoolean drawPending = new AtomicBoolean();
     private Color backgroundColor;
 
     /**
@@ -221,33 +230,110 @@ public class HexHivePanel extends JPanel {
     }
 
     void updateData(HexDataAdapter hexDataAdapter) {
+        if (!updateDrawingProperties(hexDataAdapter)) {
+            return;
+        }
+        if (hexDataAdapter.getFullHexagonsCount() >= 0 && drawPending.compareAndSet(false, true)) {
+            // at most one draw waits in the pool, it will see the latest data
+            threadPool.execute(() -> {
+                drawPending.set(false);
+                draw(hexDataAdapter);
+                repaint();
+            });
+        }
+    }
+
+    /**
+     * @return false if there is nothing to draw on yet
+     */
+    boolean updateDrawingProperties(HexDataAdapter hexDataAdapter) {
         final int canvasWidth = getWidth();
         final int canvasHeight = getHeight();
         if (canvasHeight > 0 && canvasWidth > 0 && hexDataAdapter != null) {
             synchronized (drawingPropertiesLock) {
-                drawingProperties = new DrawingProperties(
-                        hexDataAdapter,
-                        hexSideLength,
-                        hexagonBorderPaint.getLineWidth(),
-                        leftPadding,
-                        topPadding,
-                        canvasWidth - rightPadding,
-                        canvasHeight - bottomPadding);
+                // keep the geometry while nothing changed, the retained bitmap depends on it
+                if (drawingProperties == null ||
+                        drawingProperties.canvasWidth != canvasWidth ||
+                        drawingProperties.canvasHeight != canvasHeight ||
+                        drawingProperties.numHexs != hexDataAdapter.getTotalHexagonsCount()) {
+                    drawingProperties = new DrawingProperties(
+                            hexDataAdapter,
+                            hexSideLength,
+                            hexagonBorderPaint.getLineWidth(),
+                            leftPadding,
+                            topPadding,
+                            canvasWidth - rightPadding,
+                            canvasHeight - bottomPadding);
+                    drawingProperties.canvasWidth = canvasWidth;
+                    drawingProperties.canvasHeight = canvasHeight;
+                }
             }
             lastHeight = drawingProperties.height;
             lastWidth = getWidth();
+            return true;
+        }
+        // if drawingProperties is null we're not ready yet (perhaps during animation or rotation)
+        return false;
+    }
+
+    /**
+     * Brings the bitmap up to date with the adapter, repainting only
+     * the hexagons that changed if the geometry is the same.
+     */
+    void draw(HexDataAdapter adapter) {
+        final DrawingProperties drawingProperties;
+        synchronized (drawingPropertiesLock) {
+            drawingProperties = this.drawingProperties;
         }
         if (drawingProperties == null) {
-            // not ready yet (perhaps during animation or rotation)
             return;
         }
-        if (hexDataAdapter != null && hexDataAdapter.getFullHexagonsCount() >= 0 && canvasWidth > 0 && canvasHeight > 0) {
-            threadPool.execute(() -> {
-                BufferedImage backgroundBitmap = asyncDraw(hexDataAdapter);
-                synchronized (bitmapLock) {
-                    bitmap = backgroundBitmap;
+        if (bitmap == null || bitmapDrawingProperties != drawingProperties) {
+            BufferedImage backgroundBitmap = asyncDraw(drawingProperties, adapter);
+            synchronized (bitmapLock) {
+                bitmap = backgroundBitmap;
+                bitmapDrawingProperties = drawingProperties;
+            }
+            return;
+        }
+        int numHexs = drawingProperties.numHexs;
+        int[] dirty = new int[16];
+        int numDirty = 0;
+        for (int i = 0; i < numHexs; i++) {
+            if (adapter.isFull(i) != bitmapFullHexagons.get(i)) {
+                if (numDirty == dirty.length) {
+                    dirty = java.util.Arrays.copyOf(dirty, numDirty * 2);
                 }
-            });
+                dirty[numDirty++] = i;
+            }
+        }
+        if (numDirty == 0) {
+            return;
+        }
+        if (numDirty > numHexs / 4) {
+            // cheaper to start over than to repaint most of the neighborhoods
+            BufferedImage backgroundBitmap = asyncDraw(drawingProperties, adapter);
+            synchronized (bitmapLock) {
+                bitmap = backgroundBitmap;
+            }
+            return;
+        }
+        synchronized (bitmapLock) {
+            Graphics2D graphics = bitmap.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                for (int d = 0; d < numDirty; d++) {
+                    redrawHexagonArea(drawingProperties, graphics, adapter, dirty[d]);
+                }
+            } finally {
+                graphics.dispose();
+            }
+        }
+    }
+
+    BufferedImage getBitmap() {
+        synchronized (bitmapLock) {
+            return bitmap;
         }
     }
 
@@ -259,8 +345,10 @@ public class HexHivePanel extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;  // Better methods to do stuff in Canvas
-        if (drawingProperties != null && bitmap != null) {
-            g2d.drawImage(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), null);
+        synchronized (bitmapLock) {
+            if (drawingProperties != null && bitmap != null) {
+                g2d.drawImage(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), null);
+            }
         }
     }
 
@@ -271,7 +359,7 @@ public class HexHivePanel extends JPanel {
         backgroundColor = new Color(bgColor);
     }
 
-    private BufferedImage asyncDraw(HexDataAdapter adapter) {
+    private BufferedImage asyncDraw(DrawingProperties drawingProperties, HexDataAdapter adapter) {
         // with drawingProperties we don't need to think about padding offsets. We just use drawingProperties numbers for our calculations
         drawingProperties.hexCenterBuffer.setLocation(drawingProperties.evenRowOrigin.x, drawingProperties.evenRowOrigin.y);
         boolean evenRow = true;
@@ -283,26 +371,70 @@ public class HexHivePanel extends JPanel {
             drawingProperties.hexCenterBuffer.x = drawingProperties.center.x;
             drawingProperties.hexCenterBuffer.y = drawingProperties.center.y;
         }
-        boolean drawCubes = (forceCubes) || drawingProperties.numHexs <= 500;
+        boolean drawCubes = drawCubes(drawingProperties);
+        drawingProperties.initCenters();
         BufferedImage bitmap = new BufferedImage(drawingProperties.width, drawingProperties.height, BufferedImage.TYPE_INT_RGB);
         Graphics2D graphics = bitmap.createGraphics();
         graphics.setPaint(backgroundColor);
         graphics.fillRect(0, 0, drawingProperties.width, drawingProperties.height);
         graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        bitmapFullHexagons.clear();
         while (pieceIndex < drawingProperties.numHexs) {
-            drawHexagon(drawingProperties, graphics, hexagonBorderPaint, (adapter.isFull(pieceIndex) ? fullHexPaint : emptyHexPaint), drawCubes);
+            boolean full = adapter.isFull(pieceIndex);
+            bitmapFullHexagons.set(pieceIndex, full);
+            drawingProperties.centersX[pieceIndex] = drawingProperties.hexCenterBuffer.x;
+            drawingProperties.centersY[pieceIndex] = drawingProperties.hexCenterBuffer.y;
+            drawHexagon(drawingProperties, graphics, hexagonBorderPaint, (full ? fullHexPaint : emptyHexPaint), drawCubes);
             pieceIndex++;
             drawingProperties.hexCenterBuffer.x += drawingProperties.hexWidth - 2;
             float rightSide = drawingProperties.hexCenterBuffer.x + (drawingProperties.hexWidth / 2);
             if (rightSide >= drawingProperties.end.x) {
+                if (drawingProperties.rowLength == 0) {
+                    drawingProperties.rowLength = pieceIndex;
+                }
                 evenRow = !evenRow;
                 drawingProperties.hexCenterBuffer.x = (evenRow) ? drawingProperties.evenRowOrigin.x : (int) (drawingProperties.oddRowOrigin.x - hexagonBorderPaint.getLineWidth());
                 drawingProperties.hexCenterBuffer.y += threeQuarters;
             }
         }
+        graphics.dispose();
         return bitmap;
     }
 
+    /**
+     * Repaints the bounding box of a hexagon: the background and, in the original
+     * drawing order, every hexagon overlapping it. The pixels come out the same as
+     * in a full draw, antialiased borders included.
+     */
+    private void redrawHexagonArea(DrawingProperties drawingProperties, Graphics2D graphics, HexDataAdapter adapter, int hexIndex) {
+        boolean drawCubes = drawCubes(drawingProperties);
+        int halfWidth = (int) Math.ceil(drawingProperties.hexWidth / 2) + 1;
+        int halfHeight = (int) Math.ceil(drawingProperties.hexHeight / 2) + 1;
+        int x = drawingProperties.centersX[hexIndex] - halfWidth;
+        int y = drawingProperties.centersY[hexIndex] - halfHeight;
+        graphics.setClip(x, y, 2 * halfWidth, 2 * halfHeight);
+        graphics.setPaint(backgroundColor);
+        graphics.fillRect(x, y, 2 * halfWidth, 2 * halfHeight);
+        // neighbors are at most one row above or below
+        int span = 2 * Math.max(drawingProperties.rowLength, 1) + 2;
+        int from = Math.max(0, hexIndex - span);
+        int to = Math.min(drawingProperties.numHexs, hexIndex + span + 1);
+        for (int i = from; i < to; i++) {
+            if (Math.abs(drawingProperties.centersX[i] - drawingProperties.centersX[hexIndex]) < 2 * halfWidth &&
+                    Math.abs(drawingProperties.centersY[i] - drawingProperties.centersY[hexIndex]) < 2 * halfHeight) {
+                boolean full = adapter.isFull(i);
+                bitmapFullHexagons.set(i, full);
+                drawingProperties.hexCenterBuffer.setLocation(drawingProperties.centersX[i], drawingProperties.centersY[i]);
+                drawHexagon(drawingProperties, graphics, hexagonBorderPaint, (full ? fullHexPaint : emptyHexPaint), drawCubes);
+            }
+        }
+        graphics.setClip(null);
+    }
+
+    private boolean drawCubes(DrawingProperties drawingProperties) {
+        return forceCubes || drawingProperties.numHexs <= 500;
+    }
+
     // Drawing/Geometry functions
     public interface HexDataAdapter<T> {
         void updateData(T data);
@@ -427,6 +559,20 @@ public class HexHivePanel extends JPanel {
          * Hexagon border stroke width, has to be converted to pixels depending on screen density
          */
         private float hexBorderStrokeWidth;
+        /**
+         * Size of the canvas these properties were calculated for
+         */
+        private int canvasWidth;
+        private int canvasHeight;
+        /**
+         * Hexagon centers, as laid out by the last full draw
+         */
+        private int[] centersX;
+        private int[] centersY;
+        /**
+         * Number of hexagons in the first row
+         */
+        private int rowLength;
 
         DrawingProperties(HexDataAdapter adapter, int hexSideLen, float hexBorderWidth, int left, int top, int right, int bottom) {
             if (adapter == null) {
@@ -445,6 +591,14 @@ public class HexHivePanel extends JPanel {
             update(left, top, right, bottom);
         }
 
+        void initCenters() {
+            if (centersX == null) {
+                centersX = new int[numHexs];
+                centersY = new int[numHexs];
+            }
+            rowLength = 0;
+        }
+
         void update(int left, int top, int right, int bottom) {
             origin.x = left;
             origin.y = top;
@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,15 +21,29 @@ package com.frostwire.gui.components.transfers;
 import com.frostwire.gui.bittorrent.BittorrentDownload;
 import com.frostwire.jlibtorrent.PeerInfo;
 import com.frostwire.util.Logger;
+import com.limegroup.gnutella.gui.GUIMediator;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class TransferDetailPeers extends JPanel implements TransferDetailComponent.TransferDetailPanel {
     private static final Logger LOG = Logger.getLogger(TransferDetailPeers.class);
     private final TransferDetailPeersTableMediator tableMediator;
+    private final ExecutorService threadPool = com.frostwire.util.ThreadPool.newThreadPool("TransferDetailPeersPool", 1);
+    private final AtomicBoolean updatePending = new AtomicBoolean();
     private BittorrentDownload btDownload;
+    /**
+     * Endpoints of the peers in the table once the diffs sent are applied,
+     * only used from the pool thread
+     */
+    private final Set<String> knownPeers = new HashSet<>();
+    private BittorrentDownload knownPeersDownload;
 
     TransferDetailPeers() {
         super(new MigLayout("fillx, insets 0 0 0 0, gap 0 0"));
@@ -44,50 +58,108 @@ public final class TransferDetailPeers extends JPanel implements TransferDetailC
                 tableMediator.clearTable();
             }
             this.btDownload = btDownload;
-            try {
-                List<PeerInfo> items = btDownload.getDl().getTorrentHandle().peerInfo();
-                if (items != null && items.size() > 0) {
-                    if (tableMediator.getSize() == 0) {
-                        int i = 0;
-                        for (PeerInfo item : items) {
-                            tableMediator.add(new PeerItemHolder(i++, item));
-                        }
-                    } else {
-                        int i = 0;
-                        for (PeerInfo item : items) {
-                            try {
-                                tableMediator.update(new PeerItemHolder(i++, item));
-                            } catch (IndexOutOfBoundsException ignored) {
-                                // peer might not be there anymore, reload table from scratch
-                                tableMediator.clearTable();
-                                updateData(btDownload);
-                            }
+            if (!isShowing()) {
+                // nobody is looking, the next update after the panel shows up catches up
+                return;
+            }
+            if (updatePending.compareAndSet(false, true)) {
+                threadPool.execute(() -> {
+                    updatePending.set(false);
+                    try {
+                        PeersDiff diff = diff(btDownload);
+                        if (!diff.isEmpty()) {
+                            GUIMediator.safeInvokeLater(() -> {
+                                if (this.btDownload == btDownload) {
+                                    tableMediator.apply(diff);
+                                }
+                            });
                         }
+                    } catch (Throwable e) {
+                        LOG.error("Error updating data: " + e.getMessage());
                     }
-                }
-            } catch (Throwable e) {
-                LOG.error("Error updating data: " + e.getMessage());
+                });
             }
         }
     }
 
-    public class PeerItemHolder {
-        final int peerOffset;
+    private PeersDiff diff(BittorrentDownload btDownload) {
+        if (knownPeersDownload != btDownload) {
+            // the table was cleared when the download was selected
+            knownPeers.clear();
+            knownPeersDownload = btDownload;
+        }
+        List<PeerInfo> items = btDownload.getDl().getTorrentHandle().peerInfo();
+        List<PeerItemHolder> peers = new ArrayList<>(items != null ? items.size() : 0);
+        if (items != null) {
+            for (PeerInfo item : items) {
+                peers.add(new PeerItemHolder(item));
+            }
+        }
+        return PeersDiff.compute(knownPeers, peers);
+    }
+
+    public static final class PeerItemHolder {
+        final String endpoint;
         final PeerInfo peerItem;
 
-        PeerItemHolder(int peerOffset, PeerInfo peerItem) {
-            this.peerOffset = peerOffset;
+        PeerItemHolder(PeerInfo peerItem) {
+            this(peerItem.ip(), peerItem);
+        }
+
+        PeerItemHolder(String endpoint, PeerInfo peerItem) {
+            this.endpoint = endpoint;
             this.peerItem = peerItem;
         }
 
         @Override
         public int hashCode() {
-            return peerOffset;
+            return endpoint.hashCode();
         }
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof PeerItemHolder && ((PeerItemHolder) obj).peerOffset == peerOffset;
+            return obj instanceof PeerItemHolder && ((PeerItemHolder) obj).endpoint.equals(endpoint);
+        }
+    }
+
+    /**
+     * The peers to add, update and remove to go from the table rows to
+     * the current peer list, peers are keyed by endpoint (ip:port).
+     */
+    static final class PeersDiff {
+        final List<PeerItemHolder> added = new ArrayList<>();
+        final List<PeerItemHolder> updated = new ArrayList<>();
+        final Set<String> removed = new HashSet<>();
+
+        /**
+         * @param known the endpoints in the table, updated to the current ones
+         */
+        static PeersDiff compute(Set<String> known, List<PeerItemHolder> current) {
+            PeersDiff diff = new PeersDiff();
+            Set<String> seen = new HashSet<>(current.size() * 2);
+            for (PeerItemHolder peer : current) {
+                if (!seen.add(peer.endpoint)) {
+                    // libtorrent can list a peer twice while a connection is being replaced
+                    continue;
+                }
+                if (known.contains(peer.endpoint)) {
+                    diff.updated.add(peer);
+                } else {
+                    diff.added.add(peer);
+                }
+            }
+            for (String endpoint : known) {
+                if (!seen.contains(endpoint)) {
+                    diff.removed.add(endpoint);
+                }
+            }
+            known.clear();
+            known.addAll(seen);
+            return diff;
+        }
+
+        boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
         }
     }
 }
@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,9 +20,56 @@ package com.frostwire.gui.components.transfers;
 
 import com.limegroup.gnutella.gui.tables.BasicDataLineModel;
 
+import java.util.HashMap;
+import java.util.Map;
+
 class TransferDetailPeersModel extends
         BasicDataLineModel<TransferDetailPeersDataLine, TransferDetailPeers.PeerItemHolder> {
     TransferDetailPeersModel() {
         super(TransferDetailPeersDataLine.class);
     }
+
+    /**
+     * Applies the diff firing one event per run of removed rows,
+     * one for the updated rows and one for the appended rows.
+     */
+    void apply(TransferDetailPeers.PeersDiff diff) {
+        // removed rows, backwards so the indexes of the next runs still hold
+        int row = _list.size() - 1;
+        while (row >= 0) {
+            if (!diff.removed.contains(_list.get(row).getInitializeObject().endpoint)) {
+                row--;
+                continue;
+            }
+            int last = row;
+            while (row >= 0 && diff.removed.contains(_list.get(row).getInitializeObject().endpoint)) {
+                _list.get(row).cleanup();
+                row--;
+            }
+            _list.subList(row + 1, last + 1).clear();
+            fireTableRowsDeleted(row + 1, last);
+        }
+        if (!diff.updated.isEmpty() && !_list.isEmpty()) {
+            Map<String, TransferDetailPeersDataLine> lines = new HashMap<>(_list.size() * 2);
+            for (TransferDetailPeersDataLine line : _list) {
+                lines.put(line.getInitializeObject().endpoint, line);
+            }
+            for (TransferDetailPeers.PeerItemHolder peer : diff.updated) {
+                TransferDetailPeersDataLine line = lines.get(peer.endpoint);
+                if (line != null) {
+                    line.setInitializeObject(peer);
+                }
+            }
+            fireTableRowsUpdated(0, _list.size() - 1);
+        }
+        if (!diff.added.isEmpty()) {
+            int first = _list.size();
+            for (TransferDetailPeers.PeerItemHolder peer : diff.added) {
+                TransferDetailPeersDataLine line = createDataLine();
+                line.initialize(peer);
+                _list.add(line);
+            }
+            fireTableRowsInserted(first, _list.size() - 1);
+        }
+    }
 }
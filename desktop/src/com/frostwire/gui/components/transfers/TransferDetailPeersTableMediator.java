@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -43,6 +43,27 @@ public class TransferDetailPeersTableMediator extends
         TABLE.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
     }
 
+    /**
+     * Applies a peers diff computed off the EDT, keeping the selection.
+     */
+    void apply(TransferDetailPeers.PeersDiff diff) {
+        TransferDetailPeers.PeerItemHolder selected = null;
+        int selectedRow = TABLE.getSelectedRow();
+        if (selectedRow >= 0 && selectedRow < DATA_MODEL.getRowCount()) {
+            selected = DATA_MODEL.get(selectedRow).getInitializeObject();
+        }
+        DATA_MODEL.apply(diff);
+        if (!diff.added.isEmpty() && DATA_MODEL.isSorted()) {
+            forceResort();
+        }
+        if (selected != null) {
+            int row = DATA_MODEL.getRow(selected);
+            if (row >= 0 && row != TABLE.getSelectedRow()) {
+                TABLE.setRowSelectionInterval(row, row);
+            }
+        }
+    }
+
     @Override
     protected JPopupMenu createPopupMenu() {
         SkinPopupMenu menu = new SkinPopupMenu();
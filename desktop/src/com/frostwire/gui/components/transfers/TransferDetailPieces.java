@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.BitSet;
 
 public final class TransferDetailPieces extends JPanel implements TransferDetailComponent.TransferDetailPanel {
     private final JLabel pieceSizeLabel;
@@ -99,31 +100,45 @@ public final class TransferDetailPieces extends JPanel implements TransferDetail
     private final static class HexHiveAdapter implements HexHivePanel.HexDataAdapter<BittorrentDownload> {
         private BittorrentDownload bittorrentDownload;
         private int totalPieces;
-        private int numFullPieces;
-        private PieceIndexBitfield pieces;
+        private int numFullPieces = -1;
+        /**
+         * Java side copy of the pieces bitfield, the panel reads every bit
+         * on each draw and each getBit is a native call
+         */
+        private volatile BitSet pieces = new BitSet();
         private String pieceSizeInHuman;
 
         @Override
         public void updateData(BittorrentDownload btDownload) {
+            boolean sameDownload = bittorrentDownload == btDownload;
             bittorrentDownload = btDownload;
             TorrentHandle torrentHandle = bittorrentDownload.getDl().getTorrentHandle();
             TorrentStatus status = torrentHandle.status(TorrentHandle.QUERY_PIECES);
             TorrentInfo torrentInfo = torrentHandle.torrentFile();
             pieceSizeInHuman = GUIUtils.getBytesInHuman(torrentInfo.pieceSize(0));
-            totalPieces = torrentInfo.numPieces();
-            pieces = status.pieces();
-            if (pieces.isAllSet()) {
-                numFullPieces = totalPieces;
-            } else if (pieces.isNoneSet() || pieces.isEmpty()) {
-                numFullPieces = 0;
-            } else {
-                numFullPieces = 0;
-                for (int i = 0; i < pieces.count(); i++) {
-                    if (pieces.getBit(i)) {
-                        numFullPieces++;
+            int total = torrentInfo.numPieces();
+            PieceIndexBitfield bitfield = status.pieces();
+            // number of set bits, libtorrent counts them a word at a time
+            int count = bitfield.isEmpty() ? 0 : bitfield.count();
+            if (sameDownload && total == totalPieces && count == numFullPieces) {
+                // pieces only get added (a failed hash check is picked up by the next completed piece)
+                return;
+            }
+            totalPieces = total;
+            numFullPieces = count;
+            BitSet snapshot = new BitSet(totalPieces);
+            if (bitfield.isAllSet()) {
+                snapshot.set(0, totalPieces);
+            } else if (count > 0) {
+                int size = Math.min(bitfield.size(), totalPieces);
+                for (int i = 0; i < size; i++) {
+                    if (bitfield.getBit(i)) {
+                        snapshot.set(i);
                     }
                 }
             }
+            // the panel draws from its own thread, don't let it see a half built copy
+            pieces = snapshot;
         }
 
         @Override
@@ -139,12 +154,12 @@ public final class TransferDetailPieces extends JPanel implements TransferDetail
             if (bittorrentDownload == null) {
                 return 0;
             }
-            return numFullPieces;
+            return Math.max(numFullPieces, 0);
         }
 
         @Override
         public boolean isFull(int hexOffset) {
-            return pieces.getBit(hexOffset);
+            return pieces.get(hexOffset);
         }
 
         String getPieceSizeInHuman() {
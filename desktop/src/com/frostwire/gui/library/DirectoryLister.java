@@ -0,0 +1,424 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.util.Logger;
+import com.frostwire.util.OSUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lists directories off the calling thread, with the attributes of every child
+ * read once, in the same pass.
+ * <p>
+ * The listings are kept in an LRU cache bounded by the total number of entries,
+ * and a cached listing is only used while the directory modification time is
+ * the same. Asynchronous listings are streamed to the listeners in chunks,
+ * concurrent requests for the same directory share one listing, and a listing
+ * nobody waits for anymore is stopped.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DirectoryLister {
+    private static final Logger LOG = Logger.getLogger(DirectoryLister.class);
+    private static final int DEFAULT_MAX_CACHED_ENTRIES = 200_000;
+    private static DirectoryLister instance;
+
+    private final ExecutorService pool;
+    private final int maxCachedEntries;
+    private final LinkedHashMap<File, Listing> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<File, Task> tasks = new HashMap<>();
+    private int cachedEntries;
+
+    /**
+     * @param threads          the number of directories listed at the same time
+     * @param maxCachedEntries the maximum number of children kept in the cache
+     */
+    public DirectoryLister(int threads, int maxCachedEntries) {
+        this.pool = ExecutorsHelper.newFixedSizeThreadPool(threads, "DirectoryLister");
+        this.maxCachedEntries = maxCachedEntries;
+    }
+
+    public synchronized static DirectoryLister instance() {
+        if (instance == null) {
+            instance = new DirectoryLister(2, DEFAULT_MAX_CACHED_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * Lists the directory in the calling thread, unless the cached listing is
+     * still valid. For the callers already in a background thread.
+     *
+     * @return the listing, empty if the directory can't be read
+     */
+    public Listing list(File dir) {
+        Listing listing = getCached(dir);
+        if (listing != null) {
+            return listing;
+        }
+        try {
+            long modified = lastModified(dir);
+            List<Entry> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+                for (Path child : stream) {
+                    entries.add(readEntry(child));
+                }
+            }
+            listing = new Listing(dir, modified, entries);
+            put(listing);
+            return listing;
+        } catch (Throwable e) {
+            LOG.warn("Error listing directory: " + dir + ", " + e.getMessage());
+            return new Listing(dir, -1, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Lists the directory in the background, the listener is called from a pool
+     * thread, first with the children in chunks then once done. Nothing is read
+     * from the disk in the calling thread, not even to check the cache, and an
+     * unreadable directory is done with an empty listing.
+     *
+     * @param chunkSize the maximum number of children per chunk
+     * @return the handle to stop listening
+     */
+    public Handle list(File dir, int chunkSize, Listener listener) {
+        Handle handle = new Handle(dir, listener);
+        pool.execute(() -> {
+            if (handle.cancelled) {
+                return;
+            }
+            Listing cached = getCached(dir);
+            if (cached != null) {
+                List<Entry> entries = cached.entries;
+                for (int i = 0; i < entries.size() && !handle.cancelled; i += chunkSize) {
+                    listener.onChunk(dir, entries.subList(i, Math.min(i + chunkSize, entries.size())));
+                }
+                if (!handle.cancelled) {
+                    listener.onDone(dir, cached);
+                }
+                return;
+            }
+            synchronized (tasks) {
+                Task task = tasks.get(dir);
+                if (task == null) {
+                    task = new Task(dir, chunkSize);
+                    tasks.put(dir, task);
+                    task.add(handle);
+                    pool.execute(task);
+                } else {
+                    task.add(handle);
+                }
+                handle.task = task;
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * @return the cached listing if the directory didn't change since, or null
+     */
+    public Listing getCached(File dir) {
+        Listing listing;
+        synchronized (cache) {
+            listing = cache.get(dir);
+        }
+        if (listing == null) {
+            return null;
+        }
+        try {
+            if (lastModified(dir) == listing.modified) {
+                return listing;
+            }
+        } catch (IOException e) {
+            // gone
+        }
+        invalidate(dir);
+        return null;
+    }
+
+    public void invalidate(File dir) {
+        synchronized (cache) {
+            Listing listing = cache.remove(dir);
+            if (listing != null) {
+                cachedEntries -= listing.entries.size();
+            }
+        }
+    }
+
+    private void put(Listing listing) {
+        if (listing.entries.size() > maxCachedEntries) {
+            return;
+        }
+        synchronized (cache) {
+            Listing old = cache.put(listing.dir, listing);
+            cachedEntries += listing.entries.size() - (old != null ? old.entries.size() : 0);
+            Iterator<Listing> it = cache.values().iterator();
+            while (cachedEntries > maxCachedEntries && it.hasNext()) {
+                cachedEntries -= it.next().entries.size();
+                it.remove();
+            }
+        }
+    }
+
+    private static long lastModified(File dir) throws IOException {
+        return Files.getLastModifiedTime(dir.toPath()).toMillis();
+    }
+
+    private static Entry readEntry(Path path) {
+        File file = path.toFile();
+        try {
+            if (OSUtils.isWindows()) {
+                DosFileAttributes attrs = Files.readAttributes(path, DosFileAttributes.class);
+                return new Entry(file, attrs.isDirectory(), attrs.isHidden(), attrs.size(), attrs.lastModifiedTime().toMillis());
+            }
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Entry(file, attrs.isDirectory(), isDotFile(file), attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // a broken link, or removed meanwhile
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new Entry(file, false, isDotFile(file), attrs.size(), attrs.lastModifiedTime().toMillis());
+            } catch (IOException e2) {
+                return new Entry(file, false, isDotFile(file), 0, 0);
+            }
+        }
+    }
+
+    private static boolean isDotFile(File file) {
+        return file.getName().startsWith(".");
+    }
+
+    public interface Listener {
+        void onChunk(File dir, List<Entry> chunk);
+
+        /**
+         * @param listing the complete listing, empty if the directory can't be read
+         */
+        void onDone(File dir, Listing listing);
+    }
+
+    /**
+     * A child of a listed directory.
+     */
+    public static final class Entry {
+        private final File file;
+        private final boolean directory;
+        private final boolean hidden;
+        private final long size;
+        private final long lastModified;
+
+        Entry(File file, boolean directory, boolean hidden, long size, long lastModified) {
+            this.file = file;
+            this.directory = directory;
+            this.hidden = hidden;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public boolean isHidden() {
+            return hidden;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    public static final class Listing {
+        private final File dir;
+        private final long modified;
+        private final List<Entry> entries;
+
+        Listing(File dir, long modified, List<Entry> entries) {
+            this.dir = dir;
+            this.modified = modified;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public File getDirectory() {
+            return dir;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    public final class Handle {
+        private final File dir;
+        private final Listener listener;
+        private volatile boolean cancelled;
+        private volatile Task task;
+
+        Handle(File dir, Listener listener) {
+            this.dir = dir;
+            this.listener = listener;
+        }
+
+        /**
+         * No more calls to the listener after this returns.
+         */
+        public void cancel() {
+            cancelled = true;
+            Task t = task;
+            if (t != null) {
+                t.remove(this);
+            }
+        }
+
+        public File getDirectory() {
+            return dir;
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final File dir;
+        private final int chunkSize;
+        // guarded by this
+        private final List<Handle> handles = new ArrayList<>(1);
+        private final List<Entry> entries = new ArrayList<>();
+
+        Task(File dir, int chunkSize) {
+            this.dir = dir;
+            this.chunkSize = chunkSize;
+        }
+
+        synchronized void add(Handle handle) {
+            // a late listener gets what was read so far first
+            if (!entries.isEmpty() && !handle.cancelled) {
+                handle.listener.onChunk(dir, new ArrayList<>(entries));
+            }
+            handles.add(handle);
+        }
+
+        synchronized void remove(Handle handle) {
+            handles.remove(handle);
+        }
+
+        private synchronized boolean abandoned() {
+            for (Handle h : handles) {
+                if (!h.cancelled) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Removes the task if nobody waits for it anymore, under the tasks lock,
+         * so no new handle joins a task that is stopping.
+         */
+        private boolean abandon() {
+            synchronized (tasks) {
+                if (!abandoned()) {
+                    return false;
+                }
+                tasks.remove(dir, this);
+                return true;
+            }
+        }
+
+        @Override
+        public void run() {
+            Listing listing = null;
+            try {
+                long modified = lastModified(dir);
+                List<Entry> chunk = new ArrayList<>(chunkSize);
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())) {
+                    for (Path child : stream) {
+                        if (abandoned() && abandon()) {
+                            return;
+                        }
+                        chunk.add(readEntry(child));
+                        if (chunk.size() == chunkSize) {
+                            deliver(chunk);
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    deliver(chunk);
+                }
+                synchronized (this) {
+                    listing = new Listing(dir, modified, new ArrayList<>(entries));
+                }
+                put(listing);
+            } catch (Throwable e) {
+                LOG.warn("Error listing directory: " + dir + ", " + e.getMessage());
+                listing = new Listing(dir, -1, Collections.emptyList());
+            } finally {
+                // null when abandoned, it's already out of the tasks
+                if (listing != null) {
+                    List<Handle> done;
+                    synchronized (tasks) {
+                        tasks.remove(dir, this);
+                        synchronized (this) {
+                            done = new ArrayList<>(handles);
+                        }
+                    }
+                    for (Handle h : done) {
+                        if (!h.cancelled) {
+                            h.listener.onDone(dir, listing);
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized void deliver(List<Entry> chunk) {
+            entries.addAll(chunk);
+            List<Entry> view = Collections.unmodifiableList(chunk);
+            for (Handle h : handles) {
+                if (!h.cancelled) {
+                    h.listener.onChunk(dir, view);
+                }
+            }
+        }
+    }
+}
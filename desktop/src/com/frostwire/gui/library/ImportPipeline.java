@@ -0,0 +1,266 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.util.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Imports files in three stages: one thread walks the given files and folders,
+ * a pool of workers parses them (usually their tags) and the calling thread
+ * writes them in batches, in the order they were found.
+ * <p>
+ * At most {@code capacity} files are between the walk and the write at any
+ * time, the walk blocks when the writer or the parsers fall behind.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class ImportPipeline<T> {
+    private static final Logger LOG = Logger.getLogger(ImportPipeline.class);
+    /**
+     * A partial batch is written after this long, so the progress is visible.
+     */
+    private static final long MAX_BATCH_DELAY_MILLIS = 250;
+
+    private final FileFilter filter;
+    private final Function<File, T> parser;
+    private final int workers;
+    private final int capacity;
+    private final int batchSize;
+    private volatile boolean cancelled;
+
+    /**
+     * @param filter    the files to import, folders are always walked into
+     * @param parser    called from the workers, returning null or throwing is fine
+     * @param workers   the number of parsing threads
+     * @param capacity  the maximum number of files in the pipeline
+     * @param batchSize the maximum number of files per write
+     */
+    public ImportPipeline(FileFilter filter, Function<File, T> parser, int workers, int capacity, int batchSize) {
+        this.filter = filter;
+        this.parser = parser;
+        this.workers = Math.max(1, workers);
+        this.capacity = Math.max(this.workers, capacity);
+        this.batchSize = Math.max(1, Math.min(batchSize, this.capacity));
+    }
+
+    /**
+     * Stops the import as soon as possible, the batches already written stay.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Runs the import, returning when all the files were written or it was cancelled.
+     *
+     * @param roots    the files and folders to import, walked in order
+     * @param sink     writes the batches, called from this thread
+     * @param listener the progress, called from this thread after each batch, can be null
+     * @return the number of files written
+     */
+    public int run(File[] roots, Sink<T> sink, ProgressListener listener) throws InterruptedException {
+        Semaphore window = new Semaphore(capacity);
+        BlockingQueue<Item<T>> tasks = new LinkedBlockingQueue<>();
+        BlockingQueue<Item<T>> results = new LinkedBlockingQueue<>();
+        // written by the walker before the end marker is queued
+        int[] found = new int[1];
+        ExecutorService pool = ExecutorsHelper.newFixedSizeThreadPool(workers + 1, "ImportPipeline");
+        try {
+            pool.execute(() -> walk(roots, window, tasks, results, found));
+            for (int i = 0; i < workers; i++) {
+                pool.execute(() -> parse(tasks, results));
+            }
+            return write(window, results, found, sink, listener);
+        } finally {
+            cancelled = cancelled || Thread.currentThread().isInterrupted();
+            // the walker could be blocked in the window
+            pool.shutdownNow();
+        }
+    }
+
+    private void walk(File[] roots, Semaphore window, BlockingQueue<Item<T>> tasks, BlockingQueue<Item<T>> results, int[] found) {
+        int seq = 0;
+        try {
+            Deque<File> stack = new ArrayDeque<>();
+            pushAll(stack, roots);
+            while (!stack.isEmpty() && !cancelled) {
+                File f = stack.pop();
+                if (filter.accept(f)) {
+                    window.acquire();
+                    tasks.put(new Item<>(seq++, f));
+                } else if (f.isDirectory()) {
+                    pushAll(stack, f.listFiles());
+                }
+            }
+        } catch (InterruptedException e) {
+            // cancelled
+        } catch (Throwable e) {
+            LOG.error("Error walking the files to import", e);
+        } finally {
+            found[0] = seq;
+            for (int i = 0; i < workers; i++) {
+                tasks.add(Item.end());
+            }
+            results.add(Item.end());
+        }
+    }
+
+    private void parse(BlockingQueue<Item<T>> tasks, BlockingQueue<Item<T>> results) {
+        try {
+            Item<T> item;
+            while ((item = tasks.take()).file != null) {
+                if (!cancelled) {
+                    try {
+                        item.value = parser.apply(item.file);
+                    } catch (Throwable e) {
+                        LOG.warn("Error parsing file to import: " + item.file + ", " + e.getMessage());
+                    }
+                }
+                results.put(item);
+            }
+        } catch (InterruptedException e) {
+            // cancelled
+        }
+    }
+
+    private int write(Semaphore window, BlockingQueue<Item<T>> results, int[] found, Sink<T> sink, ProgressListener listener) throws InterruptedException {
+        // the parsed files waiting for a previous one to be done
+        Map<Integer, Item<T>> ready = new HashMap<>();
+        List<Parsed<T>> batch = new ArrayList<>(batchSize);
+        int next = 0;
+        int written = 0;
+        boolean walked = false;
+        long batchStart = 0;
+        while (!cancelled && (!walked || next < found[0])) {
+            Item<T> item = results.poll(MAX_BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                if (item.file == null) {
+                    walked = true;
+                } else {
+                    ready.put(item.seq, item);
+                }
+            }
+            while ((item = ready.remove(next)) != null) {
+                if (batch.isEmpty()) {
+                    batchStart = System.currentTimeMillis();
+                }
+                batch.add(new Parsed<>(item.file, item.value));
+                next++;
+                if (batch.size() == batchSize) {
+                    written += flush(batch, window, sink, listener, written, walked, found);
+                }
+            }
+            boolean done = walked && next == found[0];
+            if (!batch.isEmpty() && (done || System.currentTimeMillis() - batchStart >= MAX_BATCH_DELAY_MILLIS)) {
+                written += flush(batch, window, sink, listener, written, walked, found);
+            }
+        }
+        return written;
+    }
+
+    private int flush(List<Parsed<T>> batch, Semaphore window, Sink<T> sink, ProgressListener listener, int written, boolean walked, int[] found) {
+        int n = batch.size();
+        if (!cancelled) {
+            sink.write(new ArrayList<>(batch));
+        }
+        batch.clear();
+        window.release(n);
+        if (listener != null && !cancelled) {
+            listener.onProgress(written + n, walked ? found[0] : -1);
+        }
+        return cancelled ? 0 : n;
+    }
+
+    private static void pushAll(Deque<File> stack, File[] files) {
+        if (files == null) {
+            return;
+        }
+        // reversed, so they are popped in order
+        for (int i = files.length - 1; i >= 0; i--) {
+            stack.push(files[i]);
+        }
+    }
+
+    public interface Sink<T> {
+        void write(List<Parsed<T>> batch);
+    }
+
+    public interface ProgressListener {
+        /**
+         * @param total the number of files to import, -1 while still looking for them
+         */
+        void onProgress(int written, int total);
+    }
+
+    public static final class Parsed<T> {
+        private final File file;
+        private final T value;
+
+        Parsed(File file, T value) {
+            this.file = file;
+            this.value = value;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the parser result, null if it failed
+         */
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private static final class Item<T> {
+        final int seq;
+        final File file;
+        T value;
+
+        Item(int seq, File file) {
+            this.seq = seq;
+            this.file = file;
+        }
+
+        static <T> Item<T> end() {
+            return new Item<>(-1, null);
+        }
+    }
+}
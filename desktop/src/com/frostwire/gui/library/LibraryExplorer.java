@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml),
  * Marcelina Knitter (@marcelinkaaa), Jose Molina (@votaguz)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,7 +34,6 @@ import com.limegroup.gnutella.gui.tables.TableSettings;
 import com.limegroup.gnutella.gui.util.BackgroundExecutorService;
 import com.limegroup.gnutella.settings.LibrarySettings;
 import com.limegroup.gnutella.settings.SharingSettings;
-import org.limewire.util.FileUtils;
 
 import javax.swing.*;
 import javax.swing.event.TreeSelectionEvent;
@@ -396,18 +395,20 @@ public class LibraryExplorer extends AbstractLibraryListPanel {
             }
             List<File> directories = new ArrayList<>();
             final List<File> files = new ArrayList<>();
-            for (File child : FileUtils.listFiles(file)) {// file.listFiles()) {
+            // the attributes come with the listing, no stat per child
+            for (DirectoryLister.Entry entry : DirectoryLister.instance().list(file).getEntries()) {
                 DirectoryHolder directoryHolder = getSelectedDirectoryHolder();
                 if (!_mtsfdh.equals(directoryHolder)) {
                     return;
                 }
+                File child = entry.getFile();
                 if (ignore.contains(child)) {
                     continue;
                 }
-                if (child.isHidden()) {
+                if (entry.isHidden()) {
                     continue;
                 }
-                if (child.isDirectory() && !exludedSubFolders.contains(child)) {
+                if (entry.isDirectory() && !exludedSubFolders.contains(child)) {
                     directories.add(child);
                 } else if (_mtsfdh.accept(child)) {
                     files.add(child);
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2018, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -93,7 +93,7 @@ public class LibraryMediator {
         return INSTANCE;
     }
 
-    public static Library getLibrary() {
+    public static synchronized Library getLibrary() {
         if (LIBRARY == null) {
             LIBRARY = new Library(LibrarySettings.LIBRARY_DATABASE);
         }
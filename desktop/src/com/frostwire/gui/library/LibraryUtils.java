@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -40,74 +40,57 @@ import org.limewire.util.StringUtils;
 import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author gubatron
  * @author aldenml
  */
 public class LibraryUtils {
-    @SuppressWarnings("unused")
     private static final Logger LOG = Logger.getLogger(LibraryUtils.class);
     private static final ExecutorService executor;
+    private static final int TAG_READERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService tagReaders;
+    private static final int IMPORT_CAPACITY = 512;
+    private static final int IMPORT_BATCH_SIZE = 100;
 
     static {
         executor = ExecutorsHelper.newProcessingQueue("LibraryUtils-Executor");
+        tagReaders = ExecutorsHelper.newFixedSizeThreadPool(TAG_READERS, "LibraryUtils-TagReaders");
     }
 
     public static ExecutorService getExecutor() {
         return executor;
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file) {
-        addPlaylistItem(playlist, file, playlist.isStarred(), -1);
-    }
-
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred, int index) {
-        try {
-            LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
-            TagsData mt = new TagsReader(file).parse();
-            PlaylistItem item = playlist.newItem(
-                    file.getAbsolutePath(),
-                    file.getName(),
-                    file.length(),
-                    FilenameUtils.getExtension(file.getName()),
-                    mt.getTitle(),
-                    mt.getDuration(),
-                    mt.getArtist(),
-                    mt.getAlbum(),
-                    "",// TODO: cover art path
-                    mt.getBitrate(),
-                    mt.getComment(),
-                    mt.getGenre(),
-                    mt.getTrack(),
-                    mt.getYear(),
-                    starred || playlist.isStarred());
-            List<PlaylistItem> items = playlist.getItems();
-            if (index != -1 && index < items.size()) {
-                // insert item
-                items.add(index, item);
-                // update all sort indexes from insertion point onwards
-                for (int i = index; i < items.size(); i++) {
-                    PlaylistItem curItem = items.get(i);
-                    curItem.setSortIndexByTrackNumber(i + 1);
-                    curItem.save();
-                }
-            } else {
-                items.add(item);
-                item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
-                item.save(item.isStarred());
-            }
-            if (isPlaylistSelected(playlist)) {
-                // refresh UI
-                LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
-            }
-        } finally {
-            LibraryMediator.instance().getLibrarySearch().revertStatus();
+    private static PlaylistItem newPlaylistItem(Playlist playlist, File file, TagsData mt, boolean starred) {
+        if (mt == null) {
+            // unreadable tags, still import it
+            return playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FilenameUtils.getExtension(file.getName()),
+                    FilenameUtils.getBaseName(file.getName()), 0, "", "", "", "", "", "", "", "", starred || playlist.isStarred());
         }
+        return playlist.newItem(
+                file.getAbsolutePath(),
+                file.getName(),
+                file.length(),
+                FilenameUtils.getExtension(file.getName()),
+                mt.getTitle(),
+                mt.getDuration(),
+                mt.getArtist(),
+                mt.getAlbum(),
+                "",// TODO: cover art path
+                mt.getBitrate(),
+                mt.getComment(),
+                mt.getGenre(),
+                mt.getTrack(),
+                mt.getYear(),
+                starred || playlist.isStarred());
     }
 
     public static String getSecondsInDDHHMMSS(int s) {
@@ -417,29 +400,85 @@ public class LibraryUtils {
     }
 
     private static void addToPlaylist(Playlist playlist, List<? extends AbstractLibraryTableDataLine<?>> lines) {
-        for (int i = 0; i < lines.size() && !playlist.isDeleted(); i++) {
-            AbstractLibraryTableDataLine<?> line = lines.get(i);
-            if (MediaPlayer.isPlayableFile(line.getFile())) {
-                LibraryUtils.addPlaylistItem(playlist, line.getFile());
-            }
+        File[] files = new File[lines.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = lines.get(i).getFile();
         }
+        addToPlaylist(playlist, files, playlist.isStarred(), -1, Collections.emptySet());
     }
 
     private static void addToPlaylist(Playlist playlist, File[] files, boolean starred, Set<File> ignore) {
         addToPlaylist(playlist, files, starred || playlist.isStarred(), -1, ignore);
     }
 
-    private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
-        int count = 0;
-        for (int i = 0; i < files.length && !playlist.isDeleted(); i++) {
-            if (MediaPlayer.isPlayableFile(files[i]) && !ignore.contains(files[i])) {
-                LibraryUtils.addPlaylistItem(playlist, files[i], playlist.isStarred() || starred, index + count);
-                count++;
-            } else if (files[i].isDirectory()) {
-                count += addToPlaylist(playlist, files[i].listFiles(), playlist.isStarred() || starred, index + count, ignore);
-            }
+    /**
+     * Imports the playable files, and the ones in the given folders, reading their tags
+     * in parallel and saving them in batches.
+     *
+     * @return the number of items added
+     */
+    private static int addToPlaylist(final Playlist playlist, File[] files, final boolean starred, final int index, final Set<File> ignore) {
+        final ImportPipeline<TagsData> pipeline = new ImportPipeline<>(
+                f -> MediaPlayer.isPlayableFile(f) && !ignore.contains(f),
+                f -> new TagsReader(f).parse(),
+                TAG_READERS, IMPORT_CAPACITY, IMPORT_BATCH_SIZE);
+        final List<PlaylistItem> items = playlist.getItems();
+        final boolean insert = index != -1 && index < items.size();
+        final int[] count = new int[1];
+        try {
+            pipeline.run(files, batch -> {
+                if (playlist.isDeleted()) {
+                    pipeline.cancel();
+                    return;
+                }
+                try {
+                    LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + batch.get(batch.size() - 1).getFile().getName());
+                    inTransaction(playlist, () -> {
+                        for (ImportPipeline.Parsed<TagsData> parsed : batch) {
+                            PlaylistItem item = newPlaylistItem(playlist, parsed.getFile(), parsed.getValue(), starred);
+                            if (insert) {
+                                items.add(index + count[0], item);
+                                item.setSortIndexByTrackNumber(index + count[0] + 1);
+                                item.save();
+                            } else {
+                                items.add(item);
+                                item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
+                                item.save(item.isStarred());
+                            }
+                            count[0]++;
+                        }
+                    });
+                } finally {
+                    LibraryMediator.instance().getLibrarySearch().revertStatus();
+                }
+                if (isPlaylistSelected(playlist)) {
+                    // refresh UI
+                    LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
+                }
+            }, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (insert && count[0] > 0 && !playlist.isDeleted()) {
+            // update all sort indexes after the inserted items, once
+            inTransaction(playlist, () -> {
+                for (int i = index + count[0]; i < items.size(); i++) {
+                    PlaylistItem item = items.get(i);
+                    item.setSortIndexByTrackNumber(i + 1);
+                    item.save();
+                }
+            });
+        }
+        return count[0];
+    }
+
+    private static void inTransaction(Playlist playlist, Runnable task) {
+        LibraryDatabase db = playlist.getLibraryDatabase();
+        if (db != null) {
+            db.runInTransaction(task);
+        } else {
+            task.run();
         }
-        return count;
     }
 
     private static void addToPlaylist(Playlist playlist, PlaylistItem[] playlistItems) {
@@ -548,27 +587,51 @@ public class LibraryUtils {
         HistoHashMap<String> artistsAlbums = new HistoHashMap<>();
         HistoHashMap<String> albumNames = new HistoHashMap<>();
         HistoHashMap<String> genres = new HistoHashMap<>();
-        for (File mf : mediaFiles) {
-            if (MediaPlayer.isPlayableFile(mf)) {
-                TagsData mt = new TagsReader(mf).parse();
-                artistNames.update(mt.getArtist());
-                artistsAlbums.update(mt.getArtist() + " - " + mt.getAlbum());
-                albumNames.update(mt.getAlbum());
-                genres.update("(" + mt.getGenre() + ")");
-            }
+        // the tags are read by all the workers at once, the counters are thread safe
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(TAG_READERS, mediaFiles.length);
+        CountDownLatch finished = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            tagReaders.execute(() -> {
+                try {
+                    int n;
+                    while ((n = next.getAndIncrement()) < mediaFiles.length) {
+                        File mf = mediaFiles[n];
+                        if (MediaPlayer.isPlayableFile(mf)) {
+                            TagsData mt = new TagsReader(mf).parse();
+                            artistNames.update(mt.getArtist());
+                            artistsAlbums.update(mt.getArtist() + " - " + mt.getAlbum());
+                            albumNames.update(mt.getAlbum());
+                            genres.update("(" + mt.getGenre() + ")");
+                        }
+                    }
+                } catch (Throwable e) {
+                    LOG.error("Error reading tags to suggest a playlist name", e);
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        // TODO: refactor this
         List<Entry<String, Integer>> histogramArtistNames = artistNames.histogram();
         List<Entry<String, Integer>> histogramArtistsAlbums = artistsAlbums.histogram();
         List<Entry<String, Integer>> histogramAlbumNames = albumNames.histogram();
         List<Entry<String, Integer>> histogramGenres = genres.histogram();
-        String topArtistName = histogramArtistNames.get(histogramArtistNames.size() - 1).getKey();
-        int topArtistNameCount = histogramArtistNames.get(histogramArtistNames.size() - 1).getValue();
-        String topArtistAlbum = histogramArtistsAlbums.get(histogramArtistsAlbums.size() - 1).getKey();
-        int topArtistAlbumCount = histogramArtistsAlbums.get(histogramArtistsAlbums.size() - 1).getValue();
-        String topAlbumName = histogramAlbumNames.get(histogramAlbumNames.size() - 1).getKey();
-        int topAlbumNameCount = histogramAlbumNames.get(histogramAlbumNames.size() - 1).getValue();
-        String topGenre = histogramGenres.get(histogramGenres.size() - 1).getKey();
+        if (histogramArtistNames.isEmpty()) {
+            return "";
+        }
+        // the histograms are sorted by descending frequency
+        String topArtistName = histogramArtistNames.get(0).getKey();
+        int topArtistNameCount = histogramArtistNames.get(0).getValue();
+        String topArtistAlbum = histogramArtistsAlbums.get(0).getKey();
+        int topArtistAlbumCount = histogramArtistsAlbums.get(0).getValue();
+        String topAlbumName = histogramAlbumNames.get(0).getKey();
+        int topAlbumNameCount = histogramAlbumNames.get(0).getValue();
+        String topGenre = histogramGenres.get(0).getKey();
         String suggestedPlaylistName = topArtistName;
         if (topArtistAlbumCount >= topArtistNameCount) {
             suggestedPlaylistName = topArtistAlbum;
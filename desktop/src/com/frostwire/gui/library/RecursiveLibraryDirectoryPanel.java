@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -27,6 +27,8 @@ import org.limewire.util.FileUtils;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.plaf.metal.MetalIconFactory;
 import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.TreeModel;
@@ -91,6 +93,20 @@ public class RecursiveLibraryDirectoryPanel extends JPanel {
         directoryTreeModel.setFileFilter(new IncludedFolderFilter());
         directoryTree = new RootNotEditableTree(directoryTreeModel);
         directoryTree.setBorder(new EmptyBorder(4, 4, 4, 4));
+        directoryTree.addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent event) {
+            }
+
+            @Override
+            public void treeCollapsed(TreeExpansionEvent event) {
+                // keeps the memory used by large trees to what is expanded
+                Object node = event.getPath().getLastPathComponent();
+                if (node instanceof File) {
+                    directoryTreeModel.forgetDescendants((File) node);
+                }
+            }
+        });
         /*
           Cell renderer for the tree that uses a check box for rendering of file tree
           data. Kept around here so its color configurations can be used.
@@ -405,10 +421,11 @@ public class RecursiveLibraryDirectoryPanel extends JPanel {
     }
 
     /**
-     * Expands node in the tree corresponding to <code>dir</code>.
+     * Expands node in the tree corresponding to <code>dir</code>, once the
+     * folders above it are listed.
      */
     private void setExpanded(File dir) {
-        directoryTree.expandPath(getTreePath(dir));
+        directoryTreeModel.loadPath(dir, () -> directoryTree.expandPath(getTreePath(dir)));
     }
 
     /**
@@ -473,13 +490,16 @@ public class RecursiveLibraryDirectoryPanel extends JPanel {
             File parent = file.getParentFile();
             if (ancestorIsExcluded(parent)) {
                 deselected.remove(parent);
-                int childCount = directoryTreeModel.getChildCount(parent);
-                for (int j = 0; j < childCount; j++) {
-                    File sibling = (File) directoryTreeModel.getChild(parent, j);
-                    if (sibling != null && !sibling.equals(file)) {
-                        deselected.add(sibling);
+                // the siblings are known once parent is listed
+                File included = file;
+                directoryTreeModel.getSubDirs(parent, siblings -> {
+                    for (File sibling : siblings) {
+                        if (!sibling.equals(included)) {
+                            deselected.add(sibling);
+                        }
                     }
-                }
+                    directoryTree.repaint();
+                });
             }
             file = parent;
         }
@@ -531,10 +551,8 @@ public class RecursiveLibraryDirectoryPanel extends JPanel {
                     return false;
                 }
             }
-            if (FileUtils.isAncestor(LibrarySettings.USER_MUSIC_FOLDER.getValue(), pathname)) {
-                return false;
-            }
-            return pathname.isDirectory() && !pathname.isHidden();
+            // hidden files and files are excluded by the model
+            return !FileUtils.isAncestor(LibrarySettings.USER_MUSIC_FOLDER.getValue(), pathname);
         }
     }
 
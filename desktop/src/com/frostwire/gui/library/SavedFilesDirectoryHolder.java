@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -24,13 +24,13 @@ import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.settings.LibrarySettings;
 import com.limegroup.gnutella.settings.SharingSettings;
 import org.limewire.setting.FileSetting;
-import org.limewire.util.FileUtils;
 
 import javax.swing.*;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -56,22 +56,21 @@ public class SavedFilesDirectoryHolder extends FileSettingDirectoryHolder {
     }
 
     private Set<File> getFilesRecursively(File folder, Set<File> excludeFolders) {
-        if (folder.isDirectory() && excludeFolders.contains(folder)) {
+        if (excludeFolders.contains(folder)) {
             return Collections.emptySet();
         }
-        File[] listFiles = FileUtils.listFiles(folder);//folder.listFiles();
-        if (listFiles == null || listFiles.length == 0) {
+        List<DirectoryLister.Entry> entries = DirectoryLister.instance().list(folder).getEntries();
+        if (entries.isEmpty()) {
             return Collections.emptySet();
         }
         Set<File> results = new HashSet<>();
-        for (File f : listFiles) {
-            if (f.exists()) {
-                if (!f.isDirectory() && !_hideFiles.contains(f) && !f.getName().toLowerCase().contains(".ds_store")
-                        && !isPartsFile(f)) {
-                    results.add(f);
-                } else if (f.isDirectory() && !excludeFolders.contains(f)) {
-                    results.addAll(getFilesRecursively(f, excludeFolders));
-                }
+        for (DirectoryLister.Entry entry : entries) {
+            File f = entry.getFile();
+            if (!entry.isDirectory() && !_hideFiles.contains(f) && !f.getName().toLowerCase().contains(".ds_store")
+                    && !isPartsFile(f)) {
+                results.add(f);
+            } else if (entry.isDirectory() && !excludeFolders.contains(f)) {
+                results.addAll(getFilesRecursively(f, excludeFolders));
             }
         }
         return results;
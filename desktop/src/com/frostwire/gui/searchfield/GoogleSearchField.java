@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -19,10 +19,6 @@
 package com.frostwire.gui.searchfield;
 
 import com.frostwire.gui.theme.ThemeMediator;
-import com.frostwire.util.HttpClientFactory;
-import com.frostwire.util.http.HttpClient;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonParser;
 import com.limegroup.gnutella.MediaType;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.GUIUtils;
@@ -42,10 +38,7 @@ import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -55,11 +48,15 @@ import java.util.List;
 public class GoogleSearchField extends SearchField {
     private static final String SUGGESTIONS_URL = buildSuggestionsUrl();
     private static final int HTTP_QUERY_TIMEOUT = 1000;
-    private SuggestionsThread suggestionsThread;
+    private static final long SUGGESTIONS_DEBOUNCE_MILLIS = 150;
+    private static final int SUGGESTIONS_MAX_IN_FLIGHT = 2;
+    private final SuggestionsService suggestionsService;
     public static final String CLOUD_SEARCH_FIELD_HINT_TEXT = I18n.tr("Search or enter target URL");
 
     public GoogleSearchField() {
         this.dict = createDefaultDictionary();
+        this.suggestionsService = new SuggestionsService(SUGGESTIONS_URL, HTTP_QUERY_TIMEOUT,
+                SUGGESTIONS_DEBOUNCE_MILLIS, SUGGESTIONS_MAX_IN_FLIGHT, dict);
         setPrompt(I18n.tr("Hints by Google"));
         setSearchMode(SearchMode.REGULAR);
         initCloudSearchField(this);
@@ -76,15 +73,38 @@ public class GoogleSearchField extends SearchField {
     public void autoCompleteInput() {
         String input = getText();
         if (input != null && input.length() > 0) {
-            if (suggestionsThread != null) {
-                suggestionsThread.cancel();
-            }
             if (getAutoComplete()) {
-                suggestionsThread = new SuggestionsThread(input, this);
-                suggestionsThread.start();
+                List<String> local = suggestionsService.request(input, (query, suggestions) ->
+                        GUIMediator.safeInvokeLater(() -> {
+                            if (query.equals(getText())) {
+                                showSuggestions(suggestions);
+                            }
+                        }));
+                showSuggestions(local);
             }
         } else {
+            suggestionsService.cancel();
+            hidePopup();
+        }
+    }
+
+    private void showSuggestions(List<String> suggestions) {
+        String t = getText();
+        if (suggestions.isEmpty() || StringUtils.isNullOrEmpty(t, true)) {
+            // the suggestions shown are for another text
             hidePopup();
+            return;
+        }
+        List<String> html = new ArrayList<>(suggestions.size());
+        for (String s : suggestions) {
+            try {
+                html.add(LCS.lcsHtml(t, s));
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+        if (!html.isEmpty()) {
+            showPopup(html.iterator());
         }
     }
 
@@ -170,72 +190,6 @@ public class GoogleSearchField extends SearchField {
         return entryPanel;
     }
 
-    private static final class SuggestionsThread extends Thread {
-        private final String constraint;
-        private final GoogleSearchField input;
-        private boolean cancelled;
-
-        SuggestionsThread(String constraint, GoogleSearchField input) {
-            this.constraint = constraint;
-            this.input = input;
-            this.setName("SuggestionsThread: " + constraint);
-            this.setDaemon(true);
-        }
-
-        boolean isCancelled() {
-            return cancelled;
-        }
-
-        void cancel() {
-            cancelled = true;
-        }
-
-        public void run() {
-            try {
-                String url = String.format(SUGGESTIONS_URL, URLEncoder.encode(constraint, StandardCharsets.UTF_8));
-                HttpClient httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.MISC);
-                String js = httpClient.get(url, HTTP_QUERY_TIMEOUT);
-                String json = stripJs(js);
-                if (!isCancelled()) {
-                    JsonArray arr = JsonParser.parseString(json).getAsJsonArray();
-                    final List<String> suggestions = readSuggestions(arr.get(1).getAsJsonArray());
-                    GUIMediator.safeInvokeLater(() -> {
-                        Iterator<String> it = suggestions.iterator();
-                        if (it.hasNext())
-                            if (!StringUtils.isNullOrEmpty(input.getText(), true)) {
-                                input.showPopup(it);
-                            } else
-                                input.hidePopup();
-                    });
-                }
-            } catch (Throwable e) {
-                // ignore
-            }
-        }
-
-        private List<String> readSuggestions(JsonArray array) {
-            String t = input.getText();
-            List<String> suggestions = new ArrayList<>(array.size());
-            if (!StringUtils.isNullOrEmpty(t, true)) {
-                for (int i = 0; i < array.size(); i++) {
-                    try {
-                        String s = LCS.lcsHtml(t, array.get(i).getAsJsonArray().get(0).getAsString());
-                        suggestions.add(s);
-                    } catch (Throwable e) {
-                        //e.printStackTrace();
-                    }
-                }
-            }
-            return suggestions;
-        }
-
-        private String stripJs(String js) {
-            js = js.replace("google.sbox.p50 && google.sbox.p50(", "");
-            js = js.replace("}])", "}]");
-            return js;
-        }
-    }
-
     public static class SearchListener implements ActionListener {
         private final GoogleSearchField cloudSearchField;
         public SearchListener(GoogleSearchField searchField) {
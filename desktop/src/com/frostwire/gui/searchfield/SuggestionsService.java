@@ -0,0 +1,273 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.searchfield;
+
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.Logger;
+import com.frostwire.util.http.HttpClient;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.limewire.collection.AutoCompleteDictionary;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Search suggestions for a text field, remote suggestions are fetched once the
+ * user stops typing for a moment, with a bounded number of requests in flight,
+ * and kept in a small LRU cache by prefix.
+ * <p>
+ * A prefix whose suggestions came back with less than {@link #MAX_REMOTE_SUGGESTIONS}
+ * entries is complete, the suggestions of any longer prefix are answered from it
+ * locally. The local history matches are merged in first, right away.
+ * <p>
+ * {@link #request(String, Listener)} must be called from a single thread (the EDT),
+ * the history dictionary is only used from that thread.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SuggestionsService {
+    private static final Logger LOG = Logger.getLogger(SuggestionsService.class);
+    /**
+     * The server never returns more suggestions than this.
+     */
+    public static final int MAX_REMOTE_SUGGESTIONS = 10;
+    private static final int MAX_HISTORY_SUGGESTIONS = 5;
+    private static final int MAX_CACHE_ENTRIES = 128;
+    // shared by all the fields, it only hands the requests to the fetchers
+    private static final ScheduledExecutorService DEBOUNCER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SuggestionsService-debouncer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String urlTemplate;
+    private final int timeout;
+    private final long debounceMillis;
+    private final AutoCompleteDictionary history;
+    private final ExecutorService fetchers;
+    private final Map<String, CacheEntry> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param urlTemplate    the suggestions url, with a %s for the query
+     * @param timeout        the http timeout in milliseconds
+     * @param debounceMillis the quiet time after a keystroke before fetching
+     * @param maxInFlight    the maximum number of concurrent requests
+     * @param history        the local history, can be null
+     */
+    public SuggestionsService(String urlTemplate, int timeout, long debounceMillis, int maxInFlight, AutoCompleteDictionary history) {
+        this.urlTemplate = urlTemplate;
+        this.timeout = timeout;
+        this.debounceMillis = debounceMillis;
+        this.history = history;
+        // its threads end when idle, nothing is left running by a disposed field
+        this.fetchers = ExecutorsHelper.newFixedSizeThreadPool(maxInFlight, "SuggestionsService");
+        this.cache = new LinkedHashMap<String, CacheEntry>(MAX_CACHE_ENTRIES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > MAX_CACHE_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the suggestions known right now (history and cache) and, unless the
+     * cache has the complete answer, schedules a remote fetch. The listener is called
+     * from a background thread, only if no newer request was made in the meantime.
+     *
+     * @return the suggestions available locally, never null
+     */
+    public List<String> request(String query, Listener listener) {
+        long gen = generation.incrementAndGet();
+        List<String> historyMatches = historyMatches(query);
+        Lookup cached = lookup(query);
+        if (cached != null && cached.complete) {
+            return merge(historyMatches, cached.suggestions);
+        }
+        DEBOUNCER.schedule(() -> dispatch(gen, query, historyMatches, listener), debounceMillis, TimeUnit.MILLISECONDS);
+        return merge(historyMatches, cached != null ? cached.suggestions : Collections.emptyList());
+    }
+
+    /**
+     * Drops any pending request, the in-flight ones still fill the cache.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    private void dispatch(long gen, String query, List<String> historyMatches, Listener listener) {
+        if (gen != generation.get()) {
+            return;
+        }
+        fetchers.execute(() -> {
+            // it could have waited for a free fetcher, or the cache filled meanwhile
+            if (gen != generation.get()) {
+                return;
+            }
+            Lookup cached = lookup(query);
+            List<String> suggestions;
+            if (cached != null && cached.complete) {
+                suggestions = cached.suggestions;
+            } else {
+                suggestions = fetch(query);
+                if (suggestions == null) {
+                    return;
+                }
+                synchronized (cache) {
+                    cache.put(key(query), new CacheEntry(suggestions));
+                }
+            }
+            if (gen == generation.get()) {
+                listener.onSuggestions(query, merge(historyMatches, suggestions));
+            }
+        });
+    }
+
+    private List<String> fetch(String query) {
+        try {
+            String url = String.format(urlTemplate, URLEncoder.encode(query, StandardCharsets.UTF_8));
+            HttpClient httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.MISC);
+            String js = httpClient.get(url, timeout);
+            return js != null ? parse(js) : null;
+        } catch (Throwable e) {
+            LOG.warn("Error fetching suggestions: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<String> parse(String js) {
+        int start = js.indexOf('[');
+        int end = js.lastIndexOf(']');
+        if (start == -1 || end < start) {
+            return null;
+        }
+        // unwrap the JSONP callback
+        JsonArray arr = JsonParser.parseString(js.substring(start, end + 1)).getAsJsonArray();
+        JsonArray array = arr.get(1).getAsJsonArray();
+        List<String> suggestions = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            try {
+                suggestions.add(array.get(i).getAsJsonArray().get(0).getAsString());
+            } catch (Throwable e) {
+                // skip malformed entry
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Finds the suggestions of the query, or of its longest cached prefix
+     * filtered to the ones starting with the query.
+     */
+    private Lookup lookup(String query) {
+        String key = key(query);
+        synchronized (cache) {
+            for (int i = key.length(); i > 0; i--) {
+                CacheEntry e = cache.get(key.substring(0, i));
+                if (e == null) {
+                    continue;
+                }
+                if (i == key.length()) {
+                    return new Lookup(e.suggestions, true);
+                }
+                List<String> filtered = new ArrayList<>(e.suggestions.size());
+                for (String s : e.suggestions) {
+                    if (key(s).startsWith(key)) {
+                        filtered.add(s);
+                    }
+                }
+                return new Lookup(filtered, e.complete);
+            }
+        }
+        return null;
+    }
+
+    private List<String> historyMatches(String query) {
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        List<String> matches = new ArrayList<>();
+        Iterator<String> it = history.iterator(query);
+        while (it.hasNext() && matches.size() < MAX_HISTORY_SUGGESTIONS) {
+            matches.add(it.next());
+        }
+        return matches;
+    }
+
+    private static List<String> merge(List<String> historyMatches, List<String> suggestions) {
+        List<String> merged = new ArrayList<>(historyMatches.size() + suggestions.size());
+        Set<String> seen = new HashSet<>();
+        for (String s : historyMatches) {
+            if (seen.add(key(s))) {
+                merged.add(s);
+            }
+        }
+        for (String s : suggestions) {
+            if (seen.add(key(s))) {
+                merged.add(s);
+            }
+        }
+        return merged;
+    }
+
+    private static String key(String s) {
+        return s.trim().toLowerCase(Locale.US);
+    }
+
+    public interface Listener {
+        void onSuggestions(String query, List<String> suggestions);
+    }
+
+    private static final class CacheEntry {
+        final List<String> suggestions;
+        final boolean complete;
+
+        CacheEntry(List<String> suggestions) {
+            this.suggestions = Collections.unmodifiableList(suggestions);
+            this.complete = suggestions.size() < MAX_REMOTE_SUGGESTIONS;
+        }
+    }
+
+    private static final class Lookup {
+        final List<String> suggestions;
+        final boolean complete;
+
+        Lookup(List<String> suggestions, boolean complete) {
+            this.suggestions = suggestions;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchMetricsJMX implements SearchMetricsMXBean {
+    private static final Logger LOG = Logger.getLogger(SearchMetricsJMX.class);
+    public static final String OBJECT_NAME = "com.frostwire:type=SearchMetrics";
+
+    private final SearchMetrics metrics;
+
+    private SearchMetricsJMX(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, failures are only logged.
+     */
+    public static void register(SearchMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new SearchMetricsJMX(metrics), name);
+        } catch (Throwable e) {
+            LOG.warn("Unable to register search metrics MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getReport() {
+        return metrics.dump();
+    }
+
+    @Override
+    public String getDomainHealthReport() {
+        return WebSearchPerformer.getDomainHealth().dump();
+    }
+
+    @Override
+    public String[] getDomains() {
+        return metrics.domains().toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getPerformers() {
+        return metrics.performers().toArray(new String[0]);
+    }
+
+    @Override
+    public void reset() {
+        metrics.reset();
+    }
+}
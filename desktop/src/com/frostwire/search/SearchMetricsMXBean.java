@@ -0,0 +1,43 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * JMX view of the search performers {@link SearchMetrics}, registered
+ * as {@value SearchMetricsJMX#OBJECT_NAME}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface SearchMetricsMXBean {
+    /**
+     * Text tables with the per domain and the per performer measurements.
+     */
+    String getReport();
+
+    /**
+     * Text table with the per domain health: latency percentiles, timeouts and circuit state.
+     */
+    String getDomainHealthReport();
+
+    String[] getDomains();
+
+    String[] getPerformers();
+
+    void reset();
+}
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2019, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package com.limegroup.gnutella.gui;
 
 import com.frostwire.bittorrent.BTContext;
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.gui.library.LibraryMediator;
 import com.frostwire.util.UserAgentGenerator;
 import com.limegroup.gnutella.ExternalControl;
 import com.limegroup.gnutella.LimeCoreGlue;
@@ -45,14 +46,23 @@ import java.awt.*;
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 
+import static com.limegroup.gnutella.gui.StartupGraph.Where.BACKGROUND;
+import static com.limegroup.gnutella.gui.StartupGraph.Where.EDT;
+import static com.limegroup.gnutella.gui.StartupGraph.Where.MAIN;
+
 /**
  * Initializes (creates, starts, & displays) the LimeWire Core & UI.
  */
 final class Initializer {
+    /**
+     * The per phase timing of the last startup, in the settings directory.
+     */
+    private static final String STARTUP_REPORT_FILENAME = "startup_report.txt";
     /**
      * True if is running from a system startup.
      */
     private volatile boolean isStartup = false;
+    private volatile LimeWireCore limeWireCore;
 
     Initializer() {
     }
@@ -64,62 +74,74 @@ final class Initializer {
      * properly and must be shut down.
      */
     void initialize(String[] args, Frame awtSplash) {
+        StartupGraph graph = new StartupGraph();
         // ** THE VERY BEGINNING -- DO NOT ADD THINGS BEFORE THIS **
-        preinit();
+        graph.add("preinit", MAIN, this::preinit);
         // Various startup tasks...
-        //System.out.println("Initializer.initialize() setup callbacks and listeners");
-        setupCallbacksAndListeners();
-        validateStartup(args);
-        // Creates LimeWire itself.
-        //System.out.println("Initializer.initialize() create Limewire");
-        LimeWireGUI limewireGUI = createLimeWire();
-        LimeWireCore limeWireCore = limewireGUI.getLimeWireCore();
-        // Various tasks that can be done after core is glued & started.
-        //System.out.println("Initializer.initialize() glue core");
-        glueCore(limeWireCore);
-        // Validate any arguments or properties outside of the LW environment.
-        //System.out.println("Initializer.initialize() run external checks");
-        runExternalChecks(limeWireCore, args);
-        limeWireCore.getExternalControl().startServer();
+        graph.add("callbacks", MAIN, this::setupCallbacksAndListeners, "preinit");
+        graph.add("validateStartup", MAIN, () -> validateStartup(args), "callbacks");
+        // Creates LimeWire itself and the tasks that can be done after core is glued.
+        graph.add("createCore", MAIN, () -> {
+            limeWireCore = createLimeWire().getLimeWireCore();
+            glueCore(limeWireCore);
+        }, "validateStartup");
+        // Validate any arguments or properties outside of the LW environment,
+        // this can exit if FrostWire is already running, nothing runs in background before it.
+        graph.add("externalChecks", MAIN, () -> {
+            runExternalChecks(limeWireCore, args);
+            limeWireCore.getExternalControl().startServer();
+        }, "createCore");
+        graph.add("properties", MAIN, this::installProperties, "externalChecks");
         // Starts some system monitoring for deadlocks.
-        //System.out.println("Initializer.initialize() monitor deadlocks");
-        DeadlockSupport.startDeadlockMonitoring();
-        //stopwatch.resetAndLog("Start deadlock monitor");
-        // Installs properties & resources.
-        //System.out.println("Initializer.initialize() install properties");
-        installProperties();
-        installResources();
-        // Construct the SetupManager, which may or may not be shown.
-        final SetupManager setupManager = new SetupManager();
-        //stopwatch.resetAndLog("construct SetupManager");
-        // Move from the AWT splash to the Swing splash & start early core.
-        //System.out.println("Initializer.initialize() switch splashes");
-        switchSplashes(awtSplash);
-        startEarlyCore(limeWireCore);
-        // Initialize early UI components, display the setup manager (if necessary),
-        // and ensure the save directory is valid.
-        //System.out.println("Initializer.initialize() init early UI");
-        initializeEarlyUI();
-        startSetupManager(setupManager);
-        startBittorrentCore();
+        graph.add("deadlockMonitor", BACKGROUND, DeadlockSupport::startDeadlockMonitoring, "properties");
+        graph.add("earlyCore", BACKGROUND, () -> startEarlyCore(limeWireCore), "properties");
+        graph.add("bugManager", BACKGROUND, BugManager::instance, "properties");
+        // Touch the I18N stuff to ensure it loads properly.
+        graph.add("i18n", BACKGROUND, I18NConvert::instance, "properties");
+        graph.add("libraryDatabase", BACKGROUND, LibraryMediator::getLibrary, "properties");
+        graph.add("resources", EDT, ResourceManager::instance, "properties");
+        graph.add("icons", BACKGROUND, IconManager::instance, "resources");
+        // Move from the AWT splash to the Swing splash.
+        graph.add("splash", MAIN, () -> switchSplashes(awtSplash), "resources");
+        graph.add("htmlEngine", EDT, this::loadHTMLEngine, "splash");
+        // Display the setup manager (if necessary), and ensure the save directory is valid.
+        graph.add("setupManager", EDT, this::startSetupManager, "htmlEngine");
+        // The torrent data and torrents directories could be changed by the setup manager.
+        graph.add("bittorrentCore", BACKGROUND, this::startBittorrentCore, "setupManager");
         // Load the UI, system tray & notification handlers,
         // and hide the splash screen & display the UI.
-        //System.out.println("Initializer.initialize() load UI");
-        loadUI();
-        loadTrayAndNotifications();
-        hideSplashAndShowUI();
-        // Initialize late tasks, like Icon initialization & install listeners.
-        loadLateTasksForUI();
-        // Start the core & run any queued control requests, and load DAAP.
-        //System.out.println("Initializer.initialize() start core");
-        startCore(limeWireCore);
-        runQueuedRequests(limeWireCore);
+        // the icons are loaded in the background meanwhile, the UI uses them
+        graph.add("ui", EDT, this::loadUI, "setupManager", "bugManager", "icons");
+        graph.add("tray", EDT, this::loadTrayAndNotifications, "ui");
+        graph.add("showUI", MAIN, this::hideSplashAndShowUI, "tray");
+        graph.setMilestone("showUI");
+        // Start the core & run any queued control requests.
+        graph.add("startCore", MAIN, () -> startCore(limeWireCore),
+                "showUI", "earlyCore", "bittorrentCore", "icons", "i18n", "libraryDatabase");
+        graph.add("queuedRequests", MAIN, () -> runQueuedRequests(limeWireCore), "startCore");
         if (OSUtils.isMacOSX()) {
-            GURLHandler.getInstance().register();
-            MacEventHandler.instance();
+            graph.add("macHandlers", MAIN, () -> {
+                GURLHandler.getInstance().register();
+                MacEventHandler.instance();
+            }, "queuedRequests");
         }
         // Run any after-init tasks.
-        postinit();
+        graph.add("postinit", MAIN, this::postinit,
+                OSUtils.isMacOSX() ? "macHandlers" : "queuedRequests", "deadlockMonitor");
+        try {
+            graph.run();
+        } finally {
+            writeStartupReport(graph);
+        }
+    }
+
+    private void writeStartupReport(StartupGraph graph) {
+        try {
+            graph.writeReport(FrostWireUtils.getFrostWireVersion(),
+                    new File(CommonUtils.getUserSettingsDir(), STARTUP_REPORT_FILENAME));
+        } catch (Throwable ignored) {
+            // the settings directory may not be usable if startup failed early
+        }
     }
 
     /**
@@ -225,13 +247,6 @@ final class Initializer {
         }
     }
 
-    /**
-     * Sets up ResourceManager.
-     */
-    private void installResources() {
-        GUIMediator.safeInvokeAndWait(ResourceManager::instance);
-    }
-
     /**
      * Starts any early core-related functionality.
      */
@@ -264,36 +279,26 @@ final class Initializer {
     }
 
     /**
-     * Initializes any early UI tasks, such as HTML loading & the Bug Manager.
+     * Loads up the HTML engine.
      */
-    private void initializeEarlyUI() {
-        // Load up the HTML engine.
+    private void loadHTMLEngine() {
         GUIMediator.setSplashScreenString(I18n.tr("Loading HTML Engine..."));
-        //stopwatch.resetAndLog("update splash for HTML engine");
-        GUIMediator.safeInvokeAndWait(() -> {
-            //stopwatch.resetAndLog("enter evt queue");
-            JLabel label = new JLabel();
-            // setting font and color to null to minimize generated css
-            // script
-            // which causes a parser exception under circumstances
-            label.setFont(null);
-            label.setForeground(null);
-            BasicHTML.createHTMLView(label, "<html>.</html>");
-            //stopwatch.resetAndLog("create HTML view");
-        });
-        //stopwatch.resetAndLog("return from evt queue");
-        // Initialize the bug manager
-        BugManager.instance();
-        //stopwatch.resetAndLog("BugManager instance");
+        JLabel label = new JLabel();
+        // setting font and color to null to minimize generated css
+        // script
+        // which causes a parser exception under circumstances
+        label.setFont(null);
+        label.setForeground(null);
+        BasicHTML.createHTMLView(label, "<html>.</html>");
     }
 
     /**
      * Starts the SetupManager, if necessary.
      */
-    private void startSetupManager(final SetupManager setupManager) {
+    private void startSetupManager() {
         // Run through the initialization sequence -- this must always be
         // called before GUIMediator constructs the LibraryTree!
-        GUIMediator.safeInvokeAndWait(setupManager::createIfNeeded);
+        new SetupManager().createIfNeeded();
     }
 
     /**
@@ -301,7 +306,7 @@ final class Initializer {
      */
     private void loadUI() {
         GUIMediator.setSplashScreenString(I18n.tr("Loading User Interface..."));
-        GUIMediator.safeInvokeAndWait(GUIMediator::instance);
+        GUIMediator.instance();
         GUIMediator.setSplashScreenString(I18n.tr("Loading Core Components..."));
     }
 
@@ -313,13 +318,10 @@ final class Initializer {
         // This must be done before the GUI is made visible,
         // otherwise the user can close it and not see the
         // tray icon.
-        GUIMediator.safeInvokeAndWait(() -> {
-            //stopwatch.resetAndLog("enter evt queue");
-            NotifyUserProxy.instance();
-            if (!ApplicationSettings.DISPLAY_TRAY_ICON.getValue())
-                NotifyUserProxy.instance().hideTrayIcon();
-            SettingsWarningManager.checkSettingsLoadSaveFailure();
-        });
+        NotifyUserProxy.instance();
+        if (!ApplicationSettings.DISPLAY_TRAY_ICON.getValue())
+            NotifyUserProxy.instance().hideTrayIcon();
+        SettingsWarningManager.checkSettingsLoadSaveFailure();
     }
 
     /**
@@ -339,21 +341,6 @@ final class Initializer {
         }
     }
 
-    /**
-     * Runs any late UI tasks, such as initializing Icons, I18n support.
-     */
-    private void loadLateTasksForUI() {
-        // Initialize IconManager.
-        //GUIMediator.setSplashScreenString(I18n.tr("Loading Icons..."));
-        GUIMediator.safeInvokeAndWait(() -> {
-            GUIMediator.setSplashScreenString(I18n.tr("Loading Icons..."));
-            IconManager.instance();
-        });
-        // Touch the I18N stuff to ensure it loads properly.
-        GUIMediator.setSplashScreenString(I18n.tr("Loading Internationalization Support..."));
-        I18NConvert.instance();
-    }
-
     /**
      * Starts the core.
      */
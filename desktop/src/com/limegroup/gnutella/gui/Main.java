@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2021, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package com.limegroup.gnutella.gui;
 
 import com.frostwire.gui.theme.ThemeMediator;
 import com.frostwire.jlibtorrent.swig.libtorrent_jni;
+import com.frostwire.util.Logger;
 import com.frostwire.util.OSUtils;
 import com.limegroup.gnutella.util.FrostWireUtils;
 
@@ -58,6 +59,8 @@ public class Main {
         if (OSUtils.isLinux()) {
             System.setProperty("jlibtorrent.jni.path", getLinuxJLibtorrentPath());
         }
+        // log records are published off the calling threads, the search and the alerts threads included
+        Logger.startAsync();
         //System.out.println("1: Main.main("+args+")");
         // make sure jlibtorrent is statically loaded on time to avoid jni symbols not found issues.
         libtorrent_jni.version();
@@ -3,9 +3,9 @@ package com.limegroup.gnutella.gui;
 import com.limegroup.gnutella.MediaType;
 import com.limegroup.gnutella.settings.UISettings;
 import org.apache.commons.io.FilenameUtils;
-import org.limewire.collection.FixedsizeForgetfulHashMap;
 import org.limewire.collection.FixedsizeForgetfulHashSet;
 import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.gui.PixelCache;
 import com.frostwire.util.OSUtils;
 
 import javax.swing.*;
@@ -357,7 +357,10 @@ public class NativeFileIconController implements FileIconController {
      */
     private static class FSVFileView extends SmartFileView {
         private final FileSystemView VIEW = FileSystemView.getFileSystemView();
-        private final Map<File, Icon> CACHE = new FixedsizeForgetfulHashMap<>(50000);
+        /**
+         * The icons by file, bounded by their pixel bytes.
+         */
+        private final PixelCache<File, Icon> CACHE = PixelCache.ofIcons(16 * 1024 * 1024);
 
         @Override
         public String getDescription(File f) {
@@ -399,7 +402,7 @@ public class NativeFileIconController implements FileIconController {
          */
         @Override
         public boolean removeFromCache(File f) {
-            return CACHE.remove(f) != null;
+            return CACHE.remove(f);
         }
     }
 
@@ -0,0 +1,256 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.limegroup.gnutella.gui;
+
+import com.frostwire.concurrent.concurrent.ExecutorsHelper;
+import com.frostwire.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The startup phases and their dependencies.
+ * <p>
+ * {@link Where#MAIN} and {@link Where#EDT} phases run one after the other in the
+ * order they were added, from the thread calling {@link #run()} or in the event
+ * dispatch thread. {@link Where#BACKGROUND} phases run in a pool as soon as their
+ * dependencies are done. A phase can only depend on phases added before it, so
+ * the graph can't have cycles.
+ * <p>
+ * The wall and cpu time of every phase is recorded for the startup report.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class StartupGraph {
+    private static final Logger LOG = Logger.getLogger(StartupGraph.class);
+
+    enum Where {
+        MAIN, EDT, BACKGROUND
+    }
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final long start = System.nanoTime();
+    private volatile String milestone;
+
+    /**
+     * @param deps the names of the phases that must be done before this one starts
+     */
+    void add(String name, Where where, Runnable task, String... deps) {
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicated startup phase: " + name);
+        }
+        List<Phase> depPhases = new ArrayList<>(deps.length);
+        for (String dep : deps) {
+            Phase p = phases.get(dep);
+            if (p == null) {
+                throw new IllegalArgumentException("Startup phase " + name + " depends on unknown phase " + dep);
+            }
+            depPhases.add(p);
+        }
+        phases.put(name, new Phase(name, where, task, depPhases));
+    }
+
+    /**
+     * The end of this phase is reported as the time to a usable window.
+     */
+    void setMilestone(String name) {
+        milestone = name;
+    }
+
+    /**
+     * Runs all the phases and returns once they are all done.
+     * The first failure is rethrown, the phases depending on it are skipped.
+     */
+    void run() {
+        List<Phase> background = new ArrayList<>();
+        for (Phase p : phases.values()) {
+            if (p.where == Where.BACKGROUND) {
+                background.add(p);
+            }
+        }
+        if (!background.isEmpty()) {
+            // one thread per phase, a phase waiting for its dependencies must not starve others
+            ExecutorService pool = ExecutorsHelper.newFixedSizeThreadPool(background.size(), "StartupGraph");
+            for (Phase p : background) {
+                pool.execute(p::run);
+            }
+            pool.shutdown();
+        }
+        Throwable mainFailure = null;
+        for (Phase p : phases.values()) {
+            if (p.where == Where.BACKGROUND) {
+                continue;
+            }
+            if (mainFailure != null) {
+                // the background phases waiting for it must not hang
+                p.skip(mainFailure);
+            } else if (p.where == Where.MAIN) {
+                p.run();
+            } else {
+                GUIMediator.safeInvokeAndWait(p::run);
+            }
+            mainFailure = p.failure;
+        }
+        Throwable failure = null;
+        for (Phase p : phases.values()) {
+            if (p.where == Where.BACKGROUND) {
+                p.await();
+            }
+            if (failure == null && p.failure != null) {
+                failure = p.failure;
+            }
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * One line per phase, in the order they were added.
+     */
+    String report(String version) {
+        StringBuilder sb = new StringBuilder();
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        sb.append(String.format(Locale.US, "FrostWire %s startup, %s %s, %d cores%n", version,
+                System.getProperty("os.name"), System.getProperty("os.arch"), Runtime.getRuntime().availableProcessors()));
+        Phase m = milestone != null ? phases.get(milestone) : null;
+        if (m != null && m.ran) {
+            long window = (m.end - start) / 1_000_000;
+            sb.append(String.format(Locale.US, "usable window: %d ms (%d ms since jvm start)%n", window, window + uptime - elapsed));
+        }
+        sb.append(String.format(Locale.US, "total: %d ms (%d ms since jvm start)%n", elapsed, uptime));
+        sb.append(String.format(Locale.US, "%-20s %-10s %8s %8s %8s %8s  %s%n", "phase", "thread", "start", "wall", "cpu", "waited", "status"));
+        for (Phase p : phases.values()) {
+            sb.append(String.format(Locale.US, "%-20s %-10s %8d %8d %8s %8d  %s%n",
+                    p.name,
+                    p.where.name().toLowerCase(Locale.US),
+                    p.ran ? (p.begin - start) / 1_000_000 : -1,
+                    p.ran ? (p.end - p.begin) / 1_000_000 : -1,
+                    p.cpu >= 0 ? Long.toString(p.cpu / 1_000_000) : "n/a",
+                    p.waited / 1_000_000,
+                    !p.ran ? "skipped" : p.failure != null ? "failed: " + p.failure : "ok"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Logs the report and writes it to the given file, errors are only logged.
+     */
+    void writeReport(String version, File file) {
+        String report = report(version);
+        LOG.info("Startup report\n" + report);
+        try {
+            Files.write(file.toPath(), report.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("Error writing startup report: " + e.getMessage());
+        }
+    }
+
+    private static long currentThreadCpuTime() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final Where where;
+        private final Runnable task;
+        private final List<Phase> deps;
+        private final CountDownLatch done = new CountDownLatch(1);
+        // written before done is counted down, read after awaiting it
+        private long begin;
+        private long end;
+        private long cpu = -1;
+        private boolean ran;
+        private long waited;
+        private volatile Throwable failure;
+
+        Phase(String name, Where where, Runnable task, List<Phase> deps) {
+            this.name = name;
+            this.where = where;
+            this.task = task;
+            this.deps = deps;
+        }
+
+        void run() {
+            try {
+                long t = System.nanoTime();
+                for (Phase dep : deps) {
+                    dep.await();
+                    if (dep.failure != null) {
+                        failure = dep.failure;
+                        return;
+                    }
+                }
+                begin = System.nanoTime();
+                waited = begin - t;
+                long cpuBegin = currentThreadCpuTime();
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    LOG.error("Startup phase " + name + " failed: " + e.getMessage(), e);
+                    failure = e;
+                } finally {
+                    end = System.nanoTime();
+                    long cpuEnd = currentThreadCpuTime();
+                    cpu = cpuBegin >= 0 && cpuEnd >= 0 ? cpuEnd - cpuBegin : -1;
+                    ran = true;
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void skip(Throwable cause) {
+            failure = cause;
+            done.countDown();
+        }
+
+        void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for startup phase " + name, e);
+            }
+        }
+    }
+}
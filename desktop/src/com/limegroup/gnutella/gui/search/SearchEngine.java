@@ -234,7 +234,7 @@ public abstract class SearchEngine {
                 if (TellurideLauncher.checkIfUpAlready(TELLURIDE_RPC_PORT.getValue())) {
                     LOG.info("SearchEngine.startTellurideRPCServer() Telluride was up already, previously bad shutdown. Let's shut it down and restart it...");
                     TellurideLauncher.shutdownServer(TELLURIDE_RPC_PORT.getValue());
-                    TellurideLauncher.SERVER_UP.set(false);
+                    TellurideLauncher.setServerUp(false);
                     try {
                         Thread.sleep(200);
                     } catch (InterruptedException e) {
@@ -260,6 +260,7 @@ public abstract class SearchEngine {
         public SearchPerformer getPerformer(long token, String keywords) {
             return new TellurideSearchPerformer(token,
                     keywords,
+                    TELLURIDE_RPC_PORT.getValue(),
                     new TellurideSearchPerformerDesktopListener());
         }
     };
@@ -27,6 +27,7 @@ import com.frostwire.search.*;
 import com.frostwire.search.archiveorg.ArchiveorgCrawledSearchResult;
 import com.frostwire.search.soundcloud.SoundcloudSearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
+import com.frostwire.search.telluride.TellurideSearchPerformer;
 import com.frostwire.search.telluride.TellurideSearchResult;
 import com.frostwire.util.Logger;
 import com.limegroup.gnutella.gui.ApplicationHeader;
@@ -117,6 +118,7 @@ public final class SearchMediator {
                     LOG.info("SearchMediator() - crawl cache reset successful");
                 }
                 CrawlPagedWebSearchPerformer.setCache(databaseCrawlCache);
+                TellurideSearchPerformer.setCache(databaseCrawlCache);
             } catch (Throwable t) {
                 LOG.error("could not set database crawl cache", t);
             }
@@ -124,6 +126,9 @@ public final class SearchMediator {
                 "CrawlPagedWebSearchPerformer-initializer").start();
         CrawlPagedWebSearchPerformer.setMagnetDownloader(new LibTorrentMagnetDownloader());
         this.manager = SearchManager.getInstance();
+        SearchMetrics metrics = new SearchMetrics();
+        this.manager.setMetricsListener(metrics);
+        SearchMetricsJMX.register(metrics);
         this.manager.setListener(new SearchListener() {
             @Override
             public void onResults(long token, List<? extends SearchResult> results) {
@@ -368,6 +373,7 @@ public final class SearchMediator {
             return;
         }
         stopSearch();
+        manager.clearMerged(rp.getToken());
         updateSearchIcon(rp.getToken(), true);
         rp.resetFiltersPanel();
         performSearch(rp.getToken(), info.getQuery());
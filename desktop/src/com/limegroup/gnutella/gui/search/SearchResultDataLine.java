@@ -16,6 +16,8 @@
 package com.limegroup.gnutella.gui.search;
 
 import com.frostwire.gui.bittorrent.BTDownloadMediator;
+import com.frostwire.search.SearchManager;
+import com.frostwire.search.SearchResultMerger;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.IconManager;
 import com.limegroup.gnutella.gui.tables.AbstractDataLine;
@@ -49,6 +51,7 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
     private SearchResultActionsHolder actionsHolder;
     private SearchResultNameHolder name;
     private String seeds;
+    private int seedsValue;
     private Icon icon;
     private SizeHolder size;
     private SourceHolder source;
@@ -67,7 +70,8 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
         addedOn = sr.getCreationTime() > 0 ? new Date(sr.getCreationTime()) : null;
         actionsHolder = new SearchResultActionsHolder(sr);
         name = new SearchResultNameHolder(sr);
-        seeds = RESULT.getSeeds() <= 0 || !(RESULT instanceof TorrentUISearchResult) ? "" : String.valueOf(RESULT.getSeeds());
+        seedsValue = getSeeds();
+        seeds = seedsString(seedsValue);
         icon = getIcon();
         size = new SizeHolder(getSize());
         source = new SourceHolder(RESULT);
@@ -181,6 +185,11 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
             case SearchTableColumns.ACTIONS_IDX:
                 return actionsHolder;
             case SearchTableColumns.COUNT_IDX:
+                int value = getSeeds();
+                if (value != seedsValue) {
+                    seedsValue = value;
+                    seeds = seedsString(value);
+                }
                 return seeds;
             case SearchTableColumns.TYPE_IDX:
                 return icon;
@@ -222,8 +231,17 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
         return RESULT;
     }
 
+    /**
+     * The seeds of the result, or the highest count reported by the
+     * engines that found the same torrent.
+     */
     public int getSeeds() {
-        return RESULT.getSeeds();
+        SearchResultMerger.Group group = SearchManager.getInstance().getMergedGroup(RESULT.getSearchResult());
+        return group != null ? Math.max(RESULT.getSeeds(), group.getSeeds()) : RESULT.getSeeds();
+    }
+
+    private String seedsString(int seeds) {
+        return seeds <= 0 || !(RESULT instanceof TorrentUISearchResult) ? "" : String.valueOf(seeds);
     }
 
     public String getHash() {
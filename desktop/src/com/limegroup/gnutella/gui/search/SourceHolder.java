@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2020, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@
 
 package com.limegroup.gnutella.gui.search;
 
+import com.frostwire.search.SearchManager;
+import com.frostwire.search.SearchResultMerger;
 import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
 
 /**
@@ -26,14 +28,15 @@ import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
  */
 public class SourceHolder implements Comparable<SourceHolder> {
     private final UISearchResult uiSearchResult;
-    private final String sourceNameHTML;
     private final String sourceName;
     private final String sourceURL;
+    private String sourceNameHTML;
+    private int otherSources;
 
     SourceHolder(UISearchResult uiSearchResult) {
         this.uiSearchResult = uiSearchResult;
         this.sourceName = uiSearchResult.getSource();
-        this.sourceNameHTML = "<html><div width=\"1000000px\"><nobr><a href=\"#\">" + sourceName + "</a></nobr></div></html>";
+        this.sourceNameHTML = sourceNameHTML(sourceName, 0);
         this.sourceURL = uiSearchResult.getSearchResult().getDetailsUrl();
     }
 
@@ -47,9 +50,21 @@ public class SourceHolder implements Comparable<SourceHolder> {
     }
 
     String getSourceNameHTML() {
+        // other engines may have found the same file since the row was added
+        SearchResultMerger.Group group = SearchManager.getInstance().getMergedGroup(uiSearchResult.getSearchResult());
+        int others = group != null ? group.getSourceCount() - 1 : 0;
+        if (others != otherSources) {
+            otherSources = others;
+            sourceNameHTML = sourceNameHTML(sourceName, others);
+        }
         return sourceNameHTML;
     }
 
+    private static String sourceNameHTML(String sourceName, int otherSources) {
+        String others = otherSources > 0 ? " +" + otherSources : "";
+        return "<html><div width=\"1000000px\"><nobr><a href=\"#\">" + sourceName + "</a>" + others + "</nobr></div></html>";
+    }
+
     public UISearchResult getUISearchResult() {
         return uiSearchResult;
     }
@@ -22,11 +22,15 @@
  */
 package com.limegroup.gnutella.gui.trees;
 
+import com.frostwire.gui.library.DirectoryLister;
+
+import javax.swing.*;
 import javax.swing.event.TreeModelEvent;
 import javax.swing.tree.TreePath;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Taken from the XNap Commons project and slightly adapted to use File objects
@@ -38,20 +42,28 @@ import java.util.*;
  * <p>
  * A {@link FileFilter} can be set to control what files will be shown in the
  * tree.
+ * <p>
+ * The sub folders are listed in the background with {@link DirectoryLister}
+ * the first time a folder is asked for its children, and inserted in the tree
+ * as they are found. Must be used from the event dispatch thread.
  */
 public class FileTreeModel extends AbstractTreeModel {
     public static final Comparator<File> DEFAULT_COMPARATOR = new FileComparator();
+    private static final int CHUNK_SIZE = 256;
     private final List<File> subRoots;
     private final Hashtable<String, List<File>> subChildren = new Hashtable<>();
-    private File cachedDir;
-    private boolean cacheSorted;
-    private File[] cache;
+    private final Map<File, DirNode> nodes = new HashMap<>();
     private final Comparator<File> comparator = DEFAULT_COMPARATOR;
+    private final DirectoryLister lister;
     private FileFilter filter = new DefaultFilter();
-    private final boolean sort = true;
 
     public FileTreeModel(String root, File... roots) {
+        this(DirectoryLister.instance(), root, roots);
+    }
+
+    public FileTreeModel(DirectoryLister lister, String root, File... roots) {
         super(root);
+        this.lister = lister;
         if (roots != null) {
             subRoots = new ArrayList<>(roots.length);
             for (File file : roots) {
@@ -63,12 +75,18 @@ public class FileTreeModel extends AbstractTreeModel {
     }
 
     public boolean isLeaf(Object node) {
+        if (node instanceof File) {
+            // not a leaf until known, so it can be expanded while loading
+            DirNode dirNode = getNode((File) node);
+            return dirNode.loaded && dirNode.children.isEmpty();
+        }
         return getChildCount(node) == 0;
     }
 
     public int getChildCount(Object node) {
-        if (node instanceof File && ((File) node).canRead()) {
-            return getSubDirs((File) node, false).length;
+        if (node instanceof File) {
+            DirNode dirNode = getNode((File) node);
+            return dirNode.children.size();
         } else if (root.getClass().isInstance(node)) {
             if (node.equals(root)) {
                 return subRoots.size();
@@ -81,11 +99,11 @@ public class FileTreeModel extends AbstractTreeModel {
 
     public Object getChild(Object parent, int index) {
         if (parent instanceof File) {
-            File[] children = getSubDirs((File) parent, sort);
-            if (index >= children.length) {
+            DirNode dirNode = getNode((File) parent);
+            if (index >= dirNode.children.size()) {
                 return null;
             }
-            return children[index];
+            return dirNode.children.get(index);
         } else if (root.getClass().isInstance(parent)) {
             if (parent.equals(root) && index < subRoots.size())
                 return subRoots.get(index);
@@ -98,13 +116,8 @@ public class FileTreeModel extends AbstractTreeModel {
 
     public int getIndexOfChild(Object parent, Object child) {
         if (parent instanceof File) {
-            File[] children = getSubDirs((File) parent, sort);
-            if (children == null)
-                return -1;
-            for (int i = 0; i < children.length; i++) {
-                if (children[i] == child)
-                    return i;
-            }
+            DirNode dirNode = getNode((File) parent);
+            return dirNode.children.indexOf(child);
         } else if (root.getClass().isInstance(parent)) {
             if (parent.equals(root)) {
                 return subRoots.indexOf(child);
@@ -115,23 +128,160 @@ public class FileTreeModel extends AbstractTreeModel {
     }
 
     /**
-     * Guaranteed to not return null.
+     * Passes the sub folders shown for <code>dir</code> to <code>onListed</code>,
+     * once all of them are listed, in the event dispatch thread. An unreadable
+     * folder has none.
      */
-    private File[] getSubDirs(File f, boolean doSort) {
-        if (f == cachedDir && cacheSorted == doSort)
-            return cache;
-        File[] children = f.listFiles(filter);
-        if (children == null) {
-            cache = new File[0];
+    public void getSubDirs(File dir, Consumer<List<File>> onListed) {
+        DirNode dirNode = getNode(dir);
+        if (dirNode.loaded) {
+            onListed.accept(new ArrayList<>(dirNode.children));
         } else {
-            cache = children;
-            if (doSort) {
-                Arrays.sort(cache, comparator);
+            dirNode.waiting.add(() -> onListed.accept(new ArrayList<>(dirNode.children)));
+        }
+    }
+
+    /**
+     * Lists the folders from the sub root down to the parent of <code>dir</code>
+     * and runs <code>onLoaded</code> when they are, so the path to <code>dir</code>
+     * can be expanded. Not run if a folder of the path is forgotten meanwhile.
+     */
+    public void loadPath(File dir, Runnable onLoaded) {
+        LinkedList<File> path = new LinkedList<>();
+        File f = dir;
+        while (f != null && !subRoots.contains(f)) {
+            path.addFirst(f);
+            f = f.getParentFile();
+        }
+        if (f == null) {
+            return;
+        }
+        path.addFirst(f);
+        path.removeLast();
+        for (File ancestor : path) {
+            DirNode dirNode = getNode(ancestor);
+            if (!dirNode.loaded) {
+                // the rest of the path is listed when this folder is
+                dirNode.waiting.add(() -> loadPath(dir, onLoaded));
+                return;
             }
         }
-        cachedDir = f;
-        cacheSorted = doSort;
-        return cache;
+        onLoaded.run();
+    }
+
+    /**
+     * Forgets the loaded descendants of <code>dir</code>, usually when it's
+     * collapsed, they are listed again when needed.
+     */
+    public void forgetDescendants(File dir) {
+        for (Iterator<Map.Entry<File, DirNode>> it = nodes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<File, DirNode> e = it.next();
+            File f = e.getKey();
+            // kept while something waits for its listing
+            if (!f.equals(dir) && isAncestor(dir, f) && e.getValue().waiting.isEmpty()) {
+                cancel(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the node of a folder in the tree, starting the listing of its
+     * sub folders if it's the first time. Nothing touches the disk here, an
+     * unreadable folder is listed empty and becomes a leaf.
+     */
+    private DirNode getNode(File dir) {
+        DirNode dirNode = nodes.get(dir);
+        if (dirNode == null) {
+            DirNode newNode = new DirNode();
+            nodes.put(dir, newNode);
+            newNode.handle = lister.list(dir, CHUNK_SIZE, new DirectoryLister.Listener() {
+                @Override
+                public void onChunk(File d, List<DirectoryLister.Entry> chunk) {
+                    // filtered here, off the event dispatch thread
+                    List<File> dirs = filter(chunk);
+                    if (!dirs.isEmpty()) {
+                        SwingUtilities.invokeLater(() -> insert(d, newNode, dirs));
+                    }
+                }
+
+                @Override
+                public void onDone(File d, DirectoryLister.Listing listing) {
+                    SwingUtilities.invokeLater(() -> loaded(d, newNode));
+                }
+            });
+            dirNode = newNode;
+        }
+        return dirNode;
+    }
+
+    private List<File> filter(List<DirectoryLister.Entry> entries) {
+        List<File> dirs = new ArrayList<>();
+        for (DirectoryLister.Entry e : entries) {
+            if (e.isDirectory() && !e.isHidden() && (filter == null || filter.accept(e.getFile()))) {
+                dirs.add(e.getFile());
+            }
+        }
+        return dirs;
+    }
+
+    private void insert(File dir, DirNode dirNode, List<File> dirs) {
+        if (nodes.get(dir) != dirNode || dirNode.loaded) {
+            // removed, or loaded again meanwhile
+            return;
+        }
+        Object[] path = null;
+        for (File f : dirs) {
+            int index = Collections.binarySearch(dirNode.children, f, comparator);
+            if (index >= 0) {
+                continue;
+            }
+            index = -index - 1;
+            dirNode.children.add(index, f);
+            if (path == null) {
+                path = getTreePath(dir);
+                if (path == null) {
+                    continue;
+                }
+            }
+            fireTreeNodesInserted(new TreeModelEvent(this, path, new int[]{index}, new Object[]{f}));
+        }
+    }
+
+    private void loaded(File dir, DirNode dirNode) {
+        if (nodes.get(dir) != dirNode) {
+            return;
+        }
+        dirNode.loaded = true;
+        dirNode.handle = null;
+        if (dirNode.children.isEmpty()) {
+            // it becomes a leaf
+            Object[] path = getTreePath(dir);
+            if (path != null) {
+                fireTreeStructureChanged(new TreeModelEvent(this, path));
+            }
+        }
+        List<Runnable> waiting = new ArrayList<>(dirNode.waiting);
+        dirNode.waiting.clear();
+        for (Runnable r : waiting) {
+            r.run();
+        }
+    }
+
+    /**
+     * The path from the root to <code>dir</code>, null if it isn't under a sub root.
+     */
+    private Object[] getTreePath(File dir) {
+        LinkedList<Object> path = new LinkedList<>();
+        while (dir != null) {
+            path.addFirst(dir);
+            if (subRoots.contains(dir)) {
+                path.addFirst(root);
+                return path.toArray();
+            }
+            dir = dir.getParentFile();
+        }
+        return null;
     }
 
     public void addSubRoot(File f) {
@@ -152,6 +302,8 @@ public class FileTreeModel extends AbstractTreeModel {
         int index = subRoots.indexOf(f);
         if (index != -1) {
             subRoots.remove(index);
+            forgetDescendants(f);
+            cancel(nodes.remove(f));
             fireTreeNodesRemoved(new TreeModelEvent(this, new Object[]{root},
                     new int[]{index}, new Object[]{f}));
         }
@@ -161,6 +313,10 @@ public class FileTreeModel extends AbstractTreeModel {
         /* remove respective Lists in hash tree */
         for (File subRoot : subRoots) subChildren.remove(subRoot);
         subRoots.clear();
+        for (DirNode dirNode : nodes.values()) {
+            cancel(dirNode);
+        }
+        nodes.clear();
         Object[] path = {root};
         fireTreeStructureChanged(new TreeModelEvent(this, path));
     }
@@ -173,8 +329,8 @@ public class FileTreeModel extends AbstractTreeModel {
     /**
      * Sets a file filter that is used for listing directories in the tree.
      * <p>
-     * The default filter excludes hidden files and files that are not
-     * directories.
+     * Hidden files and files that are not directories are always excluded,
+     * the filter is called from a background thread for the rest.
      * <p>
      *
      * @param filter can be <code>null</code>
@@ -183,6 +339,22 @@ public class FileTreeModel extends AbstractTreeModel {
         this.filter = filter;
     }
 
+    private static void cancel(DirNode dirNode) {
+        if (dirNode != null && dirNode.handle != null) {
+            dirNode.handle.cancel();
+            dirNode.handle = null;
+        }
+    }
+
+    private static boolean isAncestor(File a, File b) {
+        while (b != null) {
+            if (b.equals(a))
+                return true;
+            b = b.getParentFile();
+        }
+        return false;
+    }
+
     static class FileComparator implements Comparator<File> {
         public int compare(File o1, File o2) {
             return o1.getAbsolutePath().compareToIgnoreCase(
@@ -190,9 +362,19 @@ public class FileTreeModel extends AbstractTreeModel {
         }
     }
 
-    private class DefaultFilter implements FileFilter {
+    /**
+     * The sorted sub folders of a folder, complete once loaded.
+     */
+    private static final class DirNode {
+        final List<File> children = new ArrayList<>();
+        final List<Runnable> waiting = new ArrayList<>();
+        boolean loaded;
+        DirectoryLister.Handle handle;
+    }
+
+    private static class DefaultFilter implements FileFilter {
         public boolean accept(File file) {
-            return file.isDirectory() && !file.isHidden();
+            return true;
         }
     }
 }
@@ -59,20 +59,20 @@ SimpleTimer {
                 });
     }
 
-    public static void
+    public static TimerEvent
     addEvent(
             String name,
             long when,
             TimerEventPerformer performer) {
-        timer.addEvent(name, when, performer);
+        return (timer.addEvent(name, when, performer));
     }
 
-    static void
+    static TimerEventPeriodic
     addPeriodicEvent(
             String name,
             long frequency,
             TimerEventPerformer performer) {
-        timer.addPeriodicEvent(name, frequency, performer);
+        return (timer.addPeriodicEvent(name, frequency, performer));
     }
 
     interface
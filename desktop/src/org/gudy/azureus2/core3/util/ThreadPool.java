@@ -118,6 +118,9 @@ public class ThreadPool {
             // reserve if available is non-blocking
             if (queue_when_full && !thread_sem.reserveIfAvailable()) {
                 checkWarning();
+            } else {
+                // the worker releases the reserved sem when the queue is empty
+                new threadPoolWorker();
             }
         }
     }
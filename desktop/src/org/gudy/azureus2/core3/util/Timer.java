@@ -22,15 +22,47 @@
 
 package org.gudy.azureus2.core3.util;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Runs the events in a thread pool when they're due.
+ * <p>
+ * The events are kept in a hashed hierarchical timing wheel: four wheels of
+ * 64 slots, the first one 10 ms per slot, each one covering a full turn of
+ * the previous one. Scheduling and cancelling an event is linking it to or
+ * unlinking it from a slot, whatever the number of events; the events of a
+ * slot of an upper wheel are redistributed to the lower wheels when its time
+ * comes. Events further than the last wheel, about 46 hours, go round it again.
+ * <p>
+ * The deadlines are kept in {@code System.nanoTime} milliseconds, the events
+ * are given in {@link SystemTime#getCurrentTime()} time and converted when
+ * scheduled, so a correction of the wall clock doesn't move them. Only the
+ * absolute events, due at a given wall clock time, are moved then.
+ *
+ * @author parg
+ */
 public class Timer
         extends AERunnable
         implements SystemTime.ChangeListener {
+    private static final int TICK_MILLIS = 10;
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEELS = 4;
+    private static final long WHEELS_SPAN = 1L << (WHEEL_BITS * WHEELS);
+
     private final ThreadPool thread_pool;
-    private Set<TimerEvent> events = new TreeSet<>();
+    // the first event of each slot, wheel after wheel
+    private final TimerEvent[] buckets = new TimerEvent[WHEELS * WHEEL_SIZE];
+    private final List<TimerEvent> expired = new ArrayList<>();
+    private final long start_nanos = System.nanoTime();
     private long unique_id_next = 0;
-    private long current_when;
+    private int event_count;
+    // the last tick processed
+    private long current_tick;
+    // the tick the timer thread sleeps until, 0 when it's not sleeping
+    private long wake_tick;
 
     public Timer(
             String name,
@@ -58,84 +90,233 @@ public class Timer
     runSupport() {
         while (true) {
             try {
-                TimerEvent event_to_run = null;
                 synchronized (this) {
-                    if (events.isEmpty()) {
-                        // System.out.println( "waiting forever" );
+                    long now_tick = monoTime() / TICK_MILLIS;
+                    if (now_tick > current_tick) {
+                        advance(now_tick);
+                    }
+                    if (expired.isEmpty()) {
+                        long next_tick = nextTick();
                         try {
-                            current_when = Integer.MAX_VALUE;
-                            this.wait();
-                        } finally {
-                            current_when = 0;
-                        }
-                    } else {
-                        long now = SystemTime.getCurrentTime();
-                        TimerEvent next_event = events.iterator().next();
-                        long when = next_event.getWhen();
-                        long delay = when - now;
-                        if (delay > 0) {
-                            try {
-                                current_when = when;
-                                this.wait(delay);
-                            } finally {
-                                current_when = 0;
+                            if (next_tick == Long.MAX_VALUE) {
+                                wake_tick = Long.MAX_VALUE;
+                                this.wait();
+                            } else {
+                                long delay = next_tick * TICK_MILLIS - monoTime();
+                                if (delay > 0) {
+                                    wake_tick = next_tick;
+                                    this.wait(delay);
+                                }
                             }
+                        } finally {
+                            wake_tick = 0;
                         }
-                    }
-                    if (events.isEmpty()) {
                         continue;
                     }
-                    long now = SystemTime.getCurrentTime();
-                    Iterator<TimerEvent> it = events.iterator();
-                    TimerEvent next_event = it.next();
-                    long rem = next_event.getWhen() - now;
-                    if (rem <= SystemTime.TIME_GRANULARITY_MILLIS) {
-                        event_to_run = next_event;
-                        it.remove();
-                    }
                 }
-                if (event_to_run != null) {
-                    event_to_run.setHasRun();
-                    thread_pool.run(event_to_run.getRunnable());
+                // only this thread touches the expired events
+                for (TimerEvent event : expired) {
+                    if (!event.isCancelled()) {
+                        event.setHasRun();
+                        thread_pool.run(event.getRunnable());
+                    }
                 }
+                expired.clear();
             } catch (Throwable e) {
                 e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Moves the wheels up to the given tick, the due events go to the expired ones.
+     */
+    private void
+    advance(
+            long now_tick) {
+        if (event_count == 0) {
+            current_tick = now_tick;
+            return;
+        }
+        while (current_tick < now_tick && event_count > 0) {
+            long tick = ++current_tick;
+            // the upper wheels turning with this tick, the highest first
+            int wheel = 0;
+            while (wheel < WHEELS - 1 && ((tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK) == 0) {
+                wheel++;
+            }
+            for (; wheel > 0; wheel--) {
+                int bucket = wheel * WHEEL_SIZE + (int) ((tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK);
+                TimerEvent event = buckets[bucket];
+                buckets[bucket] = null;
+                while (event != null) {
+                    TimerEvent next = event.next;
+                    event.prev = null;
+                    event.next = null;
+                    event.bucket = -1;
+                    event_count--;
+                    link(event);
+                    event = next;
+                }
+            }
+            int bucket = (int) (tick & WHEEL_MASK);
+            TimerEvent event = buckets[bucket];
+            buckets[bucket] = null;
+            while (event != null) {
+                TimerEvent next = event.next;
+                event.prev = null;
+                event.next = null;
+                event.bucket = -1;
+                event.timer = null;
+                event_count--;
+                expired.add(event);
+                event = next;
+            }
+        }
+        current_tick = now_tick;
+    }
+
+    /**
+     * @return the next tick with something to do, an event due or a slot to redistribute
+     */
+    private long
+    nextTick() {
+        if (event_count == 0) {
+            return Long.MAX_VALUE;
+        }
+        long first = Long.MAX_VALUE;
+        for (int i = 1; i <= WHEEL_SIZE; i++) {
+            if (buckets[(int) ((current_tick + i) & WHEEL_MASK)] != null) {
+                first = current_tick + i;
+                break;
+            }
+        }
+        // an upper slot redistributed sooner can hold an event due before it
+        if (first <= ((current_tick >>> WHEEL_BITS) + 1) << WHEEL_BITS) {
+            return first;
+        }
+        return Math.min(first, nextCascadeTick());
+    }
+
+    /**
+     * @return the next tick an occupied slot of the second wheel is redistributed,
+     * or the next turn of the third wheel
+     */
+    private long
+    nextCascadeTick() {
+        long turn = ((current_tick >>> (2 * WHEEL_BITS)) + 1) << (2 * WHEEL_BITS);
+        for (long slot = (current_tick >>> WHEEL_BITS) + 1; ; slot++) {
+            long tick = slot << WHEEL_BITS;
+            if (tick >= turn) {
+                return turn;
+            }
+            if (buckets[WHEEL_SIZE + (int) (slot & WHEEL_MASK)] != null) {
+                return tick;
+            }
+        }
+    }
+
+    /**
+     * Puts the event in the slot of its tick, in the lowest wheel covering it.
+     */
+    private void
+    link(
+            TimerEvent event) {
+        long delta = event.tick - current_tick;
+        long tick = delta < WHEELS_SPAN ? event.tick : current_tick + WHEELS_SPAN - 1;
+        int wheel = 0;
+        while (wheel < WHEELS - 1 && delta >= 1L << (WHEEL_BITS * (wheel + 1))) {
+            wheel++;
+        }
+        int bucket = wheel * WHEEL_SIZE + (int) ((tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK);
+        TimerEvent head = buckets[bucket];
+        event.next = head;
+        if (head != null) {
+            head.prev = event;
+        }
+        buckets[bucket] = event;
+        event.bucket = bucket;
+        event_count++;
+    }
+
+    private void
+    unlink(
+            TimerEvent event) {
+        if (event.bucket < 0) {
+            return;
+        }
+        if (event.prev != null) {
+            event.prev.next = event.next;
+        } else {
+            buckets[event.bucket] = event.next;
+        }
+        if (event.next != null) {
+            event.next.prev = event.prev;
+        }
+        event.prev = null;
+        event.next = null;
+        event.bucket = -1;
+        event_count--;
+    }
+
+    /**
+     * Sets the deadline and schedules the event, never before the next tick.
+     */
+    private void
+    schedule(
+            TimerEvent event,
+            long deadline) {
+        event.deadline = deadline;
+        event.tick = Math.max(current_tick + 1, (deadline + TICK_MILLIS - 1) / TICK_MILLIS);
+        event.timer = this;
+        link(event);
+        if (event.tick < wake_tick) {
+            notify();
+        }
+    }
+
+    synchronized void
+    cancelEvent(
+            TimerEvent event) {
+        event.setCancelled();
+        if (event.timer == this) {
+            unlink(event);
+            event.timer = null;
+        }
+    }
+
+    private long
+    monoTime() {
+        return (System.nanoTime() - start_nanos) / 1000000;
+    }
+
+    private List<TimerEvent>
+    getEvents() {
+        List<TimerEvent> events = new ArrayList<>(event_count);
+        for (TimerEvent head : buckets) {
+            for (TimerEvent event = head; event != null; event = event.next) {
+                events.add(event);
+            }
+        }
+        return (events);
+    }
+
     public void
     clockChangeDetected(
             long current_time,
             long offset) {
         if (Math.abs(offset) >= 60 * 1000) {
-            // fix up the timers
             synchronized (this) {
-                Iterator<TimerEvent> it = events.iterator();
-                List<TimerEvent> updated_events = new ArrayList<>(events.size());
-                while (it.hasNext()) {
-                    TimerEvent event = it.next();
-                    // absolute events don't have their timings fiddled with
-                    if (!event.isAbsolute()) {
-                        long old_when = event.getWhen();
-                        long new_when = old_when + offset;
-                        TimerEventPerformer performer = event.getPerformer();
-                        // sanity check for periodic events
-                        if (performer instanceof TimerEventPeriodic) {
-                            TimerEventPeriodic periodic_event = (TimerEventPeriodic) performer;
-                            long freq = periodic_event.getFrequency();
-                            if (new_when > current_time + freq + 5000) {
-                                new_when = current_time + freq;
-                            }
-                        }
-                        event.setWhen(new_when);
+                for (TimerEvent event : getEvents()) {
+                    if (event.isAbsolute()) {
+                        // due at the same wall clock time, so sooner or later than planned
+                        unlink(event);
+                        schedule(event, event.deadline - offset);
+                    } else {
+                        // due after the same delay, only its wall clock time changes
+                        event.setWhen(event.getWhen() + offset);
                     }
-                    updated_events.add(event);
                 }
-                // resort - we have to use an alternative list of events as input because if we just throw the
-                // treeset in the constructor optimises things under the assumption that the original set
-                // was correctly sorted...
-                events = new TreeSet<>(updated_events);
             }
         }
     }
@@ -150,30 +331,18 @@ public class Timer
             // ones we can santitize them to at least be within the periodic time period of the current time
             // important for when clock goes back but not forward obviously
             synchronized (this) {
-                Iterator<TimerEvent> it = events.iterator();
-                boolean updated = false;
-                while (it.hasNext()) {
-                    TimerEvent event = it.next();
+                long mono_now = monoTime();
+                for (TimerEvent event : getEvents()) {
                     // absolute events don't have their timings fiddled with
-                    if (!event.isAbsolute()) {
-                        TimerEventPerformer performer = event.getPerformer();
-                        // sanity check for periodic events
-                        if (performer instanceof TimerEventPeriodic) {
-                            TimerEventPeriodic periodic_event = (TimerEventPeriodic) performer;
-                            long freq = periodic_event.getFrequency();
-                            long old_when = event.getWhen();
-                            if (old_when > current_time + freq + 5000) {
-                                long adjusted_when = current_time + freq;
-                                //Debug.outNoStack( periodic_event.getName() + ": clock change sanity check. Reduced schedule time from " + old_when + " to " +  adjusted_when );
-                                event.setWhen(adjusted_when);
-                                updated = true;
-                            }
+                    if (!event.isAbsolute() && event.getPerformer() instanceof TimerEventPeriodic) {
+                        long freq = ((TimerEventPeriodic) event.getPerformer()).getFrequency();
+                        if (event.deadline > mono_now + freq + 5000) {
+                            unlink(event);
+                            schedule(event, mono_now + freq);
+                            event.setWhen(current_time + freq);
                         }
                     }
                 }
-                if (updated) {
-                    events = new TreeSet<>(new ArrayList<>(events));
-                }
                 // must have this notify here as the scheduling code uses the current time to calculate
                 // how long to sleep for and this needs to be guaranteed to be using the correct (new) time
                 notify();
@@ -181,12 +350,12 @@ public class Timer
         }
     }
 
-    synchronized void
+    synchronized TimerEvent
     addEvent(
             String name,
             long when,
             TimerEventPerformer performer) {
-        addEvent(name, SystemTime.getCurrentTime(), when, performer);
+        return (addEvent(name, SystemTime.getCurrentTime(), when, false, performer));
     }
 
     synchronized TimerEvent
@@ -207,15 +376,6 @@ public class Timer
         return (addEvent(null, creation_time, when, absolute, performer));
     }
 
-    private synchronized void
-    addEvent(
-            String name,
-            long creation_time,
-            long when,
-            TimerEventPerformer performer) {
-        addEvent(name, creation_time, when, false, performer);
-    }
-
     private synchronized TimerEvent
     addEvent(
             String name,
@@ -227,22 +387,19 @@ public class Timer
         if (name != null) {
             event.setName(name);
         }
-        events.add(event);
-        if (current_when == Integer.MAX_VALUE || when < current_when) {
-            notify();
-        }
+        schedule(event, monoTime() + (when - SystemTime.getCurrentTime()));
         return (event);
     }
 
-    synchronized void
+    synchronized TimerEventPeriodic
     addPeriodicEvent(
             String name,
             long frequency,
             TimerEventPerformer performer) {
-        addPeriodicEvent(name, frequency, false, performer);
+        return (addPeriodicEvent(name, frequency, false, performer));
     }
 
-    private synchronized void
+    private synchronized TimerEventPeriodic
     addPeriodicEvent(
             String name,
             long frequency,
@@ -252,5 +409,6 @@ public class Timer
         if (name != null) {
             periodic_performer.setName(name);
         }
+        return (periodic_performer);
     }
 }
@@ -34,6 +34,14 @@ TimerEvent
     private String name;
     private long when;
     private long unique_id = 1;
+    private volatile boolean cancelled;
+    // the wheel state, guarded by the timer
+    Timer timer;
+    long deadline;
+    long tick;
+    int bucket = -1;
+    TimerEvent prev;
+    TimerEvent next;
 
     TimerEvent(long _unique_id,
                long _when,
@@ -91,6 +99,29 @@ TimerEvent
     setHasRun() {
     }
 
+    /**
+     * Removes the event from its timer, it won't run if it hasn't already.
+     */
+    public void
+    cancel() {
+        Timer t = timer;
+        if (t != null) {
+            t.cancelEvent(this);
+        } else {
+            cancelled = true;
+        }
+    }
+
+    void
+    setCancelled() {
+        cancelled = true;
+    }
+
+    public boolean
+    isCancelled() {
+        return (cancelled);
+    }
+
     public int
     compareTo(
             TimerEvent other) {
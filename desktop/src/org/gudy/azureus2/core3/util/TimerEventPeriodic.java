@@ -37,6 +37,7 @@ TimerEventPeriodic
     private final TimerEventPerformer performer;
     private String name;
     private TimerEvent current_event;
+    private boolean cancelled;
 
     TimerEventPeriodic(
             Timer _timer,
@@ -62,6 +63,24 @@ TimerEventPeriodic
         }
     }
 
+    public void
+    cancel() {
+        synchronized (this) {
+            cancelled = true;
+            if (current_event != null) {
+                current_event.cancel();
+                current_event = null;
+            }
+        }
+    }
+
+    public boolean
+    isCancelled() {
+        synchronized (this) {
+            return (cancelled);
+        }
+    }
+
     long
     getFrequency() {
         return (frequency);
@@ -76,6 +95,9 @@ TimerEventPeriodic
             LOG.error(e.getMessage(), e);
         }
         synchronized (this) {
+            if (cancelled) {
+                return;
+            }
             long now = SystemTime.getCurrentTime();
             current_event = timer.addEvent(name, now + frequency, absolute, this);
         }
@@ -0,0 +1,116 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.components.transfers;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Compares drawing the whole piece map against repainting the pieces
+ * that changed since the last frame, and checks both give the same image.
+ * <p>
+ * Run with -Djava.awt.headless=true
+ */
+public final class HexHivePanelBenchmark {
+
+    public static void main(String[] args) {
+        run(10_000, 16, 1000);
+        run(100_000, 5, 1600);
+    }
+
+    private static void run(int numPieces, int hexSideLength, int width) {
+        Random random = new Random(7);
+        PiecesAdapter adapter = new PiecesAdapter(numPieces);
+        for (int i = 0; i < numPieces / 2; i++) {
+            adapter.pieces.set(random.nextInt(numPieces));
+        }
+        HexHivePanel panel = newPanel(hexSideLength, width);
+        panel.updateDrawingProperties(adapter);
+        panel.draw(adapter);
+
+        int frames = 20;
+        long full = 0;
+        long incremental = 0;
+        for (int f = 0; f < frames; f++) {
+            // a refresh typically sees a handful of new pieces
+            for (int i = 0; i < 10; i++) {
+                adapter.pieces.set(random.nextInt(numPieces));
+            }
+            HexHivePanel fresh = newPanel(hexSideLength, width);
+            fresh.updateDrawingProperties(adapter);
+            long start = System.nanoTime();
+            fresh.draw(adapter);
+            full += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            panel.draw(adapter);
+            incremental += System.nanoTime() - start;
+
+            if (f == frames - 1 && !samePixels(fresh.getBitmap(), panel.getBitmap())) {
+                throw new AssertionError("incremental drawing differs from full drawing");
+            }
+        }
+        System.out.printf("%,d pieces: full draw %.2f ms/frame, changed pieces only %.2f ms/frame%n",
+                numPieces, full / 1e6 / frames, incremental / 1e6 / frames);
+    }
+
+    private static HexHivePanel newPanel(int hexSideLength, int width) {
+        HexHivePanel panel = new HexHivePanel(hexSideLength, 0x264053, 0xf2f2f2, 0x33b5e5, 0xffffff, 5, 0, 0, 5, true);
+        panel.setSize(width, 240);
+        return panel;
+    }
+
+    private static boolean samePixels(BufferedImage a, BufferedImage b) {
+        if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+            return false;
+        }
+        int[] pa = a.getRGB(0, 0, a.getWidth(), a.getHeight(), null, 0, a.getWidth());
+        int[] pb = b.getRGB(0, 0, b.getWidth(), b.getHeight(), null, 0, b.getWidth());
+        return Arrays.equals(pa, pb);
+    }
+
+    private static final class PiecesAdapter implements HexHivePanel.HexDataAdapter<Object> {
+        private final int numPieces;
+        private final BitSet pieces = new BitSet();
+
+        PiecesAdapter(int numPieces) {
+            this.numPieces = numPieces;
+        }
+
+        @Override
+        public void updateData(Object data) {
+        }
+
+        @Override
+        public int getTotalHexagonsCount() {
+            return numPieces;
+        }
+
+        @Override
+        public int getFullHexagonsCount() {
+            return pieces.cardinality();
+        }
+
+        @Override
+        public boolean isFull(int hexOffset) {
+            return pieces.get(hexOffset);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.gui.library.DirectoryLister;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DirectoryListerTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void childrenAreStreamedInChunks() throws Exception {
+        fill(tmp, 25, 3);
+        DirectoryLister lister = new DirectoryLister(1, 1000);
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        Set<File> seen = Collections.synchronizedSet(new HashSet<>());
+        CountDownLatch done = new CountDownLatch(1);
+        int[] dirs = new int[1];
+        lister.list(tmp, 10, new DirectoryLister.Listener() {
+            @Override
+            public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+                sizes.add(chunk.size());
+                for (DirectoryLister.Entry e : chunk) {
+                    seen.add(e.getFile());
+                    if (e.isDirectory()) {
+                        dirs[0]++;
+                    }
+                }
+            }
+
+            @Override
+            public void onDone(File dir, DirectoryLister.Listing listing) {
+                assertEquals(28, listing.getEntries().size());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(28, seen.size());
+        assertEquals(3, dirs[0]);
+        assertEquals(3, sizes.size());
+        for (int size : sizes) {
+            assertTrue(size <= 10);
+        }
+        assertNotNull(lister.getCached(tmp));
+    }
+
+    @Test
+    public void cachedListingIsDroppedWhenTheDirectoryChanges() throws Exception {
+        fill(tmp, 5, 0);
+        DirectoryLister lister = new DirectoryLister(1, 1000);
+        DirectoryLister.Listing first = lister.list(tmp);
+        assertEquals(5, first.getEntries().size());
+        assertSame(first, lister.list(tmp));
+        new File(tmp, "new.mp3").createNewFile();
+        // the modification time resolution can be coarse
+        tmp.setLastModified(tmp.lastModified() + 2000);
+        DirectoryLister.Listing second = lister.list(tmp);
+        assertNotSame(first, second);
+        assertEquals(6, second.getEntries().size());
+    }
+
+    @Test
+    public void cancelledListenersAreNotCalled() throws Exception {
+        fill(tmp, 2000, 0);
+        DirectoryLister lister = new DirectoryLister(1, 10_000);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch first = new CountDownLatch(1);
+        DirectoryLister.Handle[] handle = new DirectoryLister.Handle[1];
+        CountDownLatch started = new CountDownLatch(1);
+        handle[0] = lister.list(tmp, 1, new DirectoryLister.Listener() {
+            @Override
+            public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handle[0].cancel();
+                calls.incrementAndGet();
+                first.countDown();
+            }
+
+            @Override
+            public void onDone(File dir, DirectoryLister.Listing listing) {
+                calls.incrementAndGet();
+            }
+        });
+        started.countDown();
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        // a new listing runs after the abandoned one, on the same thread
+        CountDownLatch done = new CountDownLatch(1);
+        lister.list(tmp, 1000, new DirectoryLister.Listener() {
+            @Override
+            public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+            }
+
+            @Override
+            public void onDone(File dir, DirectoryLister.Listing listing) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void listenerJoiningAStoppingListingIsDone() throws Exception {
+        fill(tmp, 200, 0);
+        DirectoryLister lister = new DirectoryLister(2, 10_000);
+        for (int round = 0; round < 200; round++) {
+            lister.invalidate(tmp);
+            DirectoryLister.Handle[] handle = new DirectoryLister.Handle[1];
+            handle[0] = lister.list(tmp, 1, new DirectoryLister.Listener() {
+                @Override
+                public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+                    DirectoryLister.Handle h = handle[0];
+                    if (h != null) {
+                        h.cancel();
+                    }
+                }
+
+                @Override
+                public void onDone(File dir, DirectoryLister.Listing listing) {
+                }
+            });
+            // joins while the first one is being abandoned, or starts a new listing
+            CountDownLatch done = new CountDownLatch(1);
+            lister.list(tmp, 50, new DirectoryLister.Listener() {
+                @Override
+                public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+                }
+
+                @Override
+                public void onDone(File dir, DirectoryLister.Listing listing) {
+                    done.countDown();
+                }
+            });
+            handle[0].cancel();
+            assertTrue(done.await(5, TimeUnit.SECONDS), "round " + round);
+        }
+    }
+
+    @Test
+    public void unreadableDirectoryIsDoneEmpty() throws Exception {
+        DirectoryLister lister = new DirectoryLister(1, 100);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger entries = new AtomicInteger(-1);
+        lister.list(new File(tmp, "missing"), 10, new DirectoryLister.Listener() {
+            @Override
+            public void onChunk(File dir, List<DirectoryLister.Entry> chunk) {
+            }
+
+            @Override
+            public void onDone(File dir, DirectoryLister.Listing listing) {
+                entries.set(listing.getEntries().size());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, entries.get());
+    }
+
+    @Test
+    public void cacheIsBoundedByEntries() throws Exception {
+        File a = new File(tmp, "a");
+        File b = new File(tmp, "b");
+        File c = new File(tmp, "c");
+        fill(a, 40, 0);
+        fill(b, 40, 0);
+        fill(c, 40, 0);
+        DirectoryLister lister = new DirectoryLister(1, 100);
+        lister.list(a);
+        lister.list(b);
+        lister.list(c);
+        // a was the least recently used
+        assertNull(lister.getCached(a));
+        assertNotNull(lister.getCached(b));
+        assertNotNull(lister.getCached(c));
+        lister.invalidate(c);
+        assertNull(lister.getCached(c));
+    }
+
+    @Test
+    public void hiddenFilesAreFlagged() throws Exception {
+        fill(tmp, 1, 0);
+        new File(tmp, ".hidden").createNewFile();
+        DirectoryLister.Listing listing = new DirectoryLister(1, 100).list(tmp);
+        for (DirectoryLister.Entry e : listing.getEntries()) {
+            assertEquals(e.getFile().getName().startsWith("."), e.isHidden());
+            assertFalse(e.isDirectory());
+        }
+    }
+
+    private static void fill(File dir, int files, int dirs) throws IOException {
+        dir.mkdirs();
+        for (int i = 0; i < files; i++) {
+            new File(dir, "file" + i + ".mp3").createNewFile();
+        }
+        for (int i = 0; i < dirs; i++) {
+            new File(dir, "dir" + i).mkdir();
+        }
+    }
+}
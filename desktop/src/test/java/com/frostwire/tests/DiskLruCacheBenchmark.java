@@ -0,0 +1,138 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.DiskLruCache;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The operations of {@link DiskLruCache}: writing values, reading them as an
+ * exact size array, as a buffer (mapped when big) and as a stream copied to an
+ * array, the way the crawl cache read them before, with the bytes allocated
+ * per read; concurrent readers; and opening the cache, replaying its journal.
+ * Run it with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the number of values (default 200), their size in bytes
+ * (default 64K) and the number of reader threads (default 4).
+ */
+public final class DiskLruCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 64 * 1024;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        File dir = Files.createTempDirectory("disklrucache").toFile();
+        try {
+            byte[][] values = new byte[n][];
+            for (int i = 0; i < n; i++) {
+                values[i] = DiskLruCacheTest.bytes(i, size);
+            }
+            for (int round = 0; round < 3; round++) {
+                FileUtils.deleteQuietly(dir);
+                DiskLruCache cache = new DiskLruCache(dir, 2L * n * size);
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    cache.put("key" + i, values[i]);
+                }
+                long put = System.nanoTime() - start;
+                System.out.printf("round %d, %d values of %d bytes: put %.0f us/value%n", round, n, size, put / 1e3 / n);
+
+                int reads = 10 * n;
+                report("get array", reads, () -> {
+                    for (int i = 0; i < reads; i++) {
+                        check(cache.get("key" + i % n).length, size);
+                    }
+                });
+                report("get buffer", reads, () -> {
+                    for (int i = 0; i < reads; i++) {
+                        ByteBuffer buffer = cache.getBuffer("key" + i % n);
+                        check(buffer.remaining(), size);
+                    }
+                });
+                report("stream copy", reads, () -> {
+                    for (int i = 0; i < reads; i++) {
+                        try (InputStream in = cache.getInputStream("key" + i % n)) {
+                            check(IOUtils.toByteArray(in).length, size);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+                report(threads + " readers", reads, () -> {
+                    List<Thread> readers = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        final int seed = t;
+                        readers.add(new Thread(() -> {
+                            Random random = new Random(seed);
+                            for (int i = 0; i < reads / threads; i++) {
+                                check(cache.get("key" + random.nextInt(n)).length, size);
+                            }
+                        }));
+                    }
+                    readers.forEach(Thread::start);
+                    for (Thread reader : readers) {
+                        try {
+                            reader.join();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                cache.close();
+
+                start = System.nanoTime();
+                DiskLruCache reopened = new DiskLruCache(dir, 2L * n * size);
+                check(reopened.entries(), n);
+                System.out.printf("%-12s %.1f ms, journal %d bytes%n", "open",
+                        (System.nanoTime() - start) / 1e6, new File(dir, "cache.journal").length());
+                reopened.close();
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static void report(String name, int reads, Runnable run) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = mx.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        allocated = mx.getThreadAllocatedBytes(thread) - allocated;
+        System.out.printf("%-12s %6.1f us/read, %8d bytes allocated/read in the calling thread%n", name,
+                elapsed / 1e3 / reads, allocated / reads);
+    }
+
+    private static void check(long actual, long expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("expected " + expected + ", got " + actual);
+        }
+    }
+}
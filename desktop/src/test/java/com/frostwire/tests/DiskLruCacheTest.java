@@ -0,0 +1,208 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.DiskLruCache;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DiskLruCacheTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void valuesRoundTrip() throws Exception {
+        DiskLruCache cache = new DiskLruCache(tmp, 4 * 1024 * 1024);
+        byte[] small = bytes(1, 1000);
+        byte[] big = bytes(2, 1024 * 1024);
+        assertTrue(cache.put("small", small));
+        assertTrue(cache.put("big", new ByteArrayInputStream(big)));
+
+        assertArrayEquals(small, cache.get("small"));
+        assertArrayEquals(big, cache.get("big"));
+        assertArrayEquals(small, toArray(cache.getBuffer("small")));
+        ByteBuffer mapped = cache.getBuffer("big");
+        assertTrue(mapped.isDirect());
+        assertArrayEquals(big, toArray(mapped));
+        try (InputStream in = cache.getInputStream("small")) {
+            assertArrayEquals(small, IOUtils.toByteArray(in));
+        }
+        assertEquals(2, cache.entries());
+        assertEquals(small.length + big.length, cache.size());
+
+        assertTrue(cache.remove("small"));
+        assertFalse(cache.contains("small"));
+        assertNull(cache.get("small"));
+        assertEquals(big.length, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.entries());
+        assertNull(cache.getBuffer("big"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        DiskLruCache cache = new DiskLruCache(tmp, 3000);
+        cache.put("a", bytes(1, 1000));
+        cache.put("b", bytes(2, 1000));
+        cache.put("c", bytes(3, 1000));
+        cache.get("a");
+        cache.put("d", bytes(4, 1000));
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+        assertEquals(3000, cache.size());
+        // bigger than the whole cache
+        assertFalse(cache.put("e", bytes(5, 3001)));
+        assertFalse(cache.put("e", new ByteArrayInputStream(bytes(5, 3001))));
+        assertFalse(cache.contains("e"));
+    }
+
+    @Test
+    public void journalKeepsTheOrder() {
+        DiskLruCache cache = new DiskLruCache(tmp, 3000);
+        cache.put("a", bytes(1, 1000));
+        cache.put("b", bytes(2, 1000));
+        cache.put("c", bytes(3, 1000));
+        cache.remove("c");
+        cache.put("c", bytes(3, 1000));
+        cache.get("a");
+        cache.close();
+
+        cache = new DiskLruCache(tmp, 3000);
+        assertEquals(3, cache.entries());
+        cache.put("d", bytes(4, 1000));
+        assertFalse(cache.contains("b"));
+        assertArrayEquals(bytes(1, 1000), cache.get("a"));
+
+        // a file not in the journal is deleted, a lost file is forgotten
+        cache.close();
+        File orphan = new File(tmp, "orphan");
+        assertTrue(orphan.mkdirs() || orphan.isDirectory());
+        writeFile(new File(orphan, "x"), 10);
+        writeFile(new File(tmp, "x.1.tmp"), 10);
+        assertTrue(new File(tmp, DiskLruCache.MD5.hash("c")).delete());
+        cache = new DiskLruCache(tmp, 3000);
+        assertEquals(2, cache.entries());
+        assertEquals(2000, cache.size());
+        assertFalse(new File(orphan, "x").exists());
+        assertFalse(new File(tmp, "x.1.tmp").exists());
+    }
+
+    @Test
+    public void filesAreTakenWithoutJournal() {
+        File dir = new File(tmp, "cache");
+        DiskLruCache.KeyHasher path = key -> key;
+        writeFile(new File(dir, "host/old.png"), 1000);
+        writeFile(new File(dir, "host/new.png"), 1000);
+        new File(dir, "host/old.png").setLastModified(System.currentTimeMillis() - 60_000);
+
+        DiskLruCache cache = new DiskLruCache(dir, 2500, path);
+        assertEquals(2, cache.entries());
+        cache.put("other/a.png", bytes(1, 1000));
+        assertFalse(new File(dir, "host/old.png").exists());
+        assertTrue(new File(dir, "host/new.png").exists());
+        assertTrue(new File(dir, "other/a.png").exists());
+
+        // names escaping the directory are not cached
+        assertFalse(cache.put("../escape", bytes(1, 10)));
+        assertFalse(cache.put("host//a", bytes(1, 10)));
+        assertNull(cache.get("../escape"));
+    }
+
+    @Test
+    public void readersSeeWholeValues() throws Exception {
+        DiskLruCache cache = new DiskLruCache(tmp, 64 * 1024);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            threads.add(new Thread(() -> {
+                try {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 500; i++) {
+                        String key = "k" + random.nextInt(40);
+                        int length = 1000 + (key.hashCode() & 0xfff);
+                        if (random.nextInt(3) == 0) {
+                            cache.put(key, bytes(key.hashCode(), length));
+                        } else {
+                            byte[] data = cache.get(key);
+                            if (data != null) {
+                                assertArrayEquals(bytes(key.hashCode(), length), data, key);
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        long size = cache.size();
+        assertTrue(size <= cache.maxSize());
+        cache.close();
+        assertEquals(size, new DiskLruCache(tmp, 64 * 1024).size());
+    }
+
+    static byte[] bytes(int seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    private static void writeFile(File file, int length) {
+        try {
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), bytes(length, length));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
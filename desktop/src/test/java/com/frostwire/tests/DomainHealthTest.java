@@ -0,0 +1,318 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchResult;
+import com.frostwire.search.DomainHealth;
+import com.frostwire.search.PagedWebSearchPerformer;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.WebSearchPerformer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class DomainHealthTest {
+
+    private enum Fault {
+        NONE, RESET, SLOW
+    }
+
+    private HttpServer server;
+    private volatile Fault fault = Fault.NONE;
+    private volatile StubPerformer stopOnRequest;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            StubPerformer performer = stopOnRequest;
+            if (performer != null) {
+                performer.stop();
+            }
+            switch (fault) {
+                case RESET:
+                    // no response at all
+                    exchange.close();
+                    return;
+                case SLOW:
+                    sleep(4000);
+                    break;
+                default:
+                    sleep(20);
+            }
+            respond(exchange, "a,b");
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        WebSearchPerformer.setDomainHealth(new DomainHealth());
+        server.stop(0);
+    }
+
+    @Test
+    public void timeoutFollowsTheLatencies() {
+        long[] now = {0};
+        DomainHealth health = new DomainHealth(1000, () -> now[0]);
+        assertEquals(5000, health.timeout("example.com", 5000));
+        for (int i = 1; i <= 100; i++) {
+            health.onSuccess("example.com", i * 10);
+        }
+        // the last 64 samples, 370 to 1000 ms
+        assertEquals(680, health.percentile("example.com", 50));
+        assertEquals(970, health.percentile("example.com", 95));
+        assertEquals(2910, health.timeout("example.com", 5000));
+        assertEquals(2000, health.timeout("example.com", 2000));
+        for (int i = 0; i < 64; i++) {
+            health.onSuccess("example.com", 10);
+        }
+        // never too short
+        assertEquals(1500, health.timeout("example.com", 5000));
+    }
+
+    @Test
+    public void circuitOpensAndHalfOpens() {
+        long[] now = {0};
+        DomainHealth health = new DomainHealth(1000, () -> now[0]);
+        String d = "example.com";
+        for (int i = 0; i < 3; i++) {
+            assertTrue(health.allowRequest(d));
+            health.onFailure(d);
+        }
+        assertEquals(DomainHealth.State.OPEN, health.state(d));
+        assertFalse(health.allowRequest(d));
+        now[0] = 1000;
+        assertEquals(DomainHealth.State.HALF_OPEN, health.state(d));
+        assertFalse(health.isOpen(d));
+        // a single probe
+        assertTrue(health.allowRequest(d));
+        assertFalse(health.allowRequest(d));
+        assertTrue(health.isOpen(d));
+        health.onFailure(d);
+        // open again, twice as long
+        now[0] = 2999;
+        assertFalse(health.allowRequest(d));
+        now[0] = 3000;
+        assertTrue(health.allowRequest(d));
+        health.onSuccess(d, 100);
+        assertEquals(DomainHealth.State.CLOSED, health.state(d));
+        assertTrue(health.allowRequest(d));
+        assertTrue(health.allowRequest(d));
+        assertTrue(health.dump().contains(d));
+    }
+
+    @Test
+    public void failingDomainIsSkippedUntilItRecovers() throws InterruptedException {
+        DomainHealth health = new DomainHealth(300, System::currentTimeMillis);
+        WebSearchPerformer.setDomainHealth(health);
+        String domain = domain();
+
+        fault = Fault.RESET;
+        assertTrue(search(domain).isEmpty());
+        assertEquals(3, requests.get());
+        assertEquals(DomainHealth.State.OPEN, health.state(domain));
+
+        // skipped, no requests
+        assertTrue(search(domain).isEmpty());
+        assertEquals(3, requests.get());
+
+        fault = Fault.NONE;
+        Thread.sleep(350);
+        assertEquals(DomainHealth.State.HALF_OPEN, health.state(domain));
+        assertEquals(6, search(domain).size());
+        assertEquals(DomainHealth.State.CLOSED, health.state(domain));
+    }
+
+    @Test
+    public void slowDomainFailsAtTheAdaptiveTimeout() {
+        DomainHealth health = new DomainHealth();
+        WebSearchPerformer.setDomainHealth(health);
+        String domain = domain();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(6, search(domain).size());
+        }
+        assertTrue(health.percentile(domain, 95) >= 0);
+        fault = Fault.SLOW;
+        long start = System.currentTimeMillis();
+        StubPerformer performer = new StubPerformer(domain, 1);
+        List<String> results = new ArrayList<>();
+        performer.setListener(new CollectingListener(results));
+        performer.perform();
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(results.isEmpty());
+        // the performer asked for 5 seconds
+        assertTrue(elapsed < 3000, "elapsed: " + elapsed);
+    }
+
+    @Test
+    public void stoppedSearchIsNotAFailure() {
+        DomainHealth health = new DomainHealth(300, System::currentTimeMillis);
+        WebSearchPerformer.setDomainHealth(health);
+        String domain = domain();
+        fault = Fault.RESET;
+        for (int i = 0; i < 3; i++) {
+            StubPerformer performer = new StubPerformer(domain, 3);
+            stopOnRequest = performer;
+            performer.setListener(new CollectingListener(new ArrayList<>()));
+            performer.perform();
+        }
+        assertEquals(3, requests.get());
+        assertEquals(DomainHealth.State.CLOSED, health.state(domain));
+    }
+
+    @Test
+    public void circuitIsKeyedByThePagesHost() {
+        DomainHealth health = new DomainHealth(300, System::currentTimeMillis);
+        WebSearchPerformer.setDomainHealth(health);
+        String host = domain();
+        fault = Fault.RESET;
+        // an api host, like api-v2.soundcloud.com for soundcloud.com
+        assertTrue(search("stub.example", host).isEmpty());
+        assertEquals(3, requests.get());
+        assertEquals(DomainHealth.State.OPEN, health.state(host));
+        assertTrue(search("stub.example", host).isEmpty());
+        assertEquals(3, requests.get());
+    }
+
+    private String domain() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static List<String> search(String domain) {
+        return search(domain, domain);
+    }
+
+    private static List<String> search(String domain, String host) {
+        StubPerformer performer = new StubPerformer(domain, host, 3);
+        List<String> results = new ArrayList<>();
+        performer.setListener(new CollectingListener(results));
+        performer.perform();
+        return results;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException ignored) {
+            // the client gave up
+        }
+    }
+
+    private static final class CollectingListener implements SearchListener {
+        private final List<String> results;
+
+        CollectingListener(List<String> results) {
+            this.results = results;
+        }
+
+        @Override
+        public void onResults(long token, List<? extends SearchResult> results) {
+            for (SearchResult sr : results) {
+                this.results.add(sr.getDisplayName());
+            }
+        }
+
+        @Override
+        public void onError(long token, SearchError error) {
+        }
+
+        @Override
+        public void onStopped(long token) {
+        }
+    }
+
+    private static final class StubPerformer extends PagedWebSearchPerformer {
+        private final String host;
+
+        StubPerformer(String domain, int pages) {
+            this(domain, domain, pages);
+        }
+
+        StubPerformer(String domain, String host, int pages) {
+            super(domain, 1, "test", 5000, pages);
+            this.host = host;
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + host + "/page" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            List<SearchResult> results = new ArrayList<>();
+            for (String name : page.split(",")) {
+                results.add(new StubResult(name));
+            }
+            return results;
+        }
+    }
+
+    private static final class StubResult extends AbstractSearchResult {
+        private final String name;
+
+        StubResult(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://example.com/" + name;
+        }
+
+        @Override
+        public String getSource() {
+            return "stub";
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.platform.DefaultFileSystem;
+import com.frostwire.platform.FileFilter;
+import com.frostwire.platform.FileWalker;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walking a generated tree of empty files: the listing walk with a visitor
+ * that checks each file, as the library scans do, versus the attribute walk,
+ * on one thread and in parallel. Run it with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the number of files (default 1000000), the parallelism (default 4)
+ * and the folder to use (default a temporary one, deleted at the end). The tree
+ * is two levels of folders with 100 files each. After the first round the tree
+ * is in the cache, drop the caches between runs for the cold numbers.
+ */
+public final class FileWalkerBenchmark {
+
+    private static final int FILES_PER_DIR = 100;
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        boolean temporary = args.length < 3;
+        File root = temporary ? Files.createTempDirectory("filewalker").toFile() : new File(args[2]);
+        try {
+            long start = System.nanoTime();
+            long entries = generate(root, files);
+            System.out.printf("%d entries generated in %d ms, %d cores%n", entries, (System.nanoTime() - start) / 1_000_000,
+                    Runtime.getRuntime().availableProcessors());
+            for (int round = 0; round < 3; round++) {
+                runListing(root);
+                runWalker(root, 1);
+                runWalker(root, parallelism);
+            }
+        } finally {
+            if (temporary) {
+                FileUtils.deleteQuietly(root);
+            }
+        }
+    }
+
+    private static void runListing(File root) {
+        AtomicLong count = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+        DefaultFileSystem.walkFiles(new DefaultFileSystem(), root, new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return true;
+            }
+
+            @Override
+            public void file(File file) {
+                if (!file.isDirectory()) {
+                    bytes.addAndGet(file.length());
+                }
+                count.incrementAndGet();
+            }
+        });
+        report("listing walk", start, count.get());
+    }
+
+    private static void runWalker(File root, int parallelism) {
+        AtomicLong count = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+        new FileWalker(parallelism).walk(root, new FileWalker.Visitor() {
+            @Override
+            public boolean accept(File file, BasicFileAttributes attrs) {
+                return true;
+            }
+
+            @Override
+            public void file(File file, BasicFileAttributes attrs) {
+                if (!attrs.isDirectory()) {
+                    bytes.addAndGet(attrs.size());
+                }
+                count.incrementAndGet();
+            }
+        });
+        report("attribute walk x" + parallelism, start, count.get());
+    }
+
+    private static void report(String name, long start, long entries) {
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-20s %8d ms %12.0f entries/s (%d)%n", name, elapsed / 1_000_000, entries / (elapsed / 1e9), entries);
+    }
+
+    /**
+     * @return the number of entries, the folders included
+     */
+    private static long generate(File root, int files) throws IOException {
+        int dirs = Math.max(1, (files + FILES_PER_DIR - 1) / FILES_PER_DIR);
+        int fanout = Math.max(1, (int) Math.ceil(Math.sqrt(dirs)));
+        long entries = 0;
+        int created = 0;
+        for (int i = 0; i < fanout && created < files; i++) {
+            File top = new File(root, "artist" + i);
+            mkdir(top);
+            entries++;
+            for (int j = 0; j < fanout && created < files; j++) {
+                File album = new File(top, "album" + j);
+                mkdir(album);
+                entries++;
+                for (int k = 0; k < FILES_PER_DIR && created < files; k++) {
+                    File f = new File(album, "track" + k + ".mp3");
+                    if (!f.exists() && !f.createNewFile()) {
+                        throw new IOException("Can't create " + f);
+                    }
+                    created++;
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void mkdir(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdir()) {
+            throw new IOException("Can't create " + dir);
+        }
+    }
+}
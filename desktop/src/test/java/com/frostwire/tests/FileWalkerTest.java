@@ -0,0 +1,203 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.platform.DefaultFileSystem;
+import com.frostwire.platform.FileFilter;
+import com.frostwire.platform.FileWalker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class FileWalkerTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void sequentialWalkKeepsTheWalkOrder() throws IOException {
+        int entries = tree(tmp, 3, 4, 5);
+        DefaultFileSystem fs = new DefaultFileSystem();
+        List<File> expected = new ArrayList<>();
+        DefaultFileSystem.walkFiles(fs, tmp, collect(expected, null));
+        assertEquals(entries, expected.size());
+
+        List<File> walked = new ArrayList<>();
+        fs.walk(tmp, collect(walked, null));
+        assertEquals(expected, walked);
+        assertFalse(walked.contains(tmp));
+    }
+
+    @Test
+    public void attributesComeWithTheEntries() throws IOException {
+        tree(tmp, 2, 3, 4);
+        File big = new File(tmp, "big.bin");
+        Files.write(big.toPath(), new byte[1234]);
+        AtomicInteger dirs = new AtomicInteger();
+        new FileWalker().walk(tmp, new FileWalker.Visitor() {
+            @Override
+            public boolean accept(File file, BasicFileAttributes attrs) {
+                assertEquals(file.isDirectory(), attrs.isDirectory());
+                return true;
+            }
+
+            @Override
+            public void file(File file, BasicFileAttributes attrs) {
+                if (attrs.isDirectory()) {
+                    dirs.incrementAndGet();
+                }
+                if (file.equals(big)) {
+                    assertEquals(1234, attrs.size());
+                }
+            }
+        });
+        assertEquals(3, dirs.get());
+    }
+
+    @Test
+    public void rejectedDirectoriesAreNotWalked() throws IOException {
+        tree(tmp, 2, 2, 3);
+        File skipped = new File(tmp, "d0");
+        for (int parallelism : new int[]{1, 4}) {
+            Set<File> walked = Collections.synchronizedSet(new HashSet<>());
+            new FileWalker(parallelism).walk(tmp, visitor(walked, skipped));
+            assertFalse(walked.contains(skipped));
+            assertFalse(walked.contains(new File(skipped, "f0.mp3")));
+            assertTrue(walked.contains(new File(tmp, "d1")));
+            // f0..f2, d1 and its f0..f2
+            assertEquals(7, walked.size());
+        }
+    }
+
+    @Test
+    public void parallelWalkVisitsTheSameEntries() throws IOException {
+        int entries = tree(tmp, 4, 5, 10);
+        Set<File> sequential = Collections.synchronizedSet(new HashSet<>());
+        new FileWalker().walk(tmp, visitor(sequential, null));
+        Set<File> parallel = Collections.synchronizedSet(new HashSet<>());
+        new FileWalker(4).walk(tmp, visitor(parallel, null));
+        assertEquals(entries, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void walkCanBeCancelled() throws IOException {
+        int entries = tree(tmp, 3, 6, 10);
+        for (int parallelism : new int[]{1, 4}) {
+            FileWalker walker = new FileWalker(parallelism);
+            AtomicInteger count = new AtomicInteger();
+            walker.walk(tmp, new FileWalker.Visitor() {
+                @Override
+                public boolean accept(File file, BasicFileAttributes attrs) {
+                    return true;
+                }
+
+                @Override
+                public void file(File file, BasicFileAttributes attrs) {
+                    if (count.incrementAndGet() == 100) {
+                        walker.cancel();
+                    }
+                }
+            });
+            assertTrue(walker.isCancelled());
+            assertTrue(count.get() < entries / 2, "visited " + count.get() + " of " + entries);
+        }
+    }
+
+    @Test
+    public void linksToParentsAreNotWalked() throws IOException {
+        File d = new File(tmp, "d");
+        assertTrue(d.mkdir());
+        assertTrue(new File(d, "a.mp3").createNewFile());
+        Files.createSymbolicLink(new File(d, "loop").toPath(), tmp.toPath());
+        for (int parallelism : new int[]{1, 4}) {
+            Set<File> walked = Collections.synchronizedSet(new HashSet<>());
+            new FileWalker(parallelism).walk(tmp, visitor(walked, null));
+            assertEquals(3, walked.size());
+            assertTrue(walked.contains(new File(d, "loop")));
+        }
+    }
+
+    /**
+     * A tree {@code depth} levels deep, with {@code dirs} directories and
+     * {@code files} files in each directory.
+     *
+     * @return the number of entries, the root excluded
+     */
+    static int tree(File dir, int depth, int dirs, int files) throws IOException {
+        int entries = 0;
+        for (int i = 0; i < files; i++) {
+            if (!new File(dir, "f" + i + ".mp3").createNewFile()) {
+                throw new IOException("Can't create file in " + dir);
+            }
+            entries++;
+        }
+        if (depth > 1) {
+            for (int i = 0; i < dirs; i++) {
+                File d = new File(dir, "d" + i);
+                if (!d.mkdir()) {
+                    throw new IOException("Can't create " + d);
+                }
+                entries += 1 + tree(d, depth - 1, dirs, files);
+            }
+        }
+        return entries;
+    }
+
+    private static FileFilter collect(List<File> list, File rejected) {
+        return new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.equals(rejected);
+            }
+
+            @Override
+            public void file(File file) {
+                list.add(file);
+            }
+        };
+    }
+
+    private static FileWalker.Visitor visitor(Set<File> set, File rejected) {
+        return new FileWalker.Visitor() {
+            @Override
+            public boolean accept(File file, BasicFileAttributes attrs) {
+                return !file.equals(rejected);
+            }
+
+            @Override
+            public void file(File file, BasicFileAttributes attrs) {
+                set.add(file);
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.HistoHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class HistoHashMapTest {
+
+    @Test
+    public void concurrentUpdatesAreExact() throws InterruptedException {
+        HistoHashMap<String> histo = new HistoHashMap<>();
+        int threads = 4;
+        int updates = 20_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < updates; i++) {
+                    histo.update("key" + (i % 10));
+                }
+                done.countDown();
+            }).start();
+        }
+        // snapshots taken while updating must not fail
+        while (done.getCount() > 0) {
+            List<Entry<String, Integer>> h = histo.histogram();
+            for (int i = 1; i < h.size(); i++) {
+                assertTrue(h.get(i - 1).getValue() >= h.get(i).getValue());
+            }
+        }
+        done.await();
+        assertEquals(10, histo.getKeyCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(threads * updates / 10, histo.get("key" + i));
+        }
+    }
+
+    @Test
+    public void histogramIsSortedByDescendingFrequency() {
+        HistoHashMap<String> histo = new HistoHashMap<>();
+        histo.update("b");
+        histo.update("a");
+        histo.update("a");
+        histo.update("c");
+        histo.update("a");
+        histo.update("b");
+        List<Entry<String, Integer>> h = histo.histogram();
+        assertEquals("a", h.get(0).getKey());
+        assertEquals(3, h.get(0).getValue());
+        assertEquals("b", h.get(1).getKey());
+        assertEquals("c", h.get(2).getKey());
+        assertEquals("a", histo.top());
+        histo.reset();
+        assertEquals(0, histo.getKeyCount());
+        assertEquals(0, histo.get("a"));
+    }
+
+    @Test
+    public void sketchKeepsTheHeavyHitters() {
+        HistoHashMap<String> histo = HistoHashMap.sketched(10);
+        // 10 heavy keys among 50,000 distinct rare ones
+        for (int i = 0; i < 50_000; i++) {
+            histo.update("rare" + i);
+            if (i % 100 == 0) {
+                for (int k = 0; k < 10; k++) {
+                    histo.update("heavy" + k);
+                }
+            }
+        }
+        List<Entry<String, Integer>> h = histo.histogram();
+        assertEquals(10, h.size());
+        for (Entry<String, Integer> e : h) {
+            assertTrue(e.getKey().startsWith("heavy"), e.getKey());
+            // never underestimated
+            assertTrue(e.getValue() >= 500);
+        }
+        assertTrue(histo.get("heavy0") < 600, "estimate: " + histo.get("heavy0"));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.IdListStore;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The play queue saved as the reverse hexadecimal string the playback service
+ * used to put in its preferences, versus {@link IdListStore}: the encoding and
+ * decoding of the whole queue, and a save after each of a series of edits,
+ * the string written to a file as the preferences would. Run it with
+ * {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the number of tracks (default 30000) and of edits (default 200).
+ */
+public final class IdListStoreBenchmark {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static void main(String[] args) throws IOException {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 30_000;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long[] queue = IdListStoreTest.queue(new Random(17), tracks);
+        File dir = Files.createTempDirectory("idliststore").toFile();
+        try {
+            String hex = hexEncode(queue, queue.length);
+            byte[] binary = IdListStore.encode(queue, queue.length);
+            System.out.printf("%d tracks: hex %d bytes, binary %d bytes%n", tracks, hex.getBytes(StandardCharsets.UTF_8).length, binary.length);
+            for (int round = 0; round < 3; round++) {
+                int iterations = 50;
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    hex = hexEncode(queue, queue.length);
+                }
+                long hexEncode = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    check(queue, hexDecode(hex));
+                }
+                long hexDecode = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    binary = IdListStore.encode(queue, queue.length);
+                }
+                long binaryEncode = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    check(queue, IdListStore.decode(binary));
+                }
+                long binaryDecode = System.nanoTime() - start;
+                System.out.printf("encode us: hex %d, binary %d; decode us: hex %d, binary %d%n",
+                        hexEncode / iterations / 1000, binaryEncode / iterations / 1000,
+                        hexDecode / iterations / 1000, binaryDecode / iterations / 1000);
+
+                File prefs = new File(dir, "prefs.txt");
+                File bin = new File(dir, "queue.bin");
+                FileUtils.deleteQuietly(bin);
+                IdListStore store = new IdListStore(bin);
+                store.save(queue, queue.length);
+                long[] edited = queue.clone();
+                int length = edited.length;
+                Random random = new Random(19);
+                long hexSave = 0;
+                long binarySave = 0;
+                for (int edit = 0; edit < edits; edit++) {
+                    // enqueue a track next, after the one playing
+                    int at = random.nextInt(length);
+                    edited = Arrays.copyOf(edited, length + 1);
+                    System.arraycopy(edited, at, edited, at + 1, length - at);
+                    edited[at] = 1 + random.nextInt(200_000);
+                    length++;
+                    start = System.nanoTime();
+                    FileUtils.writeStringToFile(prefs, hexEncode(edited, length), StandardCharsets.UTF_8);
+                    hexSave += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    store.save(edited, length);
+                    binarySave += System.nanoTime() - start;
+                }
+                check(Arrays.copyOf(edited, length), new IdListStore(bin).load());
+                System.out.printf("save after an edit us: hex %d, binary %d; file bytes: hex %d, binary %d%n",
+                        hexSave / edits / 1000, binarySave / edits / 1000, prefs.length(), bin.length());
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static void check(long[] expected, long[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            throw new IllegalStateException("decoded queue differs");
+        }
+    }
+
+    private static String hexEncode(long[] list, int len) {
+        StringBuilder q = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            long n = list[i];
+            if (n == 0) {
+                q.append("0;");
+            } else {
+                while (n != 0) {
+                    int digit = (int) (n & 0xf);
+                    n >>>= 4;
+                    q.append(HEX_DIGITS[digit]);
+                }
+                q.append(";");
+            }
+        }
+        return q.toString();
+    }
+
+    private static long[] hexDecode(String q) {
+        long[] list = new long[16];
+        int plen = 0;
+        long n = 0;
+        int shift = 0;
+        for (int i = 0; i < q.length(); i++) {
+            char c = q.charAt(i);
+            if (c == ';') {
+                if (plen == list.length) {
+                    list = Arrays.copyOf(list, plen * 2);
+                }
+                list[plen++] = n;
+                n = 0;
+                shift = 0;
+            } else {
+                n += (long) (c <= '9' ? c - '0' : 10 + c - 'a') << shift;
+                shift += 4;
+            }
+        }
+        return Arrays.copyOf(list, plen);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.IdListStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class IdListStoreTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void codecRoundTrips() {
+        long[] ids = {0, 1, 2, 3, 1000, 999, -5, Long.MAX_VALUE, Long.MIN_VALUE, 42, 42};
+        assertArrayEquals(ids, IdListStore.decode(IdListStore.encode(ids, ids.length)));
+        assertArrayEquals(new long[0], IdListStore.decode(IdListStore.encode(ids, 0)));
+
+        // consecutive ids take a byte each, plus the count
+        long[] album = new long[1000];
+        for (int i = 0; i < album.length; i++) {
+            album[i] = 123456789L + i;
+        }
+        byte[] encoded = IdListStore.encode(album, album.length);
+        assertTrue(encoded.length < album.length + 8, "encoded in " + encoded.length);
+        assertArrayEquals(album, IdListStore.decode(encoded));
+    }
+
+    @Test
+    public void editsAreAppended() {
+        File file = new File(tmp, "queue.bin");
+        IdListStore store = new IdListStore(file);
+        long[] queue = queue(new Random(3), 5000);
+        store.save(queue, queue.length);
+        long snapshot = file.length();
+
+        Random random = new Random(5);
+        int length = queue.length;
+        for (int edit = 0; edit < 200; edit++) {
+            switch (edit % 3) {
+                case 0: {
+                    // enqueue next
+                    int at = random.nextInt(length);
+                    long[] added = queue(random, 1 + random.nextInt(10));
+                    queue = Arrays.copyOf(queue, length + added.length);
+                    System.arraycopy(queue, at, queue, at + added.length, length - at);
+                    System.arraycopy(added, 0, queue, at, added.length);
+                    length += added.length;
+                    break;
+                }
+                case 1: {
+                    // remove a track
+                    int at = random.nextInt(length);
+                    System.arraycopy(queue, at + 1, queue, at, length - at - 1);
+                    length--;
+                    break;
+                }
+                default: {
+                    // move a track a few places
+                    int from = random.nextInt(length - 20);
+                    int to = from + 1 + random.nextInt(19);
+                    long id = queue[from];
+                    System.arraycopy(queue, from + 1, queue, from, to - from);
+                    queue[to] = id;
+                }
+            }
+            store.save(queue, length);
+        }
+        assertTrue(file.length() < 2 * snapshot, snapshot + " then " + file.length());
+        assertArrayEquals(Arrays.copyOf(queue, length), new IdListStore(file).load());
+
+        // saving the same list writes nothing
+        long size = file.length();
+        store.save(queue, length);
+        assertEquals(size, file.length());
+    }
+
+    @Test
+    public void savesAfterLoadAreIncremental() {
+        File file = new File(tmp, "queue.bin");
+        long[] queue = queue(new Random(7), 100);
+        new IdListStore(file).save(queue, queue.length);
+
+        IdListStore store = new IdListStore(file);
+        assertArrayEquals(queue, store.load());
+        queue[50] = 1;
+        store.save(queue, queue.length - 10);
+        assertArrayEquals(Arrays.copyOf(queue, 90), new IdListStore(file).load());
+    }
+
+    @Test
+    public void tornRecordsAreDropped() throws IOException {
+        File file = new File(tmp, "queue.bin");
+        IdListStore store = new IdListStore(file);
+        long[] queue = queue(new Random(11), 100);
+        store.save(queue, 50);
+        long valid = file.length();
+        store.save(queue, 100);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        store = new IdListStore(file);
+        assertArrayEquals(Arrays.copyOf(queue, 50), store.load());
+        store.save(queue, 60);
+        assertTrue(file.length() > valid);
+        assertArrayEquals(Arrays.copyOf(queue, 60), new IdListStore(file).load());
+    }
+
+    @Test
+    public void failedSaveIsReported() throws IOException {
+        File dir = new File(tmp, "dir");
+        IdListStore store = new IdListStore(new File(dir, "queue.bin"));
+        long[] queue = queue(new Random(17), 100);
+        // no folder to write the file in
+        assertTrue(dir.createNewFile());
+        assertFalse(store.save(queue, queue.length));
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        assertTrue(store.save(queue, queue.length));
+        assertTrue(store.save(queue, queue.length));
+        assertArrayEquals(queue, new IdListStore(new File(dir, "queue.bin")).load());
+    }
+
+    @Test
+    public void logIsCompacted() {
+        File file = new File(tmp, "queue.bin");
+        IdListStore store = new IdListStore(file);
+        long[] queue = queue(new Random(13), 20);
+        for (int i = 0; i < 20_000; i++) {
+            // rotate the queue, two splices each time
+            long first = queue[0];
+            System.arraycopy(queue, 1, queue, 0, queue.length - 1);
+            queue[queue.length - 1] = first;
+            store.save(queue, queue.length);
+        }
+        assertTrue(file.length() <= 64 * 1024, "file is " + file.length());
+        assertArrayEquals(queue, new IdListStore(file).load());
+    }
+
+    /**
+     * Albums of consecutive ids, in a random order.
+     */
+    static long[] queue(Random random, int length) {
+        long[] ids = new long[length];
+        long id = 0;
+        for (int i = 0; i < length; i++) {
+            id = i % 12 == 0 ? 1 + random.nextInt(200_000) : id + 1;
+            ids[i] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.gui.PixelCache;
+import com.frostwire.gui.components.slides.ImageCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class ImageCacheTest {
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void memoryHitIsImmediate() throws Exception {
+        URL url = image("a.png", 64, 64);
+        ImageCache cache = new ImageCache(new File(tmp, "cache"), 1024 * 1024, 1024 * 1024);
+        BufferedImage first = await(cache, url, false);
+        assertNotNull(first);
+        assertEquals(1, cache.misses());
+
+        AtomicBoolean called = new AtomicBoolean();
+        BufferedImage second = cache.getImage(url, (u, image, fromCache, fail) -> called.set(fromCache && !fail));
+        assertSame(first, second);
+        assertTrue(called.get());
+        assertEquals(1, cache.memoryHits());
+        assertEquals(0, cache.diskHits());
+    }
+
+    @Test
+    public void diskKeepsTheOriginalBytes() throws Exception {
+        URL url = image("b.png", 32, 32);
+        File dir = new File(tmp, "cache");
+        await(new ImageCache(dir, 1024 * 1024, 1024 * 1024), url, false);
+        File cached = new File(dir, "localhost" + File.separator + "b.png");
+        assertArrayEquals(Files.readAllBytes(new File(tmp, "b.png").toPath()), Files.readAllBytes(cached.toPath()));
+
+        // a new instance, like after a restart, serves it from disk
+        ImageCache cache = new ImageCache(dir, 1024 * 1024, 1024 * 1024);
+        assertNotNull(await(cache, url, true));
+        assertEquals(1, cache.diskHits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void memoryIsBoundedByPixelBytes() throws Exception {
+        URL a = image("c.png", 100, 100);
+        URL b = image("d.png", 100, 100);
+        // room for one decoded 100x100 argb image only
+        ImageCache cache = new ImageCache(new File(tmp, "cache"), 50_000, 1024 * 1024);
+        await(cache, a, false);
+        await(cache, b, false);
+        assertNull(cache.getImage(a, null));
+        assertNotNull(await(cache, a, true));
+        assertEquals(1, cache.diskHits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void diskEvictsLeastRecentlyUsed() throws Exception {
+        URL a = image("e.png", 200, 200);
+        URL b = image("f.png", 200, 200);
+        URL c = image("g.png", 200, 200);
+        File dir = new File(tmp, "cache");
+        long size = new File(tmp, "e.png").length();
+        ImageCache cache = new ImageCache(dir, 1024 * 1024, size * 2 + size / 2);
+        await(cache, a, false);
+        await(cache, b, false);
+        await(cache, c, false);
+        assertFalse(new File(dir, "localhost" + File.separator + "e.png").exists());
+        assertTrue(new File(dir, "localhost" + File.separator + "f.png").exists());
+        assertTrue(new File(dir, "localhost" + File.separator + "g.png").exists());
+    }
+
+    @Test
+    public void concurrentRequestsShareTheLoad() throws Exception {
+        URL url = image("h.png", 64, 64);
+        ImageCache cache = new ImageCache(new File(tmp, "cache"), 1024 * 1024, 1024 * 1024);
+        CountDownLatch loaded = new CountDownLatch(3);
+        AtomicReference<BufferedImage> first = new AtomicReference<>();
+        AtomicBoolean same = new AtomicBoolean(true);
+        for (int i = 0; i < 3; i++) {
+            cache.getImage(url, (u, image, fromCache, fail) -> {
+                if (!first.compareAndSet(null, image) && first.get() != image) {
+                    same.set(false);
+                }
+                loaded.countDown();
+            });
+        }
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertTrue(same.get());
+        assertEquals(1, cache.misses() + cache.memoryHits());
+    }
+
+    @Test
+    public void pixelCacheChargesPixelBytes() {
+        PixelCache<String, BufferedImage> cache = PixelCache.ofImages(60_000);
+        cache.put("a", new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+        cache.put("b", new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(0.5, cache.hitRate());
+        assertTrue(cache.bytes() <= 60_000);
+    }
+
+    private URL image(String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 31 + y * 17 + name.hashCode()) | 0xff000000);
+            }
+        }
+        File file = new File(tmp, name);
+        ImageIO.write(image, "png", file);
+        return file.toURI().toURL();
+    }
+
+    private static BufferedImage await(ImageCache cache, URL url, boolean expectFromCache) throws InterruptedException {
+        CountDownLatch loaded = new CountDownLatch(1);
+        AtomicReference<BufferedImage> result = new AtomicReference<>();
+        AtomicBoolean fromCacheRef = new AtomicBoolean();
+        BufferedImage image = cache.getImage(url, (u, img, fromCache, fail) -> {
+            result.set(img);
+            fromCacheRef.set(fromCache);
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertEquals(expectFromCache, fromCacheRef.get());
+        return image != null ? image : result.get();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.alexandria.Library;
+import com.frostwire.alexandria.Playlist;
+import com.frostwire.alexandria.PlaylistItem;
+import com.frostwire.gui.library.ImportPipeline;
+import com.frostwire.gui.library.tags.TagsData;
+import com.frostwire.gui.library.tags.TagsReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Playlist import of generated tagged mp3 and m4a files into a scratch library
+ * database, the old way (one file at a time, one commit per item) versus the
+ * {@link ImportPipeline} (parallel tag parsing, batched commits). Run it with
+ * {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: number of files (default 2000), number of parsing workers (default
+ * the number of cores, at least 2).
+ */
+public final class ImportPipelineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+        File dir = Files.createTempDirectory("importpipeline").toFile();
+        try {
+            File media = new File(dir, "media");
+            generate(media, files);
+            TagsData check = new TagsReader(new File(media, "album0/track0.mp3")).parse();
+            TagsData checkM4a = new TagsReader(new File(media, "album0/track1.m4a")).parse();
+            System.out.printf("%d files, %d workers, fixtures read as '%s' and '%s'%n", files, workers,
+                    check.getArtist() + " - " + check.getTitle(), checkM4a.getArtist() + " - " + checkM4a.getTitle());
+            for (int round = 0; round < 2; round++) {
+                serial(new File(dir, "serial" + round), media);
+                pipeline(new File(dir, "pipeline" + round), media, workers);
+            }
+        } finally {
+            try (Stream<java.nio.file.Path> walk = Files.walk(dir.toPath())) {
+                walk.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static void serial(File dbDir, File media) {
+        Library library = new Library(dbDir);
+        try {
+            Playlist playlist = library.newPlaylist("bench", "bench");
+            playlist.save();
+            long start = System.nanoTime();
+            int n = 0;
+            File[] dirs = media.listFiles();
+            for (File d : dirs) {
+                for (File f : d.listFiles()) {
+                    PlaylistItem item = newItem(playlist, f, new TagsReader(f).parse());
+                    playlist.getItems().add(item);
+                    item.setSortIndexByTrackNumber(playlist.getItems().size());
+                    item.save(item.isStarred());
+                    n++;
+                }
+            }
+            report("serial", n, System.nanoTime() - start);
+        } finally {
+            library.close();
+        }
+    }
+
+    private static void pipeline(File dbDir, File media, int workers) throws InterruptedException {
+        Library library = new Library(dbDir);
+        try {
+            Playlist playlist = library.newPlaylist("bench", "bench");
+            playlist.save();
+            long start = System.nanoTime();
+            ImportPipeline<TagsData> pipeline = new ImportPipeline<>(File::isFile, f -> new TagsReader(f).parse(), workers, 512, 100);
+            int n = pipeline.run(new File[]{media}, batch -> playlist.getLibraryDatabase().runInTransaction(() -> {
+                for (ImportPipeline.Parsed<TagsData> p : batch) {
+                    PlaylistItem item = newItem(playlist, p.getFile(), p.getValue());
+                    playlist.getItems().add(item);
+                    item.setSortIndexByTrackNumber(playlist.getItems().size());
+                    item.save(item.isStarred());
+                }
+            }), null);
+            report("pipeline", n, System.nanoTime() - start);
+        } finally {
+            library.close();
+        }
+    }
+
+    private static PlaylistItem newItem(Playlist playlist, File f, TagsData mt) {
+        return playlist.newItem(f.getAbsolutePath(), f.getName(), f.length(), "mp3", mt.getTitle(), mt.getDuration(), mt.getArtist(), mt.getAlbum(),
+                "", mt.getBitrate(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear(), false);
+    }
+
+    private static void report(String name, int n, long elapsed) {
+        System.out.printf("%-10s %6d files %8d ms %8.1f files/s%n", name, n, elapsed / 1_000_000, n / (elapsed / 1e9));
+    }
+
+    /**
+     * Albums of 20 tracks, alternating mp3 (ID3v2.3 and silent MPEG frames) and
+     * m4a (a movie header and iTunes metadata, no samples).
+     */
+    private static void generate(File media, int files) throws IOException {
+        for (int i = 0; i < files; i++) {
+            File album = new File(media, "album" + (i / 20));
+            album.mkdirs();
+            String artist = "Artist " + (i / 60);
+            String title = "Track " + i;
+            String albumName = "Album " + (i / 20);
+            if (i % 2 == 0) {
+                Files.write(new File(album, "track" + i + ".mp3").toPath(), mp3(title, artist, albumName, "Rock"));
+            } else {
+                Files.write(new File(album, "track" + i + ".m4a").toPath(), m4a(title, artist, albumName));
+            }
+        }
+    }
+
+    private static byte[] mp3(String title, String artist, String album, String genre) throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(frames);
+        textFrame(out, "TIT2", title);
+        textFrame(out, "TPE1", artist);
+        textFrame(out, "TALB", album);
+        textFrame(out, "TCON", genre);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        out = new DataOutputStream(file);
+        out.writeBytes("ID3");
+        out.write(new byte[]{3, 0, 0});
+        int size = frames.size();
+        // syncsafe size
+        out.write(new byte[]{(byte) (size >> 21 & 0x7f), (byte) (size >> 14 & 0x7f), (byte) (size >> 7 & 0x7f), (byte) (size & 0x7f)});
+        frames.writeTo(out);
+        // MPEG-1 layer III, 128 kbps, 44100 Hz, 417 bytes per frame
+        byte[] frame = new byte[417];
+        frame[0] = (byte) 0xff;
+        frame[1] = (byte) 0xfb;
+        frame[2] = (byte) 0x90;
+        frame[3] = (byte) 0x64;
+        for (int i = 0; i < 40; i++) {
+            out.write(frame);
+        }
+        return file.toByteArray();
+    }
+
+    private static void textFrame(DataOutputStream out, String id, String text) throws IOException {
+        byte[] value = text.getBytes(StandardCharsets.ISO_8859_1);
+        out.writeBytes(id);
+        out.writeInt(value.length + 1);
+        out.writeShort(0);
+        out.write(0); // ISO-8859-1
+        out.write(value);
+    }
+
+    private static byte[] m4a(String title, String artist, String album) throws IOException {
+        byte[] ftyp = box("ftyp", concat(ascii("M4A "), int32(0), ascii("M4A "), ascii("isom")));
+        byte[] mvhd = box("mvhd", concat(int32(0), int32(0), int32(0), int32(1000), int32(10_000),
+                int32(0x00010000), new byte[]{1, 0}, new byte[10],
+                int32(0x00010000), int32(0), int32(0), int32(0), int32(0x00010000), int32(0), int32(0), int32(0), int32(0x40000000),
+                new byte[24], int32(2)));
+        byte[] hdlr = box("hdlr", concat(int32(0), int32(0), ascii("mdir"), ascii("appl"), new byte[8], new byte[1]));
+        byte[] ilst = box("ilst", concat(item("\u00a9nam", title), item("\u00a9ART", artist), item("\u00a9alb", album)));
+        byte[] meta = box("meta", concat(int32(0), hdlr, ilst));
+        byte[] moov = box("moov", concat(mvhd, box("udta", meta)));
+        return concat(ftyp, moov, box("mdat", new byte[64]));
+    }
+
+    private static byte[] item(String type, String value) throws IOException {
+        byte[] data = box("data", concat(int32(1), int32(0), value.getBytes(StandardCharsets.UTF_8)));
+        return box(type, data);
+    }
+
+    private static byte[] box(String type, byte[] content) throws IOException {
+        return concat(int32(8 + content.length), type.getBytes(StandardCharsets.ISO_8859_1), content);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] int32(int n) {
+        return new byte[]{(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n};
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) {
+            out.write(p);
+        }
+        return out.toByteArray();
+    }
+}
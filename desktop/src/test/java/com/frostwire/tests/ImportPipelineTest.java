@@ -0,0 +1,177 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.gui.library.ImportPipeline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ImportPipelineTest {
+
+    private static final FileFilter MP3 = f -> f.getName().endsWith(".mp3");
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void filesAreWrittenInWalkOrder() throws Exception {
+        List<File> expected = tree(3, 40);
+        List<String> written = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        ImportPipeline<String> pipeline = new ImportPipeline<>(MP3, f -> {
+            // uneven parsing times, so the results come back out of order
+            sleep(f.getName().hashCode() & 3);
+            return f.getName().toUpperCase();
+        }, 4, 32, 10);
+        int n = pipeline.run(new File[]{tmp}, batch -> {
+            batchSizes.add(batch.size());
+            for (ImportPipeline.Parsed<String> p : batch) {
+                assertEquals(p.getFile().getName().toUpperCase(), p.getValue());
+                written.add(p.getFile().getPath());
+            }
+        }, null);
+        assertEquals(expected.size(), n);
+        List<String> expectedPaths = new ArrayList<>();
+        for (File f : expected) {
+            expectedPaths.add(f.getPath());
+        }
+        assertEquals(expectedPaths, written);
+        for (int size : batchSizes) {
+            assertTrue(size <= 10);
+        }
+    }
+
+    @Test
+    public void walkIsBoundedByCapacity() throws Exception {
+        tree(1, 200);
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        int[] written = new int[1];
+        ImportPipeline<Integer> pipeline = new ImportPipeline<>(MP3, f -> {
+            int p = parsed.incrementAndGet();
+            synchronized (written) {
+                maxAhead.accumulateAndGet(p - written[0], Math::max);
+            }
+            return p;
+        }, 2, 16, 4);
+        pipeline.run(new File[]{tmp}, batch -> {
+            // a slow writer
+            sleep(5);
+            synchronized (written) {
+                written[0] += batch.size();
+            }
+        }, null);
+        assertEquals(200, written[0]);
+        assertTrue(maxAhead.get() <= 16, "parsed ahead of the writer: " + maxAhead.get());
+    }
+
+    @Test
+    public void parserFailuresAreWrittenAsNull() throws Exception {
+        tree(1, 5);
+        List<ImportPipeline.Parsed<String>> written = new ArrayList<>();
+        new ImportPipeline<String>(MP3, f -> {
+            throw new IllegalStateException("bad tags");
+        }, 2, 8, 8).run(new File[]{tmp}, written::addAll, null);
+        assertEquals(5, written.size());
+        for (ImportPipeline.Parsed<String> p : written) {
+            assertNull(p.getValue());
+        }
+    }
+
+    @Test
+    public void cancelStopsTheImport() throws Exception {
+        tree(1, 500);
+        AtomicInteger parsed = new AtomicInteger();
+        ImportPipeline<File> pipeline = new ImportPipeline<>(MP3, f -> {
+            parsed.incrementAndGet();
+            return f;
+        }, 2, 20, 10);
+        int[] progress = new int[2];
+        int n = pipeline.run(new File[]{tmp}, batch -> {
+            if (parsed.get() >= 50) {
+                pipeline.cancel();
+            }
+        }, (written, total) -> {
+            progress[0] = written;
+            progress[1] = total;
+        });
+        assertTrue(pipeline.isCancelled());
+        assertTrue(n < 500, "written: " + n);
+        assertTrue(parsed.get() < 500, "parsed: " + parsed.get());
+        assertEquals(n, progress[0]);
+    }
+
+    @Test
+    public void progressReportsTheTotalOnceKnown() throws Exception {
+        tree(2, 10);
+        List<int[]> progress = new ArrayList<>();
+        new ImportPipeline<File>(MP3, f -> f, 2, 100, 100).run(new File[]{tmp}, batch -> {
+        }, (written, total) -> progress.add(new int[]{written, total}));
+        int[] last = progress.get(progress.size() - 1);
+        assertEquals(20, last[0]);
+        assertEquals(20, last[1]);
+    }
+
+    /**
+     * Creates {@code dirs} folders with {@code files} mp3 files each, plus a text file
+     * that must be skipped, and returns the mp3 files in walk order.
+     */
+    private List<File> tree(int dirs, int files) throws IOException {
+        List<File> result = new ArrayList<>();
+        File[] roots = new File[dirs];
+        for (int d = 0; d < dirs; d++) {
+            roots[d] = new File(tmp, "dir" + d);
+            roots[d].mkdirs();
+            new File(roots[d], "notes.txt").createNewFile();
+        }
+        for (int d = 0; d < dirs; d++) {
+            for (int i = 0; i < files; i++) {
+                File f = new File(roots[d], String.format("track%03d.mp3", i));
+                f.createNewFile();
+            }
+        }
+        // the walk follows the File.listFiles order
+        for (File root : tmp.listFiles()) {
+            for (File f : root.listFiles()) {
+                if (f.getName().endsWith(".mp3")) {
+                    result.add(f);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
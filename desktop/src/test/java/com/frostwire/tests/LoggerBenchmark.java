@@ -0,0 +1,114 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * The cost of a logging call on the calling thread: disabled, with the
+ * message concatenated, supplied or parameterized, and enabled, published on
+ * the calling thread or by the async appender. The handler formats the record
+ * and throws the text away, like a console handler without the console. Run it
+ * with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the calls per round (default 2000000).
+ */
+public final class LoggerBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(LoggerBenchmark.class);
+
+    private interface Call {
+        void log(int i);
+    }
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        java.util.logging.Logger jul = java.util.logging.Logger.getLogger(LOG.getName());
+        jul.setUseParentHandlers(false);
+        jul.addHandler(new FormattingHandler());
+        String domain = "www.example.com";
+
+        System.out.printf("%-28s %10s %14s%n", "call", "ns/call", "bytes/call");
+        jul.setLevel(Level.INFO);
+        for (int round = 0; round < 3; round++) {
+            run("disabled concatenated", calls, i -> LOG.debug("Downloading page " + i + " of " + domain));
+            run("disabled supplier", calls, i -> LOG.debug(() -> "Downloading page " + i + " of " + domain));
+            run("disabled parameterized", calls, i -> LOG.debug("Downloading page {} of {}", i, domain));
+            run("disabled guarded", calls, i -> {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Downloading page " + i + " of " + domain);
+                }
+            });
+        }
+
+        int enabledCalls = Math.max(1, calls / 10);
+        jul.setLevel(Level.FINE);
+        for (int round = 0; round < 3; round++) {
+            run("enabled sync", enabledCalls, i -> LOG.debug("Downloading page {} of {}", i, domain));
+            Logger.startAsync();
+            run("enabled async", enabledCalls, i -> LOG.debug("Downloading page {} of {}", i, domain));
+            long dropped = Logger.getDroppedRecords();
+            Logger.stopAsync();
+            System.out.printf("%-28s %10d%n", "  async dropped", dropped);
+        }
+    }
+
+    private static void run(String name, int calls, Call call) {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            call.log(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        System.out.printf("%-28s %10.1f %14.1f%n", name, elapsed / (double) calls, allocated / (double) calls);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static final class FormattingHandler extends Handler {
+        private final SimpleFormatter formatter = new SimpleFormatter();
+
+        @Override
+        public void publish(LogRecord record) {
+            sink += formatter.format(record).length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
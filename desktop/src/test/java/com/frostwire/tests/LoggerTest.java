@@ -0,0 +1,195 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.util.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class LoggerTest {
+
+    private final Logger log = Logger.getLogger(LoggerTest.class);
+    private final java.util.logging.Logger jul = java.util.logging.Logger.getLogger(log.getName());
+    private final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+    private volatile long handlerDelayNanos;
+
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if (handlerDelayNanos > 0) {
+                long end = System.nanoTime() + handlerDelayNanos;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+            }
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    public void addHandler() {
+        jul.setUseParentHandlers(false);
+        jul.addHandler(handler);
+        jul.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    public void removeHandler() {
+        Logger.stopAsync();
+        jul.removeHandler(handler);
+        jul.setUseParentHandlers(true);
+        jul.setLevel(null);
+    }
+
+    @Test
+    public void levelsAreMapped() {
+        log.debug("debug");
+        log.info("info");
+        log.warn("warn");
+        log.error("error", new Exception());
+        assertEquals(3, records.size());
+        assertEquals(Level.INFO, records.get(0).getLevel());
+        assertEquals(Level.WARNING, records.get(1).getLevel());
+        assertEquals(Level.SEVERE, records.get(2).getLevel());
+        assertFalse(log.isDebugEnabled());
+
+        jul.setLevel(Level.FINE);
+        assertTrue(log.isDebugEnabled());
+        log.debug("debug");
+        assertEquals(Level.FINE, records.get(3).getLevel());
+    }
+
+    @Test
+    public void disabledMessagesAreNotBuilt() {
+        AtomicInteger built = new AtomicInteger();
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                built.incrementAndGet();
+                return "arg";
+            }
+        };
+        log.debug(() -> "message " + built.incrementAndGet());
+        log.debug("message {}", arg);
+        log.debug("message", true);
+        assertEquals(0, built.get());
+        assertTrue(records.isEmpty());
+
+        log.info(() -> "message " + built.incrementAndGet());
+        log.info("message {}", arg);
+        assertEquals(2, built.get());
+        assertEquals("message 1", records.get(0).getMessage());
+        assertEquals("message arg", records.get(1).getMessage());
+    }
+
+    @Test
+    public void parametersAreFormatted() {
+        Exception e = new Exception("boom");
+        log.info("{} of {}", 1, 2);
+        log.warn("{} failed", "search", e);
+        log.warn("{} failed: {}", "search", e);
+        log.info("no placeholders", 1);
+        log.info("missing {} {}", 1);
+        assertEquals("1 of 2", records.get(0).getMessage());
+        assertNull(records.get(0).getThrown());
+        assertEquals("search failed", records.get(1).getMessage());
+        assertSame(e, records.get(1).getThrown());
+        assertEquals("search failed: " + e, records.get(2).getMessage());
+        assertNull(records.get(2).getThrown());
+        assertEquals("no placeholders", records.get(3).getMessage());
+        assertEquals("missing 1 {}", records.get(4).getMessage());
+    }
+
+    @Test
+    public void callingMethodInfoIsTheCaller() {
+        log.info("here", true);
+        String message = records.get(0).getMessage();
+        assertTrue(message.startsWith("here"), message);
+        assertTrue(message.contains("LoggerTest.java::callingMethodInfoIsTheCaller"), message);
+    }
+
+    @Test
+    public void asyncRecordsArePublishedInOrder() throws InterruptedException {
+        Logger.startAsync(1024);
+        Thread caller = Thread.currentThread();
+        for (int i = 0; i < 500; i++) {
+            log.info("record {}", i);
+        }
+        Logger.stopAsync();
+        assertEquals(500, records.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("record " + i, records.get(i).getMessage());
+            assertEquals(caller.getId(), records.get(i).getLongThreadID());
+        }
+    }
+
+    @Test
+    public void fullBufferDropsOnlyBelowWarning() throws InterruptedException {
+        handlerDelayNanos = 100_000;
+        Logger.startAsync(16);
+        int threads = 4;
+        int perThread = 500;
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    if (i % 10 == 0) {
+                        log.warn("warn {}", i);
+                    } else {
+                        log.info("info {}", i);
+                    }
+                }
+            });
+            callers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : callers) {
+            thread.join();
+        }
+        long dropped = Logger.getDroppedRecords();
+        Logger.stopAsync();
+
+        assertTrue(dropped > 0);
+        assertEquals(threads * perThread, records.size() + dropped);
+        long warnings = records.stream().filter(r -> r.getLevel() == Level.WARNING).count();
+        assertEquals(threads * perThread / 10, warnings);
+    }
+}
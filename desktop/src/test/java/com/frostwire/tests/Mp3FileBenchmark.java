@@ -0,0 +1,92 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.mp3.Mp3File;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Retagging a library of generated mp3 files: saving each one to a new file
+ * and renaming it over the original, the way the tags were written before,
+ * versus {@link Mp3File#saveInPlace()} on untagged files, which shifts their
+ * audio once to make room for the tag, and on files already tagged by it, which
+ * only rewrites the tag in its padding. The times include opening the file, which scans all its
+ * frames. Run it with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the number of files (default 20) and their size in MB (default 8).
+ */
+public final class Mp3FileBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        byte[] audio = Mp3FileTest.audio(new Random(7), megabytes * 1024 * 1024 / 417);
+        byte[] cover = new byte[64 * 1024];
+        new Random(11).nextBytes(cover);
+        File dir = Files.createTempDirectory("mp3file").toFile();
+        try {
+            for (int round = 0; round < 3; round++) {
+                write(dir, files, audio);
+                long start = System.nanoTime();
+                for (int i = 0; i < files; i++) {
+                    File file = new File(dir, i + ".mp3");
+                    File saved = new File(dir, i + ".mp3.tmp");
+                    Mp3File mp3 = new Mp3File(file.getPath());
+                    Mp3FileTest.tag(mp3, "Title " + round, cover);
+                    mp3.save(saved.getPath());
+                    if (!file.delete() || !saved.renameTo(file)) {
+                        throw new IllegalStateException("Can't rename " + saved);
+                    }
+                }
+                long copy = System.nanoTime() - start;
+
+                write(dir, files, audio);
+                start = System.nanoTime();
+                retagInPlace(dir, files, "Title " + round, cover);
+                long shift = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                retagInPlace(dir, files, "Another title " + round, cover);
+                long padding = System.nanoTime() - start;
+
+                System.out.printf("round %d, %d files of %d MB, ms/file: save to a new file %.1f, in place shifting the audio %.1f, in place in the padding %.2f%n",
+                        round, files, megabytes, copy / 1e6 / files, shift / 1e6 / files, padding / 1e6 / files);
+            }
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    private static void retagInPlace(File dir, int files, String title, byte[] cover) throws Exception {
+        for (int i = 0; i < files; i++) {
+            Mp3File mp3 = new Mp3File(new File(dir, i + ".mp3").getPath());
+            Mp3FileTest.tag(mp3, title, cover);
+            mp3.saveInPlace();
+        }
+    }
+
+    private static void write(File dir, int files, byte[] audio) throws Exception {
+        for (int i = 0; i < files; i++) {
+            Files.write(new File(dir, i + ".mp3").toPath(), audio);
+        }
+    }
+}
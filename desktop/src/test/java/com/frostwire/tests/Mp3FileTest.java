@@ -0,0 +1,263 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.mp3.ID3Wrapper;
+import com.frostwire.mp3.ID3v1Tag;
+import com.frostwire.mp3.ID3v23Tag;
+import com.frostwire.mp3.Mp3File;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class Mp3FileTest {
+
+    // MPEG 1 layer III, 128 kbps, 44100 Hz, stereo
+    private static final byte[] FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    private static final int FRAME_LENGTH = 417;
+
+    @TempDir
+    File tmp;
+
+    @Test
+    public void untaggedFileIsRewrittenOnce() throws Exception {
+        File file = new File(tmp, "a.mp3");
+        byte[] audio = audio(new Random(1), 200);
+        Files.write(file.toPath(), audio);
+
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "First title", new byte[5000]);
+        mp3.saveInPlace();
+        long length = file.length();
+        assertEquals(length, mp3.getLength());
+
+        mp3 = new Mp3File(file.getPath());
+        assertTags(mp3, "First title", 5000);
+        assertArrayEquals(audio, audioOf(file, mp3));
+        assertEquals(200, mp3.getFrameCount());
+
+        // the next edit fits in the padding left
+        tag(mp3, "A second, longer, title", new byte[5500]);
+        mp3.saveInPlace();
+        assertEquals(length, file.length());
+        mp3 = new Mp3File(file.getPath());
+        assertTags(mp3, "A second, longer, title", 5500);
+        assertArrayEquals(audio, audioOf(file, mp3));
+    }
+
+    @Test
+    public void inPlaceMatchesCopy() throws Exception {
+        File file = new File(tmp, "b.mp3");
+        File copy = new File(tmp, "copy.mp3");
+        byte[] audio = audio(new Random(2), 100);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[100]);
+        mp3.save(copy.getPath());
+        mp3.saveInPlace();
+
+        Mp3File inPlace = new Mp3File(file.getPath());
+        Mp3File copied = new Mp3File(copy.getPath());
+        assertArrayEquals(audioOf(copy, copied), audioOf(file, inPlace));
+        assertEquals(copied.getId3v2Tag().getTitle(), inPlace.getId3v2Tag().getTitle());
+        assertEquals(copied.getId3v1Tag(), inPlace.getId3v1Tag());
+        assertEquals(copied.getFrameCount(), inPlace.getFrameCount());
+    }
+
+    @Test
+    public void biggerTagRewritesAndSmallerPads() throws Exception {
+        File file = new File(tmp, "c.mp3");
+        byte[] audio = audio(new Random(3), 150);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[1000]);
+        mp3.saveInPlace();
+
+        // more than the padding, written again
+        mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[10_000]);
+        mp3.saveInPlace();
+        mp3 = new Mp3File(file.getPath());
+        assertTags(mp3, "Title", 10_000);
+        assertArrayEquals(audio, audioOf(file, mp3));
+        long length = file.length();
+
+        // smaller, the rest is padding
+        tag(mp3, "T", null);
+        mp3.saveInPlace();
+        assertEquals(length, file.length());
+        mp3 = new Mp3File(file.getPath());
+        assertEquals("T", mp3.getId3v2Tag().getTitle());
+        assertNull(mp3.getId3v2Tag().getAlbumImage());
+        assertArrayEquals(audio, audioOf(file, mp3));
+    }
+
+    @Test
+    public void failedRewriteLeavesTheFile() throws Exception {
+        File file = new File(tmp, "f.mp3");
+        byte[] audio = audio(new Random(6), 50);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[300]);
+        // the copy can't be created
+        assertTrue(new File(tmp, "f.mp3.tmp").mkdir());
+        assertThrows(IOException.class, () -> mp3.saveInPlace(true));
+        assertArrayEquals(audio, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void biggerTagIsShiftedInTheFile() throws Exception {
+        File file = new File(tmp, "g.mp3");
+        byte[] audio = audio(new Random(7), 300);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[300]);
+        mp3.saveInPlace();
+        mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Other title", new byte[9000]);
+        mp3.saveInPlace();
+
+        assertArrayEquals(new String[]{"g.mp3"}, tmp.list());
+        mp3 = new Mp3File(file.getPath());
+        assertTags(mp3, "Other title", 9000);
+        assertArrayEquals(audio, audioOf(file, mp3));
+        assertEquals(file.length(), mp3.getLength());
+    }
+
+    @Test
+    public void interruptedShiftKeepsTheAudio() throws Exception {
+        byte[] audio = audio(new Random(8), 2000);
+        for (int i = 0; i < 20; i++) {
+            File file = new File(tmp, "h" + i + ".mp3");
+            Files.write(file.toPath(), audio);
+            Mp3File mp3 = new Mp3File(file.getPath(), 1024);
+            tag(mp3, "Title", new byte[4000]);
+            Thread thread = new Thread(() -> {
+                try {
+                    mp3.saveInPlace();
+                } catch (Exception e) {
+                    // the file is checked below
+                }
+            });
+            thread.start();
+            long deadline = System.nanoTime() + i * 200_000L;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            thread.interrupt();
+            thread.join();
+
+            Mp3File saved = new Mp3File(file.getPath());
+            if (saved.hasId3v2Tag()) {
+                assertTags(saved, "Title", 4000);
+            }
+            assertArrayEquals(audio, audioOf(file, saved));
+            assertEquals(file.length(), saved.getLength());
+        }
+    }
+
+    @Test
+    public void tagsCanBeRemoved() throws Exception {
+        File file = new File(tmp, "d.mp3");
+        byte[] audio = audio(new Random(4), 50);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath());
+        tag(mp3, "Title", new byte[300]);
+        mp3.saveInPlace();
+
+        mp3 = new Mp3File(file.getPath());
+        mp3.setId3v2Tag(null);
+        mp3.setId3v1Tag(null);
+        mp3.saveInPlace();
+        assertArrayEquals(audio, Files.readAllBytes(file.toPath()));
+        mp3 = new Mp3File(file.getPath());
+        assertFalse(mp3.hasId3v2Tag());
+        assertFalse(mp3.hasId3v1Tag());
+    }
+
+    @Test
+    public void unscannedFileKeepsItsAudio() throws Exception {
+        File file = new File(tmp, "e.mp3");
+        byte[] audio = audio(new Random(5), 80);
+        Files.write(file.toPath(), audio);
+        Mp3File mp3 = new Mp3File(file.getPath(), false);
+        tag(mp3, "Title", new byte[100]);
+        mp3.saveInPlace();
+        mp3.saveInPlace();
+
+        mp3 = new Mp3File(file.getPath());
+        assertTags(mp3, "Title", 100);
+        assertArrayEquals(audio, audioOf(file, mp3));
+        assertTrue(mp3.hasId3v1Tag());
+    }
+
+    /**
+     * Frames of random audio data, what the parser cares about are their headers.
+     */
+    static byte[] audio(Random random, int frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] frame = new byte[FRAME_LENGTH];
+        for (int i = 0; i < frames; i++) {
+            random.nextBytes(frame);
+            System.arraycopy(FRAME_HEADER, 0, frame, 0, FRAME_HEADER.length);
+            // no sync word nor Xing marker in the data
+            for (int j = FRAME_HEADER.length; j < frame.length; j++) {
+                frame[j] &= 0x7F;
+            }
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    static void tag(Mp3File mp3, String title, byte[] image) {
+        ID3Wrapper wrapper = new ID3Wrapper(new ID3v1Tag(), new ID3v23Tag());
+        wrapper.setTitle(title);
+        wrapper.setArtist("Artist");
+        if (image != null) {
+            wrapper.setAlbumImage(image, "image/jpg");
+        }
+        wrapper.getId3v2Tag().setPadding(true);
+        mp3.setId3v1Tag(wrapper.getId3v1Tag());
+        mp3.setId3v2Tag(wrapper.getId3v2Tag());
+    }
+
+    private static void assertTags(Mp3File mp3, String title, int imageLength) {
+        assertEquals(title, mp3.getId3v2Tag().getTitle());
+        assertEquals("Artist", mp3.getId3v2Tag().getArtist());
+        assertEquals(imageLength, mp3.getId3v2Tag().getAlbumImage().length);
+        assertEquals(title.substring(0, Math.min(30, title.length())), mp3.getId3v1Tag().getTitle());
+    }
+
+    private static byte[] audioOf(File file, Mp3File mp3) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        return Arrays.copyOfRange(bytes, mp3.getStartOffset(), mp3.getEndOffset() + 1);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchResult;
+import com.frostwire.search.PagedWebSearchPerformer;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PagedWebSearchPerformerTest {
+
+    private static final int PAGES = 6;
+    private static final long LATENCY_MILLIS = 200;
+
+    private HttpServer server;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // /page<n> answers "p<n>a,p<n>b" after a fixed latency
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException ignored) {
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            String page = exchange.getRequestURI().getPath().substring("/page".length());
+            respond(exchange, "p" + page + "a,p" + page + "b");
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void pipelinedResultsArriveInPageOrderAndFaster() {
+        List<String> serial = new ArrayList<>();
+        long serialTime = run(new StubPerformer(domain(), 0), serial);
+        assertEquals(1, maxConcurrent.get());
+        maxConcurrent.set(0);
+        List<String> pipelined = new ArrayList<>();
+        long pipelinedTime = run(new StubPerformer(domain(), 3), pipelined);
+
+        assertEquals(2 * PAGES, serial.size());
+        assertEquals(serial, pipelined);
+        for (int i = 0; i < PAGES; i++) {
+            assertEquals("p" + (i + 1) + "a", pipelined.get(2 * i));
+        }
+        // the per-domain limit
+        assertEquals(2, maxConcurrent.get());
+        assertTrue(serialTime >= PAGES * LATENCY_MILLIS, "serial: " + serialTime);
+        assertTrue(pipelinedTime < serialTime * 3 / 4, "serial: " + serialTime + " ms, pipelined: " + pipelinedTime + " ms");
+    }
+
+    @Test
+    public void stopCancelsThePrefetchedPages() throws InterruptedException {
+        StubPerformer performer = new StubPerformer(domain(), 3);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        performer.setListener(new CollectingListener(results));
+        Thread t = new Thread(performer::perform);
+        t.start();
+        // stopped while the first pages are in flight
+        Thread.sleep(LATENCY_MILLIS / 2);
+        long start = System.currentTimeMillis();
+        performer.stop();
+        t.join(5000);
+        assertTrue(System.currentTimeMillis() - start < LATENCY_MILLIS * 2);
+        assertTrue(results.isEmpty(), results.toString());
+        // the remaining pages were never requested
+        Thread.sleep(LATENCY_MILLIS * 2);
+        assertTrue(requests.get() < PAGES, "requests: " + requests.get());
+    }
+
+    @Test
+    public void aBlockedDomainDoesNotHoldThePool() throws InterruptedException {
+        CountDownLatch unblock = new CountDownLatch(1);
+        List<Thread> blocked = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            BlockedPerformer performer = new BlockedPerformer(unblock);
+            performer.setListener(new CollectingListener(new ArrayList<>()));
+            Thread t = new Thread(performer::perform);
+            t.start();
+            blocked.add(t);
+        }
+        Thread.sleep(LATENCY_MILLIS);
+        try {
+            List<String> results = new ArrayList<>();
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> run(new StubPerformer(domain(), 3), results));
+            assertEquals(2 * PAGES, results.size());
+        } finally {
+            unblock.countDown();
+            for (Thread t : blocked) {
+                t.join(5000);
+            }
+        }
+    }
+
+    private String domain() {
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static long run(StubPerformer performer, List<String> results) {
+        performer.setListener(new CollectingListener(results));
+        long start = System.currentTimeMillis();
+        performer.perform();
+        return System.currentTimeMillis() - start;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException ignored) {
+            // the client gave up
+        }
+    }
+
+    private static final class CollectingListener implements SearchListener {
+        private final List<String> results;
+
+        CollectingListener(List<String> results) {
+            this.results = results;
+        }
+
+        @Override
+        public void onResults(long token, List<? extends SearchResult> results) {
+            for (SearchResult sr : results) {
+                this.results.add(sr.getDisplayName());
+            }
+        }
+
+        @Override
+        public void onError(long token, SearchError error) {
+        }
+
+        @Override
+        public void onStopped(long token) {
+        }
+    }
+
+    private static final class StubPerformer extends PagedWebSearchPerformer {
+        StubPerformer(String domain, int prefetch) {
+            super(domain, 1, "test", 5000, PAGES, prefetch);
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + getDomainName() + "/page" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            List<SearchResult> results = new ArrayList<>();
+            for (String name : page.split(",")) {
+                results.add(new StubResult(name));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Its pages don't come until it's unblocked.
+     */
+    private static final class BlockedPerformer extends PagedWebSearchPerformer {
+        private final CountDownLatch unblock;
+
+        BlockedPerformer(CountDownLatch unblock) {
+            super("blocked.invalid", 1, "test", 5000, PAGES, 3);
+            this.unblock = unblock;
+        }
+
+        @Override
+        protected String fetchSearchPage(String url) throws IOException {
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return "";
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + getDomainName() + "/page" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static final class StubResult extends AbstractSearchResult {
+        private final String name;
+
+        StubResult(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://example.com/" + name;
+        }
+
+        @Override
+        public String getSource() {
+            return "stub";
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+import com.frostwire.search.eztv.EztvSearchPerformer;
+import com.frostwire.search.one337x.One337xSearchPerformer;
+import com.frostwire.search.yify.YifySearchPerformer;
+
+/**
+ * Compares the prefiltered {@link Pattern} against plain RE2J over
+ * search-like pages. Run it with {@code main}, it's not a unit test.
+ */
+public final class PatternBenchmark {
+
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) {
+        String page = buildPage(300, 200_000);
+        String[] regexes = {
+                One337xSearchPerformer.SEARCH_RESULTS_REGEX,
+                YifySearchPerformer.SEARCH_RESULTS_REGEX,
+                EztvSearchPerformer.SEARCH_RESULTS_REGEX
+        };
+        for (String regex : regexes) {
+            Pattern pattern = Pattern.compile(regex);
+            com.google.re2j.Pattern standard = pattern.pattern();
+            // warm up
+            countStandard(standard, page);
+            count(pattern, page);
+            long start = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                found += countStandard(standard, page);
+            }
+            long re2j = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                found -= count(pattern, page);
+            }
+            long prefiltered = System.nanoTime() - start;
+            System.out.printf("%s%n  re2j: %d us/page, prefiltered: %d us/page (diff=%d)%n",
+                    regex, re2j / ITERATIONS / 1000, prefiltered / ITERATIONS / 1000, found);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            Pattern.compile(One337xSearchPerformer.TORRENT_DETAILS_PAGE_REGEX);
+        }
+        System.out.printf("cached compile: %d ns/op%n", (System.nanoTime() - start) / 10_000);
+    }
+
+    private static int count(Pattern pattern, String page) {
+        Matcher m = pattern.matcher(page);
+        int n = 0;
+        while (m.find()) {
+            n++;
+        }
+        return n;
+    }
+
+    private static int countStandard(com.google.re2j.Pattern pattern, String page) {
+        com.google.re2j.Matcher m = pattern.matcher(page);
+        int n = 0;
+        while (m.find()) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * A page with a block of results in the middle of markup noise,
+     * the way real search result pages look.
+     */
+    private static String buildPage(int results, int noiseChars) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < noiseChars / 2) {
+            sb.append("<div class=\"nav\"><span>menu item</span><a href=\"/home\">Home</a></div>\n");
+        }
+        for (int i = 0; i < results; i++) {
+            sb.append("<tr><td class=\"coll-1 name\"><a href=\"/torrent/").append(1000 + i)
+                    .append("/Some-Name-").append(i).append("/\">Some Name ").append(i).append("</a></td>")
+                    .append("<td><a href=\"/ep/").append(i).append("/show/\"></a></td></tr>\n");
+        }
+        while (sb.length() < noiseChars) {
+            sb.append("<footer><p>copyright notice and links</p><a href=\"/about\">About</a></footer>\n");
+        }
+        return sb.toString();
+    }
+}
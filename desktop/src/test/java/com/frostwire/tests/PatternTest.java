@@ -0,0 +1,142 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+import com.frostwire.search.eztv.EztvSearchPerformer;
+import com.frostwire.search.one337x.One337xSearchPerformer;
+import com.frostwire.search.yify.YifySearchPerformer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PatternTest {
+
+    private static final String[] PATTERNS = {
+            One337xSearchPerformer.SEARCH_RESULTS_REGEX,
+            YifySearchPerformer.SEARCH_RESULTS_REGEX,
+            EztvSearchPerformer.SEARCH_RESULTS_REGEX,
+            "(?is)<A HREF=\"(?<link>.*?)\"",
+            "ab*c",
+            "ab?cd+e",
+            "x{0,2}yz",
+            "foo|bar",
+            "(foo)+bar",
+            "[ab]c\\.d",
+            "\\Qa.b\\E+c",
+            "(?i)size: (?<size>\\d+) ?(?<unit>[KMG]B)",
+            "^header",
+            "\\x41BC"
+    };
+
+    @Test
+    public void compileIsCached() {
+        assertSame(Pattern.compile("(?<a>x)(?<b>y)"), Pattern.compile("(?<a>x)(?<b>y)"));
+        assertSame(Pattern.compile("abc", 1), Pattern.compile("abc", 1));
+        assertFalse(Pattern.compile("abc", 0) == Pattern.compile("abc", 1));
+    }
+
+    @Test
+    public void namedGroups() {
+        Matcher m = Pattern.compile("(?<first>a+)(b)(?<second>c+)").matcher("xxaabccc");
+        assertTrue(m.find());
+        assertEquals("aa", m.group("first"));
+        assertEquals("ccc", m.group("second"));
+        assertTrue(m.hasGroup("second"));
+        assertFalse(m.hasGroup("third"));
+    }
+
+    @Test
+    public void prefilterMatchesStandardEngine() {
+        String[] inputs = {
+                "",
+                "<a href=\"/torrent/123/foo.html\">Foo</a> junk <a href=\"/torrent/456/bar.html\">Bar</a>",
+                "<A HREF=\"/TORRENT/1/x\">X</A><a class=\"movielink\" href=\"/movie/7/y\" itemprop=\"name\">",
+                "<a href=\"/ep/1/show\" <a href=\"/ep/2/show\"",
+                "ac abc abbbc ABC",
+                "acde abcdde abce",
+                "yz xyz xxyz xxxyz",
+                "foo bar baz",
+                "foofoobar bar",
+                "ac.d bc.d cc.d",
+                "a.bc a.bbc a.b.bc",
+                "SIZE: 10 MB size: 20GB Size: 3 kb",
+                "header\nheader",
+                "ABC abc"
+        };
+        for (String regex : PATTERNS) {
+            Pattern pattern = Pattern.compile(regex);
+            com.google.re2j.Pattern standard = pattern.pattern();
+            for (String input : inputs) {
+                assertEquals(standardMatches(standard, input), matches(pattern, input), regex + " on " + input);
+                // restart in the middle of the input
+                int start = input.length() / 2;
+                Matcher m = pattern.matcher(input);
+                com.google.re2j.Matcher sm = standard.matcher(input);
+                assertEquals(sm.find(start), m.find(start), regex + " from " + start + " on " + input);
+            }
+        }
+    }
+
+    @Test
+    public void appendKeepsItsPositionAcrossFinds() {
+        String input = "SIZE: 10 MB and size: 20GB, not 5 TB, Size: 3 kb.";
+        Pattern pattern = Pattern.compile("(?i)size: (?<size>\\d+) ?(?<unit>[KMG]B)");
+        com.google.re2j.Matcher sm = pattern.pattern().matcher(input);
+        StringBuffer expected = new StringBuffer();
+        while (sm.find()) {
+            // the named groups are numbered ones for the wrapped pattern
+            sm.appendReplacement(expected, "[$1 $2\\$]");
+        }
+        sm.appendTail(expected);
+
+        Matcher m = pattern.matcher(input);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            m.appendReplacement(sb, "[$1 ${unit}\\$]");
+        }
+        m.appendTail(sb);
+        assertEquals(expected.toString(), sb.toString());
+        assertEquals("[10 MB$] and [20 GB$], not 5 TB, [3 kb$].", sb.toString());
+    }
+
+    private static List<String> matches(Pattern pattern, String input) {
+        List<String> result = new ArrayList<>();
+        Matcher m = pattern.matcher(input);
+        while (m.find()) {
+            result.add(m.start() + ":" + m.group());
+        }
+        return result;
+    }
+
+    private static List<String> standardMatches(com.google.re2j.Pattern pattern, String input) {
+        List<String> result = new ArrayList<>();
+        com.google.re2j.Matcher m = pattern.matcher(input);
+        while (m.find()) {
+            result.add(m.start() + ":" + m.group());
+        }
+        return result;
+    }
+}
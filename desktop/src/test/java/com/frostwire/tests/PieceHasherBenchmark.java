@@ -0,0 +1,101 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.bittorrent.PieceHasher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Piece hashing throughput on a generated multi-file dataset, one worker
+ * versus one per core. Run it with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: total size in MB (default 512), number of files (default 64),
+ * piece length in KB (default 256). The dataset is written once, so after the
+ * first pass it's in the page cache and the numbers are the hashing throughput.
+ */
+public final class PieceHasherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long totalMB = args.length > 0 ? Long.parseLong(args[0]) : 512;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int pieceLength = (args.length > 2 ? Integer.parseInt(args[2]) : 256) * 1024;
+        File dir = Files.createTempDirectory("piecehasher").toFile();
+        try {
+            List<PieceHasher.Span> spans = generate(dir, totalMB * 1024 * 1024, files);
+            int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("%d MB in %d files, %d KB pieces, %d cores%n", totalMB, files, pieceLength / 1024, cores);
+            for (int round = 0; round < 2; round++) {
+                run(spans, pieceLength, 1);
+                if (cores > 1) {
+                    run(spans, pieceLength, cores);
+                }
+            }
+        } finally {
+            File[] list = dir.listFiles();
+            if (list != null) {
+                for (File f : list) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private static void run(List<PieceHasher.Span> spans, int pieceLength, int threads) throws Exception {
+        PieceHasher hasher = new PieceHasher(spans, pieceLength, threads);
+        long start = System.nanoTime();
+        hasher.hash(null);
+        long elapsed = System.nanoTime() - start;
+        double mbs = hasher.totalSize() / 1024.0 / 1024.0 / (elapsed / 1e9);
+        System.out.printf("%2d threads %8d ms %8.1f MB/s%n", threads, elapsed / 1_000_000, mbs);
+    }
+
+    /**
+     * Files of random sizes around the average, with random content.
+     */
+    private static List<PieceHasher.Span> generate(File dir, long total, int files) throws IOException {
+        Random random = new Random(1);
+        List<PieceHasher.Span> spans = new ArrayList<>(files);
+        byte[] block = new byte[1024 * 1024];
+        long remaining = total;
+        for (int i = 0; i < files && remaining > 0; i++) {
+            long size = i == files - 1 ? remaining : Math.min(remaining, (long) ((0.5 + random.nextDouble()) * total / files));
+            File f = new File(dir, "file" + i + ".bin");
+            try (OutputStream os = new FileOutputStream(f)) {
+                long left = size;
+                while (left > 0) {
+                    random.nextBytes(block);
+                    int n = (int) Math.min(block.length, left);
+                    os.write(block, 0, n);
+                    left -= n;
+                }
+            }
+            spans.add(new PieceHasher.Span(f, size));
+            remaining -= size;
+        }
+        return spans;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.bittorrent.PieceHasher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PieceHasherTest {
+
+    private static final int PIECE_LENGTH = 16 * 1024;
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void multiFileHashesMatchSequentialHashing() throws Exception {
+        Random random = new Random(42);
+        // piece aligned, crossing several pieces, smaller than a piece, empty and padding
+        int[] sizes = {PIECE_LENGTH * 3, 100_000, 10, 0, 5_000, PIECE_LENGTH - 1, 1, 250_000};
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        List<PieceHasher.Span> spans = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            spans.add(writeFile("file" + i, sizes[i], random, content));
+            if (i == 4) {
+                int pad = PIECE_LENGTH - content.size() % PIECE_LENGTH;
+                spans.add(PieceHasher.Span.pad(pad));
+                content.write(new byte[pad]);
+            }
+        }
+        byte[] expected = sequentialHashes(content.toByteArray(), PIECE_LENGTH);
+        for (int threads : new int[]{1, 3, 8}) {
+            PieceHasher hasher = new PieceHasher(spans, PIECE_LENGTH, threads);
+            AtomicInteger progress = new AtomicInteger();
+            byte[] hashes = hasher.hash((h, done, total) -> progress.incrementAndGet());
+            assertEquals(expected.length / PieceHasher.HASH_SIZE, hasher.numPieces());
+            assertEquals(hasher.numPieces(), progress.get());
+            assertArrayEquals(expected, hashes);
+        }
+    }
+
+    @Test
+    public void singleFile() throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        PieceHasher.Span span = writeFile("single", 1_000_003, new Random(7), content);
+        PieceHasher hasher = new PieceHasher(List.of(span), 64 * 1024, 4);
+        assertArrayEquals(sequentialHashes(content.toByteArray(), 64 * 1024), hasher.hash(null));
+    }
+
+    @Test
+    public void cancelStopsHashing() throws Exception {
+        PieceHasher.Span span = writeFile("big", 8 * 1024 * 1024, new Random(1), new ByteArrayOutputStream());
+        PieceHasher hasher = new PieceHasher(List.of(span), PIECE_LENGTH, 2);
+        AtomicInteger progress = new AtomicInteger();
+        assertThrows(CancellationException.class, () -> hasher.hash((h, done, total) -> {
+            if (progress.incrementAndGet() == 10) {
+                h.cancel();
+            }
+        }));
+        assertTrue(progress.get() < hasher.numPieces());
+    }
+
+    @Test
+    public void shortFileFails() throws Exception {
+        PieceHasher.Span span = writeFile("short", 1000, new Random(3), new ByteArrayOutputStream());
+        List<PieceHasher.Span> spans = List.of(new PieceHasher.Span(span.getFile(), 5000));
+        assertThrows(IOException.class, () -> new PieceHasher(spans, PIECE_LENGTH, 2).hash(null));
+    }
+
+    private PieceHasher.Span writeFile(String name, int size, Random random, ByteArrayOutputStream content) throws IOException {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        File f = new File(dir, name);
+        Files.write(f.toPath(), data);
+        content.write(data);
+        return new PieceHasher.Span(f, size);
+    }
+
+    static byte[] sequentialHashes(byte[] content, int pieceLength) throws NoSuchAlgorithmException {
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        int pieces = (content.length + pieceLength - 1) / pieceLength;
+        byte[] hashes = new byte[pieces * PieceHasher.HASH_SIZE];
+        for (int i = 0; i < pieces; i++) {
+            int from = i * pieceLength;
+            sha1.update(Arrays.copyOfRange(content, from, Math.min(from + pieceLength, content.length)));
+            System.arraycopy(sha1.digest(), 0, hashes, i * PieceHasher.HASH_SIZE, PieceHasher.HASH_SIZE);
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchResult;
+import com.frostwire.search.DomainHealth;
+import com.frostwire.search.PagedWebSearchPerformer;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.WebSearchPerformer;
+import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.http.JdkHttpClient;
+import com.frostwire.util.http.ReplayHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ReplayHttpClientTest {
+
+    @TempDir
+    File fixtures;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = path.startsWith("/big")
+                    ? new byte[64 * 1024]
+                    : (path.substring(1) + "a," + path.substring(1) + "b").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        HttpClientFactory.setInstance(HttpClientFactory.HttpContext.SEARCH, null);
+        WebSearchPerformer.setDomainHealth(new DomainHealth());
+        server.stop(0);
+    }
+
+    @Test
+    public void recordedSearchIsReplayedOffline() {
+        String domain = "127.0.0.1:" + server.getAddress().getPort();
+        ReplayHttpClient recording = new ReplayHttpClient(fixtures, new JdkHttpClient());
+        HttpClientFactory.setInstance(HttpClientFactory.HttpContext.SEARCH, recording);
+        List<String> live = search(domain);
+        assertEquals(Arrays.asList("page1a", "page1b", "page2a", "page2b"), live);
+        assertEquals(2, recording.getMisses());
+        assertEquals(2, requests.get());
+
+        server.stop(0);
+        ReplayHttpClient replay = new ReplayHttpClient(fixtures);
+        HttpClientFactory.setInstance(HttpClientFactory.HttpContext.SEARCH, replay);
+        assertEquals(live, search(domain));
+        assertEquals(2, replay.getRequests());
+        assertEquals(0, replay.getMisses());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void latencyAndBandwidthAreSimulated() throws IOException {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/big";
+        byte[] recorded = new ReplayHttpClient(fixtures, new JdkHttpClient()).getBytes(url);
+        assertEquals(64 * 1024, recorded.length);
+
+        ReplayHttpClient replay = new ReplayHttpClient(fixtures);
+        replay.setLatency(100);
+        replay.setBandwidth(256 * 1024);
+        long start = System.currentTimeMillis();
+        assertArrayEquals(recorded, replay.getBytes(url));
+        // 100 ms of latency and a quarter of a second of transfer
+        assertTrue(System.currentTimeMillis() - start >= 340);
+
+        start = System.currentTimeMillis();
+        int n = 0;
+        try (InputStream in = replay.getStream(url, 5000, null, null, null, null)) {
+            byte[] b = new byte[8192];
+            int r;
+            while ((r = in.read(b)) != -1) {
+                n += r;
+            }
+        }
+        assertEquals(recorded.length, n);
+        assertTrue(System.currentTimeMillis() - start >= 340);
+
+        replay.setLatency(300);
+        assertThrows(SocketTimeoutException.class, () -> replay.get(url, 100));
+    }
+
+    @Test
+    public void missingFixturesFail() {
+        ReplayHttpClient replay = new ReplayHttpClient(fixtures);
+        String url = "http://example.com/missing";
+        assertThrows(FileNotFoundException.class, () -> replay.get(url));
+        assertNull(replay.getBytes(url));
+        assertEquals(2, replay.getMisses());
+    }
+
+    private static List<String> search(String domain) {
+        StubPerformer performer = new StubPerformer(domain);
+        List<String> results = new ArrayList<>();
+        performer.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> srs) {
+                for (SearchResult sr : srs) {
+                    results.add(sr.getDisplayName());
+                }
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+            }
+        });
+        performer.perform();
+        return results;
+    }
+
+    private static final class StubPerformer extends PagedWebSearchPerformer {
+        StubPerformer(String domain) {
+            super(domain, 1, "test", 5000, 2);
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + getDomainName() + "/page" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            List<SearchResult> results = new ArrayList<>();
+            for (String name : page.split(",")) {
+                results.add(new StubResult(name));
+            }
+            return results;
+        }
+    }
+
+    private static final class StubResult extends AbstractSearchResult {
+        private final String name;
+
+        StubResult(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://example.com/" + name;
+        }
+
+        @Override
+        public String getSource() {
+            return "stub";
+        }
+    }
+}
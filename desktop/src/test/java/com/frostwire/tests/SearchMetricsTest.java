@@ -0,0 +1,189 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchResult;
+import com.frostwire.search.PagedWebSearchPerformer;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchManager;
+import com.frostwire.search.SearchMetrics;
+import com.frostwire.search.SearchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SearchMetricsTest {
+
+    private HttpServer server;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/page1", exchange -> respond(exchange, "a,b,c"));
+        server.createContext("/page2", exchange -> {
+            try {
+                // longer than the performer timeout
+                Thread.sleep(1500);
+            } catch (InterruptedException ignored) {
+            }
+            respond(exchange, "d");
+        });
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        SearchManager.getInstance().setMetricsListener(null);
+        SearchManager.getInstance().setListener(null);
+        server.stop(0);
+    }
+
+    @Test
+    public void performerIsMeasured() throws InterruptedException {
+        SearchMetrics metrics = new SearchMetrics();
+        SearchManager manager = SearchManager.getInstance();
+        manager.setMetricsListener(metrics);
+        CountDownLatch finished = new CountDownLatch(1);
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+                finished.countDown();
+            }
+        });
+        String domain = "127.0.0.1:" + server.getAddress().getPort();
+        manager.perform(new StubPerformer(domain));
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+        SearchMetrics.Stats stats = metrics.get(domain);
+        assertNotNull(stats);
+        assertEquals(1, stats.download().count());
+        assertEquals(1, stats.pages());
+        assertEquals(3, stats.results());
+        assertEquals(1, stats.timeToFirstResult().count());
+        assertTrue(stats.timeToFirstResult().average() >= stats.download().average());
+        assertEquals(1, stats.errors());
+        assertEquals(1, stats.timeouts());
+        assertTrue(metrics.dump().contains(domain));
+
+        SearchMetrics.Stats performer = metrics.getPerformer("StubPerformer");
+        assertNotNull(performer);
+        assertEquals(1, performer.pages());
+        assertEquals(3, performer.results());
+        assertEquals(1, performer.errors());
+        assertTrue(metrics.dump().contains("StubPerformer"));
+    }
+
+    @Test
+    public void crawlHitRatio() {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.onCrawl("Stub", "example.com", true);
+        metrics.onCrawl("Stub", "example.com", false);
+        metrics.onCrawl("Stub", "example.com", false);
+        metrics.onCrawl("Stub", "example.com", true);
+        metrics.onError("Stub", "example.com", false);
+        assertEquals(0.5, metrics.get("example.com").crawlHitRatio(), 0.0001);
+        assertEquals(1, metrics.get("example.com").errors());
+        assertEquals(0, metrics.get("example.com").timeouts());
+        metrics.onCrawl("Other", "example.com", true);
+        assertEquals(0.6, metrics.get("example.com").crawlHitRatio(), 0.0001);
+        assertEquals(0.5, metrics.getPerformer("Stub").crawlHitRatio(), 0.0001);
+        assertEquals(1.0, metrics.getPerformer("Other").crawlHitRatio(), 0.0001);
+        metrics.reset();
+        assertTrue(metrics.domains().isEmpty());
+        assertTrue(metrics.performers().isEmpty());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        } catch (IOException ignored) {
+            // the client gave up
+        }
+    }
+
+    private static final class StubPerformer extends PagedWebSearchPerformer {
+        StubPerformer(String domain) {
+            super(domain, 1, "test", 500, 2);
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return "http://" + getDomainName() + "/page" + page;
+        }
+
+        @Override
+        protected List<? extends SearchResult> searchPage(String page) {
+            List<SearchResult> results = new ArrayList<>();
+            for (String name : page.split(",")) {
+                results.add(new StubResult(name));
+            }
+            return results;
+        }
+    }
+
+    private static final class StubResult extends AbstractSearchResult {
+        private final String name;
+
+        StubResult(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://example.com/" + name;
+        }
+
+        @Override
+        public String getSource() {
+            return "stub";
+        }
+    }
+}
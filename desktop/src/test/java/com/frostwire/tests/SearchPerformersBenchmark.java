@@ -0,0 +1,179 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.CrawlableSearchResult;
+import com.frostwire.search.DomainHealth;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchPerformer;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.WebSearchPerformer;
+import com.frostwire.search.archiveorg.ArchiveorgSearchPerformer;
+import com.frostwire.search.eztv.EztvSearchPerformer;
+import com.frostwire.search.frostclick.FrostClickSearchPerformer;
+import com.frostwire.search.frostclick.UserAgent;
+import com.frostwire.search.glotorrents.GloTorrentsSearchPerformer;
+import com.frostwire.search.idope.IdopeSearchPerformer;
+import com.frostwire.search.limetorrents.LimeTorrentsSearchPerformer;
+import com.frostwire.search.magnetdl.MagnetDLSearchPerformer;
+import com.frostwire.search.nyaa.NyaaSearchPerformer;
+import com.frostwire.search.one337x.One337xSearchPerformer;
+import com.frostwire.search.soundcloud.SoundcloudSearchPerformer;
+import com.frostwire.search.torlock.TorLockSearchPerformer;
+import com.frostwire.search.torrentdownloads.TorrentDownloadsSearchPerformer;
+import com.frostwire.search.torrentz2.Torrentz2SearchPerformer;
+import com.frostwire.search.tpb.TPBSearchPerformer;
+import com.frostwire.search.yify.YifySearchPerformer;
+import com.frostwire.search.zooqle.ZooqleSearchPerformer;
+import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.http.JdkHttpClient;
+import com.frostwire.util.http.ReplayHttpClient;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsing throughput of every search performer, the search pages and the
+ * crawls, over recorded responses served by a {@link ReplayHttpClient}, so the
+ * numbers are the parsing alone. Run it with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: the fixtures folder (default {@code build/search-fixtures}), the
+ * keywords (default "foo") and the iterations (default 20). With
+ * {@code -Dfrostwire.fixtures.record=true} the missing responses are fetched
+ * from the live sites and saved, run it once like that to build the fixtures.
+ */
+public final class SearchPerformersBenchmark {
+
+    private static final int TIMEOUT = 5000;
+
+    private interface Factory {
+        SearchPerformer create(long token, String keywords);
+    }
+
+    public static void main(String[] args) {
+        File fixtures = new File(args.length > 0 ? args[0] : "build/search-fixtures");
+        String keywords = args.length > 1 ? args[1] : "foo";
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        boolean record = Boolean.getBoolean("frostwire.fixtures.record");
+        System.out.printf("fixtures: %s, keywords: %s%s%n", fixtures.getAbsolutePath(), keywords, record ? ", recording" : "");
+        System.out.printf("%-18s %8s %8s %10s %10s %14s%n", "performer", "pages", "results", "results/s", "us/page", "KB alloc/page");
+
+        for (Map.Entry<String, Factory> e : performers().entrySet()) {
+            ReplayHttpClient client = new ReplayHttpClient(fixtures, record ? new JdkHttpClient() : null);
+            HttpClientFactory.setInstance(HttpClientFactory.HttpContext.SEARCH, client);
+            WebSearchPerformer.setDomainHealth(new DomainHealth());
+            try {
+                // warm up, and records when asked
+                int results = run(e.getValue(), keywords);
+                if (client.getRequests() == 0 || client.getMisses() == client.getRequests() && !record) {
+                    System.out.printf("%-18s no fixtures%n", e.getKey());
+                    continue;
+                }
+                if (results == 0) {
+                    System.out.printf("%-18s no results, the fixtures may be stale%n", e.getKey());
+                    continue;
+                }
+                for (int i = 0; i < iterations; i++) {
+                    run(e.getValue(), keywords);
+                }
+                long pages = client.getRequests();
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                results = 0;
+                for (int i = 0; i < iterations; i++) {
+                    results += run(e.getValue(), keywords);
+                }
+                long elapsed = System.nanoTime() - start;
+                allocated = allocatedBytes() - allocated;
+                pages = client.getRequests() - pages;
+                System.out.printf("%-18s %8d %8d %10.0f %10d %14d%n", e.getKey(), pages / iterations, results / iterations,
+                        results / (elapsed / 1e9), elapsed / 1000 / Math.max(1, pages), allocated / 1024 / Math.max(1, pages));
+            } catch (Throwable t) {
+                System.out.printf("%-18s failed: %s%n", e.getKey(), t);
+            }
+        }
+        HttpClientFactory.setInstance(HttpClientFactory.HttpContext.SEARCH, null);
+    }
+
+    /**
+     * Performs the search and the crawls on this thread.
+     *
+     * @return the number of results
+     */
+    private static int run(Factory factory, String keywords) {
+        SearchPerformer performer = factory.create(1, keywords);
+        List<SearchResult> results = new ArrayList<>();
+        performer.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> srs) {
+                results.addAll(srs);
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+            }
+        });
+        performer.perform();
+        for (int i = 0; i < results.size(); i++) {
+            SearchResult sr = results.get(i);
+            if (sr instanceof CrawlableSearchResult && !((CrawlableSearchResult) sr).isComplete()) {
+                performer.crawl((CrawlableSearchResult) sr);
+            }
+        }
+        return results.size();
+    }
+
+    private static Map<String, Factory> performers() {
+        UserAgent userAgent = new UserAgent("benchmark", "6.0.0", "0");
+        Map<String, Factory> map = new LinkedHashMap<>();
+        map.put("TPB", (token, keywords) -> new TPBSearchPerformer("thepiratebay.org", token, keywords, TIMEOUT));
+        map.put("Soundcloud", (token, keywords) -> new SoundcloudSearchPerformer("api-v2.soundcloud.com", token, keywords, TIMEOUT));
+        map.put("Archive.org", (token, keywords) -> new ArchiveorgSearchPerformer("archive.org", token, keywords, TIMEOUT));
+        map.put("FrostClick", (token, keywords) -> new FrostClickSearchPerformer("api.frostclick.com", token, keywords, TIMEOUT, userAgent));
+        map.put("TorLock", (token, keywords) -> new TorLockSearchPerformer("www.torlock.com", token, keywords, TIMEOUT));
+        map.put("TorrentDownloads", (token, keywords) -> new TorrentDownloadsSearchPerformer("www.torrentdownloads.me", token, keywords, TIMEOUT));
+        map.put("LimeTorrents", (token, keywords) -> new LimeTorrentsSearchPerformer("www.limetorrents.info", token, keywords, TIMEOUT));
+        map.put("Nyaa", (token, keywords) -> new NyaaSearchPerformer("nyaa.si", token, keywords, TIMEOUT));
+        map.put("Eztv", (token, keywords) -> new EztvSearchPerformer("eztv.re", token, keywords, TIMEOUT));
+        map.put("Yify", (token, keywords) -> new YifySearchPerformer("yify-torrent.cc", token, keywords, TIMEOUT));
+        map.put("1337x", (token, keywords) -> new One337xSearchPerformer("www.1377x.to", token, keywords, TIMEOUT));
+        map.put("Idope", (token, keywords) -> new IdopeSearchPerformer(token, keywords, TIMEOUT));
+        map.put("Zooqle", (token, keywords) -> new ZooqleSearchPerformer("zooqle.com", token, keywords, TIMEOUT));
+        map.put("Torrentz2", (token, keywords) -> new Torrentz2SearchPerformer(token, keywords, TIMEOUT));
+        map.put("MagnetDL", (token, keywords) -> new MagnetDLSearchPerformer(token, keywords, TIMEOUT));
+        map.put("GloTorrents", (token, keywords) -> new GloTorrentsSearchPerformer(token, keywords, TIMEOUT));
+        return map;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchPerformer;
+import com.frostwire.search.CrawlableSearchResult;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchManager;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.SearchResultMerger;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SearchResultMergerTest {
+
+    private static final String[] ENGINES = {"TPB", "1337x", "LimeTorrents", "Zooqle"};
+
+    @AfterEach
+    public void resetListener() {
+        SearchManager.getInstance().setListener(null);
+    }
+
+    @Test
+    public void sameInfohashIsMergedAcrossEngines() {
+        SearchResultMerger merger = new SearchResultMerger();
+        TorrentResult tpb = new TorrentResult("TPB", "Ubuntu 22.04", "ABCDEF0123", 1000, 50);
+        List<SearchResult> first = merger.merge(Collections.singletonList(tpb));
+        assertEquals(1, first.size());
+        // other engines, one of them with a lower case hash
+        assertTrue(merger.merge(Collections.singletonList(new TorrentResult("1337x", "ubuntu-22.04", "abcdef0123", 1000, 80))).isEmpty());
+        assertTrue(merger.merge(Collections.singletonList(new TorrentResult("Zooqle", "Ubuntu", "ABCDEF0123", 1000, 10))).isEmpty());
+
+        SearchResultMerger.Group group = merger.getGroup(tpb);
+        assertNotNull(group);
+        assertEquals(3, group.getCount());
+        assertEquals(80, group.getSeeds());
+        assertEquals(List.of("TPB", "1337x", "Zooqle"), new ArrayList<>(group.getSources()));
+        assertEquals(2, merger.getDuplicates());
+    }
+
+    @Test
+    public void nameAndSizeWithoutInfohash() {
+        SearchResultMerger merger = new SearchResultMerger();
+        assertEquals(1, merger.merge(List.of(new TorrentResult("TPB", "Some.Movie_2020", null, 700, 5))).size());
+        // same normalized name and size from another engine
+        assertTrue(merger.merge(List.of(new TorrentResult("Zooqle", "some movie (2020)", null, 700, 9))).isEmpty());
+        // same engine, can't tell it's the same file
+        assertEquals(1, merger.merge(List.of(new TorrentResult("TPB", "some movie 2020", null, 700, 5))).size());
+        // different size
+        assertEquals(1, merger.merge(List.of(new TorrentResult("1337x", "some movie 2020", null, 701, 5))).size());
+        assertNull(merger.getGroup(new TorrentResult("TPB", "Some.Movie_2020", null, 700, 5)));
+    }
+
+    @Test
+    public void multiEngineSearchCutsRowsAndCrawls() throws InterruptedException {
+        long token = 42;
+        AtomicInteger rows = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+        SearchManager manager = SearchManager.getInstance();
+        manager.clearMerged(token);
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long t, List<? extends SearchResult> results) {
+                rows.addAndGet(results.size());
+            }
+
+            @Override
+            public void onError(long t, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long t) {
+                finished.countDown();
+            }
+        });
+        AtomicInteger crawls = new AtomicInteger();
+        // every performer is submitted before any can finish, or the search
+        // would be reported stopped after the first one
+        CountDownLatch submitted = new CountDownLatch(1);
+        int total = 0;
+        for (String engine : ENGINES) {
+            List<SearchResult> results = engineResults(engine);
+            total += results.size();
+            manager.perform(new StubPerformer(token, results, crawls, submitted));
+        }
+        submitted.countDown();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        // 20 popular torrents every engine has, plus 10 only each engine has
+        assertEquals(120, total);
+        assertEquals(60, rows.get());
+        assertEquals(60, crawls.get());
+    }
+
+    /**
+     * Simulates the first page of a popular query, the same 20 torrents
+     * are listed by every engine, with their own seeds counts.
+     */
+    private static List<SearchResult> engineResults(String engine) {
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String hash = String.format(Locale.US, "%040x", i);
+            results.add(new TorrentResult(engine, "Popular Release " + i, engine.equals("Zooqle") ? hash.toUpperCase(Locale.US) : hash, 1_000_000 + i, 100 - i));
+        }
+        for (int i = 0; i < 10; i++) {
+            results.add(new TorrentResult(engine, engine + " Only " + i, engine.hashCode() + ":" + i, 2_000_000 + i, i));
+        }
+        return results;
+    }
+
+    private static final class StubPerformer extends AbstractSearchPerformer {
+        private final List<SearchResult> results;
+        private final AtomicInteger crawls;
+        private final CountDownLatch start;
+
+        StubPerformer(long token, List<SearchResult> results, AtomicInteger crawls, CountDownLatch start) {
+            super(token);
+            this.results = results;
+            this.crawls = crawls;
+            this.start = start;
+        }
+
+        @Override
+        public void perform() {
+            try {
+                if (!start.await(10, TimeUnit.SECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            onResults(results);
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+            crawls.incrementAndGet();
+        }
+    }
+
+    private static final class TorrentResult extends AbstractTorrentSearchResult {
+        private final String source;
+        private final String name;
+        private final String hash;
+        private final double size;
+        private final int seeds;
+
+        TorrentResult(String source, String name, String hash, double size, int seeds) {
+            this.source = source;
+            this.name = name;
+            this.hash = hash;
+            this.size = size;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public String getTorrentUrl() {
+            return "magnet:?xt=urn:btih:" + hash;
+        }
+
+        @Override
+        public int getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public String getFilename() {
+            return name + ".torrent";
+        }
+
+        @Override
+        public double getSize() {
+            return size;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "https://" + source.toLowerCase(Locale.US) + ".example/" + name;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+    }
+}
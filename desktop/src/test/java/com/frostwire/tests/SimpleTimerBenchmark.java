@@ -0,0 +1,137 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import org.gudy.azureus2.core3.util.SimpleTimer;
+import org.gudy.azureus2.core3.util.SystemTime;
+import org.gudy.azureus2.core3.util.TimerEvent;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduling, cancelling and running events with {@link SimpleTimer}, and
+ * the same scheduling and cancelling in a {@code TreeSet} under a monitor,
+ * the way the timer kept its events before. Run it with {@code main}, it's not
+ * a unit test.
+ * <p>
+ * Arguments: the number of events (default 100000) and the span of their
+ * delays in milliseconds (default 2000). The lateness is from the deadline to
+ * the start of the event in the thread pool.
+ */
+public final class SimpleTimerBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int span = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long[] delays = new long[n];
+        Random random = new Random(13);
+        for (int i = 0; i < n; i++) {
+            delays[i] = random.nextInt(span);
+        }
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("round %d, %d events%n", round, n);
+            runWheel(delays);
+            runTreeSet(delays);
+            runFiring(delays);
+        }
+    }
+
+    private static void runWheel(long[] delays) {
+        TimerEvent[] events = new TimerEvent[delays.length];
+        // far enough to be cancelled before they're due
+        long base = SystemTime.getOffsetTime(60_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < delays.length; i++) {
+            events[i] = SimpleTimer.addEvent("bench", base + delays[i], event -> {
+            });
+        }
+        long scheduled = System.nanoTime();
+        for (TimerEvent event : events) {
+            event.cancel();
+        }
+        long cancelled = System.nanoTime();
+        report("wheel", delays.length, scheduled - start, cancelled - scheduled);
+    }
+
+    private static void runTreeSet(long[] delays) {
+        TreeSetTimer timer = new TreeSetTimer();
+        long[] ids = new long[delays.length];
+        long base = System.currentTimeMillis() + 60_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < delays.length; i++) {
+            ids[i] = timer.add(base + delays[i]);
+        }
+        long scheduled = System.nanoTime();
+        for (int i = 0; i < delays.length; i++) {
+            timer.remove(base + delays[i], ids[i]);
+        }
+        long cancelled = System.nanoTime();
+        report("tree set", delays.length, scheduled - start, cancelled - scheduled);
+    }
+
+    private static void runFiring(long[] delays) throws InterruptedException {
+        int n = delays.length;
+        long[] lateness = new long[n];
+        AtomicInteger index = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(n);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(delays[i]);
+            SimpleTimer.addEvent("bench", SystemTime.getOffsetTime(delays[i]), event -> {
+                lateness[index.getAndIncrement()] = System.nanoTime() - deadline;
+                latch.countDown();
+            });
+        }
+        if (!latch.await(60, TimeUnit.SECONDS)) {
+            System.out.printf("%-10s only %d of %d events ran%n", "firing", n - latch.getCount(), n);
+            return;
+        }
+        Arrays.sort(lateness);
+        System.out.printf("%-10s lateness ms: p50 %.1f, p99 %.1f, max %.1f, early %d%n", "firing",
+                lateness[n / 2] / 1e6, lateness[n * 99 / 100] / 1e6, lateness[n - 1] / 1e6,
+                Arrays.stream(lateness).filter(l -> l < 0).count());
+    }
+
+    private static void report(String name, int n, long scheduleNanos, long cancelNanos) {
+        System.out.printf("%-10s schedule %7.0f ns/event, cancel %7.0f ns/event%n", name,
+                scheduleNanos / (double) n, cancelNanos / (double) n);
+    }
+
+    /**
+     * The previous event queue: ordered by time then id, under one monitor.
+     */
+    private static final class TreeSetTimer {
+        private final TreeSet<long[]> events = new TreeSet<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        private long next_id;
+
+        synchronized long add(long when) {
+            long id = next_id++;
+            events.add(new long[]{when, id});
+            return id;
+        }
+
+        synchronized void remove(long when, long id) {
+            events.remove(new long[]{when, id});
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import org.gudy.azureus2.core3.util.SimpleTimer;
+import org.gudy.azureus2.core3.util.SystemTime;
+import org.gudy.azureus2.core3.util.TimerEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SimpleTimerTest {
+
+    // the wall clock of SystemTime is stepped, an event can run a step early
+    private static final long EARLY_MILLIS = 30;
+
+    @Test
+    public void eventsRunWhenDue() throws InterruptedException {
+        Random random = new Random(7);
+        int n = 300;
+        CountDownLatch latch = new CountDownLatch(n);
+        AtomicLong early = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long delay = random.nextInt(500);
+            SimpleTimer.addEvent("test", SystemTime.getOffsetTime(delay), event -> {
+                long elapsed = (System.nanoTime() - start) / 1_000_000;
+                if (elapsed < delay - EARLY_MILLIS) {
+                    early.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+    }
+
+    @Test
+    public void eventsBeyondTheFirstWheelAreCascaded() throws InterruptedException {
+        long[] delays = {700, 1300, 2100};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        List<Long> ran = new ArrayList<>();
+        long start = System.nanoTime();
+        for (long delay : delays) {
+            SimpleTimer.addEvent("test", SystemTime.getOffsetTime(delay), event -> {
+                synchronized (ran) {
+                    ran.add((System.nanoTime() - start) / 1_000_000);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue(ran.get(i) >= delays[i] - EARLY_MILLIS, "ran at " + ran.get(i) + " for " + delays[i]);
+        }
+    }
+
+    @Test
+    public void cancelledEventsDontRun() throws InterruptedException {
+        int n = 1000;
+        AtomicInteger runs = new AtomicInteger();
+        List<TimerEvent> events = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            events.add(SimpleTimer.addEvent("test", SystemTime.getOffsetTime(200 + i % 100), event -> runs.incrementAndGet()));
+        }
+        for (int i = 0; i < n; i += 2) {
+            events.get(i).cancel();
+        }
+        Thread.sleep(1000);
+        assertEquals(n / 2, runs.get());
+        assertTrue(events.get(0).isCancelled());
+        assertFalse(events.get(1).isCancelled());
+    }
+
+    @Test
+    public void pastEventsRunAtOnce() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        SimpleTimer.addEvent("test", SystemTime.getOffsetTime(-60_000), event -> latch.countDown());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.transfers.SpeedStat;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SpeedStatTest {
+
+    @Test
+    public void steadyRateIsMeasuredFromTheStart() {
+        FakeClock clock = new FakeClock();
+        SpeedStat stat = new SpeedStat(5000, clock);
+        // 100 KB/s in 4 KB buffers
+        receive(stat, clock, 100 * 1024, 1000);
+        assertEquals(100 * 1024, stat.averageSpeed(), 100 * 1024 * 0.02);
+        assertEquals(100 * 1024, stat.totalBytes());
+    }
+
+    @Test
+    public void rateFollowsChangesWithinTheWindow() {
+        FakeClock clock = new FakeClock();
+        SpeedStat stat = new SpeedStat(2000, clock);
+        receive(stat, clock, 10 * 100 * 1024, 10_000);
+        receive(stat, clock, 10 * 400 * 1024, 10_000);
+        // five windows later the old rate weighs e^-5
+        assertEquals(400 * 1024, stat.averageSpeed(), 400 * 1024 * 0.03);
+    }
+
+    @Test
+    public void stalledTransferDecaysWithoutUpdates() {
+        FakeClock clock = new FakeClock();
+        SpeedStat stat = new SpeedStat(1000, clock);
+        receive(stat, clock, 3 * 200 * 1024, 3000);
+        long before = stat.averageSpeed();
+        clock.advance(1000);
+        long after = stat.averageSpeed();
+        assertTrue(after < before / 2, before + " -> " + after);
+        clock.advance(60_000);
+        // only the bytes since the last sample are left, spread over the stall
+        assertTrue(stat.averageSpeed() < before / 100, "rate: " + stat.averageSpeed());
+        stat.reset(0);
+        assertEquals(-1, stat.eta(10 * 1024 * 1024));
+    }
+
+    @Test
+    public void etaIsTheBytesLeftAtTheCurrentRate() {
+        FakeClock clock = new FakeClock();
+        SpeedStat stat = new SpeedStat(5000, clock);
+        receive(stat, clock, 1024 * 1024, 1000);
+        long eta = stat.eta(11 * 1024 * 1024);
+        assertTrue(eta >= 9 && eta <= 11, "eta: " + eta);
+        assertEquals(9, stat.progress(11 * 1024 * 1024));
+        assertEquals(0, stat.eta(1024 * 1024));
+        stat.reset(512 * 1024);
+        assertEquals(512 * 1024, stat.totalBytes());
+        assertEquals(0, stat.averageSpeed());
+    }
+
+    @Test
+    public void concurrentWritersAddUp() throws InterruptedException {
+        SpeedStat stat = new SpeedStat();
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    stat.update(4096);
+                }
+                done.countDown();
+            }).start();
+        }
+        while (done.getCount() > 0) {
+            assertTrue(stat.averageSpeed() >= 0);
+        }
+        done.await();
+        assertEquals(threads * 10_000L * 4096, stat.totalBytes());
+    }
+
+    /**
+     * Sends {@code bytes} in 4 KB buffers evenly over {@code millis}.
+     */
+    private static void receive(SpeedStat stat, FakeClock clock, long bytes, long millis) {
+        int buffers = (int) (bytes / 4096);
+        long step = millis * 1_000_000L / buffers;
+        for (int i = 0; i < buffers; i++) {
+            clock.now += step;
+            stat.update(4096);
+        }
+    }
+
+    private static final class FakeClock implements SpeedStat.Clock {
+        long now = 1_000_000_000L;
+
+        void advance(long millis) {
+            now += millis * 1_000_000L;
+        }
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+}
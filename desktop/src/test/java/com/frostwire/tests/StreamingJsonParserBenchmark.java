@@ -0,0 +1,95 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.StreamingJsonParser;
+import com.frostwire.search.archiveorg.ArchiveorgItem;
+import com.frostwire.search.archiveorg.ArchiveorgSearchResult;
+import com.frostwire.util.JsonUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Whole-string Gson deserialization versus streaming to search results, on a
+ * large archive.org style response. Run it with {@code main}, it's not a unit test.
+ */
+public final class StreamingJsonParserBenchmark {
+
+    private static final int ITERATIONS = 50;
+    private static final int RESULT_CAP = 50;
+
+    public static void main(String[] args) throws IOException {
+        byte[] json = StreamingJsonParserTest.archiveResponse(10_000).readAllBytes();
+        System.out.println("response size: " + json.length / 1024 + " KB");
+        StreamingJsonParser<ArchiveorgItem> parser = new StreamingJsonParser<>(ArchiveorgItem.class, RESULT_CAP, "response", "docs");
+
+        for (int round = 0; round < 2; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                whole(json);
+            }
+            report("whole string + object graph", start, allocated);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                parser.parse(new ByteArrayInputStream(json), new StreamingJsonParserTest.CollectingPerformer(),
+                        item -> new ArchiveorgSearchResult("archive.org", item));
+            }
+            report("streaming, cap " + RESULT_CAP, start, allocated);
+        }
+    }
+
+    private static int whole(byte[] json) {
+        String page = new String(json, StandardCharsets.UTF_8);
+        Response response = JsonUtils.toObject(page, Response.class);
+        List<ArchiveorgSearchResult> results = new ArrayList<>();
+        for (ArchiveorgItem item : response.response.docs) {
+            results.add(new ArchiveorgSearchResult("archive.org", item));
+        }
+        return results.subList(0, RESULT_CAP).size();
+    }
+
+    private static void report(String name, long start, long allocated) {
+        long elapsed = (System.nanoTime() - start) / ITERATIONS;
+        long bytes = (allocatedBytes() - allocated) / ITERATIONS;
+        System.out.printf("%-30s %8d us/op %10d KB allocated/op%n", name, elapsed / 1000, bytes / 1024);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static final class Response {
+        Docs response;
+    }
+
+    private static final class Docs {
+        List<ArchiveorgItem> docs;
+    }
+}
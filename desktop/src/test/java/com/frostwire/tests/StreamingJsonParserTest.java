@@ -0,0 +1,152 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.AbstractSearchPerformer;
+import com.frostwire.search.CrawlableSearchResult;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.StreamingJsonParser;
+import com.frostwire.search.archiveorg.ArchiveorgItem;
+import com.frostwire.search.archiveorg.ArchiveorgSearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class StreamingJsonParserTest {
+
+    @Test
+    public void resultsAreSentInBatchesUpToTheCap() throws IOException {
+        CollectingPerformer performer = new CollectingPerformer();
+        StreamingJsonParser<ArchiveorgItem> parser = new StreamingJsonParser<>(ArchiveorgItem.class, 25, 10, "response", "docs");
+        int count = parser.parse(archiveResponse(100), performer, item -> new ArchiveorgSearchResult("archive.org", item));
+        assertEquals(25, count);
+        assertEquals(3, performer.batches.size());
+        assertEquals(10, performer.batches.get(0).size());
+        assertEquals(5, performer.batches.get(2).size());
+        assertEquals("Title 0", performer.batches.get(0).get(0).getDisplayName());
+    }
+
+    @Test
+    public void parsingStopsEarly() throws IOException {
+        byte[] json = archiveResponse(20_000).readAllBytes();
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(json));
+        StreamingJsonParser<ArchiveorgItem> parser = new StreamingJsonParser<>(ArchiveorgItem.class, 50, "response", "docs");
+        assertEquals(50, parser.parse(in, new CollectingPerformer(), item -> new ArchiveorgSearchResult("archive.org", item)));
+        assertTrue(in.count < json.length / 10, "read " + in.count + " of " + json.length);
+    }
+
+    @Test
+    public void skippedAndMissingResults() throws IOException {
+        CollectingPerformer performer = new CollectingPerformer();
+        StreamingJsonParser<ArchiveorgItem> parser = new StreamingJsonParser<>(ArchiveorgItem.class, 100, "response", "docs");
+        // mapper filters everything out
+        assertEquals(0, parser.parse(archiveResponse(10), performer, item -> null));
+        StreamingJsonParser<ArchiveorgItem> missing = new StreamingJsonParser<>(ArchiveorgItem.class, 100, "response", "items");
+        assertEquals(0, missing.parse(archiveResponse(10), performer, item -> new ArchiveorgSearchResult("archive.org", item)));
+        performer.stop();
+        assertEquals(0, parser.parse(archiveResponse(10), performer, item -> new ArchiveorgSearchResult("archive.org", item)));
+        assertTrue(performer.batches.isEmpty());
+    }
+
+    static InputStream archiveResponse(int docs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"responseHeader\":{\"status\":0,\"params\":{\"q\":\"test\",\"rows\":\"50\"}},");
+        sb.append("\"response\":{\"numFound\":").append(docs).append(",\"start\":0,\"docs\":[");
+        for (int i = 0; i < docs; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"title\":\"Title ").append(i).append("\",\"mediatype\":\"audio\",")
+                    .append("\"description\":\"A long description that nobody reads while searching, ").append(i).append("\",")
+                    .append("\"licenseurl\":\"http://creativecommons.org/licenses/publicdomain/\",")
+                    .append("\"publicdate\":\"2010-09-12T01:53:32Z\",\"downloads\":").append(i).append(',')
+                    .append("\"identifier\":\"item-").append(i).append("\",")
+                    .append("\"format\":[\"Archive BitTorrent\",\"Metadata\",\"VBR MP3\"],")
+                    .append("\"collection\":[\"oldtimeradio\",\"radioprograms\"]}");
+        }
+        sb.append("]}}");
+        return new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static final class CollectingPerformer extends AbstractSearchPerformer {
+        final List<List<? extends SearchResult>> batches = new ArrayList<>();
+
+        CollectingPerformer() {
+            super(1);
+            setListener(new SearchListener() {
+                @Override
+                public void onResults(long token, List<? extends SearchResult> results) {
+                    batches.add(results);
+                }
+
+                @Override
+                public void onError(long token, SearchError error) {
+                }
+
+                @Override
+                public void onStopped(long token) {
+                }
+            });
+        }
+
+        @Override
+        public void perform() {
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.gui.searchfield.SuggestionsService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.limewire.collection.StringTrieSet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SuggestionsServiceTest {
+
+    private static final List<String> CORPUS = Arrays.asList(
+            "frostwire", "frostwire download", "frostwire plus", "frost giant", "frozen",
+            "fruit", "fresh prince", "friends", "free music", "french toast", "fry",
+            "fran", "franz ferdinand");
+
+    private static final long LATENCY = 200;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/complete", this::complete);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void keystrokesAreDebounced() throws InterruptedException {
+        SuggestionsService service = newService(100, 2, null);
+        CountDownLatch received = new CountDownLatch(1);
+        AtomicReference<List<String>> result = new AtomicReference<>();
+        for (String q : new String[]{"f", "fr", "fro", "fros"}) {
+            service.request(q, (query, suggestions) -> {
+                assertEquals("fros", query);
+                result.set(suggestions);
+                received.countDown();
+            });
+            Thread.sleep(20);
+        }
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        assertEquals(Arrays.asList("frostwire", "frostwire download", "frostwire plus", "frost giant"), result.get());
+    }
+
+    @Test
+    public void longerPrefixIsAnsweredFromCache() throws InterruptedException {
+        SuggestionsService service = newService(0, 2, null);
+        CountDownLatch received = new CountDownLatch(1);
+        service.request("fro", (query, suggestions) -> received.countDown());
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+
+        // "fro" had less than the maximum number of suggestions, nothing else to fetch
+        List<String> local = service.request("frostw", (query, suggestions) -> {
+            throw new AssertionError("no remote fetch expected");
+        });
+        assertEquals(Arrays.asList("frostwire", "frostwire download", "frostwire plus"), local);
+        Thread.sleep(LATENCY * 2);
+        assertEquals(1, requests.get());
+
+        // "f" is truncated at the maximum, the cached matches are shown while fetching
+        CountDownLatch receivedF = new CountDownLatch(1);
+        service.request("f", (query, suggestions) -> receivedF.countDown());
+        assertTrue(receivedF.await(5, TimeUnit.SECONDS));
+        CountDownLatch receivedFr = new CountDownLatch(1);
+        local = service.request("fr", (query, suggestions) -> receivedFr.countDown());
+        assertTrue(local.contains("frostwire"));
+        assertTrue(receivedFr.await(5, TimeUnit.SECONDS));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void historyIsMergedRightAway() throws InterruptedException {
+        StringTrieSet history = new StringTrieSet(true);
+        history.addEntry("frostwire plus");
+        history.addEntry("frostbite");
+        SuggestionsService service = newService(0, 2, history);
+        CountDownLatch received = new CountDownLatch(1);
+        AtomicReference<List<String>> result = new AtomicReference<>();
+        long start = System.currentTimeMillis();
+        List<String> local = service.request("frost", (query, suggestions) -> {
+            result.set(suggestions);
+            received.countDown();
+        });
+        assertTrue(System.currentTimeMillis() - start < LATENCY);
+        assertEquals(Arrays.asList("frostbite", "frostwire plus"), local);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("frostbite", "frostwire plus", "frostwire", "frostwire download", "frost giant"), result.get());
+    }
+
+    @Test
+    public void requestsInFlightAreBounded() throws InterruptedException {
+        SuggestionsService service = newService(0, 2, null);
+        CountDownLatch received = new CountDownLatch(1);
+        String[] queries = {"fa", "fb", "fc", "fd", "fe", "ff", "fg", "fr"};
+        for (String q : queries) {
+            service.request(q, (query, suggestions) -> {
+                if (query.equals("fr")) {
+                    received.countDown();
+                }
+            });
+            Thread.sleep(10);
+        }
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertTrue(maxInFlight.get() <= 2, "max in flight: " + maxInFlight.get());
+        // the stale queued requests were dropped without hitting the server
+        assertTrue(requests.get() < queries.length, "requests: " + requests.get());
+    }
+
+    private SuggestionsService newService(long debounce, int maxInFlight, StringTrieSet history) {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/complete?q=%s";
+        return new SuggestionsService(url, 2000, debounce, maxInFlight, history);
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int n = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(n, Math::max);
+        try {
+            Thread.sleep(LATENCY);
+        } catch (InterruptedException ignored) {
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        String q = URLDecoder.decode(exchange.getRequestURI().getRawQuery().substring(2), StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder("google.sbox.p50 && google.sbox.p50([\"").append(q).append("\",[");
+        int count = 0;
+        for (String s : CORPUS) {
+            if (s.startsWith(q) && count < SuggestionsService.MAX_REMOTE_SUGGESTIONS) {
+                sb.append(count++ > 0 ? "," : "").append("[\"").append(s).append("\",0]");
+            }
+        }
+        sb.append("],{\"k\":1}])");
+        byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
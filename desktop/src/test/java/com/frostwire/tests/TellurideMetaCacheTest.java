@@ -0,0 +1,229 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.search.CrawlCache;
+import com.frostwire.search.SearchError;
+import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchResult;
+import com.frostwire.search.telluride.TellurideLauncher;
+import com.frostwire.search.telluride.TellurideMetaCache;
+import com.frostwire.search.telluride.TellurideSearchPerformer;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the telluride performer against a local stub standing in for telluride/server.py
+ */
+public final class TellurideMetaCacheTest {
+
+    private static final String META_JSON = "{\"id\":\"abc\",\"ext\":\"mp4\",\"title\":\"Stub Video\",\"extractor\":\"stub\"," +
+            "\"webpage_url\":\"https://example.com/v/abc\",\"upload_date\":\"20200324\",\"thumbnail\":\"https://example.com/t.jpg\"," +
+            "\"formats\":[{\"format_id\":\"1\",\"url\":\"https://cdn.example.com/abc.mp4\",\"ext\":\"mp4\",\"acodec\":\"aac\"," +
+            "\"vcodec\":\"h264\",\"filesize\":1000,\"width\":1280,\"height\":720}]}";
+
+    private HttpServer server;
+    private final AtomicInteger metaRequests = new AtomicInteger();
+    // when set, the metadata is answered once it's counted down
+    private volatile CountDownLatch hold;
+
+    @BeforeEach
+    public void startStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ping", exchange -> respond(exchange.getResponseBody(), exchange, "{\"build\":1,\"message\":\"pong\"}"));
+        server.createContext("/", exchange -> {
+            metaRequests.incrementAndGet();
+            try {
+                // youtube_dl extractions are slow
+                Thread.sleep(300);
+                CountDownLatch h = hold;
+                if (h != null) {
+                    h.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ignored) {
+            }
+            respond(exchange.getResponseBody(), exchange, META_JSON);
+        });
+        server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(8));
+        server.start();
+        TellurideLauncher.setServerUp(true);
+    }
+
+    @AfterEach
+    public void stopStubServer() {
+        TellurideLauncher.setServerUp(false);
+        server.stop(0);
+    }
+
+    @Test
+    public void waitForServerIsSignalled() throws InterruptedException {
+        TellurideLauncher.setServerUp(false);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            TellurideLauncher.setServerUp(true);
+        }).start();
+        long start = System.currentTimeMillis();
+        assertTrue(TellurideLauncher.waitForServer(10000));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        TellurideLauncher.setServerUp(false);
+        assertFalse(TellurideLauncher.waitForServer(50));
+    }
+
+    @Test
+    public void identicalQueriesAreCoalescedAndCached() throws InterruptedException {
+        String url = "https://example.com/v/" + System.nanoTime();
+        int performers = 5;
+        CountDownLatch results = new CountDownLatch(performers);
+        for (int i = 0; i < performers; i++) {
+            TellurideSearchPerformer performer = newPerformer(url, results);
+            new Thread(performer::perform).start();
+        }
+        assertTrue(results.await(10, TimeUnit.SECONDS));
+        assertEquals(1, metaRequests.get());
+
+        CountDownLatch cached = new CountDownLatch(1);
+        newPerformer(url, cached).perform();
+        assertTrue(cached.await(1, TimeUnit.SECONDS));
+        assertEquals(1, metaRequests.get());
+    }
+
+    @Test
+    public void stoppedPerformerStopsWaitingForTheQuery() throws InterruptedException {
+        String url = "https://example.com/v/" + System.nanoTime();
+        hold = new CountDownLatch(1);
+        CountDownLatch ownerResults = new CountDownLatch(1);
+        new Thread(newPerformer(url, ownerResults)::perform).start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (metaRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, metaRequests.get());
+
+        CountDownLatch waiterResults = new CountDownLatch(1);
+        TellurideSearchPerformer waiter = newPerformer(url, waiterResults);
+        Thread waiting = new Thread(waiter::perform);
+        waiting.start();
+        waiter.stop();
+        waiting.join(5000);
+        assertFalse(waiting.isAlive());
+        assertEquals(1, waiterResults.getCount());
+
+        hold.countDown();
+        assertTrue(ownerResults.await(10, TimeUnit.SECONDS));
+        assertEquals(1, metaRequests.get());
+    }
+
+    @Test
+    public void diskTierSurvivesAndExpires() throws InterruptedException {
+        MemoryCrawlCache disk = new MemoryCrawlCache();
+        TellurideMetaCache cache = new TellurideMetaCache(200);
+        cache.setDiskCache(disk);
+        cache.put("https://example.com/a", META_JSON);
+
+        TellurideMetaCache restarted = new TellurideMetaCache(200);
+        restarted.setDiskCache(disk);
+        assertEquals(META_JSON, restarted.get("https://example.com/a"));
+
+        Thread.sleep(300);
+        assertNull(restarted.get("https://example.com/a"));
+        assertEquals(0, disk.numEntries());
+    }
+
+    private TellurideSearchPerformer newPerformer(String url, CountDownLatch results) {
+        TellurideSearchPerformer performer = new TellurideSearchPerformer(1, url, server.getAddress().getPort(), null);
+        performer.setListener(new SearchListener() {
+            @Override
+            public void onResults(long token, List<? extends SearchResult> list) {
+                assertEquals(1, list.size());
+                results.countDown();
+            }
+
+            @Override
+            public void onError(long token, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long token) {
+            }
+        });
+        return performer;
+    }
+
+    private static void respond(OutputStream out, com.sun.net.httpserver.HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        out.write(bytes);
+        out.close();
+    }
+
+    private static final class MemoryCrawlCache implements CrawlCache {
+        private final Map<String, byte[]> map = new HashMap<>();
+
+        @Override
+        public byte[] get(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            map.put(key, data);
+        }
+
+        @Override
+        public void remove(String key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public long numEntries() {
+            return map.size();
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 0;
+        }
+    }
+}
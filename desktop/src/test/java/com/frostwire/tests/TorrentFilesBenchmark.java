@@ -0,0 +1,116 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.bittorrent.TorrentFiles;
+import com.frostwire.jlibtorrent.TorrentInfo;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reading the file list of crawled torrents, the pure Java reader versus a
+ * native {@link TorrentInfo}, on a corpus of large multi-file torrents. Run it
+ * with {@code main}, it's not a unit test.
+ * <p>
+ * Arguments: number of torrents (default 20), files per torrent (default
+ * 10000). It reports the throughput, the bytes allocated and the Java heap kept
+ * by the parsed torrents. The native side is only measured if the jlibtorrent
+ * library can be loaded, its memory is outside of the Java heap.
+ */
+public final class TorrentFilesBenchmark {
+
+    public static void main(String[] args) {
+        int torrents = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        List<byte[]> corpus = new ArrayList<>(torrents);
+        long corpusBytes = 0;
+        for (int i = 0; i < torrents; i++) {
+            byte[] data = TorrentFilesTest.torrent("torrent" + i, files, i);
+            corpus.add(data);
+            corpusBytes += data.length;
+        }
+        System.out.printf("%d torrents, %d files each, %d KB%n", torrents, files, corpusBytes / 1024);
+
+        for (int round = 0; round < 3; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            List<TorrentFiles> parsed = new ArrayList<>(torrents);
+            for (byte[] data : corpus) {
+                parsed.add(TorrentFiles.parse(data));
+            }
+            report("pure java", start, allocated, corpusBytes);
+            System.out.printf("%-12s %10d KB retained, without the torrent bytes%n", "", retained(parsed) / 1024);
+        }
+
+        try {
+            for (int round = 0; round < 3; round++) {
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                List<TorrentInfo> parsed = new ArrayList<>(torrents);
+                for (byte[] data : corpus) {
+                    TorrentInfo ti = TorrentInfo.bdecode(data);
+                    // what the search rows used to read
+                    for (int i = 0; i < ti.numFiles(); i++) {
+                        ti.files().filePath(i);
+                        ti.files().fileSize(i);
+                        ti.files().padFileAt(i);
+                    }
+                    parsed.add(ti);
+                }
+                report("libtorrent", start, allocated, corpusBytes);
+            }
+        } catch (Throwable e) {
+            System.out.println("libtorrent not available: " + e);
+        }
+    }
+
+    private static void report(String name, long start, long allocated, long corpusBytes) {
+        long elapsed = System.nanoTime() - start;
+        double mbs = corpusBytes / 1024.0 / 1024.0 / (elapsed / 1e9);
+        System.out.printf("%-12s %10d ms %8.1f MB/s %10d KB allocated%n", name, elapsed / 1_000_000, mbs,
+                (allocatedBytes() - allocated) / 1024);
+    }
+
+    /**
+     * The heap used with and without the parsed list reachable, the corpus
+     * keeps the torrent bytes.
+     */
+    private static long retained(List<TorrentFiles> parsed) {
+        long with = usedHeap();
+        parsed.clear();
+        return with - usedHeap();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
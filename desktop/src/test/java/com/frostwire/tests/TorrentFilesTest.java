@@ -0,0 +1,163 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.tests;
+
+import com.frostwire.bittorrent.TorrentFiles;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TorrentFilesTest {
+
+    private static final String SEP = File.separator;
+
+    @Test
+    public void multiFileTorrent() throws Exception {
+        String info = "d5:filesl"
+                + "d6:lengthi1000e4:pathl2:cd7:01.flacee"
+                + "d4:attr1:p6:lengthi24e4:pathl4:.pad2:24ee"
+                + "d6:lengthi2000e4:pathl2:cd7:02.flacee"
+                + "d6:lengthi7e4:pathl22:_____padding_file_0___ee"
+                + "d6:lengthi5e4:pathl2:..3:a/b5:c.jpgee"
+                + "e4:name5:album12:piece lengthi16384e6:pieces0:e";
+        byte[] data = ("d8:announce14:http://tracker4:info" + info + "e").getBytes(StandardCharsets.UTF_8);
+        TorrentFiles torrent = TorrentFiles.parse(data);
+
+        assertEquals(sha1Hex(info.getBytes(StandardCharsets.UTF_8)), torrent.infoHash());
+        assertEquals("album", torrent.name());
+        assertEquals(5, torrent.numFiles());
+        assertEquals("album" + SEP + "cd" + SEP + "01.flac", torrent.filePath(0));
+        assertEquals(1000, torrent.fileSize(0));
+        assertFalse(torrent.padFileAt(0));
+        assertTrue(torrent.padFileAt(1));
+        assertEquals(2000, torrent.fileSize(2));
+        assertTrue(torrent.padFileAt(3));
+        // no parent references or separators inside the elements
+        assertEquals("album" + SEP + "a_b" + SEP + "c.jpg", torrent.filePath(4));
+        assertEquals(3036, torrent.totalSize());
+        assertSame(data, torrent.data());
+    }
+
+    @Test
+    public void utf8PathsArePreferred() {
+        String info = "d5:filesl"
+                + "d6:lengthi1e4:pathl" + str("x.mp3") + "e10:path.utf-8l" + str("\u00e1rbol.mp3") + "ee"
+                + "e4:name1:n10:name.utf-8" + str("\u00f1") + "e";
+        TorrentFiles torrent = TorrentFiles.parse(("d4:info" + info + "e").getBytes(StandardCharsets.UTF_8));
+        assertEquals("\u00f1", torrent.name());
+        assertEquals("\u00f1" + SEP + "\u00e1rbol.mp3", torrent.filePath(0));
+    }
+
+    @Test
+    public void singleFileTorrent() throws Exception {
+        String info = "d6:lengthi123456789012e4:name9:movie.mkv12:piece lengthi262144e6:pieces0:e";
+        TorrentFiles torrent = TorrentFiles.parse(("d4:info" + info + "e").getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, torrent.numFiles());
+        assertEquals("movie.mkv", torrent.filePath(0));
+        assertEquals(123456789012L, torrent.fileSize(0));
+        assertEquals(sha1Hex(info.getBytes(StandardCharsets.UTF_8)), torrent.infoHash());
+    }
+
+    @Test
+    public void generatedTorrentIsReadBack() {
+        byte[] data = torrent("big", 5000, 1);
+        TorrentFiles torrent = TorrentFiles.parse(data);
+        // a pad file after each one but the last
+        assertEquals(9999, torrent.numFiles());
+        for (int i = 0; i < torrent.numFiles(); i++) {
+            assertEquals(i % 2 == 1, torrent.padFileAt(i));
+        }
+        assertEquals("big" + SEP + "dir0" + SEP + "file1.bin", torrent.filePath(2));
+    }
+
+    @Test
+    public void invalidDataIsRejected() {
+        String[] invalid = {
+                "",
+                "d4:info",
+                "d4:infod6:lengthi1e4:name1:x",
+                "d4:infod6:lengthi1xe4:name1:xee",
+                "d4:infod6:length99:xee",
+                "d4:infod5:filesleee",
+                "d4:infod5:filesld4:pathl1:aeeeee",
+                "d8:announce1:xe",
+                "d4:info" + "l".repeat(1000) + "e".repeat(1001)
+        };
+        for (String s : invalid) {
+            byte[] data = s.getBytes(StandardCharsets.UTF_8);
+            assertThrows(IllegalArgumentException.class, () -> TorrentFiles.parse(data), s);
+        }
+    }
+
+    /**
+     * A multi-file torrent with {@code files} files in directories of 100,
+     * aligned with pad files, and random piece hashes.
+     */
+    static byte[] torrent(String name, int files, long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        int pieceLength = 256 * 1024;
+        long total = 0;
+        StringBuilder list = new StringBuilder("l");
+        for (int i = 0; i < files; i++) {
+            long size = 1024 + random.nextInt(50 * 1024 * 1024);
+            list.append("d6:lengthi").append(size).append("e4:pathl")
+                    .append(str("dir" + i / 100)).append(str("file" + i + ".bin")).append("ee");
+            total += size;
+            long pad = (pieceLength - size % pieceLength) % pieceLength;
+            if (i < files - 1 && pad > 0) {
+                list.append("d4:attr1:p6:lengthi").append(pad).append("e4:pathl4:.pad").append(str(Long.toString(pad))).append("ee");
+                total += pad;
+            }
+        }
+        list.append("e");
+        byte[] pieces = new byte[(int) ((total + pieceLength - 1) / pieceLength) * 20];
+        random.nextBytes(pieces);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, "d8:announce" + str("udp://tracker.example.com:80") + "4:infod5:files" + list
+                + "4:name" + str(name) + "12:piece lengthi" + pieceLength + "e6:pieces" + pieces.length + ":");
+        out.write(pieces, 0, pieces.length);
+        write(out, "ee");
+        return out.toByteArray();
+    }
+
+    private static String str(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length + ":" + s;
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String sha1Hex(byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
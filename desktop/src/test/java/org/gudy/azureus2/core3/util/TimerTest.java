@@ -0,0 +1,54 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2022, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A new {@link Timer} starts at tick 0, so the slots the events land in are known.
+ */
+public final class TimerTest {
+
+    @Test
+    public void upperSlotIsRedistributedBeforeALaterEvent() throws InterruptedException {
+        Timer timer = new Timer("test", 2);
+        long start = System.nanoTime();
+        CountDownLatch latch = new CountDownLatch(4);
+        AtomicLong ran = new AtomicLong();
+        // tick 100, in the second wheel slot redistributed at tick 64
+        timer.addEvent("upper", SystemTime.getOffsetTime(1000), event -> {
+            ran.set((System.nanoTime() - start) / 1_000_000);
+            latch.countDown();
+        });
+        // the timer only moves to the tick of an event, tick 48 here
+        timer.addEvent("tick", SystemTime.getOffsetTime(480), event -> latch.countDown());
+        Thread.sleep(500);
+        // tick 110, in the first wheel, due after the upper one
+        timer.addEvent("lower", SystemTime.getOffsetTime(600), event -> latch.countDown());
+        // tick 55, wakes the timer, which then looks for the next tick again
+        timer.addEvent("kick", SystemTime.getOffsetTime(50), event -> latch.countDown());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(ran.get() < 1080, "ran at " + ran.get());
+    }
+}